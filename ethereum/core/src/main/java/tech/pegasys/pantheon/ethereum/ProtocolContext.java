@@ -20,9 +20,12 @@ import tech.pegasys.pantheon.ethereum.chain.MutableBlockchain;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateRecovery;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 
+import java.util.Optional;
 import java.util.function.BiFunction;
 
 /**
@@ -51,6 +54,7 @@ public class ProtocolContext<C> {
       final GenesisState genesisState,
       final ProtocolSchedule<T> protocolSchedule,
       final MetricsSystem metricsSystem,
+      final int prefetchThreads,
       final BiFunction<Blockchain, WorldStateArchive, T> consensusContextFactory) {
     final BlockchainStorage blockchainStorage =
         storageProvider.createBlockchainStorage(protocolSchedule);
@@ -59,8 +63,14 @@ public class ProtocolContext<C> {
     final MutableBlockchain blockchain =
         new DefaultMutableBlockchain(genesisState.getBlock(), blockchainStorage, metricsSystem);
 
-    final WorldStateArchive worldStateArchive = new WorldStateArchive(worldStateStorage);
+    final Optional<WorldStatePrefetcher> prefetcher =
+        prefetchThreads > 0
+            ? Optional.of(new WorldStatePrefetcher(prefetchThreads, metricsSystem))
+            : Optional.empty();
+    final WorldStateArchive worldStateArchive =
+        new WorldStateArchive(worldStateStorage, prefetcher);
     genesisState.writeStateTo(worldStateArchive.getMutable());
+    WorldStateRecovery.recoverChainHeadState(blockchain, worldStateArchive, protocolSchedule);
 
     return new ProtocolContext<>(
         blockchain,
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.chain;
+
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.LabelledMetric;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of decoded block data in front of {@link BlockchainStorage}. Only values that were
+ * found are cached.
+ *
+ * <p>Values loaded while the cache is being invalidated may have been read before the change that
+ * caused the invalidation was committed, so they are discarded rather than cached.
+ */
+class BlockDataCache<K, V> {
+
+  private final Cache<K, V> cache;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private volatile long generation;
+
+  BlockDataCache(
+      final String name,
+      final long maximumSize,
+      final LabelledMetric<Counter> hits,
+      final LabelledMetric<Counter> misses,
+      final MetricsSystem metricsSystem) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.hitCounter = hits.labels(name);
+    this.missCounter = misses.labels(name);
+    metricsSystem.createLongGauge(
+        MetricCategory.BLOCKCHAIN,
+        name + "_cache_entries",
+        "Number of entries held in the " + name.replace('_', ' ') + " cache",
+        cache::size);
+  }
+
+  Optional<V> get(final K key, final Function<K, Optional<V>> loader) {
+    final V cached = cache.getIfPresent(key);
+    if (cached != null) {
+      hitCounter.inc();
+      return Optional.of(cached);
+    }
+    missCounter.inc();
+    final long loadGeneration = generation;
+    final Optional<V> value = loader.apply(key);
+    value.ifPresent(v -> putIfCurrent(Collections.singletonMap(key, v), loadGeneration));
+    return value;
+  }
+
+  /** Looks up several keys, loading only the ones that aren't cached. Missing keys are omitted. */
+  Map<K, V> getAll(final Collection<K> keys, final Function<Collection<K>, Map<K, V>> loader) {
+    final Map<K, V> values = new HashMap<>(keys.size());
+    final List<K> missingKeys = new ArrayList<>();
+    for (final K key : keys) {
+      final V cached = cache.getIfPresent(key);
+      if (cached != null) {
+        values.put(key, cached);
+      } else {
+        missingKeys.add(key);
+      }
+    }
+    hitCounter.inc(values.size());
+    if (!missingKeys.isEmpty()) {
+      missCounter.inc(missingKeys.size());
+      final long loadGeneration = generation;
+      final Map<K, V> loaded = loader.apply(missingKeys);
+      putIfCurrent(loaded, loadGeneration);
+      values.putAll(loaded);
+    }
+    return values;
+  }
+
+  /** Caches a value that is known to be current, such as one that was just committed. */
+  void put(final K key, final V value) {
+    cache.put(key, value);
+  }
+
+  synchronized void invalidateAll() {
+    generation++;
+    cache.invalidateAll();
+  }
+
+  private synchronized void putIfCurrent(final Map<K, V> values, final long loadGeneration) {
+    if (loadGeneration == generation) {
+      cache.putAll(values);
+    }
+  }
+}
@@ -20,7 +20,11 @@ import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /** An interface for reading data from the blockchain. */
@@ -116,6 +120,21 @@ public interface Blockchain {
    */
   Optional<BlockHeader> getBlockHeader(Hash blockHeaderHash);
 
+  /**
+   * Returns the block headers corresponding to the given block hashes. Associated blocks are not
+   * necessarily on the canonical chain.
+   *
+   * @param blockHeaderHashes The hashes of the blocks whose headers we want to retrieve.
+   * @return The block headers keyed by block hash. Hashes with no known header are omitted.
+   */
+  default Map<Hash, BlockHeader> getBlockHeaders(final Collection<Hash> blockHeaderHashes) {
+    final Map<Hash, BlockHeader> headers = new HashMap<>(blockHeaderHashes.size());
+    for (final Hash blockHeaderHash : blockHeaderHashes) {
+      getBlockHeader(blockHeaderHash).ifPresent(header -> headers.put(blockHeaderHash, header));
+    }
+    return headers;
+  }
+
   /**
    * Returns the block body corresponding to the given block header hash. Associated block is not
    * necessarily on the canonical chain.
@@ -126,6 +145,22 @@ public interface Blockchain {
    */
   Optional<BlockBody> getBlockBody(Hash blockHeaderHash);
 
+  /**
+   * Returns the block bodies corresponding to the given block header hashes. Associated blocks are
+   * not necessarily on the canonical chain.
+   *
+   * @param blockHeaderHashes The block header hashes identifying the blocks whose bodies should be
+   *     returned.
+   * @return The block bodies keyed by block hash. Hashes with no known body are omitted.
+   */
+  default Map<Hash, BlockBody> getBlockBodies(final Collection<Hash> blockHeaderHashes) {
+    final Map<Hash, BlockBody> bodies = new HashMap<>(blockHeaderHashes.size());
+    for (final Hash blockHeaderHash : blockHeaderHashes) {
+      getBlockBody(blockHeaderHash).ifPresent(body -> bodies.put(blockHeaderHash, body));
+    }
+    return bodies;
+  }
+
   /**
    * Given a block's hash, returns the list of transaction receipts associated with this block's
    * transactions. Associated block is not necessarily on the canonical chain.
@@ -143,6 +178,39 @@ public interface Blockchain {
    */
   Optional<Hash> getBlockHashByNumber(long number);
 
+  /**
+   * Retrieves the header hashes of the blocks at the given heights in the canonical chain.
+   *
+   * @param numbers The heights of the blocks whose hashes should be retrieved.
+   * @return The block hashes keyed by height. Heights beyond the chain head are omitted.
+   */
+  default Map<Long, Hash> getBlockHashesByNumber(final Collection<Long> numbers) {
+    final Map<Long, Hash> hashes = new HashMap<>(numbers.size());
+    for (final Long number : numbers) {
+      getBlockHashByNumber(number).ifPresent(hash -> hashes.put(number, hash));
+    }
+    return hashes;
+  }
+
+  /**
+   * Retrieves the header hashes of consecutive blocks in the canonical chain.
+   *
+   * @param startNumber The height of the first block whose hash should be retrieved.
+   * @param count The maximum number of hashes to retrieve.
+   * @return The block hashes in ascending order of height, ending early at the chain head.
+   */
+  default List<Hash> getBlockHashesByNumber(final long startNumber, final int count) {
+    final List<Hash> hashes = new ArrayList<>(Math.max(count, 0));
+    for (long number = startNumber; hashes.size() < count; number++) {
+      final Optional<Hash> hash = getBlockHashByNumber(number);
+      if (!hash.isPresent()) {
+        break;
+      }
+      hashes.add(hash.get());
+    }
+    return hashes;
+  }
+
   /**
    * Returns the total difficulty (cumulative difficulty up to and including the target block) of
    * the block corresponding to the given hash. Associated block is not necessarily on the canonical
@@ -18,8 +18,11 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface BlockchainStorage {
@@ -30,12 +33,52 @@ public interface BlockchainStorage {
 
   Optional<BlockHeader> getBlockHeader(Hash blockHash);
 
+  default Map<Hash, BlockHeader> getBlockHeaders(final Collection<Hash> blockHashes) {
+    final Map<Hash, BlockHeader> headers = new HashMap<>(blockHashes.size());
+    for (final Hash blockHash : blockHashes) {
+      getBlockHeader(blockHash).ifPresent(header -> headers.put(blockHash, header));
+    }
+    return headers;
+  }
+
   Optional<BlockBody> getBlockBody(Hash blockHash);
 
+  default Map<Hash, BlockBody> getBlockBodies(final Collection<Hash> blockHashes) {
+    final Map<Hash, BlockBody> bodies = new HashMap<>(blockHashes.size());
+    for (final Hash blockHash : blockHashes) {
+      getBlockBody(blockHash).ifPresent(body -> bodies.put(blockHash, body));
+    }
+    return bodies;
+  }
+
   Optional<List<TransactionReceipt>> getTransactionReceipts(Hash blockHash);
 
   Optional<Hash> getBlockHash(long blockNumber);
 
+  default Map<Long, Hash> getBlockHashes(final Collection<Long> blockNumbers) {
+    final Map<Long, Hash> hashes = new HashMap<>(blockNumbers.size());
+    for (final Long blockNumber : blockNumbers) {
+      getBlockHash(blockNumber).ifPresent(hash -> hashes.put(blockNumber, hash));
+    }
+    return hashes;
+  }
+
+  /**
+   * Returns the canonical hashes of up to {@code count} consecutive blocks starting at {@code
+   * startBlockNumber}, stopping at the first block that isn't available.
+   */
+  default List<Hash> getBlockHashes(final long startBlockNumber, final int count) {
+    final List<Hash> hashes = new ArrayList<>(Math.max(count, 0));
+    for (long blockNumber = startBlockNumber; hashes.size() < count; blockNumber++) {
+      final Optional<Hash> hash = getBlockHash(blockNumber);
+      if (!hash.isPresent()) {
+        break;
+      }
+      hashes.add(hash.get());
+    }
+    return hashes;
+  }
+
   Optional<UInt256> getTotalDifficulty(Hash blockHash);
 
   Optional<TransactionLocation> getTransactionLocation(Hash transactionHash);
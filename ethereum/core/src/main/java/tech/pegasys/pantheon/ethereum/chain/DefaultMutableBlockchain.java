@@ -23,6 +23,8 @@ import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.LabelledMetric;
 import tech.pegasys.pantheon.metrics.MetricCategory;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.util.InvalidConfigurationException;
@@ -44,8 +46,22 @@ import com.google.common.annotations.VisibleForTesting;
 
 public class DefaultMutableBlockchain implements MutableBlockchain {
 
+  // Recent blocks are read repeatedly while they are validated, served to peers and queried, so
+  // the caches only need to cover the blocks around the chain head.
+  private static final int HEADER_CACHE_SIZE = 1024;
+  private static final int BODY_CACHE_SIZE = 256;
+  private static final int RECEIPTS_CACHE_SIZE = 256;
+  private static final int CANONICAL_HASH_CACHE_SIZE = 1024;
+
   private final BlockchainStorage blockchainStorage;
 
+  // Block data is keyed by block hash so it never changes. Only the canonical hash at a given
+  // block number changes, when the chain is reorganised.
+  private final BlockDataCache<Hash, BlockHeader> headerCache;
+  private final BlockDataCache<Hash, BlockBody> bodyCache;
+  private final BlockDataCache<Hash, List<TransactionReceipt>> receiptsCache;
+  private final BlockDataCache<Long, Hash> canonicalHashCache;
+
   private final Subscribers<BlockAddedObserver> blockAddedObservers = new Subscribers<>();
 
   public DefaultMutableBlockchain(
@@ -54,6 +70,30 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
       final MetricsSystem metricsSystem) {
     checkNotNull(genesisBlock);
     this.blockchainStorage = blockchainStorage;
+
+    final LabelledMetric<Counter> cacheHits =
+        metricsSystem.createLabelledCounter(
+            MetricCategory.BLOCKCHAIN,
+            "cache_hits_total",
+            "Number of block data reads served from the blockchain caches",
+            "cache");
+    final LabelledMetric<Counter> cacheMisses =
+        metricsSystem.createLabelledCounter(
+            MetricCategory.BLOCKCHAIN,
+            "cache_misses_total",
+            "Number of block data reads not found in the blockchain caches",
+            "cache");
+    headerCache =
+        new BlockDataCache<>("header", HEADER_CACHE_SIZE, cacheHits, cacheMisses, metricsSystem);
+    bodyCache =
+        new BlockDataCache<>("body", BODY_CACHE_SIZE, cacheHits, cacheMisses, metricsSystem);
+    receiptsCache =
+        new BlockDataCache<>(
+            "receipts", RECEIPTS_CACHE_SIZE, cacheHits, cacheMisses, metricsSystem);
+    canonicalHashCache =
+        new BlockDataCache<>(
+            "canonical_hash", CANONICAL_HASH_CACHE_SIZE, cacheHits, cacheMisses, metricsSystem);
+
     this.setGenesis(genesisBlock);
 
     metricsSystem.createGauge(
@@ -88,34 +128,54 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
     // Head should always be set, so we can call get()
     return blockchainStorage
         .getChainHead()
-        .flatMap(blockchainStorage::getBlockHeader)
+        .flatMap(this::getBlockHeader)
         .map(BlockHeader::getNumber)
         .get();
   }
 
   @Override
   public Optional<BlockHeader> getBlockHeader(final long blockNumber) {
-    return blockchainStorage.getBlockHash(blockNumber).flatMap(blockchainStorage::getBlockHeader);
+    return getBlockHashByNumber(blockNumber).flatMap(this::getBlockHeader);
   }
 
   @Override
   public Optional<BlockHeader> getBlockHeader(final Hash blockHeaderHash) {
-    return blockchainStorage.getBlockHeader(blockHeaderHash);
+    return headerCache.get(blockHeaderHash, blockchainStorage::getBlockHeader);
+  }
+
+  @Override
+  public Map<Hash, BlockHeader> getBlockHeaders(final Collection<Hash> blockHeaderHashes) {
+    return headerCache.getAll(blockHeaderHashes, blockchainStorage::getBlockHeaders);
   }
 
   @Override
   public Optional<BlockBody> getBlockBody(final Hash blockHeaderHash) {
-    return blockchainStorage.getBlockBody(blockHeaderHash);
+    return bodyCache.get(blockHeaderHash, blockchainStorage::getBlockBody);
+  }
+
+  @Override
+  public Map<Hash, BlockBody> getBlockBodies(final Collection<Hash> blockHeaderHashes) {
+    return bodyCache.getAll(blockHeaderHashes, blockchainStorage::getBlockBodies);
   }
 
   @Override
   public Optional<List<TransactionReceipt>> getTxReceipts(final Hash blockHeaderHash) {
-    return blockchainStorage.getTransactionReceipts(blockHeaderHash);
+    return receiptsCache.get(blockHeaderHash, blockchainStorage::getTransactionReceipts);
   }
 
   @Override
   public Optional<Hash> getBlockHashByNumber(final long number) {
-    return blockchainStorage.getBlockHash(number);
+    return canonicalHashCache.get(number, blockchainStorage::getBlockHash);
+  }
+
+  @Override
+  public Map<Long, Hash> getBlockHashesByNumber(final Collection<Long> numbers) {
+    return canonicalHashCache.getAll(numbers, blockchainStorage::getBlockHashes);
+  }
+
+  @Override
+  public List<Hash> getBlockHashesByNumber(final long startNumber, final int count) {
+    return blockchainStorage.getBlockHashes(startNumber, count);
   }
 
   @Override
@@ -129,8 +189,7 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
         .getTransactionLocation(transactionHash)
         .flatMap(
             l ->
-                blockchainStorage
-                    .getBlockBody(l.getBlockHash())
+                getBlockBody(l.getBlockHash())
                     .map(b -> b.getTransactions().get(l.getTransactionIndex())));
   }
 
@@ -152,6 +211,7 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
     }
 
     final BlockAddedEvent blockAddedEvent = appendBlockHelper(block, receipts);
+    updateCaches(block, receipts, blockAddedEvent);
     notifyBlockAdded(blockAddedEvent);
   }
 
@@ -175,6 +235,27 @@ public class DefaultMutableBlockchain implements MutableBlockchain {
     return blockAddedEvent;
   }
 
+  private void updateCaches(
+      final Block block,
+      final List<TransactionReceipt> receipts,
+      final BlockAddedEvent blockAddedEvent) {
+    final Hash hash = block.getHash();
+    headerCache.put(hash, block.getHeader());
+    bodyCache.put(hash, block.getBody());
+    receiptsCache.put(hash, receipts);
+    switch (blockAddedEvent.getEventType()) {
+      case HEAD_ADVANCED:
+        canonicalHashCache.put(block.getHeader().getNumber(), hash);
+        break;
+      case CHAIN_REORG:
+        // The reorg may have replaced or removed any number of canonical hashes
+        canonicalHashCache.invalidateAll();
+        break;
+      case FORK:
+        break;
+    }
+  }
+
   private UInt256 calculateTotalDifficulty(final Block block) {
     if (block.getHeader().getNumber() == BlockHeader.GENESIS_BLOCK_NUMBER) {
       return block.getHeader().getDifficulty();
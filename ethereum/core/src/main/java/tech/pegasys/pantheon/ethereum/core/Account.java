@@ -16,7 +16,9 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.stream.Stream;
 
 /**
  * A world state account.
@@ -145,4 +147,13 @@ public interface Account {
    * @return the requested storage entries as a map of key hash to value.
    */
   NavigableMap<Bytes32, UInt256> storageEntriesFrom(Bytes32 startKeyHash, int limit);
+
+  /**
+   * Streams all the storage entries of the account in ascending order of their key hash.
+   *
+   * @return the storage entries as key hash and value.
+   */
+  default Stream<Map.Entry<Bytes32, UInt256>> storageEntries() {
+    return storageEntriesFrom(Bytes32.ZERO, Integer.MAX_VALUE).entrySet().stream();
+  }
 }
@@ -12,6 +12,8 @@
  */
 package tech.pegasys.pantheon.ethereum.core;
 
+import java.util.Collection;
+
 public interface MutableWorldState extends WorldState, MutableWorldView {
 
   /**
@@ -23,4 +25,12 @@ public interface MutableWorldState extends WorldState, MutableWorldView {
 
   /** Persist accumulated changes to underlying storage. */
   void persist();
+
+  /**
+   * Hints that the given accounts are about to be read, so that their state can be loaded in the
+   * background. Prefetching stops once changes are persisted. Does nothing by default.
+   *
+   * @param accounts the accounts to prefetch, most urgent first
+   */
+  default void prefetch(final Collection<Address> accounts) {}
 }
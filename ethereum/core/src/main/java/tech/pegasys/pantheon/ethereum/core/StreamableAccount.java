@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.core;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * An account streamed from a {@link WorldState}.
+ *
+ * <p>The world state is keyed by the hash of each account's address and does not store the address
+ * itself, so streamed accounts are identified by {@link #getAddressHash()}. The address is only
+ * known for accounts whose changes have not been persisted yet.
+ */
+public class StreamableAccount {
+
+  private final Optional<Address> address;
+  private final Account account;
+
+  public StreamableAccount(final Optional<Address> address, final Account account) {
+    this.address = address;
+    this.account = account;
+  }
+
+  public Optional<Address> getAddress() {
+    return address;
+  }
+
+  public Hash getAddressHash() {
+    return account.getAddressHash();
+  }
+
+  public long getNonce() {
+    return account.getNonce();
+  }
+
+  public Wei getBalance() {
+    return account.getBalance();
+  }
+
+  public BytesValue getCode() {
+    return account.getCode();
+  }
+
+  public Hash getCodeHash() {
+    return account.getCodeHash();
+  }
+
+  /**
+   * Streams all the storage entries of the account in ascending order of their key hash.
+   *
+   * @return the storage entries as key hash and value.
+   */
+  public Stream<Map.Entry<Bytes32, UInt256>> storageEntries() {
+    return account.storageEntries();
+  }
+}
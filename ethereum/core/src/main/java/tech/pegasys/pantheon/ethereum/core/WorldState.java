@@ -32,10 +32,11 @@ public interface WorldState extends WorldView {
   Hash rootHash();
 
   /**
-   * A stream of all the accounts in this world state.
+   * A stream of all the accounts in this world state, identified by the hash of their address.
    *
-   * @return a stream of all the accounts (in no particular order) contained in the world state
-   *     represented by the root hash of this object at the time of the call.
+   * @return a stream of all the accounts contained in the world state represented by the root hash
+   *     of this object at the time of the call. Implementations backed by the account trie stream
+   *     them in ascending order of their address hash.
    */
-  Stream<Account> accounts();
+  Stream<StreamableAccount> accounts();
 }
@@ -21,12 +21,12 @@ import tech.pegasys.pantheon.ethereum.core.LogsBloomFilter;
 import tech.pegasys.pantheon.ethereum.core.Transaction;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.rlp.RLP;
-import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
-import tech.pegasys.pantheon.ethereum.trie.SimpleMerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.TrieRootBuilder;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.util.List;
+import java.util.function.IntFunction;
 
 /** A utility class for body validation tasks. */
 public final class BodyValidation {
@@ -39,8 +39,24 @@ public final class BodyValidation {
     return RLP.encodeOne(trimLeadingZeros(UInt256.of(i).getBytes()));
   }
 
-  private static MerklePatriciaTrie<BytesValue, BytesValue> trie() {
-    return new SimpleMerklePatriciaTrie<>(b -> b);
+  /**
+   * Computes the root of a trie that maps each index to an item. Index keys are added in sorted
+   * order, which isn't numeric order: index 0 is encoded as 0x80, so it sorts between the single
+   * byte indices 1 to 127 and the longer encodings of the indices from 128.
+   */
+  private static Hash indexedItemsRoot(final int count, final IntFunction<BytesValue> item) {
+    final TrieRootBuilder builder = new TrieRootBuilder();
+    final int singleByteKeys = Math.min(count, 128);
+    for (int i = 1; i < singleByteKeys; ++i) {
+      builder.put(indexKey(i), item.apply(i));
+    }
+    if (count > 0) {
+      builder.put(indexKey(0), item.apply(0));
+    }
+    for (int i = singleByteKeys; i < count; ++i) {
+      builder.put(indexKey(i), item.apply(i));
+    }
+    return Hash.wrap(builder.getRootHash());
   }
 
   /**
@@ -50,13 +66,7 @@ public final class BodyValidation {
    * @return the transaction root
    */
   public static Hash transactionsRoot(final List<Transaction> transactions) {
-    final MerklePatriciaTrie<BytesValue, BytesValue> trie = trie();
-
-    for (int i = 0; i < transactions.size(); ++i) {
-      trie.put(indexKey(i), RLP.encode(transactions.get(i)::writeTo));
-    }
-
-    return Hash.wrap(trie.getRootHash());
+    return indexedItemsRoot(transactions.size(), i -> RLP.encode(transactions.get(i)::writeTo));
   }
 
   /**
@@ -66,13 +76,7 @@ public final class BodyValidation {
    * @return the receipt root
    */
   public static Hash receiptsRoot(final List<TransactionReceipt> receipts) {
-    final MerklePatriciaTrie<BytesValue, BytesValue> trie = trie();
-
-    for (int i = 0; i < receipts.size(); ++i) {
-      trie.put(indexKey(i), RLP.encode(receipts.get(i)::writeTo));
-    }
-
-    return Hash.wrap(trie.getRootHash());
+    return indexedItemsRoot(receipts.size(), i -> RLP.encode(receipts.get(i)::writeTo));
   }
 
   /**
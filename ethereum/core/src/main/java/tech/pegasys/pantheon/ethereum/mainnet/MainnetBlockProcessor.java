@@ -26,7 +26,10 @@ import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
 import tech.pegasys.pantheon.ethereum.vm.BlockHashLookup;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.google.common.collect.ImmutableList;
 import org.apache.logging.log4j.LogManager;
@@ -104,6 +107,9 @@ public class MainnetBlockProcessor implements BlockProcessor {
       final List<Transaction> transactions,
       final List<BlockHeader> ommers) {
 
+    // Each first read of an account would otherwise wait on storage
+    worldState.prefetch(accountsToPrefetch(blockHeader, transactions, ommers));
+
     long gasUsed = 0;
     final List<TransactionReceipt> receipts = new ArrayList<>();
 
@@ -148,6 +154,23 @@ public class MainnetBlockProcessor implements BlockProcessor {
     return Result.successful(receipts);
   }
 
+  private Collection<Address> accountsToPrefetch(
+      final BlockHeader blockHeader,
+      final List<Transaction> transactions,
+      final List<BlockHeader> ommers) {
+    final Set<Address> accounts = new LinkedHashSet<>();
+    for (final Transaction transaction : transactions) {
+      accounts.add(transaction.getSender());
+      transaction.getTo().ifPresent(accounts::add);
+      transaction.contractAddress().ifPresent(accounts::add);
+    }
+    accounts.add(miningBeneficiaryCalculator.calculateBeneficiary(blockHeader));
+    for (final BlockHeader ommer : ommers) {
+      accounts.add(ommer.getCoinbase());
+    }
+    return accounts;
+  }
+
   private boolean rewardCoinbase(
       final MutableWorldState worldState,
       final ProcessableBlockHeader header,
@@ -17,6 +17,7 @@ import tech.pegasys.pantheon.ethereum.core.Account;
 import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.StreamableAccount;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
@@ -122,7 +123,7 @@ public class PrivateMutableWorldState implements MutableWorldState {
   }
 
   @Override
-  public Stream<Account> accounts() {
+  public Stream<StreamableAccount> accounts() {
     // TODO: the current trie implementation doesn't have walking capability yet (pending NC-746)
     // so this can't be implemented.
     throw new UnsupportedOperationException("TODO");
@@ -17,10 +17,24 @@ import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public interface StorageProvider extends Closeable {
 
   BlockchainStorage createBlockchainStorage(ProtocolSchedule<?> protocolSchedule);
 
   WorldStateStorage createWorldStateStorage();
+
+  /**
+   * Writes a consistent copy of the stored data while it remains in use, so that a node can be
+   * started from the copy. Storages that can't do this, such as those held only in memory, throw
+   * {@link UnsupportedOperationException}.
+   *
+   * @param databaseDirectory the directory to copy the database to, which must not exist yet
+   * @param ancientDataDirectory the directory to copy ancient blocks to, only used when old blocks
+   *     are moved out of the database
+   * @throws IOException On Failure
+   */
+  void createCheckpoint(Path databaseDirectory, Path ancientDataDirectory) throws IOException;
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.ancient;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Append-only store for the RLP encoded headers, bodies and receipts of blocks that are too old to
+ * be affected by a reorg. Blocks are stored contiguously from the genesis block and looked up by
+ * number, which keeps them out of the key value store where they would otherwise be rewritten on
+ * every compaction.
+ */
+public class AncientBlockStore implements Closeable {
+
+  private final Path directory;
+  private final AppendOnlyTable headers;
+  private final AppendOnlyTable bodies;
+  private final AppendOnlyTable receipts;
+
+  private AncientBlockStore(
+      final Path directory,
+      final AppendOnlyTable headers,
+      final AppendOnlyTable bodies,
+      final AppendOnlyTable receipts)
+      throws IOException {
+    this.directory = directory;
+    this.headers = headers;
+    this.bodies = bodies;
+    this.receipts = receipts;
+    // Tables are appended to one after the other, so after a crash they may differ by a block.
+    final long blockCount = Math.min(headers.size(), Math.min(bodies.size(), receipts.size()));
+    headers.truncate(blockCount);
+    bodies.truncate(blockCount);
+    receipts.truncate(blockCount);
+  }
+
+  public static AncientBlockStore open(final Path directory) throws IOException {
+    Files.createDirectories(directory);
+    final AppendOnlyTable headers = AppendOnlyTable.open(directory, "headers");
+    final AppendOnlyTable bodies = AppendOnlyTable.open(directory, "bodies");
+    final AppendOnlyTable receipts = AppendOnlyTable.open(directory, "receipts");
+    return new AncientBlockStore(directory, headers, bodies, receipts);
+  }
+
+  /** Returns the number of stored blocks, which is also the number of the next block to append. */
+  public long getBlockCount() {
+    return headers.size();
+  }
+
+  public Optional<BytesValue> getBlockHeader(final long blockNumber) {
+    return get(headers, blockNumber);
+  }
+
+  public Optional<BytesValue> getBlockBody(final long blockNumber) {
+    return get(bodies, blockNumber);
+  }
+
+  public Optional<BytesValue> getTransactionReceipts(final long blockNumber) {
+    return get(receipts, blockNumber);
+  }
+
+  /**
+   * Appends a block. Blocks must be appended in order and are only guaranteed to survive a crash
+   * once {@link #sync()} has returned.
+   */
+  public synchronized void append(
+      final long blockNumber,
+      final BytesValue header,
+      final BytesValue body,
+      final BytesValue transactionReceipts)
+      throws IOException {
+    checkArgument(
+        blockNumber == getBlockCount(),
+        "Expected block %s to be appended but got %s",
+        getBlockCount(),
+        blockNumber);
+    // Headers go last so that a block is only counted once all of its parts are readable.
+    bodies.append(body);
+    receipts.append(transactionReceipts);
+    headers.append(header);
+  }
+
+  public synchronized void sync() throws IOException {
+    bodies.sync();
+    receipts.sync();
+    headers.sync();
+  }
+
+  /**
+   * Copies the store to another directory while it stays open. Appends wait until the copy is
+   * complete, so the copy holds whole blocks only.
+   *
+   * @param target the directory to copy the store to
+   * @throws IOException On Failure
+   */
+  public synchronized void copyTo(final Path target) throws IOException {
+    sync();
+    Files.createDirectories(target);
+    try (final Stream<Path> files = Files.list(directory)) {
+      for (final Path file : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(file)) {
+          Files.copy(file, target.resolve(file.getFileName()));
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      bodies.close();
+      receipts.close();
+    } finally {
+      headers.close();
+    }
+  }
+
+  private static Optional<BytesValue> get(final AppendOnlyTable table, final long blockNumber) {
+    try {
+      return table.get(blockNumber);
+    } catch (final IOException e) {
+      throw new StorageException(e);
+    }
+  }
+}
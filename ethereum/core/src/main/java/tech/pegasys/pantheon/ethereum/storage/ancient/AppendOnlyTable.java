@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.ancient;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * A sequence of values stored back to back in a data file, with a memory mapped index holding the
+ * end offset of each value. Values can only be appended and are read by their position.
+ *
+ * <p>Entries are never empty, so the end offsets are strictly increasing and the first zero offset
+ * in the index marks the end of the table. Appends from a single thread may run concurrently with
+ * reads from any thread.
+ */
+class AppendOnlyTable implements Closeable {
+
+  private static final int OFFSET_SIZE = Long.BYTES;
+  private static final int INDEX_MAPPING_INCREMENT = OFFSET_SIZE * (1 << 20);
+
+  private final FileChannel data;
+  private final FileChannel index;
+  private volatile MappedByteBuffer indexBuffer;
+  private volatile long size;
+  private long dataSize;
+
+  private AppendOnlyTable(final FileChannel data, final FileChannel index) throws IOException {
+    this.data = data;
+    this.index = index;
+    this.indexBuffer = mapIndex(Math.max(index.size(), 1));
+    this.size = findSize();
+    // A crash can leave index entries whose data never reached the disk, and data without an index
+    // entry. Both are dropped.
+    while (size > 0 && endOffset(size - 1) > data.size()) {
+      truncate(size - 1);
+    }
+    this.dataSize = size == 0 ? 0 : endOffset(size - 1);
+    data.truncate(dataSize);
+  }
+
+  static AppendOnlyTable open(final Path directory, final String name) throws IOException {
+    final FileChannel data =
+        FileChannel.open(
+            directory.resolve(name + ".dat"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      final FileChannel index =
+          FileChannel.open(
+              directory.resolve(name + ".idx"),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      return new AppendOnlyTable(data, index);
+    } catch (final IOException | RuntimeException e) {
+      data.close();
+      throw e;
+    }
+  }
+
+  long size() {
+    return size;
+  }
+
+  Optional<BytesValue> get(final long position) throws IOException {
+    if (position < 0 || position >= size) {
+      return Optional.empty();
+    }
+    final long start = position == 0 ? 0 : endOffset(position - 1);
+    final ByteBuffer buffer = ByteBuffer.allocate((int) (endOffset(position) - start));
+    while (buffer.hasRemaining()) {
+      if (data.read(buffer, start + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of ancient data at offset " + start);
+      }
+    }
+    return Optional.of(BytesValue.wrap(buffer.array()));
+  }
+
+  void append(final BytesValue value) throws IOException {
+    checkArgument(!value.isEmpty(), "Empty values can't be appended");
+    final ByteBuffer buffer = ByteBuffer.wrap(value.getArrayUnsafe());
+    while (buffer.hasRemaining()) {
+      data.write(buffer, dataSize + buffer.position());
+    }
+    dataSize += value.size();
+    final long indexEnd = (size + 1) * OFFSET_SIZE;
+    if (indexEnd > indexBuffer.capacity()) {
+      indexBuffer = mapIndex(indexEnd);
+    }
+    indexBuffer.putLong((int) (size * OFFSET_SIZE), dataSize);
+    size++;
+  }
+
+  /** Discards every entry from {@code newSize} onwards. */
+  void truncate(final long newSize) throws IOException {
+    checkArgument(newSize >= 0 && newSize <= size, "Can't truncate to a larger size");
+    for (long i = newSize; i < size; i++) {
+      indexBuffer.putLong((int) (i * OFFSET_SIZE), 0);
+    }
+    size = newSize;
+    dataSize = newSize == 0 ? 0 : endOffset(newSize - 1);
+    data.truncate(dataSize);
+  }
+
+  void sync() throws IOException {
+    data.force(false);
+    indexBuffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      sync();
+    } finally {
+      data.close();
+      index.close();
+    }
+  }
+
+  private long endOffset(final long position) {
+    return indexBuffer.getLong((int) (position * OFFSET_SIZE));
+  }
+
+  private long findSize() {
+    long low = 0;
+    long high = indexBuffer.capacity() / OFFSET_SIZE;
+    while (low < high) {
+      final long mid = (low + high) >>> 1;
+      if (endOffset(mid) == 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private MappedByteBuffer mapIndex(final long minimumSize) throws IOException {
+    final long mappingSize =
+        (minimumSize + INDEX_MAPPING_INCREMENT - 1)
+            / INDEX_MAPPING_INCREMENT
+            * INDEX_MAPPING_INCREMENT;
+    checkState(mappingSize <= Integer.MAX_VALUE, "Ancient index is full");
+    return index.map(MapMode.READ_WRITE, 0, mappingSize);
+  }
+}
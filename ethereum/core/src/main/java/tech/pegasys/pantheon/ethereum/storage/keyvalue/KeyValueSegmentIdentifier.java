@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.keyvalue;
+
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Segment;
+
+/** The segments the blockchain and world state data are split into. */
+public enum KeyValueSegmentIdentifier implements Segment {
+  /** Chain head, fork heads, total difficulties and transaction locations. */
+  DEFAULT("default"),
+  BLOCK_HEADERS("block_headers"),
+  BLOCK_BODIES("block_bodies"),
+  TRANSACTION_RECEIPTS("transaction_receipts"),
+  /** Canonical chain index from block number to block hash. */
+  CANONICAL_BLOCK_HASHES("canonical_block_hashes"),
+  /** Account state and account storage trie nodes. */
+  WORLD_STATE_TRIE_NODES("world_state_trie_nodes"),
+  CODE("code"),
+  /** Accounts and storage of the most recent world state keyed by hash, without the tries. */
+  FLAT_WORLD_STATE("flat_world_state");
+
+  private final String name;
+
+  KeyValueSegmentIdentifier(final String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.keyvalue;
+
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueSegmentIdentifier.FLAT_WORLD_STATE;
+
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.worldstate.FlatWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+public class KeyValueStorageFlatWorldStateStorage implements FlatWorldStateStorage {
+
+  // Keys are prefixed so they can't collide with blockchain data when the database isn't segmented
+  private static final BytesValue ROOT_HASH_KEY = BytesValue.of(0x10);
+  private static final BytesValue ACCOUNT_PREFIX = BytesValue.of(0x11);
+  private static final BytesValue ACCOUNT_STORAGE_PREFIX = BytesValue.of(0x12);
+  private static final BytesValue DISABLED = BytesValue.EMPTY;
+
+  private final SegmentedKeyValueStorage keyValueStorage;
+  // Readers hold the read lock so that the flat world state can't change while they check its root
+  // hash and read from it.
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile Optional<Bytes32> rootHash;
+
+  private final Reader reader =
+      new Reader() {
+        @Override
+        public Optional<BytesValue> getAccount(final Bytes32 accountHash) {
+          return keyValueStorage.get(FLAT_WORLD_STATE, accountKey(accountHash));
+        }
+
+        @Override
+        public Optional<BytesValue> getAccountStorage(
+            final Bytes32 accountHash, final Bytes32 slotHash) {
+          return keyValueStorage.get(FLAT_WORLD_STATE, accountStorageKey(accountHash, slotHash));
+        }
+      };
+
+  public KeyValueStorageFlatWorldStateStorage(final SegmentedKeyValueStorage keyValueStorage) {
+    this.keyValueStorage = keyValueStorage;
+    final Optional<BytesValue> storedRootHash =
+        keyValueStorage.get(FLAT_WORLD_STATE, ROOT_HASH_KEY);
+    if (!storedRootHash.isPresent()) {
+      // Nothing has been written yet, which is the flat form of the empty world state
+      rootHash = Optional.of(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
+    } else if (storedRootHash.get().equals(DISABLED)) {
+      rootHash = Optional.empty();
+    } else {
+      rootHash = Optional.of(Bytes32.wrap(storedRootHash.get(), 0));
+    }
+  }
+
+  @Override
+  public Optional<Bytes32> getRootHash() {
+    return rootHash;
+  }
+
+  @Override
+  public <T> Optional<T> read(final Bytes32 rootHash, final Function<Reader, T> read) {
+    if (!this.rootHash.equals(Optional.of(rootHash))) {
+      return Optional.empty();
+    }
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      // Check again now that the flat world state can't be changed
+      if (!this.rootHash.equals(Optional.of(rootHash))) {
+        return Optional.empty();
+      }
+      return Optional.of(read.apply(reader));
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Updater updater() {
+    return new Updater(keyValueStorage.startTransaction());
+  }
+
+  @Override
+  public void disable() {
+    final SegmentedKeyValueStorage.Transaction transaction = keyValueStorage.startTransaction();
+    transaction.put(FLAT_WORLD_STATE, ROOT_HASH_KEY, DISABLED);
+    commit(transaction, Optional.empty());
+  }
+
+  private void commit(
+      final SegmentedKeyValueStorage.Transaction transaction, final Optional<Bytes32> rootHash) {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      transaction.commit();
+      this.rootHash = rootHash;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private static BytesValue accountKey(final Bytes32 accountHash) {
+    return BytesValues.concatenate(ACCOUNT_PREFIX, accountHash);
+  }
+
+  private static BytesValue accountStorageKey(final Bytes32 accountHash, final Bytes32 slotHash) {
+    return BytesValues.concatenate(ACCOUNT_STORAGE_PREFIX, accountHash, slotHash);
+  }
+
+  public class Updater implements FlatWorldStateStorage.Updater {
+
+    private final SegmentedKeyValueStorage.Transaction transaction;
+
+    private Updater(final SegmentedKeyValueStorage.Transaction transaction) {
+      this.transaction = transaction;
+    }
+
+    @Override
+    public Updater putAccount(final Bytes32 accountHash, final BytesValue account) {
+      transaction.put(FLAT_WORLD_STATE, accountKey(accountHash), account);
+      return this;
+    }
+
+    @Override
+    public Updater removeAccount(final Bytes32 accountHash) {
+      transaction.remove(FLAT_WORLD_STATE, accountKey(accountHash));
+      return this;
+    }
+
+    @Override
+    public Updater putAccountStorage(
+        final Bytes32 accountHash, final Bytes32 slotHash, final BytesValue value) {
+      transaction.put(FLAT_WORLD_STATE, accountStorageKey(accountHash, slotHash), value);
+      return this;
+    }
+
+    @Override
+    public Updater removeAccountStorage(final Bytes32 accountHash, final Bytes32 slotHash) {
+      transaction.remove(FLAT_WORLD_STATE, accountStorageKey(accountHash, slotHash));
+      return this;
+    }
+
+    @Override
+    public void commit(final Bytes32 rootHash) {
+      transaction.put(FLAT_WORLD_STATE, ROOT_HASH_KEY, rootHash);
+      KeyValueStorageFlatWorldStateStorage.this.commit(transaction, Optional.of(rootHash));
+    }
+
+    @Override
+    public void rollback() {
+      transaction.rollback();
+    }
+  }
+}
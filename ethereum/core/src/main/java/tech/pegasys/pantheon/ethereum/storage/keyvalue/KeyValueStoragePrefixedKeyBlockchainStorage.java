@@ -20,26 +20,72 @@ import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
 import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.storage.ancient.AncientBlockStore;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Segment;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.bytes.BytesValues;
+import tech.pegasys.pantheon.util.bytes.MutableBytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
-import tech.pegasys.pantheon.util.uint.UInt256Bytes;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainStorage, Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
 
-public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainStorage {
+  /**
+   * Canonical blocks this far behind the chain head are moved to the ancient block store. It is far
+   * beyond the depth of any reorg, so blocks never need to leave the ancient store again.
+   */
+  public static final long ANCIENT_BLOCK_DISTANCE = 90_000;
+
+  private static final int FREEZE_BATCH_SIZE = 1_000;
+  private static final int MIGRATION_BATCH_SIZE = 10_000;
 
   private static final BytesValue CHAIN_HEAD_KEY =
       BytesValue.wrap("chainHeadHash".getBytes(StandardCharsets.UTF_8));
   private static final BytesValue FORK_HEADS_KEY =
       BytesValue.wrap("forkHeads".getBytes(StandardCharsets.UTF_8));
+  private static final BytesValue ANCIENT_BLOCK_COUNT_KEY =
+      BytesValue.wrap("ancientBlockCount".getBytes(StandardCharsets.UTF_8));
+  private static final BytesValue BLOCK_HASH_KEY_FORMAT_KEY =
+      BytesValue.wrap("blockHashKeyFormat".getBytes(StandardCharsets.UTF_8));
+
+  /**
+   * The canonical index used to be keyed by 32 byte block numbers. It is now keyed by 8 byte big
+   * endian block numbers, which are a quarter of the size and sort in block order.
+   */
+  private static final BytesValue COMPACT_BLOCK_HASH_KEYS = BytesValue.of(1);
+
+  private static final int LEGACY_BLOCK_HASH_KEY_SIZE = 1 + Bytes32.SIZE;
 
   private static final BytesValue CONSTANTS_PREFIX = BytesValue.of(1);
   private static final BytesValue BLOCK_HEADER_PREFIX = BytesValue.of(2);
@@ -48,14 +94,57 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
   private static final BytesValue BLOCK_HASH_PREFIX = BytesValue.of(5);
   private static final BytesValue TOTAL_DIFFICULTY_PREFIX = BytesValue.of(6);
   private static final BytesValue TRANSACTION_LOCATION_PREFIX = BytesValue.of(7);
+  private static final BytesValue ANCIENT_BLOCK_NUMBER_PREFIX = BytesValue.of(8);
 
-  private final KeyValueStorage storage;
+  private final SegmentedKeyValueStorage storage;
   private final BlockHashFunction blockHashFunction;
+  private final Optional<AncientBlockStore> ancientBlockStore;
+  private final Optional<ExecutorService> freezerExecutor;
+  private final AtomicBoolean freezeScheduled = new AtomicBoolean(false);
+  // The incomplete block the freezer is waiting on, so that it is only reported once
+  private volatile long stalledAncientBlock = -1;
 
   public KeyValueStoragePrefixedKeyBlockchainStorage(
       final KeyValueStorage storage, final BlockHashFunction blockHashFunction) {
+    this(new SegmentedKeyValueStorageAdapter(storage), blockHashFunction);
+  }
+
+  public KeyValueStoragePrefixedKeyBlockchainStorage(
+      final SegmentedKeyValueStorage storage, final BlockHashFunction blockHashFunction) {
+    this(storage, blockHashFunction, Optional.empty());
+  }
+
+  /**
+   * @param ancientBlockStore when present, headers, bodies and receipts of canonical blocks {@link
+   *     #ANCIENT_BLOCK_DISTANCE} behind the chain head are moved there in the background and read
+   *     from there transparently
+   */
+  public KeyValueStoragePrefixedKeyBlockchainStorage(
+      final SegmentedKeyValueStorage storage,
+      final BlockHashFunction blockHashFunction,
+      final Optional<AncientBlockStore> ancientBlockStore) {
     this.storage = storage;
     this.blockHashFunction = blockHashFunction;
+    this.ancientBlockStore = ancientBlockStore;
+    migrateLegacyBlockHashKeys();
+    this.freezerExecutor =
+        ancientBlockStore.map(
+            store ->
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder()
+                        .setNameFormat("AncientBlockFreezer")
+                        .setDaemon(true)
+                        .build()));
+    ancientBlockStore.ifPresent(
+        store -> {
+          if (store.getBlockCount() < getAncientBlockCount()) {
+            throw new IllegalStateException(
+                "Ancient block store holds "
+                    + store.getBlockCount()
+                    + " blocks but the database expects "
+                    + getAncientBlockCount());
+          }
+        });
   }
 
   @Override
@@ -72,24 +161,80 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
 
   @Override
   public Optional<BlockHeader> getBlockHeader(final Hash blockHash) {
-    return get(BLOCK_HEADER_PREFIX, blockHash)
+    return getBlockData(BLOCK_HEADER_PREFIX, blockHash, AncientBlockStore::getBlockHeader)
         .map(b -> BlockHeader.readFrom(RLP.input(b), blockHashFunction));
   }
 
+  @Override
+  public Map<Hash, BlockHeader> getBlockHeaders(final Collection<Hash> blockHashes) {
+    final Map<Hash, BlockHeader> headers = new HashMap<>(blockHashes.size());
+    getAllBlockData(BLOCK_HEADER_PREFIX, blockHashes, AncientBlockStore::getBlockHeader)
+        .forEach(
+            (blockHash, b) ->
+                headers.put(blockHash, BlockHeader.readFrom(RLP.input(b), blockHashFunction)));
+    return headers;
+  }
+
   @Override
   public Optional<BlockBody> getBlockBody(final Hash blockHash) {
-    return get(BLOCK_BODY_PREFIX, blockHash)
+    return getBlockData(BLOCK_BODY_PREFIX, blockHash, AncientBlockStore::getBlockBody)
         .map(bytesValue -> BlockBody.readFrom(RLP.input(bytesValue), blockHashFunction));
   }
 
+  @Override
+  public Map<Hash, BlockBody> getBlockBodies(final Collection<Hash> blockHashes) {
+    final Map<Hash, BlockBody> bodies = new HashMap<>(blockHashes.size());
+    getAllBlockData(BLOCK_BODY_PREFIX, blockHashes, AncientBlockStore::getBlockBody)
+        .forEach(
+            (blockHash, bytesValue) ->
+                bodies.put(
+                    blockHash, BlockBody.readFrom(RLP.input(bytesValue), blockHashFunction)));
+    return bodies;
+  }
+
   @Override
   public Optional<List<TransactionReceipt>> getTransactionReceipts(final Hash blockHash) {
-    return get(TRANSACTION_RECEIPTS_PREFIX, blockHash).map(this::rlpDecodeTransactionReceipts);
+    return getBlockData(
+            TRANSACTION_RECEIPTS_PREFIX, blockHash, AncientBlockStore::getTransactionReceipts)
+        .map(this::rlpDecodeTransactionReceipts);
   }
 
   @Override
   public Optional<Hash> getBlockHash(final long blockNumber) {
-    return get(BLOCK_HASH_PREFIX, UInt256Bytes.of(blockNumber)).map(this::bytesToHash);
+    return get(BLOCK_HASH_PREFIX, blockNumberBytes(blockNumber)).map(this::bytesToHash);
+  }
+
+  @Override
+  public List<Hash> getBlockHashes(final long startBlockNumber, final int count) {
+    if (count <= 0 || startBlockNumber < 0) {
+      return Collections.emptyList();
+    }
+    final List<Hash> hashes = new ArrayList<>(count);
+    final Segment segment = segmentFor(BLOCK_HASH_PREFIX);
+    try (final Stream<Entry> entries =
+        storage.entriesFrom(segment, blockHashKey(startBlockNumber))) {
+      final Iterator<Entry> iterator = entries.iterator();
+      while (hashes.size() < count && iterator.hasNext()) {
+        final Entry entry = iterator.next();
+        // Stop at the end of the index, or at a gap in it
+        if (!entry.getKey().equals(blockHashKey(startBlockNumber + hashes.size()))) {
+          break;
+        }
+        hashes.add(bytesToHash(entry.getValue()));
+      }
+    }
+    return hashes;
+  }
+
+  @Override
+  public Map<Long, Hash> getBlockHashes(final Collection<Long> blockNumbers) {
+    final Map<Long, Hash> hashes = new HashMap<>(blockNumbers.size());
+    getAll(
+            BLOCK_HASH_PREFIX,
+            blockNumbers,
+            KeyValueStoragePrefixedKeyBlockchainStorage::blockNumberBytes)
+        .forEach((blockNumber, bytesValue) -> hashes.put(blockNumber, bytesToHash(bytesValue)));
+    return hashes;
   }
 
   @Override
@@ -105,7 +250,159 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
 
   @Override
   public Updater updater() {
-    return new Updater(storage.startTransaction());
+    return new Updater(storage.startTransaction(), this::onChainHeadUpdated);
+  }
+
+  /** Stops moving blocks to the ancient block store. The ancient block store itself stays open. */
+  @Override
+  public void close() throws IOException {
+    if (freezerExecutor.isPresent()) {
+      freezerExecutor.get().shutdown();
+      try {
+        if (!freezerExecutor.get().awaitTermination(30, TimeUnit.SECONDS)) {
+          LOG.warn("Timed out waiting for ancient blocks to be stored");
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void onChainHeadUpdated() {
+    if (!freezerExecutor.isPresent() || !freezeScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      freezerExecutor
+          .get()
+          .execute(
+              () -> {
+                try {
+                  freezeAncientBlocks();
+                } catch (final RuntimeException | IOException e) {
+                  LOG.error("Failed to move blocks to the ancient block store", e);
+                } finally {
+                  freezeScheduled.set(false);
+                }
+              });
+    } catch (final RejectedExecutionException e) {
+      freezeScheduled.set(false);
+    }
+  }
+
+  /**
+   * Moves every canonical block at least {@link #ANCIENT_BLOCK_DISTANCE} behind the chain head into
+   * the ancient block store. Blocks are appended and synced to disk before they are removed from
+   * the key value store, so a crash in between leaves them in both, and the removal is simply
+   * repeated on the next run. The ancient store has no gaps, so an incomplete canonical block, such
+   * as one left behind by an interrupted sync, holds back every later block until its data arrives.
+   */
+  @VisibleForTesting
+  void freezeAncientBlocks() throws IOException {
+    if (!ancientBlockStore.isPresent()) {
+      return;
+    }
+    final AncientBlockStore store = ancientBlockStore.get();
+    final long lastAncientBlock =
+        getChainHead()
+                .flatMap(this::getBlockHeader)
+                .map(BlockHeader::getNumber)
+                .orElse(ANCIENT_BLOCK_DISTANCE - 1)
+            - ANCIENT_BLOCK_DISTANCE;
+    long ancientBlockCount = getAncientBlockCount();
+    while (ancientBlockCount <= lastAncientBlock && !freezerExecutor.get().isShutdown()) {
+      final long batchEnd = Math.min(lastAncientBlock + 1, ancientBlockCount + FREEZE_BATCH_SIZE);
+      long appendedEnd = store.getBlockCount();
+      while (appendedEnd < batchEnd && appendAncientBlock(store, appendedEnd)) {
+        appendedEnd++;
+      }
+      final long frozenEnd = Math.min(appendedEnd, batchEnd);
+      if (frozenEnd == ancientBlockCount) {
+        return;
+      }
+      store.sync();
+
+      final SegmentedKeyValueStorage.Transaction transaction = storage.startTransaction();
+      for (long blockNumber = ancientBlockCount; blockNumber < frozenEnd; blockNumber++) {
+        final Hash blockHash = getBlockHash(blockNumber).get();
+        removeFrom(transaction, BLOCK_HEADER_PREFIX, blockHash);
+        removeFrom(transaction, BLOCK_BODY_PREFIX, blockHash);
+        removeFrom(transaction, TRANSACTION_RECEIPTS_PREFIX, blockHash);
+        putTo(transaction, ANCIENT_BLOCK_NUMBER_PREFIX, blockHash, blockNumberBytes(blockNumber));
+      }
+      putTo(transaction, CONSTANTS_PREFIX, ANCIENT_BLOCK_COUNT_KEY, blockNumberBytes(frozenEnd));
+      transaction.commit();
+      LOG.debug(
+          "Moved blocks {} to {} to the ancient block store", ancientBlockCount, frozenEnd - 1);
+      ancientBlockCount = frozenEnd;
+    }
+  }
+
+  private boolean appendAncientBlock(final AncientBlockStore store, final long blockNumber)
+      throws IOException {
+    final Optional<Hash> blockHash = getBlockHash(blockNumber);
+    final Optional<BytesValue> header = blockHash.flatMap(h -> get(BLOCK_HEADER_PREFIX, h));
+    final Optional<BytesValue> body = blockHash.flatMap(h -> get(BLOCK_BODY_PREFIX, h));
+    final Optional<BytesValue> receipts =
+        blockHash.flatMap(h -> get(TRANSACTION_RECEIPTS_PREFIX, h));
+    if (!header.isPresent() || !body.isPresent() || !receipts.isPresent()) {
+      if (stalledAncientBlock != blockNumber) {
+        stalledAncientBlock = blockNumber;
+        LOG.warn(
+            "Block {} is incomplete, so no further blocks can be moved to the ancient block store until its data is available",
+            blockNumber);
+      }
+      return false;
+    }
+    if (stalledAncientBlock == blockNumber) {
+      stalledAncientBlock = -1;
+      LOG.info(
+          "Block {} is now complete, resuming moving blocks to the ancient block store",
+          blockNumber);
+    }
+    store.append(blockNumber, header.get(), body.get(), receipts.get());
+    return true;
+  }
+
+  @VisibleForTesting
+  Optional<Long> getStalledAncientBlock() {
+    final long blockNumber = stalledAncientBlock;
+    return blockNumber < 0 ? Optional.empty() : Optional.of(blockNumber);
+  }
+
+  private long getAncientBlockCount() {
+    return get(CONSTANTS_PREFIX, ANCIENT_BLOCK_COUNT_KEY).map(b -> b.getLong(0)).orElse(0L);
+  }
+
+  private Optional<Long> getAncientBlockNumber(final Hash blockHash) {
+    return get(ANCIENT_BLOCK_NUMBER_PREFIX, blockHash).map(b -> b.getLong(0));
+  }
+
+  private Optional<BytesValue> getBlockData(
+      final BytesValue prefix, final Hash blockHash, final AncientGetter ancientGetter) {
+    final Optional<BytesValue> value = get(prefix, blockHash);
+    if (value.isPresent() || !ancientBlockStore.isPresent()) {
+      return value;
+    }
+    return getAncientBlockNumber(blockHash)
+        .flatMap(blockNumber -> ancientGetter.get(ancientBlockStore.get(), blockNumber));
+  }
+
+  private Map<Hash, BytesValue> getAllBlockData(
+      final BytesValue prefix,
+      final Collection<Hash> blockHashes,
+      final AncientGetter ancientGetter) {
+    final Map<Hash, BytesValue> values = getAll(prefix, blockHashes, blockHash -> blockHash);
+    if (values.size() < blockHashes.size() && ancientBlockStore.isPresent()) {
+      for (final Hash blockHash : blockHashes) {
+        if (!values.containsKey(blockHash)) {
+          getAncientBlockNumber(blockHash)
+              .flatMap(blockNumber -> ancientGetter.get(ancientBlockStore.get(), blockNumber))
+              .ifPresent(value -> values.put(blockHash, value));
+        }
+      }
+    }
+    return values;
   }
 
   private List<TransactionReceipt> rlpDecodeTransactionReceipts(final BytesValue bytes) {
@@ -117,15 +414,119 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
   }
 
   private Optional<BytesValue> get(final BytesValue prefix, final BytesValue key) {
-    return storage.get(BytesValues.concatenate(prefix, key));
+    return storage.get(segmentFor(prefix), BytesValues.concatenate(prefix, key));
+  }
+
+  private static void putTo(
+      final SegmentedKeyValueStorage.Transaction transaction,
+      final BytesValue prefix,
+      final BytesValue key,
+      final BytesValue value) {
+    transaction.put(segmentFor(prefix), BytesValues.concatenate(prefix, key), value);
+  }
+
+  private static void removeFrom(
+      final SegmentedKeyValueStorage.Transaction transaction,
+      final BytesValue prefix,
+      final BytesValue key) {
+    transaction.remove(segmentFor(prefix), BytesValues.concatenate(prefix, key));
+  }
+
+  private static BytesValue blockHashKey(final long blockNumber) {
+    return BytesValues.concatenate(BLOCK_HASH_PREFIX, blockNumberBytes(blockNumber));
+  }
+
+  private void migrateLegacyBlockHashKeys() {
+    if (get(CONSTANTS_PREFIX, BLOCK_HASH_KEY_FORMAT_KEY).isPresent()) {
+      return;
+    }
+    final Segment segment = segmentFor(BLOCK_HASH_PREFIX);
+    long migratedKeys = 0;
+    SegmentedKeyValueStorage.Transaction transaction = storage.startTransaction();
+    try (final Stream<Entry> entries = storage.entriesFrom(segment, BLOCK_HASH_PREFIX)) {
+      final Iterator<Entry> iterator = entries.iterator();
+      while (iterator.hasNext()) {
+        final Entry entry = iterator.next();
+        final BytesValue key = entry.getKey();
+        if (key.get(0) != BLOCK_HASH_PREFIX.get(0)) {
+          break;
+        }
+        if (key.size() != LEGACY_BLOCK_HASH_KEY_SIZE) {
+          continue;
+        }
+        final long blockNumber = UInt256.wrap(Bytes32.wrap(key, 1)).toLong();
+        transaction.remove(segment, key);
+        transaction.put(segment, blockHashKey(blockNumber), entry.getValue());
+        if (++migratedKeys % MIGRATION_BATCH_SIZE == 0) {
+          transaction.commit();
+          transaction = storage.startTransaction();
+        }
+      }
+    }
+    putTo(transaction, CONSTANTS_PREFIX, BLOCK_HASH_KEY_FORMAT_KEY, COMPACT_BLOCK_HASH_KEYS);
+    transaction.commit();
+    if (migratedKeys > 0) {
+      LOG.info("Migrated {} canonical block index entries to compact keys", migratedKeys);
+    }
+  }
+
+  private static BytesValue blockNumberBytes(final long blockNumber) {
+    final MutableBytesValue bytes = MutableBytesValue.create(Long.BYTES);
+    bytes.setLong(0, blockNumber);
+    return bytes;
+  }
+
+  private <K> Map<K, BytesValue> getAll(
+      final BytesValue prefix, final Collection<K> keys, final Function<K, BytesValue> keyBytes) {
+    final List<K> orderedKeys = new ArrayList<>(keys);
+    final List<BytesValue> prefixedKeys = new ArrayList<>(orderedKeys.size());
+    for (final K key : orderedKeys) {
+      prefixedKeys.add(BytesValues.concatenate(prefix, keyBytes.apply(key)));
+    }
+    final Map<BytesValue, BytesValue> values = storage.getAll(segmentFor(prefix), prefixedKeys);
+    final Map<K, BytesValue> result = new HashMap<>(values.size());
+    for (int i = 0; i < orderedKeys.size(); i++) {
+      final BytesValue value = values.get(prefixedKeys.get(i));
+      if (value != null) {
+        result.put(orderedKeys.get(i), value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Keys keep their prefix in every segment so that storages which don't separate segments still
+   * have a collision free keyspace.
+   */
+  private static Segment segmentFor(final BytesValue prefix) {
+    if (prefix.equals(BLOCK_HEADER_PREFIX)) {
+      return KeyValueSegmentIdentifier.BLOCK_HEADERS;
+    } else if (prefix.equals(BLOCK_BODY_PREFIX)) {
+      return KeyValueSegmentIdentifier.BLOCK_BODIES;
+    } else if (prefix.equals(TRANSACTION_RECEIPTS_PREFIX)) {
+      return KeyValueSegmentIdentifier.TRANSACTION_RECEIPTS;
+    } else if (prefix.equals(BLOCK_HASH_PREFIX)) {
+      return KeyValueSegmentIdentifier.CANONICAL_BLOCK_HASHES;
+    } else {
+      return KeyValueSegmentIdentifier.DEFAULT;
+    }
+  }
+
+  @FunctionalInterface
+  private interface AncientGetter {
+    Optional<BytesValue> get(AncientBlockStore store, long blockNumber);
   }
 
   public static class Updater implements BlockchainStorage.Updater {
 
-    private final KeyValueStorage.Transaction transaction;
+    private final SegmentedKeyValueStorage.Transaction transaction;
+    private final Runnable onChainHeadUpdated;
+    private boolean chainHeadUpdated;
 
-    private Updater(final KeyValueStorage.Transaction transaction) {
+    private Updater(
+        final SegmentedKeyValueStorage.Transaction transaction, final Runnable onChainHeadUpdated) {
       this.transaction = transaction;
+      this.onChainHeadUpdated = onChainHeadUpdated;
     }
 
     @Override
@@ -152,7 +553,7 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
 
     @Override
     public void putBlockHash(final long blockNumber, final Hash blockHash) {
-      set(BLOCK_HASH_PREFIX, UInt256Bytes.of(blockNumber), blockHash);
+      set(BLOCK_HASH_PREFIX, blockNumberBytes(blockNumber), blockHash);
     }
 
     @Override
@@ -163,6 +564,7 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
     @Override
     public void setChainHead(final Hash blockHash) {
       set(CONSTANTS_PREFIX, CHAIN_HEAD_KEY, blockHash);
+      chainHeadUpdated = true;
     }
 
     @Override
@@ -174,7 +576,7 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
 
     @Override
     public void removeBlockHash(final long blockNumber) {
-      remove(BLOCK_HASH_PREFIX, UInt256Bytes.of(blockNumber));
+      remove(BLOCK_HASH_PREFIX, blockNumberBytes(blockNumber));
     }
 
     @Override
@@ -185,6 +587,9 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
     @Override
     public void commit() {
       transaction.commit();
+      if (chainHeadUpdated) {
+        onChainHeadUpdated.run();
+      }
     }
 
     @Override
@@ -193,11 +598,11 @@ public class KeyValueStoragePrefixedKeyBlockchainStorage implements BlockchainSt
     }
 
     private void set(final BytesValue prefix, final BytesValue key, final BytesValue value) {
-      transaction.put(BytesValues.concatenate(prefix, key), value);
+      putTo(transaction, prefix, key, value);
     }
 
     private void remove(final BytesValue prefix, final BytesValue key) {
-      transaction.remove(BytesValues.concatenate(prefix, key));
+      removeFrom(transaction, prefix, key);
     }
 
     private BytesValue rlpEncode(final List<TransactionReceipt> receipts) {
@@ -16,32 +16,89 @@ import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
 import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
 import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.ancient.AncientBlockStore;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 public class KeyValueStorageProvider implements StorageProvider {
 
-  private final KeyValueStorage keyValueStorage;
+  private final SegmentedKeyValueStorage keyValueStorage;
+  private final WorldStateStorage worldStateStorage;
+  private final Optional<AncientBlockStore> ancientBlockStore;
+  private final List<KeyValueStoragePrefixedKeyBlockchainStorage> blockchainStorages =
+      new ArrayList<>();
 
   public KeyValueStorageProvider(final KeyValueStorage keyValueStorage) {
+    this(new SegmentedKeyValueStorageAdapter(keyValueStorage));
+  }
+
+  public KeyValueStorageProvider(final SegmentedKeyValueStorage keyValueStorage) {
+    this(keyValueStorage, new KeyValueStorageWorldStateStorage(keyValueStorage));
+  }
+
+  public KeyValueStorageProvider(
+      final SegmentedKeyValueStorage keyValueStorage, final WorldStateStorage worldStateStorage) {
+    this(keyValueStorage, worldStateStorage, Optional.empty());
+  }
+
+  public KeyValueStorageProvider(
+      final SegmentedKeyValueStorage keyValueStorage,
+      final WorldStateStorage worldStateStorage,
+      final Optional<AncientBlockStore> ancientBlockStore) {
     this.keyValueStorage = keyValueStorage;
+    this.worldStateStorage = worldStateStorage;
+    this.ancientBlockStore = ancientBlockStore;
   }
 
   @Override
-  public BlockchainStorage createBlockchainStorage(final ProtocolSchedule<?> protocolSchedule) {
-    return new KeyValueStoragePrefixedKeyBlockchainStorage(
-        keyValueStorage, ScheduleBasedBlockHashFunction.create(protocolSchedule));
+  public synchronized BlockchainStorage createBlockchainStorage(
+      final ProtocolSchedule<?> protocolSchedule) {
+    final KeyValueStoragePrefixedKeyBlockchainStorage blockchainStorage =
+        new KeyValueStoragePrefixedKeyBlockchainStorage(
+            keyValueStorage,
+            ScheduleBasedBlockHashFunction.create(protocolSchedule),
+            ancientBlockStore);
+    blockchainStorages.add(blockchainStorage);
+    return blockchainStorage;
   }
 
   @Override
   public WorldStateStorage createWorldStateStorage() {
-    return new KeyValueStorageWorldStateStorage(keyValueStorage);
+    return worldStateStorage;
+  }
+
+  /**
+   * Buffered world state is flushed first so the copy doesn't have to recover it. The database is
+   * copied before ancient blocks, which are only removed from the database once they are stored as
+   * ancient, so every block in the copy is in one or the other.
+   */
+  @Override
+  public void createCheckpoint(final Path databaseDirectory, final Path ancientDataDirectory)
+      throws IOException {
+    worldStateStorage.flush();
+    keyValueStorage.createCheckpoint(databaseDirectory);
+    if (ancientBlockStore.isPresent()) {
+      ancientBlockStore.get().copyTo(ancientDataDirectory);
+    }
   }
 
   @Override
-  public void close() throws IOException {
+  public synchronized void close() throws IOException {
+    for (final KeyValueStoragePrefixedKeyBlockchainStorage blockchainStorage : blockchainStorages) {
+      blockchainStorage.close();
+    }
+    if (ancientBlockStore.isPresent()) {
+      ancientBlockStore.get().close();
+    }
+    worldStateStorage.flush();
     keyValueStorage.close();
   }
 }
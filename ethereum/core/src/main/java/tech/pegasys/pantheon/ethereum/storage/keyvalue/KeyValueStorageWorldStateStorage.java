@@ -12,21 +12,70 @@
  */
 package tech.pegasys.pantheon.ethereum.storage.keyvalue;
 
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueSegmentIdentifier.CODE;
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueSegmentIdentifier.WORLD_STATE_TRIE_NODES;
+
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.worldstate.FlatWorldStateStorage;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Segment;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
+import tech.pegasys.pantheon.util.Subscribers;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
 
-  private final KeyValueStorage keyValueStorage;
+  private static final int PRUNE_BATCH_SIZE = 1000;
+
+  private final SegmentedKeyValueStorage keyValueStorage;
+  private final Optional<FlatWorldStateStorage> flatState;
+  private final Subscribers<NodesAddedListener> nodeAddedListeners = new Subscribers<>();
+  // Updaters hold the read lock while notifying listeners and committing so that pruning can't
+  // remove a node between it being reported as added and being written.
+  private final ReadWriteLock pruneLock = new ReentrantReadWriteLock();
+  // Changes from bulk updaters, readable from here until they have been ingested into storage
+  private final NavigableMap<BytesValue, BytesValue> bulkTrieNodes = new ConcurrentSkipListMap<>();
+  private final NavigableMap<BytesValue, BytesValue> bulkCode = new ConcurrentSkipListMap<>();
+  // Background compaction of the world state is paused while any bulk load is in progress
+  private final Object bulkLoadLock = new Object();
+  private int activeBulkLoads = 0;
 
   public KeyValueStorageWorldStateStorage(final KeyValueStorage keyValueStorage) {
+    this(new SegmentedKeyValueStorageAdapter(keyValueStorage));
+  }
+
+  public KeyValueStorageWorldStateStorage(final SegmentedKeyValueStorage keyValueStorage) {
+    this.keyValueStorage = keyValueStorage;
+    this.flatState = Optional.empty();
+  }
+
+  public KeyValueStorageWorldStateStorage(
+      final SegmentedKeyValueStorage keyValueStorage, final FlatWorldStateStorage flatState) {
     this.keyValueStorage = keyValueStorage;
+    this.flatState = Optional.of(flatState);
   }
 
   @Override
@@ -34,7 +83,7 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
     if (codeHash.equals(Hash.EMPTY)) {
       return Optional.of(BytesValue.EMPTY);
     } else {
-      return keyValueStorage.get(codeHash);
+      return get(CODE, bulkCode, codeHash);
     }
   }
 
@@ -52,10 +101,18 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
     if (nodeHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
       return Optional.of(MerklePatriciaTrie.EMPTY_TRIE_NODE);
     } else {
-      return keyValueStorage.get(nodeHash);
+      return get(WORLD_STATE_TRIE_NODES, bulkTrieNodes, nodeHash);
     }
   }
 
+  private Optional<BytesValue> get(
+      final Segment segment, final Map<BytesValue, BytesValue> bulkLoaded, final Bytes32 key) {
+    final BytesValue bulkLoadedValue = bulkLoaded.get(key);
+    return bulkLoadedValue != null
+        ? Optional.of(bulkLoadedValue)
+        : keyValueStorage.get(segment, key);
+  }
+
   @Override
   public Optional<BytesValue> getNodeData(final Bytes32 hash) {
     if (hash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
@@ -63,8 +120,55 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
     } else if (hash.equals(Hash.EMPTY)) {
       return Optional.of(BytesValue.EMPTY);
     } else {
-      return keyValueStorage.get(hash);
+      // Node data requests don't say whether the hash is a trie node or code
+      final Optional<BytesValue> trieNode = get(WORLD_STATE_TRIE_NODES, bulkTrieNodes, hash);
+      return trieNode.isPresent() ? trieNode : get(CODE, bulkCode, hash);
+    }
+  }
+
+  @Override
+  public Map<Bytes32, BytesValue> getAllNodeData(final Collection<? extends Bytes32> hashes) {
+    final Map<Bytes32, BytesValue> nodeData = new HashMap<>(hashes.size());
+    final List<Bytes32> toLookup = new ArrayList<>(hashes.size());
+    for (final Bytes32 hash : hashes) {
+      if (hash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+        nodeData.put(hash, MerklePatriciaTrie.EMPTY_TRIE_NODE);
+      } else if (hash.equals(Hash.EMPTY)) {
+        nodeData.put(hash, BytesValue.EMPTY);
+      } else if (bulkTrieNodes.containsKey(hash) || bulkCode.containsKey(hash)) {
+        final BytesValue bulkLoadedNode = bulkTrieNodes.get(hash);
+        nodeData.put(hash, bulkLoadedNode != null ? bulkLoadedNode : bulkCode.get(hash));
+      } else {
+        toLookup.add(hash);
+      }
+    }
+    if (toLookup.isEmpty()) {
+      return nodeData;
+    }
+
+    // Node data requests don't say whether the hash is a trie node or code
+    final Map<BytesValue, BytesValue> trieNodes =
+        keyValueStorage.getAll(WORLD_STATE_TRIE_NODES, Collections.unmodifiableList(toLookup));
+    final List<Bytes32> notTrieNodes = new ArrayList<>();
+    for (final Bytes32 hash : toLookup) {
+      final BytesValue trieNode = trieNodes.get(hash);
+      if (trieNode != null) {
+        nodeData.put(hash, trieNode);
+      } else {
+        notTrieNodes.add(hash);
+      }
     }
+    if (!notTrieNodes.isEmpty()) {
+      final Map<BytesValue, BytesValue> code =
+          keyValueStorage.getAll(CODE, Collections.unmodifiableList(notTrieNodes));
+      for (final Bytes32 hash : notTrieNodes) {
+        final BytesValue value = code.get(hash);
+        if (value != null) {
+          nodeData.put(hash, value);
+        }
+      }
+    }
+    return nodeData;
   }
 
   @Override
@@ -72,17 +176,206 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
     return getAccountStateTrieNode(rootHash).isPresent();
   }
 
+  @Override
+  public Optional<FlatWorldStateStorage> getFlatState() {
+    return flatState;
+  }
+
   @Override
   public Updater updater() {
-    return new Updater(keyValueStorage.startTransaction());
+    return new Updater(
+        keyValueStorage.startTransaction(), pruneLock.readLock(), nodeAddedListeners);
+  }
+
+  /**
+   * Bulk loaded changes are held in memory and ingested into storage as sorted table files when
+   * flushed.
+   */
+  @Override
+  public WorldStateStorage.Updater bulkUpdater() {
+    return new BulkUpdater();
+  }
+
+  /** Background compaction of the world state is paused until every bulk load has ended. */
+  @Override
+  public void startBulkLoad() {
+    synchronized (bulkLoadLock) {
+      if (activeBulkLoads++ == 0) {
+        keyValueStorage.setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, false);
+        keyValueStorage.setAutoCompactionEnabled(CODE, false);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void flushBulkLoad() {
+    ingest(WORLD_STATE_TRIE_NODES, bulkTrieNodes);
+    ingest(CODE, bulkCode);
+  }
+
+  private void ingest(final Segment segment, final Map<BytesValue, BytesValue> bulkLoaded) {
+    if (bulkLoaded.isEmpty()) {
+      return;
+    }
+    final SortedMap<BytesValue, BytesValue> entries = new TreeMap<>(bulkLoaded);
+    keyValueStorage.ingest(segment, entries);
+    entries.keySet().forEach(bulkLoaded::remove);
+  }
+
+  @Override
+  public void finishBulkLoad() {
+    flushBulkLoad();
+    if (endBulkLoad()) {
+      // Compacting can take minutes, so it runs without holding any lock
+      keyValueStorage.compact(WORLD_STATE_TRIE_NODES);
+      keyValueStorage.compact(CODE);
+    }
+  }
+
+  @Override
+  public void stopBulkLoad() {
+    flushBulkLoad();
+    endBulkLoad();
+  }
+
+  private boolean endBulkLoad() {
+    synchronized (bulkLoadLock) {
+      if (activeBulkLoads == 0) {
+        return false;
+      }
+      if (--activeBulkLoads > 0) {
+        return false;
+      }
+      keyValueStorage.setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, true);
+      keyValueStorage.setAutoCompactionEnabled(CODE, true);
+      return true;
+    }
+  }
+
+  @Override
+  public long prune(final Predicate<BytesValue> inUseCheck) {
+    return prune(WORLD_STATE_TRIE_NODES, inUseCheck) + prune(CODE, inUseCheck);
+  }
+
+  private long prune(final Segment segment, final Predicate<BytesValue> inUseCheck) {
+    long prunedBytes = 0;
+    try (final Stream<Entry> entries = keyValueStorage.entries(segment)) {
+      final Iterator<Entry> iterator = entries.iterator();
+      final List<Entry> unused = new ArrayList<>(PRUNE_BATCH_SIZE);
+      while (iterator.hasNext()) {
+        final Entry entry = iterator.next();
+        // Only trie node and code keys are 32 bytes long. When the storage isn't segmented the
+        // iterator also returns blockchain data, which is never pruned.
+        if (entry.getKey().size() == Bytes32.SIZE && !inUseCheck.test(entry.getKey())) {
+          unused.add(entry);
+        }
+        if (unused.size() >= PRUNE_BATCH_SIZE || (!iterator.hasNext() && !unused.isEmpty())) {
+          prunedBytes += removeUnused(segment, unused, inUseCheck);
+          unused.clear();
+        }
+      }
+    }
+    return prunedBytes;
+  }
+
+  private long removeUnused(
+      final Segment segment, final List<Entry> entries, final Predicate<BytesValue> inUseCheck) {
+    final Lock lock = pruneLock.writeLock();
+    lock.lock();
+    try {
+      final SegmentedKeyValueStorage.Transaction transaction = keyValueStorage.startTransaction();
+      long removedBytes = 0;
+      for (final Entry entry : entries) {
+        // Check again now that updaters are blocked as the entry may have been added since
+        if (!inUseCheck.test(entry.getKey())) {
+          transaction.remove(segment, entry.getKey());
+          removedBytes += entry.getKey().size() + entry.getValue().size();
+        }
+      }
+      transaction.commit();
+      return removedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long addNodeAddedListener(final NodesAddedListener listener) {
+    return nodeAddedListeners.subscribe(listener);
+  }
+
+  @Override
+  public void removeNodeAddedListener(final long id) {
+    nodeAddedListeners.unsubscribe(id);
+  }
+
+  private class BulkUpdater implements WorldStateStorage.Updater {
+
+    private final Map<Bytes32, BytesValue> trieNodes = new HashMap<>();
+    private final Map<Bytes32, BytesValue> code = new HashMap<>();
+
+    @Override
+    public BulkUpdater putCode(final Bytes32 codeHash, final BytesValue code) {
+      if (code.size() > 0) {
+        this.code.put(codeHash, code);
+      }
+      return this;
+    }
+
+    @Override
+    public BulkUpdater putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      return putTrieNode(nodeHash, node);
+    }
+
+    @Override
+    public BulkUpdater putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      return putTrieNode(nodeHash, node);
+    }
+
+    private BulkUpdater putTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      if (!nodeHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+        trieNodes.put(nodeHash, node);
+      }
+      return this;
+    }
+
+    @Override
+    public void commit() {
+      final List<Bytes32> addedNodes = new ArrayList<>(trieNodes.size() + code.size());
+      addedNodes.addAll(trieNodes.keySet());
+      addedNodes.addAll(code.keySet());
+      final Lock lock = pruneLock.readLock();
+      lock.lock();
+      try {
+        nodeAddedListeners.forEach(listener -> listener.onNodesAdded(addedNodes));
+        bulkTrieNodes.putAll(trieNodes);
+        bulkCode.putAll(code);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void rollback() {
+      trieNodes.clear();
+      code.clear();
+    }
   }
 
   public static class Updater implements WorldStateStorage.Updater {
 
-    private final KeyValueStorage.Transaction transaction;
+    private final SegmentedKeyValueStorage.Transaction transaction;
+    private final Lock commitLock;
+    private final Subscribers<NodesAddedListener> nodeAddedListeners;
+    private final List<Bytes32> addedNodes = new ArrayList<>();
 
-    public Updater(final KeyValueStorage.Transaction transaction) {
+    public Updater(
+        final SegmentedKeyValueStorage.Transaction transaction,
+        final Lock commitLock,
+        final Subscribers<NodesAddedListener> nodeAddedListeners) {
       this.transaction = transaction;
+      this.commitLock = commitLock;
+      this.nodeAddedListeners = nodeAddedListeners;
     }
 
     @Override
@@ -91,7 +384,8 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
         // Don't save empty values
         return this;
       }
-      transaction.put(codeHash, code);
+      addedNodes.add(codeHash);
+      transaction.put(CODE, codeHash, code);
       return this;
     }
 
@@ -101,7 +395,8 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
         // Don't save empty nodes
         return this;
       }
-      transaction.put(nodeHash, node);
+      addedNodes.add(nodeHash);
+      transaction.put(WORLD_STATE_TRIE_NODES, nodeHash, node);
       return this;
     }
 
@@ -111,13 +406,20 @@ public class KeyValueStorageWorldStateStorage implements WorldStateStorage {
         // Don't save empty nodes
         return this;
       }
-      transaction.put(nodeHash, node);
+      addedNodes.add(nodeHash);
+      transaction.put(WORLD_STATE_TRIE_NODES, nodeHash, node);
       return this;
     }
 
     @Override
     public void commit() {
-      transaction.commit();
+      commitLock.lock();
+      try {
+        nodeAddedListeners.forEach(listener -> listener.onNodesAdded(addedNodes));
+        transaction.commit();
+      } finally {
+        commitLock.unlock();
+      }
     }
 
     @Override
@@ -13,20 +13,150 @@
 package tech.pegasys.pantheon.ethereum.storage.keyvalue;
 
 import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.ancient.AncientBlockStore;
+import tech.pegasys.pantheon.ethereum.worldstate.BufferedWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.CachingWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.ColumnarRocksDbKeyValueStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.services.kvstore.RocksDbKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegmentConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegmentConfiguration.CompactionStyle;
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegmentConfiguration.Compression;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class RocksDbStorageProvider {
 
+  private static final Logger LOG = LogManager.getLogger();
+
   public static StorageProvider create(final Path databaseDir, final MetricsSystem metricsSystem)
       throws IOException {
-    final KeyValueStorage kv =
-        RocksDbKeyValueStorage.create(Files.createDirectories(databaseDir), metricsSystem);
-    return new KeyValueStorageProvider(kv);
+    return create(
+        databaseDir,
+        RocksDbConfiguration.createDefault(),
+        0,
+        0,
+        0,
+        Optional.empty(),
+        metricsSystem);
+  }
+
+  /**
+   * @param trieNodeCacheSize maximum memory in bytes used to cache world state trie nodes, or 0 to
+   *     read every trie node from the database
+   * @param worldStateFlushInterval number of blocks whose world state changes are held in memory
+   *     before being written to the database, or 0 to write them as each block is imported
+   * @param worldStateBufferSize maximum memory in bytes used to hold unwritten world state changes
+   * @param ancientDataDir directory of the append-only store old blocks are moved to, or empty to
+   *     keep every block in the database
+   */
+  public static StorageProvider create(
+      final Path databaseDir,
+      final RocksDbConfiguration rocksDbConfiguration,
+      final long trieNodeCacheSize,
+      final int worldStateFlushInterval,
+      final long worldStateBufferSize,
+      final Optional<Path> ancientDataDir,
+      final MetricsSystem metricsSystem)
+      throws IOException {
+    final Optional<AncientBlockStore> ancientBlockStore =
+        ancientDataDir.isPresent()
+            ? Optional.of(AncientBlockStore.open(ancientDataDir.get()))
+            : Optional.empty();
+    final Path storageDirectory = Files.createDirectories(databaseDir);
+    if (ColumnarRocksDbKeyValueStorage.isUnsegmentedDatabase(storageDirectory)) {
+      LOG.info(
+          "Database at {} predates column family storage, using single keyspace layout",
+          storageDirectory);
+      final KeyValueStorage kv =
+          RocksDbKeyValueStorage.create(storageDirectory, rocksDbConfiguration, metricsSystem);
+      return createProvider(
+          new SegmentedKeyValueStorageAdapter(kv),
+          trieNodeCacheSize,
+          worldStateFlushInterval,
+          worldStateBufferSize,
+          ancientBlockStore,
+          metricsSystem);
+    }
+    final SegmentedKeyValueStorage kv =
+        ColumnarRocksDbKeyValueStorage.create(
+            storageDirectory, rocksDbConfiguration, segmentConfigurations(), metricsSystem);
+    return createProvider(
+        kv,
+        trieNodeCacheSize,
+        worldStateFlushInterval,
+        worldStateBufferSize,
+        ancientBlockStore,
+        metricsSystem);
+  }
+
+  private static StorageProvider createProvider(
+      final SegmentedKeyValueStorage kv,
+      final long trieNodeCacheSize,
+      final int worldStateFlushInterval,
+      final long worldStateBufferSize,
+      final Optional<AncientBlockStore> ancientBlockStore,
+      final MetricsSystem metricsSystem) {
+    WorldStateStorage worldStateStorage =
+        new KeyValueStorageWorldStateStorage(kv, new KeyValueStorageFlatWorldStateStorage(kv));
+    if (trieNodeCacheSize > 0) {
+      worldStateStorage =
+          new CachingWorldStateStorage(worldStateStorage, trieNodeCacheSize, metricsSystem);
+    }
+    if (worldStateFlushInterval > 0) {
+      worldStateStorage =
+          new BufferedWorldStateStorage(
+              worldStateStorage, worldStateFlushInterval, worldStateBufferSize, metricsSystem);
+    }
+    return new KeyValueStorageProvider(kv, worldStateStorage, ancientBlockStore);
+  }
+
+  /**
+   * Trie nodes are read randomly on every block and get the largest cache share. Bodies and
+   * receipts are written once and rarely read once old, so they use universal compaction to keep
+   * their write amplification low. Hashes don't compress, so the canonical index stores them raw.
+   */
+  static List<RocksDbSegmentConfiguration> segmentConfigurations() {
+    return Arrays.asList(
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.DEFAULT)
+            .blockCacheShare(0.05)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.BLOCK_HEADERS)
+            .blockCacheShare(0.15)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.BLOCK_BODIES)
+            .blockCacheShare(0.10)
+            .compactionStyle(CompactionStyle.UNIVERSAL)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.TRANSACTION_RECEIPTS)
+            .blockCacheShare(0.10)
+            .compactionStyle(CompactionStyle.UNIVERSAL)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.CANONICAL_BLOCK_HASHES)
+            .blockCacheShare(0.05)
+            .compression(Compression.NONE)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.WORLD_STATE_TRIE_NODES)
+            .blockCacheShare(0.35)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.CODE)
+            .blockCacheShare(0.10)
+            .build(),
+        RocksDbSegmentConfiguration.builder(KeyValueSegmentIdentifier.FLAT_WORLD_STATE)
+            .blockCacheShare(0.10)
+            .build());
   }
 }
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.metrics.OperationTimer;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Holds the trie nodes and code written by {@link #deferredUpdater() deferred updaters} in memory
+ * and writes them to another {@link WorldStateStorage} in large batches.
+ *
+ * <p>Each block's state is written by one deferred updater. Buffered changes are flushed once the
+ * given number of deferred updaters have been committed or once the buffer exceeds its maximum
+ * size, whichever comes first. Many nodes are replaced again within a few blocks, and writing one
+ * large batch is much cheaper than writing a transaction per block.
+ *
+ * <p>Each flush is written atomically, so the state of any block whose root is on disk is complete.
+ * Blocks whose state was still buffered when the process stopped are executed again on startup, see
+ * {@link WorldStateRecovery}. Changes from {@link #updater()} are written immediately, as used when
+ * downloading state which can't be recreated locally.
+ */
+public class BufferedWorldStateStorage implements WorldStateStorage {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** The largest allowed number of blocks between flushes. */
+  public static final int MAX_FLUSH_INTERVAL = 1024;
+
+  // Approximate memory used per entry in addition to the node itself
+  private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+  private final WorldStateStorage storage;
+  private final int flushInterval;
+  private final long maxBufferSize;
+
+  private final Map<Bytes32, BytesValue> bufferedAccountNodes = new ConcurrentHashMap<>();
+  private final Map<Bytes32, BytesValue> bufferedStorageNodes = new ConcurrentHashMap<>();
+  private final Map<Bytes32, BytesValue> bufferedCode = new ConcurrentHashMap<>();
+  private final AtomicLong bufferSize = new AtomicLong();
+  private int commitsSinceFlush;
+
+  private final OperationTimer flushLatency;
+  private final Counter flushedBytesCounter;
+
+  /**
+   * @param storage the storage buffered changes are flushed to
+   * @param flushInterval the number of deferred updaters, usually one per block, to commit between
+   *     flushes
+   * @param maxBufferSize the approximate memory in bytes that buffered changes may use before they
+   *     are flushed early
+   * @param metricsSystem the metrics system
+   */
+  public BufferedWorldStateStorage(
+      final WorldStateStorage storage,
+      final int flushInterval,
+      final long maxBufferSize,
+      final MetricsSystem metricsSystem) {
+    checkArgument(
+        flushInterval > 0 && flushInterval <= MAX_FLUSH_INTERVAL,
+        "Flush interval must be between 1 and %s",
+        MAX_FLUSH_INTERVAL);
+    checkArgument(maxBufferSize > 0, "Buffer size must be positive");
+    this.storage = storage;
+    this.flushInterval = flushInterval;
+    this.maxBufferSize = maxBufferSize;
+
+    flushLatency =
+        metricsSystem.createTimer(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_buffer_flush_latency_seconds",
+            "Latency for flushing buffered world state changes to storage");
+    flushedBytesCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_buffer_flushed_bytes_total",
+            "Number of bytes of buffered world state changes flushed to storage");
+    metricsSystem.createLongGauge(
+        MetricCategory.BLOCKCHAIN,
+        "world_state_buffer_size_bytes",
+        "Approximate memory used by world state changes waiting to be flushed",
+        bufferSize::get);
+  }
+
+  @Override
+  public Optional<BytesValue> getCode(final Bytes32 codeHash) {
+    final BytesValue buffered = bufferedCode.get(codeHash);
+    return buffered != null ? Optional.of(buffered) : storage.getCode(codeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStateTrieNode(final Bytes32 nodeHash) {
+    final BytesValue buffered = bufferedAccountNodes.get(nodeHash);
+    return buffered != null ? Optional.of(buffered) : storage.getAccountStateTrieNode(nodeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStorageTrieNode(final Bytes32 nodeHash) {
+    final BytesValue buffered = bufferedStorageNodes.get(nodeHash);
+    return buffered != null ? Optional.of(buffered) : storage.getAccountStorageTrieNode(nodeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getNodeData(final Bytes32 hash) {
+    final BytesValue buffered = getBuffered(hash);
+    return buffered != null ? Optional.of(buffered) : storage.getNodeData(hash);
+  }
+
+  @Override
+  public Map<Bytes32, BytesValue> getAllNodeData(final Collection<? extends Bytes32> hashes) {
+    final Map<Bytes32, BytesValue> nodeData = new HashMap<>(hashes.size());
+    final List<Bytes32> unbuffered = new ArrayList<>();
+    for (final Bytes32 hash : hashes) {
+      final BytesValue buffered = getBuffered(hash);
+      if (buffered != null) {
+        nodeData.put(hash, buffered);
+      } else {
+        unbuffered.add(hash);
+      }
+    }
+    if (!unbuffered.isEmpty()) {
+      nodeData.putAll(storage.getAllNodeData(unbuffered));
+    }
+    return nodeData;
+  }
+
+  private BytesValue getBuffered(final Bytes32 hash) {
+    final BytesValue accountNode = bufferedAccountNodes.get(hash);
+    if (accountNode != null) {
+      return accountNode;
+    }
+    final BytesValue storageNode = bufferedStorageNodes.get(hash);
+    return storageNode != null ? storageNode : bufferedCode.get(hash);
+  }
+
+  @Override
+  public boolean isWorldStateAvailable(final Bytes32 rootHash) {
+    return bufferedAccountNodes.containsKey(rootHash) || storage.isWorldStateAvailable(rootHash);
+  }
+
+  @Override
+  public Optional<FlatWorldStateStorage> getFlatState() {
+    return storage.getFlatState();
+  }
+
+  @Override
+  public Updater updater() {
+    return storage.updater();
+  }
+
+  @Override
+  public Updater deferredUpdater() {
+    return new BufferingUpdater();
+  }
+
+  @Override
+  public Updater bulkUpdater() {
+    return storage.bulkUpdater();
+  }
+
+  @Override
+  public void startBulkLoad() {
+    storage.startBulkLoad();
+  }
+
+  @Override
+  public void flushBulkLoad() {
+    storage.flushBulkLoad();
+  }
+
+  @Override
+  public void finishBulkLoad() {
+    storage.finishBulkLoad();
+  }
+
+  @Override
+  public void stopBulkLoad() {
+    storage.stopBulkLoad();
+  }
+
+  /**
+   * Buffered changes are never pruned. Nodes that were both buffered and on disk may be removed
+   * from disk, but are written again by the next flush.
+   */
+  @Override
+  public long prune(final Predicate<BytesValue> inUseCheck) {
+    return storage.prune(inUseCheck);
+  }
+
+  /**
+   * Listeners are notified when buffered changes are flushed, which is the earliest point at which
+   * they could be pruned.
+   */
+  @Override
+  public long addNodeAddedListener(final NodesAddedListener listener) {
+    return storage.addNodeAddedListener(listener);
+  }
+
+  @Override
+  public void removeNodeAddedListener(final long id) {
+    storage.removeNodeAddedListener(id);
+  }
+
+  @Override
+  public synchronized void flush() {
+    commitsSinceFlush = 0;
+    if (bufferSize.get() == 0) {
+      return;
+    }
+    final Map<Bytes32, BytesValue> accountNodes = new HashMap<>(bufferedAccountNodes);
+    final Map<Bytes32, BytesValue> storageNodes = new HashMap<>(bufferedStorageNodes);
+    final Map<Bytes32, BytesValue> code = new HashMap<>(bufferedCode);
+    final long flushedSize = size(accountNodes) + size(storageNodes) + size(code);
+    try (final OperationTimer.TimingContext ignored = flushLatency.startTimer()) {
+      final Updater updater = storage.updater();
+      accountNodes.forEach(updater::putAccountStateTrieNode);
+      storageNodes.forEach(updater::putAccountStorageTrieNode);
+      code.forEach(updater::putCode);
+      updater.commit();
+    }
+    // Flushed entries stay readable from the buffer until they have been committed to storage
+    accountNodes.keySet().forEach(bufferedAccountNodes::remove);
+    storageNodes.keySet().forEach(bufferedStorageNodes::remove);
+    code.keySet().forEach(bufferedCode::remove);
+    bufferSize.addAndGet(-flushedSize);
+    flushedBytesCounter.inc(flushedSize);
+    LOG.debug(
+        "Flushed {} trie nodes and {} code entries",
+        accountNodes.size() + storageNodes.size(),
+        code.size());
+  }
+
+  private synchronized void onCommitted(
+      final Map<Bytes32, BytesValue> accountNodes,
+      final Map<Bytes32, BytesValue> storageNodes,
+      final Map<Bytes32, BytesValue> code) {
+    final long addedSize =
+        buffer(accountNodes, bufferedAccountNodes)
+            + buffer(storageNodes, bufferedStorageNodes)
+            + buffer(code, bufferedCode);
+    if (bufferSize.addAndGet(addedSize) >= maxBufferSize || ++commitsSinceFlush >= flushInterval) {
+      flush();
+    }
+  }
+
+  private static long buffer(
+      final Map<Bytes32, BytesValue> entries, final Map<Bytes32, BytesValue> buffer) {
+    long addedSize = 0;
+    for (final Map.Entry<Bytes32, BytesValue> entry : entries.entrySet()) {
+      // Entries are keyed by the hash of their content, so one already buffered is identical
+      if (buffer.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+        addedSize += Bytes32.SIZE + entry.getValue().size() + ENTRY_OVERHEAD_BYTES;
+      }
+    }
+    return addedSize;
+  }
+
+  private static long size(final Map<Bytes32, BytesValue> entries) {
+    long size = 0;
+    for (final BytesValue value : entries.values()) {
+      size += Bytes32.SIZE + value.size() + ENTRY_OVERHEAD_BYTES;
+    }
+    return size;
+  }
+
+  private class BufferingUpdater implements Updater {
+
+    private Map<Bytes32, BytesValue> accountNodes = new HashMap<>();
+    private Map<Bytes32, BytesValue> storageNodes = new HashMap<>();
+    private Map<Bytes32, BytesValue> code = new HashMap<>();
+
+    @Override
+    public Updater putCode(final Bytes32 codeHash, final BytesValue code) {
+      if (code.size() == 0) {
+        // Don't save empty values
+        return this;
+      }
+      this.code.put(codeHash, code);
+      return this;
+    }
+
+    @Override
+    public Updater putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      if (nodeHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+        // Don't save empty nodes
+        return this;
+      }
+      accountNodes.put(nodeHash, node);
+      return this;
+    }
+
+    @Override
+    public Updater putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      if (nodeHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+        // Don't save empty nodes
+        return this;
+      }
+      storageNodes.put(nodeHash, node);
+      return this;
+    }
+
+    @Override
+    public void commit() {
+      onCommitted(accountNodes, storageNodes, code);
+      clear();
+    }
+
+    @Override
+    public void rollback() {
+      clear();
+    }
+
+    private void clear() {
+      accountNodes = null;
+      storageNodes = null;
+      code = null;
+    }
+  }
+}
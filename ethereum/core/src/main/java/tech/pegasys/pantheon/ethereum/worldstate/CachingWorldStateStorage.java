@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Read-through cache of raw trie nodes in front of another {@link WorldStateStorage}.
+ *
+ * <p>Trie nodes are keyed by the hash of their content so a cached node can never become stale. The
+ * cache is bounded by the approximate memory used by the cached nodes rather than by their count,
+ * since node sizes vary from a few bytes up to around half a kilobyte. Nodes written through an
+ * {@link Updater} are added to the cache once the updater is committed, as recently written nodes
+ * are the ones most likely to be read by the next block.
+ */
+public class CachingWorldStateStorage implements WorldStateStorage {
+
+  // Approximate memory used per cache entry in addition to the node itself: the key, the wrapping
+  // BytesValue instances and the cache's own entry bookkeeping.
+  private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+  private final WorldStateStorage storage;
+  private final Cache<Bytes32, BytesValue> trieNodes;
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter evictionCounter;
+
+  public CachingWorldStateStorage(
+      final WorldStateStorage storage,
+      final long maximumSizeInBytes,
+      final MetricsSystem metricsSystem) {
+    checkArgument(maximumSizeInBytes > 0, "Cache size must be positive");
+    this.storage = storage;
+
+    hitCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_trie_node_cache_hits_total",
+            "Number of trie node reads served from the trie node cache");
+    missCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_trie_node_cache_misses_total",
+            "Number of trie node reads not found in the trie node cache");
+    evictionCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_trie_node_cache_evictions_total",
+            "Number of trie nodes evicted from the trie node cache");
+
+    trieNodes =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumSizeInBytes)
+            .<Bytes32, BytesValue>weigher((hash, node) -> node.size() + ENTRY_OVERHEAD_BYTES)
+            .<Bytes32, BytesValue>removalListener(
+                notification -> {
+                  if (notification.wasEvicted()) {
+                    evictionCounter.inc();
+                  }
+                })
+            .build();
+    metricsSystem.createLongGauge(
+        MetricCategory.BLOCKCHAIN,
+        "world_state_trie_node_cache_entries",
+        "Number of trie nodes held in the trie node cache",
+        trieNodes::size);
+  }
+
+  @Override
+  public Optional<BytesValue> getCode(final Bytes32 codeHash) {
+    return storage.getCode(codeHash);
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStateTrieNode(final Bytes32 nodeHash) {
+    final BytesValue cached = trieNodes.getIfPresent(nodeHash);
+    if (cached != null) {
+      hitCounter.inc();
+      return Optional.of(cached);
+    }
+    missCounter.inc();
+    final Optional<BytesValue> node = storage.getAccountStateTrieNode(nodeHash);
+    node.ifPresent(value -> trieNodes.put(nodeHash, value));
+    return node;
+  }
+
+  @Override
+  public Optional<BytesValue> getAccountStorageTrieNode(final Bytes32 nodeHash) {
+    final BytesValue cached = trieNodes.getIfPresent(nodeHash);
+    if (cached != null) {
+      hitCounter.inc();
+      return Optional.of(cached);
+    }
+    missCounter.inc();
+    final Optional<BytesValue> node = storage.getAccountStorageTrieNode(nodeHash);
+    node.ifPresent(value -> trieNodes.put(nodeHash, value));
+    return node;
+  }
+
+  @Override
+  public Optional<BytesValue> getNodeData(final Bytes32 hash) {
+    // Node data is requested by peers, so look in the cache but don't fill it from these reads.
+    final BytesValue cached = trieNodes.getIfPresent(hash);
+    return cached != null ? Optional.of(cached) : storage.getNodeData(hash);
+  }
+
+  @Override
+  public Map<Bytes32, BytesValue> getAllNodeData(final Collection<? extends Bytes32> hashes) {
+    final Map<Bytes32, BytesValue> nodeData = new HashMap<>(hashes.size());
+    final List<Bytes32> uncached = new ArrayList<>();
+    for (final Bytes32 hash : hashes) {
+      final BytesValue cached = trieNodes.getIfPresent(hash);
+      if (cached != null) {
+        nodeData.put(hash, cached);
+      } else {
+        uncached.add(hash);
+      }
+    }
+    if (!uncached.isEmpty()) {
+      nodeData.putAll(storage.getAllNodeData(uncached));
+    }
+    return nodeData;
+  }
+
+  @Override
+  public boolean isWorldStateAvailable(final Bytes32 rootHash) {
+    return getAccountStateTrieNode(rootHash).isPresent();
+  }
+
+  @Override
+  public Optional<FlatWorldStateStorage> getFlatState() {
+    return storage.getFlatState();
+  }
+
+  @Override
+  public Updater updater() {
+    return new CachingUpdater(storage.updater());
+  }
+
+  @Override
+  public Updater deferredUpdater() {
+    return new CachingUpdater(storage.deferredUpdater());
+  }
+
+  @Override
+  public void flush() {
+    storage.flush();
+  }
+
+  /** Bulk loaded state isn't cached, as it is rarely read back soon after being loaded. */
+  @Override
+  public Updater bulkUpdater() {
+    return storage.bulkUpdater();
+  }
+
+  @Override
+  public void startBulkLoad() {
+    storage.startBulkLoad();
+  }
+
+  @Override
+  public void flushBulkLoad() {
+    storage.flushBulkLoad();
+  }
+
+  @Override
+  public void finishBulkLoad() {
+    storage.finishBulkLoad();
+  }
+
+  @Override
+  public void stopBulkLoad() {
+    storage.stopBulkLoad();
+  }
+
+  @Override
+  public long prune(final Predicate<BytesValue> inUseCheck) {
+    final long prunedBytes = storage.prune(inUseCheck);
+    trieNodes.asMap().keySet().removeIf(hash -> !inUseCheck.test(hash));
+    return prunedBytes;
+  }
+
+  @Override
+  public long addNodeAddedListener(final NodesAddedListener listener) {
+    return storage.addNodeAddedListener(listener);
+  }
+
+  @Override
+  public void removeNodeAddedListener(final long id) {
+    storage.removeNodeAddedListener(id);
+  }
+
+  private class CachingUpdater implements Updater {
+
+    private final Updater updater;
+    private final Map<Bytes32, BytesValue> pendingTrieNodes = new HashMap<>();
+
+    private CachingUpdater(final Updater updater) {
+      this.updater = updater;
+    }
+
+    @Override
+    public Updater putCode(final Bytes32 nodeHash, final BytesValue code) {
+      updater.putCode(nodeHash, code);
+      return this;
+    }
+
+    @Override
+    public Updater putAccountStateTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      updater.putAccountStateTrieNode(nodeHash, node);
+      pendingTrieNodes.put(nodeHash, node);
+      return this;
+    }
+
+    @Override
+    public Updater putAccountStorageTrieNode(final Bytes32 nodeHash, final BytesValue node) {
+      updater.putAccountStorageTrieNode(nodeHash, node);
+      pendingTrieNodes.put(nodeHash, node);
+      return this;
+    }
+
+    @Override
+    public void commit() {
+      updater.commit();
+      trieNodes.putAll(pendingTrieNodes);
+      pendingTrieNodes.clear();
+    }
+
+    @Override
+    public void rollback() {
+      updater.rollback();
+      pendingTrieNodes.clear();
+    }
+  }
+}
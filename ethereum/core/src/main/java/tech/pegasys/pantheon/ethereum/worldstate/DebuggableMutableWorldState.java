@@ -15,6 +15,7 @@ package tech.pegasys.pantheon.ethereum.worldstate;
 import tech.pegasys.pantheon.ethereum.core.Account;
 import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.StreamableAccount;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
@@ -24,6 +25,7 @@ import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -34,11 +36,6 @@ import java.util.stream.Stream;
  */
 public class DebuggableMutableWorldState extends DefaultMutableWorldState {
 
-  // TODO: This is more complex than it should due to DefaultMutableWorldState.accounts() not being
-  // implmemented (pending NC-746). Once that is fixed, we won't need to keep the set of account
-  // hashes at all, just the hashtoAddress map (this is also why things are separated this way,
-  // it will make it easier to update later).
-
   private static class DebugInfo {
     private final Set<Address> accounts = new HashSet<>();
 
@@ -73,8 +70,11 @@ public class DebuggableMutableWorldState extends DefaultMutableWorldState {
   }
 
   @Override
-  public Stream<Account> accounts() {
-    return info.accounts.stream().map(this::get).filter(Objects::nonNull);
+  public Stream<StreamableAccount> accounts() {
+    return info.accounts.stream()
+        .map(this::get)
+        .filter(Objects::nonNull)
+        .map(account -> new StreamableAccount(Optional.of(account.getAddress()), account));
   }
 
   @Override
@@ -84,10 +84,9 @@ public class DebuggableMutableWorldState extends DefaultMutableWorldState {
     accounts()
         .forEach(
             account -> {
-              final Address address = account.getAddress();
               builder
                   .append("  ")
-                  .append(address == null ? "<unknown>" : address)
+                  .append(account.getAddress().map(Address::toString).orElse("<unknown>"))
                   .append(" [")
                   .append(account.getAddressHash())
                   .append("]:\n");
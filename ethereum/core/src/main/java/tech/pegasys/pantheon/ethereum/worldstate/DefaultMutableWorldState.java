@@ -17,6 +17,7 @@ import tech.pegasys.pantheon.ethereum.core.Account;
 import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.StreamableAccount;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
@@ -24,20 +25,25 @@ import tech.pegasys.pantheon.ethereum.rlp.RLP;
 import tech.pegasys.pantheon.ethereum.rlp.RLPException;
 import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.NodeLoader;
 import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class DefaultMutableWorldState implements MutableWorldState {
@@ -47,6 +53,12 @@ public class DefaultMutableWorldState implements MutableWorldState {
       new HashMap<>();
   private final Map<Address, BytesValue> updatedAccountCode = new HashMap<>();
   private final WorldStateStorage worldStateStorage;
+  private final Optional<FlatWorldStateStorage> flatState;
+  private final Optional<WorldStatePrefetcher> prefetcher;
+  private Optional<WorldStatePrefetcher.Prefetch> pendingPrefetch = Optional.empty();
+  // Accounts that differ from the last persisted state can't be read from the flat world state
+  private final Set<Bytes32> updatedAccountHashes = new HashSet<>();
+  private Bytes32 persistedRootHash;
 
   public DefaultMutableWorldState(final WorldStateStorage storage) {
     this(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH, storage);
@@ -54,31 +66,59 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
   public DefaultMutableWorldState(
       final Bytes32 rootHash, final WorldStateStorage worldStateStorage) {
+    this(rootHash, worldStateStorage, Optional.empty());
+  }
+
+  public DefaultMutableWorldState(
+      final Bytes32 rootHash,
+      final WorldStateStorage worldStateStorage,
+      final Optional<WorldStatePrefetcher> prefetcher) {
     this.worldStateStorage = worldStateStorage;
+    this.flatState = worldStateStorage.getFlatState();
+    this.prefetcher = prefetcher;
     this.accountStateTrie = newAccountStateTrie(rootHash);
+    this.persistedRootHash = rootHash;
   }
 
   public DefaultMutableWorldState(final WorldState worldState) {
     // TODO: this is an abstraction leak (and kind of incorrect in that we reuse the underlying
-    // storage), but the reason for this is that the accounts() method is unimplemented below and
-    // can't be until NC-754.
+    // storage), but the reason for this is that accounts() only knows the hashes of addresses, so
+    // another world state can't be copied from its accounts.
     if (!(worldState instanceof DefaultMutableWorldState)) {
       throw new UnsupportedOperationException();
     }
 
     final DefaultMutableWorldState other = (DefaultMutableWorldState) worldState;
     this.worldStateStorage = other.worldStateStorage;
+    this.flatState = other.flatState;
+    this.prefetcher = other.prefetcher;
     this.accountStateTrie = newAccountStateTrie(other.accountStateTrie.getRootHash());
+    this.persistedRootHash = accountStateTrie.getRootHash();
   }
 
   private MerklePatriciaTrie<Bytes32, BytesValue> newAccountStateTrie(final Bytes32 rootHash) {
     return new StoredMerklePatriciaTrie<>(
-        worldStateStorage::getAccountStateTrieNode, rootHash, b -> b, b -> b);
+        trieNodeLoader(worldStateStorage::getAccountStateTrieNode), rootHash, b -> b, b -> b);
   }
 
   private MerklePatriciaTrie<Bytes32, BytesValue> newAccountStorageTrie(final Bytes32 rootHash) {
     return new StoredMerklePatriciaTrie<>(
-        worldStateStorage::getAccountStorageTrieNode, rootHash, b -> b, b -> b);
+        trieNodeLoader(worldStateStorage::getAccountStorageTrieNode), rootHash, b -> b, b -> b);
+  }
+
+  private NodeLoader trieNodeLoader(final Function<Bytes32, Optional<BytesValue>> getNode) {
+    return new NodeLoader() {
+      @Override
+      public Optional<BytesValue> getNode(final Bytes32 hash) {
+        return getNode.apply(hash);
+      }
+
+      @Override
+      public Map<Bytes32, BytesValue> getNodes(final Collection<Bytes32> hashes) {
+        // Walking the tries loads nodes in batches
+        return worldStateStorage.getAllNodeData(hashes);
+      }
+    };
   }
 
   @Override
@@ -88,18 +128,32 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
   @Override
   public MutableWorldState copy() {
-    return new DefaultMutableWorldState(rootHash(), worldStateStorage);
+    return new DefaultMutableWorldState(rootHash(), worldStateStorage, prefetcher);
   }
 
   @Override
   public Account get(final Address address) {
     final Hash addressHash = Hash.hash(address);
-    return accountStateTrie
-        .get(Hash.hash(address))
+    return getAccountValue(addressHash)
         .map(bytes -> deserializeAccount(address, addressHash, bytes))
         .orElse(null);
   }
 
+  private Optional<BytesValue> getAccountValue(final Hash addressHash) {
+    if (!updatedAccountHashes.contains(addressHash)) {
+      final Optional<Optional<BytesValue>> flatAccount =
+          readFlatState(reader -> reader.getAccount(addressHash));
+      if (flatAccount.isPresent()) {
+        return flatAccount.get();
+      }
+    }
+    return accountStateTrie.get(addressHash);
+  }
+
+  private <T> Optional<T> readFlatState(final Function<FlatWorldStateStorage.Reader, T> read) {
+    return flatState.flatMap(flat -> flat.read(persistedRootHash, read));
+  }
+
   private AccountState deserializeAccount(
       final Address address, final Hash addressHash, final BytesValue encoded) throws RLPException {
     final RLPInput in = RLP.input(encoded);
@@ -119,11 +173,32 @@ public class DefaultMutableWorldState implements MutableWorldState {
     return new Updater(this);
   }
 
+  /**
+   * Streams the accounts in ascending order of their address hash. The trie only holds address
+   * hashes, so only accounts with changes that have not been persisted yet have an address.
+   *
+   * @return a lazily loaded stream of all accounts, which may be walked in parallel
+   */
   @Override
-  public Stream<Account> accounts() {
-    // TODO: the current trie implementation doesn't have walking capability yet (pending NC-746)
-    // so this can't be implemented.
-    throw new UnsupportedOperationException("TODO");
+  public Stream<StreamableAccount> accounts() {
+    // Changes that are not persisted yet are looked up by address
+    final Map<Hash, Address> updatedAddresses = new HashMap<>();
+    updatedStorageTries
+        .keySet()
+        .forEach(address -> updatedAddresses.put(Hash.hash(address), address));
+    updatedAccountCode
+        .keySet()
+        .forEach(address -> updatedAddresses.put(Hash.hash(address), address));
+    return accountStateTrie
+        .entries()
+        .map(
+            entry -> {
+              final Hash addressHash = Hash.wrap(entry.getKey());
+              final Address address = updatedAddresses.get(addressHash);
+              return new StreamableAccount(
+                  Optional.ofNullable(address),
+                  deserializeAccount(address, addressHash, entry.getValue()));
+            });
   }
 
   @Override
@@ -141,9 +216,22 @@ public class DefaultMutableWorldState implements MutableWorldState {
     return this.rootHash().equals(that.rootHash());
   }
 
+  @Override
+  public void prefetch(final Collection<Address> accounts) {
+    if (!prefetcher.isPresent()) {
+      return;
+    }
+    pendingPrefetch.ifPresent(WorldStatePrefetcher.Prefetch::cancel);
+    pendingPrefetch =
+        Optional.of(prefetcher.get().prefetch(worldStateStorage, persistedRootHash, accounts));
+  }
+
   @Override
   public void persist() {
-    final WorldStateStorage.Updater updater = worldStateStorage.updater();
+    pendingPrefetch.ifPresent(WorldStatePrefetcher.Prefetch::cancel);
+    pendingPrefetch = Optional.empty();
+    // The state of a block can always be recreated by executing the block again
+    final WorldStateStorage.Updater updater = worldStateStorage.deferredUpdater();
     // Store updated code
     for (final BytesValue code : updatedAccountCode.values()) {
       updater.putCode(code);
@@ -162,6 +250,12 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     // Push changes to underlying storage
     updater.commit();
+
+    final Bytes32 rootHash = accountStateTrie.getRootHash();
+    flatState.ifPresent(
+        flat -> FlatWorldStateUpdater.update(flat, worldStateStorage, persistedRootHash, rootHash));
+    persistedRootHash = rootHash;
+    updatedAccountHashes.clear();
   }
 
   // An immutable class that represents an individual account as stored in
@@ -245,18 +339,43 @@ public class DefaultMutableWorldState implements MutableWorldState {
 
     @Override
     public UInt256 getStorageValue(final UInt256 key) {
-      final Optional<BytesValue> val = storageTrie().get(Hash.hash(key.getBytes()));
+      final Optional<BytesValue> val = getStorageValueBytes(Hash.hash(key.getBytes()));
       if (!val.isPresent()) {
         return UInt256.ZERO;
       }
       return convertToUInt256(val.get());
     }
 
+    private Optional<BytesValue> getStorageValueBytes(final Hash slotHash) {
+      // Accounts streamed from the trie don't know their address
+      if (address != null) {
+        prefetcher.ifPresent(p -> p.recordStorageRead(address, slotHash));
+      }
+      if (!updatedAccountHashes.contains(addressHash)) {
+        final Optional<Optional<BytesValue>> flatValue =
+            readFlatState(reader -> reader.getAccountStorage(addressHash, slotHash));
+        if (flatValue.isPresent()) {
+          return flatValue.get();
+        }
+      }
+      return storageTrie().get(slotHash);
+    }
+
     @Override
     public UInt256 getOriginalStorageValue(final UInt256 key) {
       return getStorageValue(key);
     }
 
+    @Override
+    public Stream<Map.Entry<Bytes32, UInt256>> storageEntries() {
+      return storageTrie()
+          .entries()
+          .map(
+              entry ->
+                  new AbstractMap.SimpleImmutableEntry<>(
+                      entry.getKey(), convertToUInt256(entry.getValue())));
+    }
+
     @Override
     public NavigableMap<Bytes32, UInt256> storageEntriesFrom(
         final Bytes32 startKeyHash, final int limit) {
@@ -299,8 +418,7 @@ public class DefaultMutableWorldState implements MutableWorldState {
       final DefaultMutableWorldState wrapped = wrappedWorldView();
       final Hash addressHash = Hash.hash(address);
       return wrapped
-          .accountStateTrie
-          .get(addressHash)
+          .getAccountValue(addressHash)
           .map(bytes -> wrapped.deserializeAccount(address, addressHash, bytes))
           .orElse(null);
     }
@@ -319,10 +437,13 @@ public class DefaultMutableWorldState implements MutableWorldState {
     @Override
     public void commit() {
       final DefaultMutableWorldState wrapped = wrappedWorldView();
+      // Accounts are written in one batch, so shared nodes near the root are rewritten once
+      final Map<Bytes32, Optional<BytesValue>> accountUpdates = new HashMap<>();
 
       for (final Address address : deletedAccounts()) {
         final Hash addressHash = Hash.hash(address);
-        wrapped.accountStateTrie.remove(addressHash);
+        wrapped.updatedAccountHashes.add(addressHash);
+        accountUpdates.put(addressHash, Optional.empty());
         wrapped.updatedStorageTries.remove(address);
         wrapped.updatedAccountCode.remove(address);
       }
@@ -350,15 +471,18 @@ public class DefaultMutableWorldState implements MutableWorldState {
                   ? wrapped.newAccountStorageTrie(Hash.EMPTY_TRIE_HASH)
                   : origin.storageTrie();
           wrapped.updatedStorageTries.put(updated.getAddress(), storageTrie);
+          final Map<Bytes32, Optional<BytesValue>> storageUpdates =
+              new HashMap<>(updatedStorage.size() * 2);
           for (final Map.Entry<UInt256, UInt256> entry : updatedStorage.entrySet()) {
             final UInt256 value = entry.getValue();
             final Hash keyHash = Hash.hash(entry.getKey().getBytes());
-            if (value.isZero()) {
-              storageTrie.remove(keyHash);
-            } else {
-              storageTrie.put(keyHash, RLP.encode(out -> out.writeUInt256Scalar(entry.getValue())));
-            }
+            storageUpdates.put(
+                keyHash,
+                value.isZero()
+                    ? Optional.empty()
+                    : Optional.of(RLP.encode(out -> out.writeUInt256Scalar(value))));
           }
+          storageTrie.applyUpdates(storageUpdates);
           storageRoot = Hash.wrap(storageTrie.getRootHash());
         }
 
@@ -366,8 +490,10 @@ public class DefaultMutableWorldState implements MutableWorldState {
         final BytesValue account =
             serializeAccount(updated.getNonce(), updated.getBalance(), storageRoot, codeHash);
 
-        wrapped.accountStateTrie.put(updated.getAddressHash(), account);
+        wrapped.updatedAccountHashes.add(updated.getAddressHash());
+        accountUpdates.put(updated.getAddressHash(), Optional.of(account));
       }
+      wrapped.accountStateTrie.applyUpdates(accountUpdates);
     }
   }
 }
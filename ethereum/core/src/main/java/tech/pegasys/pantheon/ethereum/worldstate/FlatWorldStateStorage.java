@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A copy of one world state, usually the most recently persisted one, with each account and storage
+ * slot stored under its key hash so it can be read with a single lookup instead of a trie walk.
+ *
+ * <p>Account values are the RLP stored in the account state trie and storage values the RLP stored
+ * in the account storage tries.
+ */
+public interface FlatWorldStateStorage {
+
+  /**
+   * Returns the root hash of the world state currently held. A new flat world state holds the empty
+   * world state.
+   *
+   * @return the root hash of the world state held, or empty if the flat world state is no longer
+   *     being maintained
+   */
+  Optional<Bytes32> getRootHash();
+
+  /**
+   * Runs a read against the flat world state if it holds the world state with the given root. The
+   * flat world state isn't changed while the read is running.
+   *
+   * @param rootHash the root hash of the world state to read
+   * @param read the read to run, which must not return null
+   * @param <T> the type of the read result
+   * @return the result of the read, or empty if the flat world state holds a different world state
+   */
+  <T> Optional<T> read(Bytes32 rootHash, Function<Reader, T> read);
+
+  Updater updater();
+
+  /** Stops maintaining the flat world state, after which it never holds any world state. */
+  void disable();
+
+  interface Reader {
+
+    Optional<BytesValue> getAccount(Bytes32 accountHash);
+
+    Optional<BytesValue> getAccountStorage(Bytes32 accountHash, Bytes32 slotHash);
+  }
+
+  interface Updater {
+
+    Updater putAccount(Bytes32 accountHash, BytesValue account);
+
+    Updater removeAccount(Bytes32 accountHash);
+
+    Updater putAccountStorage(Bytes32 accountHash, Bytes32 slotHash, BytesValue value);
+
+    Updater removeAccountStorage(Bytes32 accountHash, Bytes32 slotHash);
+
+    /**
+     * Commits the changes, after which the flat world state holds the world state with the given
+     * root.
+     *
+     * @param rootHash the root hash of the world state the changes lead to
+     */
+    void commit(Bytes32 rootHash);
+
+    void rollback();
+  }
+}
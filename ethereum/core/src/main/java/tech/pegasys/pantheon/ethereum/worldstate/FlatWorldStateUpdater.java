@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.ethereum.trie.TrieDiff;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Moves a {@link FlatWorldStateStorage} to a newly persisted world state by applying the
+ * differences between the tries of the world state it holds and the new one.
+ *
+ * <p>Usually the new world state was built on top of the one held, so the differences are the
+ * changes made by one block. When it wasn't, for example after a reorg, the differences between the
+ * two are applied instead, which is cheap while they share most of their tries.
+ */
+class FlatWorldStateUpdater {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  // Moving to an unrelated world state, such as the one downloaded by fast sync, would copy the
+  // whole world state while the block is being imported, so the flat world state is dropped
+  // instead.
+  static final int MAX_UNRELATED_DIFFERENCES = 100_000;
+
+  private final WorldStateStorage worldStateStorage;
+  private final FlatWorldStateStorage.Updater updater;
+  private int remainingDifferences;
+
+  private FlatWorldStateUpdater(
+      final WorldStateStorage worldStateStorage,
+      final FlatWorldStateStorage.Updater updater,
+      final int maxDifferences) {
+    this.worldStateStorage = worldStateStorage;
+    this.updater = updater;
+    this.remainingDifferences = maxDifferences;
+  }
+
+  /**
+   * Updates the flat world state after a world state has been persisted.
+   *
+   * @param flatState the flat world state to update
+   * @param worldStateStorage the storage the world state was persisted to
+   * @param baseRootHash the root hash of the world state the changes were made on top of
+   * @param rootHash the root hash of the persisted world state
+   */
+  static void update(
+      final FlatWorldStateStorage flatState,
+      final WorldStateStorage worldStateStorage,
+      final Bytes32 baseRootHash,
+      final Bytes32 rootHash) {
+    synchronized (flatState) {
+      final Optional<Bytes32> flatRootHash = flatState.getRootHash();
+      if (!flatRootHash.isPresent() || flatRootHash.get().equals(rootHash)) {
+        return;
+      }
+      final boolean followsFlatState = flatRootHash.get().equals(baseRootHash);
+      if (!followsFlatState && baseRootHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+        // The genesis state is written again on every start and mustn't move the flat state back
+        return;
+      }
+
+      final FlatWorldStateStorage.Updater updater = flatState.updater();
+      final int maxDifferences = followsFlatState ? Integer.MAX_VALUE : MAX_UNRELATED_DIFFERENCES;
+      try {
+        new FlatWorldStateUpdater(worldStateStorage, updater, maxDifferences)
+            .applyDifferences(flatRootHash.get(), rootHash);
+        updater.commit(rootHash);
+      } catch (final TooManyDifferencesException e) {
+        updater.rollback();
+        LOG.info(
+            "World state {} is too different from flat world state {}, no longer maintaining flat world state",
+            rootHash,
+            flatRootHash.get());
+        flatState.disable();
+      } catch (final MerkleTrieException e) {
+        // Without the tries of the world state it holds the flat world state can never be moved
+        // again, so it would be stuck serving a world state nothing reads any more
+        updater.rollback();
+        LOG.warn(
+            "Unable to update flat world state from {} to {}, no longer maintaining flat world state: {}",
+            flatRootHash.get(),
+            rootHash,
+            e.getMessage());
+        flatState.disable();
+      }
+    }
+  }
+
+  private void applyDifferences(final Bytes32 fromRootHash, final Bytes32 toRootHash) {
+    TrieDiff.compare(
+        worldStateStorage::getAccountStateTrieNode,
+        fromRootHash,
+        toRootHash,
+        (accountHash, fromAccount, toAccount) -> {
+          countDifference();
+          if (toAccount.isPresent()) {
+            updater.putAccount(accountHash, toAccount.get());
+          } else {
+            updater.removeAccount(accountHash);
+          }
+          final Hash fromStorageRoot = storageRoot(fromAccount);
+          final Hash toStorageRoot = storageRoot(toAccount);
+          if (!fromStorageRoot.equals(toStorageRoot)) {
+            applyStorageDifferences(accountHash, fromStorageRoot, toStorageRoot);
+          }
+        });
+  }
+
+  private void applyStorageDifferences(
+      final Bytes32 accountHash, final Hash fromStorageRoot, final Hash toStorageRoot) {
+    TrieDiff.compare(
+        worldStateStorage::getAccountStorageTrieNode,
+        fromStorageRoot,
+        toStorageRoot,
+        (slotHash, fromValue, toValue) -> {
+          countDifference();
+          if (toValue.isPresent()) {
+            updater.putAccountStorage(accountHash, slotHash, toValue.get());
+          } else {
+            updater.removeAccountStorage(accountHash, slotHash);
+          }
+        });
+  }
+
+  private static Hash storageRoot(final Optional<BytesValue> account) {
+    return account
+        .map(value -> StateTrieAccountValue.readFrom(RLP.input(value)).getStorageRoot())
+        .orElse(Hash.EMPTY_TRIE_HASH);
+  }
+
+  private void countDifference() {
+    if (--remainingDifferences < 0) {
+      throw new TooManyDifferencesException();
+    }
+  }
+
+  private static class TooManyDifferencesException extends RuntimeException {}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.ethereum.trie.Node;
+import tech.pegasys.pantheon.ethereum.trie.TrieNodeDecoder;
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+
+/**
+ * Removes world state nodes that are not reachable from a chosen state root.
+ *
+ * <p>A pruning cycle starts with {@link #prepare()}, after which every node written to storage is
+ * marked as it is added. {@link #mark(Hash)} then marks every node reachable from a state root and
+ * {@link #sweep()} removes every node that was not marked. Marks are recorded in a bloom filter so
+ * that marking a full state doesn't need to hold every node hash in memory. A false positive only
+ * means an unused node is kept until a later cycle.
+ */
+public class MarkSweepPruner {
+
+  private static final long MINIMUM_EXPECTED_NODES = 10_000_000;
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final Funnel<BytesValue> NODE_HASH_FUNNEL =
+      (hash, sink) -> sink.putBytes(hash.getArrayUnsafe());
+
+  private final WorldStateStorage worldStateStorage;
+  private final Counter markedNodesCounter;
+  private final Counter prunedBytesCounter;
+  private final Counter sweptCyclesCounter;
+
+  private final AtomicLong markedNodeCount = new AtomicLong();
+  private volatile BloomFilter<BytesValue> markedNodes;
+  private long expectedNodes = MINIMUM_EXPECTED_NODES;
+  private long nodeAddedListenerId;
+
+  public MarkSweepPruner(
+      final WorldStateStorage worldStateStorage, final MetricsSystem metricsSystem) {
+    this.worldStateStorage = worldStateStorage;
+
+    markedNodesCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_pruning_marked_nodes_total",
+            "Number of world state nodes marked as in use by the pruner");
+    prunedBytesCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_pruned_bytes_total",
+            "Number of bytes of unused world state nodes removed by the pruner");
+    sweptCyclesCounter =
+        metricsSystem.createCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_pruning_sweeps_total",
+            "Number of completed world state pruning cycles");
+  }
+
+  /** Starts a new pruning cycle, marking every node added to storage from now on. */
+  public void prepare() {
+    markedNodeCount.set(0);
+    markedNodes = BloomFilter.create(NODE_HASH_FUNNEL, expectedNodes, FALSE_POSITIVE_PROBABILITY);
+    nodeAddedListenerId = worldStateStorage.addNodeAddedListener(this::markNodes);
+  }
+
+  /**
+   * Marks every trie node and contract code reachable from a world state root.
+   *
+   * @param rootHash the state root to mark
+   * @throws MerkleTrieException if part of the world state is not available
+   */
+  public void mark(final Hash rootHash) {
+    markTrie(
+        rootHash,
+        worldStateStorage::getAccountStateTrieNode,
+        accountValue -> {
+          final StateTrieAccountValue account =
+              StateTrieAccountValue.readFrom(RLP.input(accountValue));
+          if (!account.getCodeHash().equals(Hash.EMPTY)) {
+            markNode(account.getCodeHash());
+          }
+          markTrie(
+              account.getStorageRoot(),
+              worldStateStorage::getAccountStorageTrieNode,
+              storageValue -> {});
+        });
+  }
+
+  /**
+   * Removes every node that wasn't marked during this cycle and ends the cycle.
+   *
+   * @return the number of bytes reclaimed
+   */
+  public long sweep() {
+    final BloomFilter<BytesValue> marked = markedNodes;
+    final long prunedBytes = worldStateStorage.prune(marked::mightContain);
+    endCycle();
+    prunedBytesCounter.inc(prunedBytes);
+    sweptCyclesCounter.inc();
+    return prunedBytes;
+  }
+
+  /** Ends the cycle without removing anything. */
+  public void cancel() {
+    endCycle();
+  }
+
+  private void endCycle() {
+    worldStateStorage.removeNodeAddedListener(nodeAddedListenerId);
+    markedNodes = null;
+    // Size the next filter for the number of nodes seen this cycle, with room for growth
+    expectedNodes = Math.max(MINIMUM_EXPECTED_NODES, (long) (markedNodeCount.get() * 1.2));
+  }
+
+  private void markTrie(
+      final Bytes32 rootHash,
+      final Function<Bytes32, Optional<BytesValue>> nodeLoader,
+      final Consumer<BytesValue> leafValueHandler) {
+    if (rootHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+      return;
+    }
+    final Deque<Bytes32> pendingNodes = new ArrayDeque<>();
+    pendingNodes.push(rootHash);
+    while (!pendingNodes.isEmpty()) {
+      final Bytes32 nodeHash = pendingNodes.pop();
+      markNode(nodeHash);
+      final BytesValue nodeRlp =
+          nodeLoader
+              .apply(nodeHash)
+              .orElseThrow(
+                  () -> new MerkleTrieException("Unable to load trie node for hash " + nodeHash));
+      // Decoding includes nodes inlined into this one, which share its storage entry
+      for (final Node<BytesValue> node : TrieNodeDecoder.decodeNodes(nodeRlp)) {
+        if (!node.getHash().equals(nodeHash) && node.isReferencedByHash()) {
+          pendingNodes.push(node.getHash());
+        } else {
+          node.getValue().ifPresent(leafValueHandler);
+        }
+      }
+    }
+  }
+
+  private void markNode(final Bytes32 hash) {
+    final BloomFilter<BytesValue> marked = markedNodes;
+    if (marked == null) {
+      // Nodes committed concurrently with the end of a cycle don't need marking
+      return;
+    }
+    marked.put(hash);
+    markedNodeCount.incrementAndGet();
+    markedNodesCounter.inc();
+  }
+
+  private void markNodes(final Collection<Bytes32> hashes) {
+    hashes.forEach(this::markNode);
+  }
+}
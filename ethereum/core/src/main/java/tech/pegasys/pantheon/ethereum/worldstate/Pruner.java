@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.chain.BlockAddedEvent;
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Drives {@link MarkSweepPruner} from new canonical blocks so that only the world states of recent
+ * blocks are kept.
+ *
+ * <p>A cycle starts at the next canonical head. Once that block has enough confirmations its world
+ * state is marked. When the chain has advanced by the number of blocks to retain, everything that
+ * wasn't marked is swept. Nodes added since the cycle started are always marked, so every state
+ * built on top of the marked one survives the sweep. If the marked block stops being canonical the
+ * cycle is abandoned, as states on the new fork may reuse nodes that were never marked.
+ */
+public class Pruner {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final MarkSweepPruner pruningStrategy;
+  private final Blockchain blockchain;
+  private final ExecutorService executorService;
+  private final long blocksRetained;
+  private final long blockConfirmations;
+
+  private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+  private volatile long markBlockNumber;
+  private volatile BlockHeader markedBlockHeader;
+  private Long blockAddedObserverId;
+
+  public Pruner(
+      final MarkSweepPruner pruningStrategy,
+      final Blockchain blockchain,
+      final PruningConfiguration pruningConfiguration,
+      final ExecutorService executorService) {
+    this.pruningStrategy = pruningStrategy;
+    this.blockchain = blockchain;
+    this.executorService = executorService;
+    this.blocksRetained = pruningConfiguration.getBlocksRetained();
+    this.blockConfirmations = pruningConfiguration.getBlockConfirmations();
+  }
+
+  public void start() {
+    LOG.info("Starting world state pruning, keeping state for {} blocks", blocksRetained);
+    blockAddedObserverId = blockchain.observeBlockAdded((event, chain) -> handleNewBlock(event));
+  }
+
+  public void stop() throws InterruptedException {
+    if (blockAddedObserverId != null) {
+      blockchain.removeObserver(blockAddedObserverId);
+      blockAddedObserverId = null;
+    }
+    executorService.shutdownNow();
+    executorService.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  private void handleNewBlock(final BlockAddedEvent event) {
+    if (!event.isNewCanonicalHead()) {
+      return;
+    }
+
+    final long blockNumber = event.getBlock().getHeader().getNumber();
+    if (state.compareAndSet(State.IDLE, State.AWAITING_CONFIRMATIONS)) {
+      pruningStrategy.prepare();
+      markBlockNumber = blockNumber;
+    } else if (blockNumber >= markBlockNumber + blockConfirmations
+        && state.compareAndSet(State.AWAITING_CONFIRMATIONS, State.MARKING)) {
+      execute(this::mark);
+    } else if (blockNumber >= markBlockNumber + blocksRetained
+        && state.compareAndSet(State.MARKING_COMPLETE, State.SWEEPING)) {
+      execute(this::sweep);
+    }
+  }
+
+  private void mark() {
+    final Optional<BlockHeader> header = blockchain.getBlockHeader(markBlockNumber);
+    if (!header.isPresent()) {
+      abandonCycle("block " + markBlockNumber + " is no longer canonical");
+      return;
+    }
+    markedBlockHeader = header.get();
+    LOG.debug(
+        "Marking world state of block {} ({})",
+        markedBlockHeader.getNumber(),
+        markedBlockHeader.getHash());
+    try {
+      pruningStrategy.mark(markedBlockHeader.getStateRoot());
+    } catch (final MerkleTrieException e) {
+      // World state isn't available for blocks imported by fast sync before the pivot block
+      abandonCycle("world state of block " + markBlockNumber + " is incomplete");
+      return;
+    }
+    state.compareAndSet(State.MARKING, State.MARKING_COMPLETE);
+  }
+
+  private void sweep() {
+    if (!blockchain.blockIsOnCanonicalChain(markedBlockHeader.getHash())) {
+      abandonCycle("marked block " + markedBlockHeader.getNumber() + " is no longer canonical");
+      return;
+    }
+    final long prunedBytes = pruningStrategy.sweep();
+    LOG.info(
+        "Pruned {} bytes of world state older than block {}",
+        prunedBytes,
+        markedBlockHeader.getNumber());
+    state.compareAndSet(State.SWEEPING, State.IDLE);
+  }
+
+  private void abandonCycle(final String reason) {
+    LOG.debug("Abandoning world state pruning cycle: {}", reason);
+    pruningStrategy.cancel();
+    state.set(State.IDLE);
+  }
+
+  private void execute(final Runnable action) {
+    try {
+      executorService.execute(
+          () -> {
+            try {
+              action.run();
+            } catch (final RuntimeException e) {
+              if (executorService.isShutdown()) {
+                // Storage is closed underneath a running cycle on shutdown
+                LOG.debug("World state pruning stopped by shutdown", e);
+              } else {
+                LOG.error("World state pruning failed", e);
+              }
+              abandonCycle("pruning failed");
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      LOG.debug("Unable to schedule world state pruning", e);
+      abandonCycle("pruning could not be scheduled");
+    }
+  }
+
+  private enum State {
+    IDLE,
+    AWAITING_CONFIRMATIONS,
+    MARKING,
+    MARKING_COMPLETE,
+    SWEEPING
+  }
+}
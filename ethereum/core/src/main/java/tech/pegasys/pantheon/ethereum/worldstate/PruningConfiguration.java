@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+public class PruningConfiguration {
+
+  public static final long DEFAULT_BLOCKS_RETAINED = 1024;
+  public static final long DEFAULT_BLOCK_CONFIRMATIONS = 10;
+
+  private final long blocksRetained;
+  private final long blockConfirmations;
+
+  private PruningConfiguration(final long blocksRetained, final long blockConfirmations) {
+    this.blocksRetained = blocksRetained;
+    this.blockConfirmations = blockConfirmations;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static PruningConfiguration createDefault() {
+    return builder().build();
+  }
+
+  /** @return the minimum number of recent blocks whose world state is kept */
+  public long getBlocksRetained() {
+    return blocksRetained;
+  }
+
+  /**
+   * @return the number of blocks that must be built on top of a block before its world state is
+   *     marked, so that marking isn't wasted on blocks that are soon reorganised away
+   */
+  public long getBlockConfirmations() {
+    return blockConfirmations;
+  }
+
+  public static class Builder {
+
+    private long blocksRetained = DEFAULT_BLOCKS_RETAINED;
+    private long blockConfirmations = DEFAULT_BLOCK_CONFIRMATIONS;
+
+    public Builder blocksRetained(final long blocksRetained) {
+      this.blocksRetained = blocksRetained;
+      return this;
+    }
+
+    public Builder blockConfirmations(final long blockConfirmations) {
+      checkArgument(blockConfirmations >= 0, "Block confirmations must not be negative");
+      this.blockConfirmations = blockConfirmations;
+      return this;
+    }
+
+    public PruningConfiguration build() {
+      checkArgument(
+          blocksRetained > blockConfirmations,
+          "Blocks retained must be greater than block confirmations");
+      return new PruningConfiguration(blocksRetained, blockConfirmations);
+    }
+  }
+}
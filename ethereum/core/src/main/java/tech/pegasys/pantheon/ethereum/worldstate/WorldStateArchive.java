@@ -16,16 +16,26 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public class WorldStateArchive {
   private final WorldStateStorage storage;
+  private final Optional<WorldStatePrefetcher> prefetcher;
   private static final Hash EMPTY_ROOT_HASH = Hash.wrap(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
 
   public WorldStateArchive(final WorldStateStorage storage) {
+    this(storage, Optional.empty());
+  }
+
+  public WorldStateArchive(
+      final WorldStateStorage storage, final Optional<WorldStatePrefetcher> prefetcher) {
     this.storage = storage;
+    this.prefetcher = prefetcher;
   }
 
   public Optional<WorldState> get(final Hash rootHash) {
@@ -40,7 +50,7 @@ public class WorldStateArchive {
     if (!storage.isWorldStateAvailable(rootHash)) {
       return Optional.empty();
     }
-    return Optional.of(new DefaultMutableWorldState(rootHash, storage));
+    return Optional.of(new DefaultMutableWorldState(rootHash, storage, prefetcher));
   }
 
   public WorldState get() {
@@ -55,6 +65,10 @@ public class WorldStateArchive {
     return storage.getNodeData(hash);
   }
 
+  public Map<Bytes32, BytesValue> getAllNodeData(final Collection<Hash> hashes) {
+    return storage.getAllNodeData(hashes);
+  }
+
   public WorldStateStorage getStorage() {
     return storage;
   }
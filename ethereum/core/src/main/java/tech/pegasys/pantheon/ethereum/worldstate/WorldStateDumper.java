@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.StreamableAccount;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes every account and storage slot of a world state as newline delimited JSON.
+ *
+ * <p>Each line is a JSON object whose {@code type} is either {@code account} or {@code storage}.
+ * Storage lines follow the line of their account. A single thread writes the accounts in order of
+ * their address hash. With more threads the accounts are streamed from the tries with a parallel
+ * stream on a fork-join pool, so the lines of different accounts may be interleaved and every line
+ * carries the hash of its account's address.
+ */
+public class WorldStateDumper {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final long PROGRESS_LOG_INTERVAL_ACCOUNTS = 100_000;
+  // Lines are written to the output in chunks of about this many characters
+  private static final int FLUSH_THRESHOLD_CHARS = 64 * 1024;
+
+  private final WorldStateStorage worldStateStorage;
+  private final int parallelism;
+
+  public WorldStateDumper(final WorldStateStorage worldStateStorage, final int parallelism) {
+    this.worldStateStorage = worldStateStorage;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Dumps the world state with the given root.
+   *
+   * @param stateRoot the root hash of the account trie
+   * @param out where to write the lines to
+   * @return what was written
+   * @throws IOException if writing to {@code out} fails
+   */
+  public Result dump(final Hash stateRoot, final Writer out) throws IOException {
+    final Dump dump = new Dump(out);
+    final DefaultMutableWorldState worldState =
+        new DefaultMutableWorldState(stateRoot, worldStateStorage);
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(
+              () -> {
+                final Stream<StreamableAccount> accounts = worldState.accounts();
+                (parallelism > 1 ? accounts.parallel() : accounts).forEach(dump::writeAccount);
+              })
+          .get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while dumping world state", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IllegalStateException("Unable to dump world state " + stateRoot, e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    out.flush();
+    return dump.result();
+  }
+
+  /** The output and counters shared by all threads of one dump. */
+  private static class Dump {
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+    private final Writer out;
+    private final AtomicLong accounts = new AtomicLong();
+    private final LongAdder storageSlots = new LongAdder();
+
+    Dump(final Writer out) {
+      this.out = out;
+    }
+
+    void writeAccount(final StreamableAccount account) {
+      final String addressHash = account.getAddressHash().toString();
+      final JsonObject accountJson =
+          new JsonObject()
+              .put("type", "account")
+              .put("addressHash", addressHash)
+              .put("nonce", account.getNonce())
+              .put("balance", account.getBalance().toShortHexString())
+              .put("codeHash", account.getCodeHash().toString());
+      if (!account.getCodeHash().equals(Hash.EMPTY)) {
+        accountJson.put("code", account.getCode().toString());
+      }
+
+      final StringBuilder lines = new StringBuilder();
+      lines.append(accountJson.encode()).append('\n');
+      account
+          .storageEntries()
+          .forEach(
+              slot -> {
+                appendStorageLine(lines, addressHash, slot);
+                if (lines.length() >= FLUSH_THRESHOLD_CHARS) {
+                  write(lines);
+                }
+              });
+      write(lines);
+
+      final long written = accounts.incrementAndGet();
+      if (written % PROGRESS_LOG_INTERVAL_ACCOUNTS == 0) {
+        LOG.info(
+            "Dumped {} accounts and {} storage slots, {} accounts/s",
+            written,
+            storageSlots.sum(),
+            perSecond(written, stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+      }
+    }
+
+    private void appendStorageLine(
+        final StringBuilder lines,
+        final String addressHash,
+        final Map.Entry<Bytes32, UInt256> slot) {
+      final JsonObject slotJson =
+          new JsonObject()
+              .put("type", "storage")
+              .put("addressHash", addressHash)
+              .put("slotHash", slot.getKey().toString())
+              .put("value", slot.getValue().toShortHexString());
+      lines.append(slotJson.encode()).append('\n');
+      storageSlots.increment();
+    }
+
+    private void write(final StringBuilder lines) {
+      try {
+        synchronized (out) {
+          out.append(lines);
+        }
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      lines.setLength(0);
+    }
+
+    Result result() {
+      return new Result(
+          accounts.get(), storageSlots.sum(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  private static long perSecond(final long count, final long elapsedMillis) {
+    return elapsedMillis == 0 ? count : count * 1000 / elapsedMillis;
+  }
+
+  public static class Result {
+    private final long accountCount;
+    private final long storageSlotCount;
+    private final long elapsedMillis;
+
+    Result(final long accountCount, final long storageSlotCount, final long elapsedMillis) {
+      this.accountCount = accountCount;
+      this.storageSlotCount = storageSlotCount;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getAccountCount() {
+      return accountCount;
+    }
+
+    public long getStorageSlotCount() {
+      return storageSlotCount;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public long getAccountsPerSecond() {
+      return perSecond(accountCount, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("accountCount", accountCount)
+          .add("storageSlotCount", storageSlotCount)
+          .add("elapsedMillis", elapsedMillis)
+          .toString();
+    }
+  }
+}
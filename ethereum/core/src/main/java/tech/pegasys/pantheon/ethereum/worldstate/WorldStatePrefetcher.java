@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPException;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.LabelledMetric;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads the state that upcoming transactions are likely to touch on a background pool, so that
+ * block execution finds it in the trie node cache rather than waiting on one storage read at a
+ * time.
+ *
+ * <p>For each account the account trie path is resolved and the code is read. The storage slots
+ * that earlier executions read from the same account are remembered, and their storage trie paths
+ * are resolved as well. Only persisted state is read, which never changes underneath the
+ * prefetcher, and nodes that have been pruned in the meantime are simply skipped.
+ *
+ * <p>Accounts are counted as {@code read} if they were prefetched before the block's changes were
+ * persisted, or {@code skipped} if the block was done first. A high share of skipped accounts means
+ * the prefetcher cannot keep ahead of execution.
+ */
+public class WorldStatePrefetcher {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  public static final int DEFAULT_THREADS = 8;
+
+  // Bound the memory used to remember storage reads
+  private static final int MAX_REMEMBERED_ACCOUNTS = 10_000;
+  private static final int MAX_REMEMBERED_SLOTS_PER_ACCOUNT = 256;
+
+  private final ThreadPoolExecutor executor;
+  private final Counter readAccounts;
+  private final Counter skippedAccounts;
+  private final Cache<Address, Set<Bytes32>> storageReads =
+      CacheBuilder.newBuilder().maximumSize(MAX_REMEMBERED_ACCOUNTS).build();
+
+  /**
+   * @param threads the number of storage reads to keep in flight
+   * @param metricsSystem the metrics system
+   */
+  public WorldStatePrefetcher(final int threads, final MetricsSystem metricsSystem) {
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("WorldStatePrefetcher-%d")
+                .setDaemon(true)
+                .build());
+    // Threads are only needed while blocks are being imported
+    executor.allowCoreThreadTimeOut(true);
+
+    final LabelledMetric<Counter> prefetchedAccounts =
+        metricsSystem.createLabelledCounter(
+            MetricCategory.BLOCKCHAIN,
+            "world_state_prefetched_accounts_total",
+            "Number of accounts hinted to the world state prefetcher, by whether they were read before the block was persisted",
+            "outcome");
+    readAccounts = prefetchedAccounts.labels("read");
+    skippedAccounts = prefetchedAccounts.labels("skipped");
+  }
+
+  /**
+   * Remembers that a storage slot was read, so that it is prefetched whenever the account is.
+   *
+   * @param address the account the slot belongs to
+   * @param slotHash the hash of the slot's key
+   */
+  public void recordStorageRead(final Address address, final Bytes32 slotHash) {
+    final Set<Bytes32> slots =
+        storageReads.asMap().computeIfAbsent(address, a -> ConcurrentHashMap.newKeySet());
+    if (slots.size() < MAX_REMEMBERED_SLOTS_PER_ACCOUNT) {
+      slots.add(slotHash);
+    }
+  }
+
+  /**
+   * Starts reading the given accounts in the background, in the given order.
+   *
+   * @param storage the storage to read through
+   * @param rootHash the root of persisted world state to read
+   * @param accounts the accounts to prefetch
+   * @return a handle to cancel prefetching once the state is no longer needed
+   */
+  public Prefetch prefetch(
+      final WorldStateStorage storage, final Bytes32 rootHash, final Collection<Address> accounts) {
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    final CompletableFuture<?>[] tasks =
+        accounts.stream()
+            .map(
+                address ->
+                    CompletableFuture.runAsync(
+                        () -> prefetchAccount(storage, rootHash, address, cancelled), executor))
+            .toArray(CompletableFuture[]::new);
+    return new Prefetch(cancelled, CompletableFuture.allOf(tasks));
+  }
+
+  private void prefetchAccount(
+      final WorldStateStorage storage,
+      final Bytes32 rootHash,
+      final Address address,
+      final AtomicBoolean cancelled) {
+    if (cancelled.get()) {
+      skippedAccounts.inc();
+      return;
+    }
+    readAccounts.inc();
+    try {
+      final Hash addressHash = Hash.hash(address);
+      readFlatState(storage, rootHash, reader -> reader.getAccount(addressHash));
+      final Optional<BytesValue> encodedAccount =
+          trie(storage::getAccountStateTrieNode, rootHash).get(addressHash);
+      if (!encodedAccount.isPresent()) {
+        return;
+      }
+      final StateTrieAccountValue account =
+          StateTrieAccountValue.readFrom(RLP.input(encodedAccount.get()));
+      if (!account.getCodeHash().equals(Hash.EMPTY)) {
+        storage.getCode(account.getCodeHash());
+      }
+
+      final Set<Bytes32> slots = storageReads.getIfPresent(address);
+      if (slots == null || account.getStorageRoot().equals(Hash.EMPTY_TRIE_HASH)) {
+        return;
+      }
+      // Nodes near the root are shared by all slots and only loaded once
+      final MerklePatriciaTrie<Bytes32, BytesValue> storageTrie =
+          trie(storage::getAccountStorageTrieNode, account.getStorageRoot());
+      for (final Bytes32 slotHash : slots) {
+        if (cancelled.get()) {
+          return;
+        }
+        readFlatState(storage, rootHash, reader -> reader.getAccountStorage(addressHash, slotHash));
+        storageTrie.get(slotHash);
+      }
+    } catch (final MerkleTrieException | RLPException e) {
+      LOG.trace("Stopped prefetching state of account {}", address, e);
+    }
+  }
+
+  private static void readFlatState(
+      final WorldStateStorage storage,
+      final Bytes32 rootHash,
+      final Function<FlatWorldStateStorage.Reader, Optional<BytesValue>> read) {
+    storage.getFlatState().ifPresent(flat -> flat.read(rootHash, read));
+  }
+
+  private static MerklePatriciaTrie<Bytes32, BytesValue> trie(
+      final Function<Bytes32, Optional<BytesValue>> nodeLoader, final Bytes32 rootHash) {
+    return new StoredMerklePatriciaTrie<>(nodeLoader::apply, rootHash, b -> b, b -> b);
+  }
+
+  /** The prefetching started for one block. */
+  public static class Prefetch {
+
+    private final AtomicBoolean cancelled;
+    private final CompletableFuture<Void> completion;
+
+    private Prefetch(final AtomicBoolean cancelled, final CompletableFuture<Void> completion) {
+      this.cancelled = cancelled;
+      this.completion = completion;
+    }
+
+    /** Skips the accounts and slots that have not been read yet. */
+    public void cancel() {
+      cancelled.set(true);
+    }
+
+    CompletableFuture<Void> completion() {
+      return completion;
+    }
+  }
+}
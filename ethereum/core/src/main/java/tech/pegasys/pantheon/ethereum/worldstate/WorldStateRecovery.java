@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.mainnet.BlockProcessor;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Restores the world state of the most recent blocks when it was still held in memory by {@link
+ * BufferedWorldStateStorage} when the process stopped.
+ */
+public class WorldStateRecovery {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private WorldStateRecovery() {}
+
+  /**
+   * Executes the blocks after the most recent block whose world state is available, up to the chain
+   * head. Nothing is done if the state of the chain head is available, or if no state is available
+   * within {@link BufferedWorldStateStorage#MAX_FLUSH_INTERVAL} blocks of it, as is the case while
+   * fast sync is downloading the state.
+   *
+   * @param blockchain the blockchain to restore the world state of
+   * @param worldStateArchive the world state archive
+   * @param protocolSchedule the protocol schedule used to execute blocks
+   * @param <C> the consensus context type
+   */
+  public static <C> void recoverChainHeadState(
+      final Blockchain blockchain,
+      final WorldStateArchive worldStateArchive,
+      final ProtocolSchedule<C> protocolSchedule) {
+    final long chainHead = blockchain.getChainHeadBlockNumber();
+    final long oldestCandidate =
+        Math.max(0, chainHead - BufferedWorldStateStorage.MAX_FLUSH_INTERVAL);
+    for (long blockNumber = chainHead; blockNumber >= oldestCandidate; blockNumber--) {
+      final Optional<BlockHeader> header = blockchain.getBlockHeader(blockNumber);
+      if (!header.isPresent()) {
+        return;
+      }
+      final Optional<MutableWorldState> worldState =
+          worldStateArchive.getMutable(header.get().getStateRoot());
+      if (worldState.isPresent()) {
+        if (blockNumber < chainHead) {
+          replayBlocks(blockchain, worldState.get(), protocolSchedule, blockNumber + 1, chainHead);
+        }
+        return;
+      }
+    }
+  }
+
+  private static <C> void replayBlocks(
+      final Blockchain blockchain,
+      final MutableWorldState worldState,
+      final ProtocolSchedule<C> protocolSchedule,
+      final long fromBlockNumber,
+      final long toBlockNumber) {
+    LOG.info(
+        "Restoring world state of blocks {} to {} which was not written to disk",
+        fromBlockNumber,
+        toBlockNumber);
+    for (long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++) {
+      final BlockHeader header = blockchain.getBlockHeader(blockNumber).get();
+      final BlockBody body = blockchain.getBlockBody(header.getHash()).get();
+      final BlockProcessor blockProcessor =
+          protocolSchedule.getByBlockNumber(blockNumber).getBlockProcessor();
+      final BlockProcessor.Result result =
+          blockProcessor.processBlock(blockchain, worldState, new Block(header, body));
+      if (!result.isSuccessful() || !worldState.rootHash().equals(header.getStateRoot())) {
+        throw new IllegalStateException(
+            "Unable to restore world state of block "
+                + blockNumber
+                + " ("
+                + header.getHash()
+                + ")");
+      }
+    }
+  }
+}
@@ -16,7 +16,11 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 public interface WorldStateStorage {
 
@@ -28,14 +32,119 @@ public interface WorldStateStorage {
 
   Optional<BytesValue> getNodeData(Bytes32 hash);
 
+  /**
+   * Looks up the node data for several hashes at once.
+   *
+   * @param hashes the hashes to look up
+   * @return the available node data keyed by hash, hashes with no data are omitted
+   */
+  default Map<Bytes32, BytesValue> getAllNodeData(final Collection<? extends Bytes32> hashes) {
+    final Map<Bytes32, BytesValue> nodeData = new HashMap<>(hashes.size());
+    for (final Bytes32 hash : hashes) {
+      getNodeData(hash).ifPresent(data -> nodeData.put(hash, data));
+    }
+    return nodeData;
+  }
+
   boolean isWorldStateAvailable(Bytes32 rootHash);
 
   default boolean contains(final Bytes32 hash) {
     return getNodeData(hash).isPresent();
   }
 
+  /**
+   * Returns the flat copy of a recent world state kept alongside the tries, if this storage keeps
+   * one. World states persisted to this storage keep it up to date.
+   *
+   * @return the flat world state, or empty if this storage doesn't keep one
+   */
+  default Optional<FlatWorldStateStorage> getFlatState() {
+    return Optional.empty();
+  }
+
   Updater updater();
 
+  /**
+   * Returns an updater whose changes may only be held in memory when it is committed and written to
+   * disk later. Changes are visible to readers of this storage as soon as they are committed, but
+   * may be lost if the process stops unexpectedly, so this must only be used for state that can be
+   * recreated, such as the state produced by executing a block.
+   *
+   * @return an updater whose changes may be written to disk later
+   */
+  default Updater deferredUpdater() {
+    return updater();
+  }
+
+  /**
+   * Writes any changes from {@link #deferredUpdater() deferred updaters} held in memory to disk.
+   */
+  default void flush() {}
+
+  /**
+   * Returns an updater for loading a large amount of state at once, such as a world state
+   * downloaded from peers. Changes are readable as soon as they are committed but may be held in
+   * memory until {@link #flushBulkLoad()}, which writes them to disk in bulk, so changes that
+   * haven't been flushed are lost if the process stops. Storages that can't load in bulk return a
+   * normal updater.
+   *
+   * @return an updater for bulk loading state
+   */
+  default Updater bulkUpdater() {
+    return updater();
+  }
+
+  /**
+   * Starts a bulk load, during which storage may defer background work such as compaction. Every
+   * call must be matched by a call to {@link #finishBulkLoad()} or {@link #stopBulkLoad()}, and
+   * bulk loads may overlap.
+   */
+  default void startBulkLoad() {}
+
+  /** Writes changes from {@link #bulkUpdater() bulk updaters} to disk. */
+  default void flushBulkLoad() {}
+
+  /**
+   * Ends a bulk load that loaded all of its state by flushing any remaining changes. Once no other
+   * bulk load is in progress the loaded state is compacted, after which storage goes back to
+   * compacting in the background as usual.
+   */
+  default void finishBulkLoad() {
+    flushBulkLoad();
+  }
+
+  /**
+   * Ends a bulk load that was abandoned before loading all of its state. Remaining changes are
+   * flushed so that the load can be resumed, but nothing is compacted.
+   */
+  default void stopBulkLoad() {
+    flushBulkLoad();
+  }
+
+  /**
+   * Removes every stored trie node and code entry that is no longer in use.
+   *
+   * @param inUseCheck returns true for the hashes of nodes and code that must be kept
+   * @return the number of bytes reclaimed
+   */
+  long prune(Predicate<BytesValue> inUseCheck);
+
+  /**
+   * Registers a listener that is notified of the hashes of nodes and code written by each updater,
+   * before they are committed.
+   *
+   * @param listener the listener to notify
+   * @return the ID to pass to {@link #removeNodeAddedListener(long)}
+   */
+  long addNodeAddedListener(NodesAddedListener listener);
+
+  void removeNodeAddedListener(long id);
+
+  interface NodesAddedListener {
+
+    void onNodesAdded(Collection<Bytes32> nodeHashes);
+  }
+
   interface Updater {
 
     Updater putCode(Bytes32 nodeHash, BytesValue code);
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.rlp.RLPException;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.ethereum.trie.Node;
+import tech.pegasys.pantheon.ethereum.trie.TrieNodeDecoder;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Checks that a world state is complete and intact in storage by walking the account trie and every
+ * storage trie it references. Each node is looked up by hash, checked to hash to the value that
+ * references it, and decoded. The code of every contract account is checked the same way. Code and
+ * storage tries shared by several accounts are only checked once.
+ *
+ * <p>The walk runs on a fork-join pool. The top levels of each trie are split into separate tasks
+ * and the subtrees below them are walked sequentially, so idle threads steal whole subtrees or
+ * storage tries rather than single nodes.
+ */
+public class WorldStateVerifier {
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** Depth within each trie down to which every hash-referenced child gets its own task. */
+  private static final int FORK_DEPTH = 3;
+
+  private static final long PROGRESS_LOG_INTERVAL_NODES = 1_000_000;
+  static final int MAX_REPORTED_PROBLEMS = 1000;
+
+  private final WorldStateStorage worldStateStorage;
+  private final int parallelism;
+
+  public WorldStateVerifier(final WorldStateStorage worldStateStorage, final int parallelism) {
+    this.worldStateStorage = worldStateStorage;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Walks the world state with the given root.
+   *
+   * @param stateRoot the root hash of the account trie
+   * @return what was checked and the problems found
+   */
+  public Result verify(final Hash stateRoot) {
+    final Verification verification = new Verification();
+    if (!stateRoot.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)) {
+      final ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new NodeTask(verification, Optional.empty(), stateRoot, 0));
+      } finally {
+        pool.shutdown();
+      }
+    }
+    return verification.result();
+  }
+
+  /** Verifies a hash-referenced node and the part of its subtree that is not forked off. */
+  private class NodeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Verification verification;
+    private final Optional<Bytes32> storageRoot;
+    private final Bytes32 hash;
+    private final int depth;
+
+    NodeTask(
+        final Verification verification,
+        final Optional<Bytes32> storageRoot,
+        final Bytes32 hash,
+        final int depth) {
+      this.verification = verification;
+      this.storageRoot = storageRoot;
+      this.hash = hash;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      final List<NodeTask> subtasks = new ArrayList<>();
+      verifyNode(hash, depth, subtasks);
+      invokeAll(subtasks);
+    }
+
+    private void verifyNode(
+        final Bytes32 nodeHash, final int nodeDepth, final List<NodeTask> subtasks) {
+      final Optional<BytesValue> rlp =
+          storageRoot.isPresent()
+              ? worldStateStorage.getAccountStorageTrieNode(nodeHash)
+              : worldStateStorage.getAccountStateTrieNode(nodeHash);
+      if (!rlp.isPresent()) {
+        verification.report(ProblemType.MISSING_NODE, nodeHash, storageRoot);
+        return;
+      }
+      if (!Hash.hash(rlp.get()).equals(nodeHash)) {
+        verification.report(ProblemType.CORRUPT_NODE, nodeHash, storageRoot);
+        return;
+      }
+      final Node<BytesValue> node;
+      try {
+        node = TrieNodeDecoder.decode(rlp.get());
+      } catch (final MerkleTrieException | RLPException e) {
+        verification.report(ProblemType.CORRUPT_NODE, nodeHash, storageRoot);
+        return;
+      }
+      verification.nodeVerified(rlp.get().size());
+      visit(node, nodeDepth, subtasks);
+    }
+
+    private void visit(
+        final Node<BytesValue> node, final int nodeDepth, final List<NodeTask> subtasks) {
+      final Optional<BytesValue> value = node.getValue();
+      if (value.isPresent()) {
+        if (storageRoot.isPresent()) {
+          verification.storageSlots.increment();
+        } else {
+          verifyAccount(value.get(), subtasks);
+        }
+      }
+      final Optional<List<Node<BytesValue>>> children = node.getChildren();
+      if (!children.isPresent()) {
+        return;
+      }
+      for (final Node<BytesValue> child : children.get()) {
+        if (!child.isReferencedByHash()) {
+          // Inlined children are part of this node's RLP and were verified with it
+          visit(child, nodeDepth, subtasks);
+        } else if (nodeDepth < FORK_DEPTH) {
+          subtasks.add(new NodeTask(verification, storageRoot, child.getHash(), nodeDepth + 1));
+        } else {
+          verifyNode(child.getHash(), nodeDepth + 1, subtasks);
+        }
+      }
+    }
+
+    private void verifyAccount(final BytesValue value, final List<NodeTask> subtasks) {
+      final StateTrieAccountValue account;
+      try {
+        account = StateTrieAccountValue.readFrom(RLP.input(value));
+      } catch (final RLPException e) {
+        verification.report(ProblemType.CORRUPT_ACCOUNT, Hash.hash(value), Optional.empty());
+        return;
+      }
+      verification.accounts.increment();
+
+      final Hash codeHash = account.getCodeHash();
+      if (!codeHash.equals(Hash.EMPTY) && verification.checkedCode.add(codeHash)) {
+        final Optional<BytesValue> code = worldStateStorage.getCode(codeHash);
+        if (!code.isPresent()) {
+          verification.report(ProblemType.MISSING_CODE, codeHash, Optional.empty());
+        } else if (!Hash.hash(code.get()).equals(codeHash)) {
+          verification.report(ProblemType.CORRUPT_CODE, codeHash, Optional.empty());
+        } else {
+          verification.bytes.add(code.get().size());
+        }
+      }
+
+      final Hash accountStorageRoot = account.getStorageRoot();
+      if (!accountStorageRoot.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)
+          && verification.checkedStorageRoots.add(accountStorageRoot)) {
+        subtasks.add(
+            new NodeTask(verification, Optional.of(accountStorageRoot), accountStorageRoot, 0));
+      }
+    }
+  }
+
+  /** Counters and problems shared by all tasks of one verification. */
+  private static class Verification {
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+    private final AtomicLong nodes = new AtomicLong();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder accounts = new LongAdder();
+    private final LongAdder storageSlots = new LongAdder();
+    private final Set<Bytes32> checkedCode = ConcurrentHashMap.newKeySet();
+    private final Set<Bytes32> checkedStorageRoots = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger problemCount = new AtomicInteger();
+    private final Queue<Problem> problems = new ConcurrentLinkedQueue<>();
+
+    void nodeVerified(final int size) {
+      bytes.add(size);
+      final long verified = nodes.incrementAndGet();
+      if (verified % PROGRESS_LOG_INTERVAL_NODES == 0) {
+        LOG.info(
+            "Verified {} world state nodes, {} accounts, {} nodes/s, {} problems found",
+            verified,
+            accounts.sum(),
+            perSecond(verified, stopwatch.elapsed(TimeUnit.MILLISECONDS)),
+            problemCount.get());
+      }
+    }
+
+    void report(final ProblemType type, final Bytes32 hash, final Optional<Bytes32> storageRoot) {
+      if (problemCount.incrementAndGet() <= MAX_REPORTED_PROBLEMS) {
+        problems.add(new Problem(type, hash, storageRoot));
+      }
+    }
+
+    Result result() {
+      return new Result(
+          nodes.get(),
+          bytes.sum(),
+          accounts.sum(),
+          storageSlots.sum(),
+          checkedCode.size(),
+          problemCount.get(),
+          new ArrayList<>(problems),
+          stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+  }
+
+  private static long perSecond(final long count, final long elapsedMillis) {
+    return elapsedMillis == 0 ? count : count * 1000 / elapsedMillis;
+  }
+
+  public enum ProblemType {
+    MISSING_NODE,
+    CORRUPT_NODE,
+    CORRUPT_ACCOUNT,
+    MISSING_CODE,
+    CORRUPT_CODE
+  }
+
+  /** A node, account or code entry that is missing or does not match its hash. */
+  public static class Problem {
+    private final ProblemType type;
+    private final Bytes32 hash;
+    private final Optional<Bytes32> storageRoot;
+
+    Problem(final ProblemType type, final Bytes32 hash, final Optional<Bytes32> storageRoot) {
+      this.type = type;
+      this.hash = hash;
+      this.storageRoot = storageRoot;
+    }
+
+    public ProblemType getType() {
+      return type;
+    }
+
+    /** @return the hash the node, account or code was referenced by */
+    public Bytes32 getHash() {
+      return hash;
+    }
+
+    /** @return the root of the storage trie the node belongs to, empty for the account trie */
+    public Optional<Bytes32> getStorageRoot() {
+      return storageRoot;
+    }
+
+    @Override
+    public String toString() {
+      return storageRoot
+          .map(root -> type + " " + hash + " in storage trie " + root)
+          .orElse(type + " " + hash);
+    }
+  }
+
+  public static class Result {
+    private final long nodeCount;
+    private final long byteCount;
+    private final long accountCount;
+    private final long storageSlotCount;
+    private final long codeCount;
+    private final int problemCount;
+    private final List<Problem> problems;
+    private final long elapsedMillis;
+
+    Result(
+        final long nodeCount,
+        final long byteCount,
+        final long accountCount,
+        final long storageSlotCount,
+        final long codeCount,
+        final int problemCount,
+        final List<Problem> problems,
+        final long elapsedMillis) {
+      this.nodeCount = nodeCount;
+      this.byteCount = byteCount;
+      this.accountCount = accountCount;
+      this.storageSlotCount = storageSlotCount;
+      this.codeCount = codeCount;
+      this.problemCount = problemCount;
+      this.problems = problems;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isComplete() {
+      return problemCount == 0;
+    }
+
+    public long getNodeCount() {
+      return nodeCount;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    public long getAccountCount() {
+      return accountCount;
+    }
+
+    public long getStorageSlotCount() {
+      return storageSlotCount;
+    }
+
+    public long getCodeCount() {
+      return codeCount;
+    }
+
+    public int getProblemCount() {
+      return problemCount;
+    }
+
+    /** @return the first {@value MAX_REPORTED_PROBLEMS} problems found */
+    public List<Problem> getProblems() {
+      return problems;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public long getNodesPerSecond() {
+      return perSecond(nodeCount, elapsedMillis);
+    }
+
+    public long getBytesPerSecond() {
+      return perSecond(byteCount, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("nodeCount", nodeCount)
+          .add("byteCount", byteCount)
+          .add("accountCount", accountCount)
+          .add("storageSlotCount", storageSlotCount)
+          .add("codeCount", codeCount)
+          .add("problemCount", problemCount)
+          .add("elapsedMillis", elapsedMillis)
+          .toString();
+    }
+  }
+}
@@ -26,6 +26,8 @@ import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 
+import java.nio.file.Path;
+
 public class InMemoryStorageProvider implements StorageProvider {
 
   public static MutableBlockchain createInMemoryBlockchain(final Block genesisBlock) {
@@ -57,6 +59,11 @@ public class InMemoryStorageProvider implements StorageProvider {
     return new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
   }
 
+  @Override
+  public void createCheckpoint(final Path databaseDirectory, final Path ancientDataDirectory) {
+    throw new UnsupportedOperationException("In memory storage can't be checkpointed to disk");
+  }
+
   @Override
   public void close() {}
 }
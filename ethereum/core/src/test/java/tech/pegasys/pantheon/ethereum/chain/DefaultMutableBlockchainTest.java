@@ -13,6 +13,7 @@
 package tech.pegasys.pantheon.ethereum.chain;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.Assert.assertEquals;
 
 import tech.pegasys.pantheon.ethereum.core.Block;
@@ -30,6 +31,7 @@ import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -158,6 +160,74 @@ public class DefaultMutableBlockchainTest {
     assertThat(blockchain.getForks()).isEmpty();
   }
 
+  @Test
+  public void batchedLookupsReturnStoredBlockData() {
+    final BlockDataGenerator gen = new BlockDataGenerator();
+    final List<Block> chain = gen.blockSequence(3);
+
+    final KeyValueStorage kvStore = new InMemoryKeyValueStorage();
+    final DefaultMutableBlockchain blockchain = createBlockchain(kvStore, chain.get(0));
+    for (int i = 1; i < chain.size(); i++) {
+      blockchain.appendBlock(chain.get(i), gen.receipts(chain.get(i)));
+    }
+
+    final Hash unknownHash = gen.hash();
+    final List<Hash> hashes =
+        Arrays.asList(chain.get(2).getHash(), unknownHash, chain.get(0).getHash());
+    assertThat(blockchain.getBlockHashesByNumber(Arrays.asList(0L, 2L, 3L)))
+        .containsOnly(entry(0L, chain.get(0).getHash()), entry(2L, chain.get(2).getHash()));
+    assertThat(blockchain.getBlockHeaders(hashes))
+        .containsOnly(
+            entry(chain.get(2).getHash(), chain.get(2).getHeader()),
+            entry(chain.get(0).getHash(), chain.get(0).getHeader()));
+    assertThat(blockchain.getBlockBodies(hashes))
+        .containsOnly(
+            entry(chain.get(2).getHash(), chain.get(2).getBody()),
+            entry(chain.get(0).getHash(), chain.get(0).getBody()));
+  }
+
+  @Test
+  public void cachedCanonicalLookupsReflectReorg() {
+    final BlockDataGenerator gen = new BlockDataGenerator(3);
+    final List<Block> chain = gen.blockSequence(4);
+
+    final KeyValueStorage kvStore = new InMemoryKeyValueStorage();
+    final DefaultMutableBlockchain blockchain = createBlockchain(kvStore, chain.get(0));
+    for (int i = 1; i < chain.size(); i++) {
+      blockchain.appendBlock(chain.get(i), gen.receipts(chain.get(i)));
+    }
+    // Populate the caches for every block of the original chain
+    for (final Block block : chain) {
+      assertThat(blockchain.getBlockHeader(block.getHeader().getNumber()))
+          .contains(block.getHeader());
+    }
+
+    // Reorg to a shorter but heavier chain branching off block 1
+    final BlockOptions options =
+        new BlockOptions()
+            .setParentHash(chain.get(1).getHash())
+            .setBlockNumber(2)
+            .setDifficulty(
+                chain
+                    .get(2)
+                    .getHeader()
+                    .getDifficulty()
+                    .plus(chain.get(3).getHeader().getDifficulty())
+                    .plus(10L));
+    final Block fork = gen.block(options);
+    blockchain.appendBlock(fork, gen.receipts(fork));
+
+    assertBlockIsHead(blockchain, fork);
+    assertThat(blockchain.getBlockHeader(1)).contains(chain.get(1).getHeader());
+    assertThat(blockchain.getBlockHeader(2)).contains(fork.getHeader());
+    assertThat(blockchain.getBlockHashByNumber(3)).isEmpty();
+    assertThat(blockchain.getBlockHashesByNumber(Arrays.asList(2L, 3L)))
+        .containsOnly(entry(2L, fork.getHash()));
+    // Blocks that left the canonical chain can still be looked up by hash
+    assertThat(blockchain.getBlockHeader(chain.get(3).getHash()))
+        .contains(chain.get(3).getHeader());
+  }
+
   @Test
   public void appendBlockWithReorgToChainAtEqualHeight() {
     final BlockDataGenerator gen = new BlockDataGenerator(1);
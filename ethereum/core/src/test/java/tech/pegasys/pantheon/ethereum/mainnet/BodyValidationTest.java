@@ -12,12 +12,22 @@
  */
 package tech.pegasys.pantheon.ethereum.mainnet;
 
+import static tech.pegasys.pantheon.util.bytes.BytesValues.trimLeadingZeros;
+
 import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.trie.SimpleMerklePatriciaTrie;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
@@ -44,4 +54,24 @@ public final class BodyValidationTest {
       Assertions.assertThat(header.getOmmersHash()).isEqualTo(ommersHash);
     }
   }
+
+  @Test
+  public void receiptsRootMatchesTrieOfIndices() {
+    final BlockDataGenerator generator = new BlockDataGenerator(1);
+    final List<TransactionReceipt> receipts = new ArrayList<>();
+    // Indices sort differently from their RLP encodings once there are more than 128
+    for (final int count : Arrays.asList(0, 1, 2, 127, 128, 129, 300)) {
+      while (receipts.size() < count) {
+        receipts.add(generator.receipt());
+      }
+      final SimpleMerklePatriciaTrie<BytesValue, BytesValue> trie =
+          new SimpleMerklePatriciaTrie<>(b -> b);
+      for (int i = 0; i < count; ++i) {
+        trie.put(
+            RLP.encodeOne(trimLeadingZeros(UInt256.of(i).getBytes())),
+            RLP.encode(receipts.get(i)::writeTo));
+      }
+      Assertions.assertThat(BodyValidation.receiptsRoot(receipts)).isEqualTo(trie.getRootHash());
+    }
+  }
 }
@@ -15,19 +15,35 @@ package tech.pegasys.pantheon.ethereum.mainnet;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.pantheon.crypto.SECP256K1.KeyPair;
 
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
 import tech.pegasys.pantheon.ethereum.core.BlockHeader;
 import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Transaction;
+import tech.pegasys.pantheon.ethereum.core.TransactionTestFixture;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockProcessor.TransactionReceiptFactory;
 import tech.pegasys.pantheon.ethereum.vm.TestBlockchain;
 import tech.pegasys.pantheon.ethereum.vm.WorldStateMock;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class MainnetBlockProcessorTest {
 
@@ -55,4 +71,37 @@ public class MainnetBlockProcessorTest {
     // An empty block with 0 reward should not change the world state
     assertThat(worldState.rootHash()).isEqualTo(initialHash);
   }
+
+  @Test
+  public void prefetchesAccountsOfTransactionsInOrder() {
+    final Blockchain blockchain = new TestBlockchain();
+    final MutableWorldState worldState = spy(WorldStateMock.create(emptyMap()));
+    when(transactionProcessor.processTransaction(any(), any(), any(), any(), any(), any()))
+        .thenReturn(mock(TransactionProcessor.Result.class));
+    when(transactionReceiptFactory.create(any(), any(), anyLong()))
+        .thenReturn(new BlockDataGenerator().receipt());
+
+    final Address recipient = Address.fromHexString("0x0000000000000000000000000000000000000123");
+    final Transaction call =
+        new TransactionTestFixture()
+            .to(Optional.of(recipient))
+            .createTransaction(KeyPair.generate());
+    final Transaction creation =
+        new TransactionTestFixture().nonce(7).createTransaction(KeyPair.generate());
+    final BlockHeader blockHeader = new BlockHeaderTestFixture().gasLimit(100_000).buildHeader();
+
+    blockProcessor.processBlock(
+        blockchain, worldState, blockHeader, Arrays.asList(call, creation), emptyList());
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Collection<Address>> accounts = ArgumentCaptor.forClass(Collection.class);
+    verify(worldState).prefetch(accounts.capture());
+    assertThat(accounts.getValue())
+        .containsExactly(
+            call.getSender(),
+            recipient,
+            creation.getSender(),
+            Address.contractAddress(creation.getSender(), 7),
+            blockHeader.getCoinbase());
+  }
 }
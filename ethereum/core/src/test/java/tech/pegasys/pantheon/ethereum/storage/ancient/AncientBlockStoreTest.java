@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.ancient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AncientBlockStoreTest {
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void readsAppendedBlocks() throws IOException {
+    try (final AncientBlockStore store = AncientBlockStore.open(tmp.getRoot().toPath())) {
+      appendBlocks(store, 3);
+
+      assertThat(store.getBlockCount()).isEqualTo(3);
+      for (int i = 0; i < 3; i++) {
+        assertThat(store.getBlockHeader(i)).contains(header(i));
+        assertThat(store.getBlockBody(i)).contains(body(i));
+        assertThat(store.getTransactionReceipts(i)).contains(receipts(i));
+      }
+    }
+  }
+
+  @Test
+  public void returnsEmptyForBlocksNotStored() throws IOException {
+    try (final AncientBlockStore store = AncientBlockStore.open(tmp.getRoot().toPath())) {
+      appendBlocks(store, 2);
+
+      assertThat(store.getBlockHeader(2)).isEmpty();
+      assertThat(store.getBlockBody(-1)).isEmpty();
+      assertThat(store.getTransactionReceipts(10)).isEmpty();
+    }
+  }
+
+  @Test
+  public void rejectsBlocksAppendedOutOfOrder() throws IOException {
+    try (final AncientBlockStore store = AncientBlockStore.open(tmp.getRoot().toPath())) {
+      appendBlocks(store, 2);
+
+      assertThatThrownBy(() -> store.append(3, header(3), body(3), receipts(3)))
+          .isInstanceOf(IllegalArgumentException.class);
+      assertThat(store.getBlockCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void keepsBlocksWhenReopened() throws IOException {
+    final Path directory = tmp.getRoot().toPath();
+    try (final AncientBlockStore store = AncientBlockStore.open(directory)) {
+      appendBlocks(store, 5);
+    }
+
+    try (final AncientBlockStore store = AncientBlockStore.open(directory)) {
+      assertThat(store.getBlockCount()).isEqualTo(5);
+      assertThat(store.getBlockHeader(4)).contains(header(4));
+      assertThat(store.getBlockBody(0)).contains(body(0));
+
+      store.append(5, header(5), body(5), receipts(5));
+      assertThat(store.getTransactionReceipts(5)).contains(receipts(5));
+    }
+  }
+
+  @Test
+  public void discardsPartiallyWrittenBlockWhenReopened() throws IOException {
+    final Path directory = tmp.getRoot().toPath();
+    try (final AncientBlockStore store = AncientBlockStore.open(directory)) {
+      appendBlocks(store, 3);
+    }
+    try (final FileChannel bodies =
+        FileChannel.open(directory.resolve("bodies.dat"), StandardOpenOption.WRITE)) {
+      bodies.truncate(bodies.size() - 1);
+    }
+
+    try (final AncientBlockStore store = AncientBlockStore.open(directory)) {
+      assertThat(store.getBlockCount()).isEqualTo(2);
+      assertThat(store.getBlockHeader(2)).isEmpty();
+      assertThat(store.getBlockBody(1)).contains(body(1));
+
+      store.append(2, header(2), body(2), receipts(2));
+      assertThat(store.getBlockBody(2)).contains(body(2));
+    }
+  }
+
+  private void appendBlocks(final AncientBlockStore store, final int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      store.append(i, header(i), body(i), receipts(i));
+    }
+    store.sync();
+  }
+
+  private BytesValue header(final int blockNumber) {
+    return BytesValue.of(1, blockNumber);
+  }
+
+  private BytesValue body(final int blockNumber) {
+    return BytesValue.of(2, 2, blockNumber);
+  }
+
+  private BytesValue receipts(final int blockNumber) {
+    return BytesValue.of(3, 3, 3, blockNumber);
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.keyvalue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStoragePrefixedKeyBlockchainStorage.ANCIENT_BLOCK_DISTANCE;
+
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.core.BlockHashFunction;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.TransactionReceipt;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetBlockHashFunction;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.storage.ancient.AncientBlockStore;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+import tech.pegasys.pantheon.util.uint.UInt256Bytes;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeyValueStoragePrefixedKeyBlockchainStorageTest {
+
+  private static final BlockHashFunction BLOCK_HASH_FUNCTION = MainnetBlockHashFunction::createHash;
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  private final BlockDataGenerator gen = new BlockDataGenerator(1);
+  private final SegmentedKeyValueStorage keyValueStorage =
+      new SegmentedKeyValueStorageAdapter(new InMemoryKeyValueStorage());
+  private final BlockchainStorage databaseOnlyStorage =
+      new KeyValueStoragePrefixedKeyBlockchainStorage(keyValueStorage, BLOCK_HASH_FUNCTION);
+  private final Map<Hash, List<TransactionReceipt>> receipts = new HashMap<>();
+  private List<Block> blocks;
+  private AncientBlockStore ancientBlockStore;
+
+  @Before
+  public void setUp() throws IOException {
+    ancientBlockStore = AncientBlockStore.open(tmp.newFolder().toPath());
+    blocks = gen.blockSequence(7);
+    final BlockchainStorage.Updater updater = databaseOnlyStorage.updater();
+    for (final Block block : blocks) {
+      updater.putBlockHeader(block.getHash(), block.getHeader());
+      updater.putBlockBody(block.getHash(), block.getBody());
+      receipts.put(block.getHash(), gen.receipts(block));
+      updater.putTransactionReceipts(block.getHash(), receipts.get(block.getHash()));
+      updater.putBlockHash(block.getHeader().getNumber(), block.getHash());
+    }
+    // Blocks 0 to 5 are far enough behind the chain head to be moved to the ancient store
+    final BlockHeader chainHead = gen.header(ANCIENT_BLOCK_DISTANCE + 5);
+    updater.putBlockHeader(chainHead.getHash(), chainHead);
+    updater.setChainHead(chainHead.getHash());
+    updater.commit();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    ancientBlockStore.close();
+  }
+
+  @Test
+  public void movesOldCanonicalBlocksToAncientStore() throws IOException {
+    final KeyValueStoragePrefixedKeyBlockchainStorage storage = createAncientStorage();
+    storage.freezeAncientBlocks();
+
+    assertThat(ancientBlockStore.getBlockCount()).isEqualTo(6);
+    for (int i = 0; i < 6; i++) {
+      assertThat(databaseOnlyStorage.getBlockHeader(blocks.get(i).getHash())).isEmpty();
+      assertThat(databaseOnlyStorage.getBlockBody(blocks.get(i).getHash())).isEmpty();
+      assertThat(databaseOnlyStorage.getTransactionReceipts(blocks.get(i).getHash())).isEmpty();
+    }
+    assertThat(databaseOnlyStorage.getBlockHeader(blocks.get(6).getHash())).isPresent();
+    blocks.forEach(block -> assertBlockStored(storage, block));
+  }
+
+  @Test
+  public void readsBatchesSpanningDatabaseAndAncientStore() throws IOException {
+    final KeyValueStoragePrefixedKeyBlockchainStorage storage = createAncientStorage();
+    storage.freezeAncientBlocks();
+
+    final Block ancientBlock = blocks.get(2);
+    final Block recentBlock = blocks.get(6);
+    final List<Hash> blockHashes =
+        Arrays.asList(ancientBlock.getHash(), recentBlock.getHash(), gen.hash());
+
+    final Map<Hash, BlockHeader> headers = storage.getBlockHeaders(blockHashes);
+    assertThat(headers).hasSize(2);
+    assertThat(headers.get(ancientBlock.getHash())).isEqualTo(ancientBlock.getHeader());
+    assertThat(headers.get(recentBlock.getHash())).isEqualTo(recentBlock.getHeader());
+    assertThat(storage.getBlockBodies(blockHashes)).hasSize(2);
+  }
+
+  @Test
+  public void completesRemovalOfBlocksAlreadyInAncientStore() throws IOException {
+    // Simulates a crash after blocks were appended but before they were removed from the database
+    for (int i = 0; i < 4; i++) {
+      final Block block = blocks.get(i);
+      ancientBlockStore.append(
+          i,
+          RLP.encode(block.getHeader()::writeTo),
+          RLP.encode(block.getBody()::writeTo),
+          RLP.encode(o -> o.writeList(receipts.get(block.getHash()), TransactionReceipt::writeTo)));
+    }
+
+    final KeyValueStoragePrefixedKeyBlockchainStorage storage = createAncientStorage();
+    storage.freezeAncientBlocks();
+
+    assertThat(ancientBlockStore.getBlockCount()).isEqualTo(6);
+    assertThat(databaseOnlyStorage.getBlockHeader(blocks.get(0).getHash())).isEmpty();
+    blocks.forEach(block -> assertBlockStored(storage, block));
+  }
+
+  @Test
+  public void stopsAtIncompleteBlockUntilItsDataIsAvailable() throws IOException {
+    // An interrupted sync can leave canonical blocks without their receipts
+    final Block incompleteBlock = blocks.get(3);
+    final SegmentedKeyValueStorage.Transaction transaction = keyValueStorage.startTransaction();
+    transaction.remove(
+        KeyValueSegmentIdentifier.TRANSACTION_RECEIPTS,
+        BytesValues.concatenate(BytesValue.of(4), incompleteBlock.getHash()));
+    transaction.commit();
+
+    final KeyValueStoragePrefixedKeyBlockchainStorage storage = createAncientStorage();
+    storage.freezeAncientBlocks();
+    storage.freezeAncientBlocks();
+
+    assertThat(storage.getStalledAncientBlock()).contains(3L);
+    assertThat(ancientBlockStore.getBlockCount()).isEqualTo(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(databaseOnlyStorage.getBlockHeader(blocks.get(i).getHash())).isEmpty();
+      assertBlockStored(storage, blocks.get(i));
+    }
+    assertThat(databaseOnlyStorage.getBlockHeader(incompleteBlock.getHash())).isPresent();
+
+    final BlockchainStorage.Updater updater = storage.updater();
+    updater.putTransactionReceipts(
+        incompleteBlock.getHash(), receipts.get(incompleteBlock.getHash()));
+    updater.commit();
+    storage.freezeAncientBlocks();
+
+    assertThat(storage.getStalledAncientBlock()).isEmpty();
+    assertThat(ancientBlockStore.getBlockCount()).isEqualTo(6);
+    blocks.forEach(block -> assertBlockStored(storage, block));
+  }
+
+  @Test
+  public void doesNotMoveBlocksCloseToChainHead() throws IOException {
+    final BlockHeader chainHead = gen.header(ANCIENT_BLOCK_DISTANCE - 1);
+    final BlockchainStorage.Updater updater = databaseOnlyStorage.updater();
+    updater.putBlockHeader(chainHead.getHash(), chainHead);
+    updater.setChainHead(chainHead.getHash());
+    updater.commit();
+
+    final KeyValueStoragePrefixedKeyBlockchainStorage storage = createAncientStorage();
+    storage.freezeAncientBlocks();
+
+    assertThat(ancientBlockStore.getBlockCount()).isZero();
+    assertThat(databaseOnlyStorage.getBlockHeader(blocks.get(0).getHash())).isPresent();
+  }
+
+  @Test
+  public void rejectsAncientStoreMissingMovedBlocks() throws IOException {
+    createAncientStorage().freezeAncientBlocks();
+
+    try (final AncientBlockStore emptyStore = AncientBlockStore.open(tmp.newFolder().toPath())) {
+      assertThatThrownBy(
+              () ->
+                  new KeyValueStoragePrefixedKeyBlockchainStorage(
+                      keyValueStorage, BLOCK_HASH_FUNCTION, Optional.of(emptyStore)))
+          .isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void getsConsecutiveBlockHashes() {
+    assertThat(databaseOnlyStorage.getBlockHashes(2, 3))
+        .containsExactly(blocks.get(2).getHash(), blocks.get(3).getHash(), blocks.get(4).getHash());
+    assertThat(databaseOnlyStorage.getBlockHashes(5, 10))
+        .containsExactly(blocks.get(5).getHash(), blocks.get(6).getHash());
+    assertThat(databaseOnlyStorage.getBlockHashes(7, 10)).isEmpty();
+    assertThat(databaseOnlyStorage.getBlockHashes(0, 0)).isEmpty();
+  }
+
+  @Test
+  public void getBlockHashesStopsAtGap() {
+    final BlockchainStorage.Updater updater = databaseOnlyStorage.updater();
+    updater.removeBlockHash(3);
+    updater.commit();
+
+    assertThat(databaseOnlyStorage.getBlockHashes(1, 5))
+        .containsExactly(blocks.get(1).getHash(), blocks.get(2).getHash());
+  }
+
+  @Test
+  public void migratesLegacyBlockHashKeys() {
+    final SegmentedKeyValueStorage legacyStorage =
+        new SegmentedKeyValueStorageAdapter(new InMemoryKeyValueStorage());
+    final SegmentedKeyValueStorage.Transaction transaction = legacyStorage.startTransaction();
+    for (final Block block : blocks) {
+      transaction.put(
+          KeyValueSegmentIdentifier.CANONICAL_BLOCK_HASHES,
+          BytesValues.concatenate(BytesValue.of(5), UInt256Bytes.of(block.getHeader().getNumber())),
+          block.getHash());
+    }
+    transaction.commit();
+
+    final BlockchainStorage storage =
+        new KeyValueStoragePrefixedKeyBlockchainStorage(legacyStorage, BLOCK_HASH_FUNCTION);
+
+    for (final Block block : blocks) {
+      assertThat(storage.getBlockHash(block.getHeader().getNumber())).contains(block.getHash());
+    }
+    assertThat(storage.getBlockHashes(0, 10)).hasSize(blocks.size());
+    assertThat(
+            legacyStorage.get(
+                KeyValueSegmentIdentifier.CANONICAL_BLOCK_HASHES,
+                BytesValues.concatenate(BytesValue.of(5), UInt256Bytes.of(0))))
+        .isEmpty();
+  }
+
+  private KeyValueStoragePrefixedKeyBlockchainStorage createAncientStorage() {
+    return new KeyValueStoragePrefixedKeyBlockchainStorage(
+        keyValueStorage, BLOCK_HASH_FUNCTION, Optional.of(ancientBlockStore));
+  }
+
+  private void assertBlockStored(final BlockchainStorage storage, final Block block) {
+    assertThat(storage.getBlockHeader(block.getHash())).contains(block.getHeader());
+    assertThat(storage.getBlockBody(block.getHash())).contains(block.getBody());
+    assertThat(storage.getTransactionReceipts(block.getHash()))
+        .contains(receipts.get(block.getHash()));
+  }
+}
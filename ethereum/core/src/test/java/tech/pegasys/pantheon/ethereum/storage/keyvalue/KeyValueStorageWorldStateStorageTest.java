@@ -12,15 +12,31 @@
  */
 package tech.pegasys.pantheon.ethereum.storage.keyvalue;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueSegmentIdentifier.CODE;
+import static tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueSegmentIdentifier.WORLD_STATE_TRIE_NODES;
 
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage.Updater;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 public class KeyValueStorageWorldStateStorageTest {
@@ -153,6 +169,29 @@ public class KeyValueStorageWorldStateStorageTest {
     assertThat(storage.getNodeData(Hash.hash(bytes))).contains(bytes);
   }
 
+  @Test
+  public void getAllNodeData_returnsTrieNodesCodeAndSpecialValues() {
+    final BytesValue trieNode = BytesValue.fromHexString("0x123456");
+    final BytesValue code = BytesValue.fromHexString("0x654321");
+    final Hash missing = Hash.hash(BytesValue.fromHexString("0x99"));
+    final KeyValueStorageWorldStateStorage storage = emptyStorage();
+    storage.updater().putAccountStateTrieNode(Hash.hash(trieNode), trieNode).putCode(code).commit();
+
+    assertThat(
+            storage.getAllNodeData(
+                asList(
+                    Hash.hash(trieNode),
+                    Hash.hash(code),
+                    missing,
+                    Hash.EMPTY,
+                    MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)))
+        .containsOnly(
+            entry(Hash.hash(trieNode), trieNode),
+            entry(Hash.hash(code), code),
+            entry(Hash.EMPTY, BytesValue.EMPTY),
+            entry(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH, MerklePatriciaTrie.EMPTY_TRIE_NODE));
+  }
+
   @Test
   public void reconcilesNonConflictingUpdaters() {
     final BytesValue bytesA = BytesValue.fromHexString("0x12");
@@ -186,6 +225,134 @@ public class KeyValueStorageWorldStateStorageTest {
     assertThat(emptyStorage().isWorldStateAvailable(Hash.EMPTY_TRIE_HASH)).isTrue();
   }
 
+  @Test
+  public void prune_removesOnlyEntriesNotInUse() {
+    final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+    final KeyValueStorageWorldStateStorage storage =
+        new KeyValueStorageWorldStateStorage(keyValueStorage);
+    final BytesValue keptNode = BytesValue.fromHexString("0x123456");
+    final BytesValue prunedNode = BytesValue.fromHexString("0x654321");
+    final BytesValue prunedCode = BytesValue.fromHexString("0x6001");
+    final BytesValue otherKey = BytesValue.fromHexString("0x01");
+    storage
+        .updater()
+        .putAccountStateTrieNode(Hash.hash(keptNode), keptNode)
+        .putAccountStorageTrieNode(Hash.hash(prunedNode), prunedNode)
+        .putCode(prunedCode)
+        .commit();
+    final KeyValueStorage.Transaction transaction = keyValueStorage.startTransaction();
+    transaction.put(otherKey, BytesValue.of(1));
+    transaction.commit();
+
+    final long prunedBytes = storage.prune(hash -> hash.equals(Hash.hash(keptNode)));
+
+    assertThat(prunedBytes).isEqualTo(Bytes32.SIZE * 2 + prunedNode.size() + prunedCode.size());
+    assertThat(storage.getAccountStateTrieNode(Hash.hash(keptNode))).contains(keptNode);
+    assertThat(storage.getAccountStorageTrieNode(Hash.hash(prunedNode))).isEmpty();
+    assertThat(storage.getCode(Hash.hash(prunedCode))).isEmpty();
+    // Keys that can't be node hashes are never pruned from a shared keyspace
+    assertThat(keyValueStorage.get(otherKey)).contains(BytesValue.of(1));
+  }
+
+  @Test
+  public void nodeAddedListenersAreNotifiedOnCommit() {
+    final KeyValueStorageWorldStateStorage storage = emptyStorage();
+    final BytesValue node = BytesValue.fromHexString("0x123456");
+    final BytesValue code = BytesValue.fromHexString("0x6001");
+    final List<Bytes32> addedNodes = new ArrayList<>();
+    final long listenerId = storage.addNodeAddedListener(addedNodes::addAll);
+
+    final Updater updater = storage.updater();
+    updater.putAccountStateTrieNode(Hash.hash(node), node).putCode(code);
+    assertThat(addedNodes).isEmpty();
+    updater.commit();
+    assertThat(addedNodes).containsExactlyInAnyOrder(Hash.hash(node), Hash.hash(code));
+
+    storage.removeNodeAddedListener(listenerId);
+    storage.updater().putCode(BytesValue.fromHexString("0x6002")).commit();
+    assertThat(addedNodes).hasSize(2);
+  }
+
+  @Test
+  public void bulkLoadedNodesAreReadableBeforeBeingFlushed() {
+    final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+    final KeyValueStorageWorldStateStorage storage =
+        new KeyValueStorageWorldStateStorage(keyValueStorage);
+    final BytesValue node = BytesValue.fromHexString("0x123456");
+    final BytesValue code = BytesValue.fromHexString("0x6001");
+    final List<Bytes32> addedNodes = new ArrayList<>();
+    storage.addNodeAddedListener(addedNodes::addAll);
+
+    storage.bulkUpdater().putAccountStorageTrieNode(Hash.hash(node), node).putCode(code).commit();
+
+    assertThat(addedNodes).containsExactlyInAnyOrder(Hash.hash(node), Hash.hash(code));
+    assertThat(storage.getAccountStorageTrieNode(Hash.hash(node))).contains(node);
+    assertThat(storage.getCode(Hash.hash(code))).contains(code);
+    assertThat(storage.getAllNodeData(asList(Hash.hash(node), Hash.hash(code))))
+        .containsOnly(entry(Hash.hash(node), node), entry(Hash.hash(code), code));
+    assertThat(keyValueStorage.get(Hash.hash(node))).isEmpty();
+
+    storage.flushBulkLoad();
+
+    assertThat(keyValueStorage.get(Hash.hash(node))).contains(node);
+    assertThat(keyValueStorage.get(Hash.hash(code))).contains(code);
+    assertThat(storage.getNodeData(Hash.hash(node))).contains(node);
+    assertThat(storage.getNodeData(Hash.hash(code))).contains(code);
+  }
+
+  @Test
+  public void finishBulkLoadFlushesRemainingNodes() {
+    final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+    final KeyValueStorageWorldStateStorage storage =
+        new KeyValueStorageWorldStateStorage(keyValueStorage);
+    final BytesValue node = BytesValue.fromHexString("0x123456");
+
+    final WorldStateStorage.Updater updater = storage.bulkUpdater();
+    updater.putAccountStateTrieNode(Hash.hash(node), node).commit();
+    storage.finishBulkLoad();
+
+    assertThat(keyValueStorage.get(Hash.hash(node))).contains(node);
+  }
+
+  @Test
+  public void compactsOnceTheLastBulkLoadFinishes() {
+    final SegmentedKeyValueStorage keyValueStorage =
+        spy(new SegmentedKeyValueStorageAdapter(new InMemoryKeyValueStorage()));
+    final KeyValueStorageWorldStateStorage storage =
+        new KeyValueStorageWorldStateStorage(keyValueStorage);
+
+    storage.startBulkLoad();
+    storage.startBulkLoad();
+    verify(keyValueStorage, times(1)).setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, false);
+
+    storage.finishBulkLoad();
+    verify(keyValueStorage, never()).compact(any());
+    verify(keyValueStorage, never()).setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, true);
+
+    storage.finishBulkLoad();
+    verify(keyValueStorage).setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, true);
+    verify(keyValueStorage).compact(WORLD_STATE_TRIE_NODES);
+    verify(keyValueStorage).compact(CODE);
+  }
+
+  @Test
+  public void stopBulkLoadFlushesWithoutCompacting() {
+    final InMemoryKeyValueStorage inMemoryStorage = new InMemoryKeyValueStorage();
+    final SegmentedKeyValueStorage keyValueStorage =
+        spy(new SegmentedKeyValueStorageAdapter(inMemoryStorage));
+    final KeyValueStorageWorldStateStorage storage =
+        new KeyValueStorageWorldStateStorage(keyValueStorage);
+    final BytesValue node = BytesValue.fromHexString("0x123456");
+
+    storage.startBulkLoad();
+    storage.bulkUpdater().putAccountStateTrieNode(Hash.hash(node), node).commit();
+    storage.stopBulkLoad();
+
+    assertThat(inMemoryStorage.get(Hash.hash(node))).contains(node);
+    verify(keyValueStorage).setAutoCompactionEnabled(WORLD_STATE_TRIE_NODES, true);
+    verify(keyValueStorage, never()).compact(any());
+  }
+
   private KeyValueStorageWorldStateStorage emptyStorage() {
     return new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
   }
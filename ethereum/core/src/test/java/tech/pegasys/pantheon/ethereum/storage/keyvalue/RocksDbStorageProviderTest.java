@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.storage.keyvalue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.services.kvstore.RocksDbSegmentConfiguration;
+
+import org.junit.Test;
+
+public class RocksDbStorageProviderTest {
+
+  @Test
+  public void segmentBlockCacheSharesDoNotExceedTheConfiguredCacheSize() {
+    final double totalShare =
+        RocksDbStorageProvider.segmentConfigurations().stream()
+            .mapToDouble(RocksDbSegmentConfiguration::getBlockCacheShare)
+            .sum();
+
+    assertThat(totalShare).isLessThanOrEqualTo(1.0 + 1e-9);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import org.junit.Test;
+
+public class BufferedWorldStateStorageTest {
+
+  private static final BytesValue NODE = BytesValue.fromHexString("0x123456");
+  private static final Hash NODE_HASH = Hash.hash(NODE);
+  private static final BytesValue CODE = BytesValue.fromHexString("0x6001");
+  private static final Hash CODE_HASH = Hash.hash(CODE);
+
+  private final WorldStateStorage storage =
+      new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+
+  @Test
+  public void deferredChangesAreReadableBeforeFlush() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(2, 1024 * 1024);
+    bufferedStorage
+        .deferredUpdater()
+        .putAccountStateTrieNode(NODE_HASH, NODE)
+        .putCode(CODE_HASH, CODE)
+        .commit();
+
+    assertThat(bufferedStorage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(bufferedStorage.getNodeData(NODE_HASH)).contains(NODE);
+    assertThat(bufferedStorage.getCode(CODE_HASH)).contains(CODE);
+    assertThat(bufferedStorage.isWorldStateAvailable(NODE_HASH)).isTrue();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).isEmpty();
+    assertThat(storage.getCode(CODE_HASH)).isEmpty();
+  }
+
+  @Test
+  public void deferredChangesAreFlushedAfterFlushInterval() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(2, 1024 * 1024);
+    bufferedStorage.deferredUpdater().putAccountStorageTrieNode(NODE_HASH, NODE).commit();
+    assertThat(storage.getAccountStorageTrieNode(NODE_HASH)).isEmpty();
+
+    bufferedStorage.deferredUpdater().putCode(CODE_HASH, CODE).commit();
+
+    assertThat(storage.getAccountStorageTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(storage.getCode(CODE_HASH)).contains(CODE);
+    assertThat(bufferedStorage.getAccountStorageTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void deferredChangesAreFlushedWhenBufferIsFull() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(100, 1);
+    bufferedStorage.deferredUpdater().putAccountStateTrieNode(NODE_HASH, NODE).commit();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void rolledBackChangesAreNotBuffered() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(1, 1024 * 1024);
+    final WorldStateStorage.Updater updater = bufferedStorage.deferredUpdater();
+    updater.putAccountStateTrieNode(NODE_HASH, NODE);
+    updater.rollback();
+    bufferedStorage.flush();
+
+    assertThat(bufferedStorage.getAccountStateTrieNode(NODE_HASH)).isEmpty();
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).isEmpty();
+  }
+
+  @Test
+  public void explicitFlushWritesBufferedChanges() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(100, 1024 * 1024);
+    bufferedStorage.deferredUpdater().putAccountStateTrieNode(NODE_HASH, NODE).commit();
+
+    bufferedStorage.flush();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void nonDeferredChangesAreWrittenImmediately() {
+    final BufferedWorldStateStorage bufferedStorage = createBufferedStorage(100, 1024 * 1024);
+    bufferedStorage.updater().putAccountStateTrieNode(NODE_HASH, NODE).commit();
+
+    assertThat(storage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void flushIntervalMustBeWithinRange() {
+    assertThatThrownBy(() -> createBufferedStorage(0, 1024))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () -> createBufferedStorage(BufferedWorldStateStorage.MAX_FLUSH_INTERVAL + 1, 1024))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private BufferedWorldStateStorage createBufferedStorage(
+      final int flushInterval, final long maxBufferSize) {
+    return new BufferedWorldStateStorage(
+        storage, flushInterval, maxBufferSize, new NoOpMetricsSystem());
+  }
+}
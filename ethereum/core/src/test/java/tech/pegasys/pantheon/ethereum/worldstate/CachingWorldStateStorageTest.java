@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import org.junit.Test;
+
+public class CachingWorldStateStorageTest {
+
+  private static final BytesValue NODE = BytesValue.fromHexString("0x123456");
+  private static final Hash NODE_HASH = Hash.hash(NODE);
+
+  private final WorldStateStorage storage =
+      spy(new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
+
+  @Test
+  public void repeatedReadsAreServedFromCache() {
+    storage.updater().putAccountStateTrieNode(NODE_HASH, NODE).commit();
+    final CachingWorldStateStorage cachingStorage = createCachingStorage(1024 * 1024);
+
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(cachingStorage.getAccountStorageTrieNode(NODE_HASH)).contains(NODE);
+
+    verify(storage, times(1)).getAccountStateTrieNode(NODE_HASH);
+  }
+
+  @Test
+  public void missingNodesAreNotCached() {
+    final CachingWorldStateStorage cachingStorage = createCachingStorage(1024 * 1024);
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).isEmpty();
+
+    storage.updater().putAccountStateTrieNode(NODE_HASH, NODE).commit();
+
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+  }
+
+  @Test
+  public void committedNodesAreCached() {
+    final CachingWorldStateStorage cachingStorage = createCachingStorage(1024 * 1024);
+    cachingStorage.updater().putAccountStorageTrieNode(NODE_HASH, NODE).commit();
+
+    assertThat(cachingStorage.getAccountStorageTrieNode(NODE_HASH)).contains(NODE);
+    assertThat(cachingStorage.getNodeData(NODE_HASH)).contains(NODE);
+    verify(storage, times(0)).getAccountStorageTrieNode(NODE_HASH);
+  }
+
+  @Test
+  public void rolledBackNodesAreNotCached() {
+    final CachingWorldStateStorage cachingStorage = createCachingStorage(1024 * 1024);
+    final WorldStateStorage.Updater updater = cachingStorage.updater();
+    updater.putAccountStateTrieNode(NODE_HASH, NODE);
+    updater.rollback();
+
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).isEmpty();
+  }
+
+  @Test
+  public void leastRecentlyUsedNodesAreEvictedWhenCacheIsFull() {
+    // Room for roughly ten nodes
+    final CachingWorldStateStorage cachingStorage = createCachingStorage(2000);
+    final WorldStateStorage.Updater updater = storage.updater();
+    updater.putAccountStateTrieNode(NODE_HASH, NODE);
+    for (int i = 0; i < 100; i++) {
+      final BytesValue otherNode = BytesValues.toMinimalBytes(i + 1000);
+      updater.putAccountStateTrieNode(Hash.hash(otherNode), otherNode);
+    }
+    updater.commit();
+
+    cachingStorage.getAccountStateTrieNode(NODE_HASH);
+    for (int i = 0; i < 100; i++) {
+      cachingStorage.getAccountStateTrieNode(Hash.hash(BytesValues.toMinimalBytes(i + 1000)));
+    }
+    assertThat(cachingStorage.getAccountStateTrieNode(NODE_HASH)).contains(NODE);
+
+    verify(storage, times(2)).getAccountStateTrieNode(NODE_HASH);
+  }
+
+  private CachingWorldStateStorage createCachingStorage(final long maximumSizeInBytes) {
+    return new CachingWorldStateStorage(storage, maximumSizeInBytes, new NoOpMetricsSystem());
+  }
+}
@@ -13,6 +13,7 @@
 package tech.pegasys.pantheon.ethereum.worldstate;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
@@ -22,6 +23,7 @@ import tech.pegasys.pantheon.ethereum.core.Address;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.core.MutableAccount;
 import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.StreamableAccount;
 import tech.pegasys.pantheon.ethereum.core.Wei;
 import tech.pegasys.pantheon.ethereum.core.WorldState;
 import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
@@ -33,8 +35,13 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -557,6 +564,62 @@ public class DefaultMutableWorldStateTest {
     assertThat(storage).isEqualTo(expected);
   }
 
+  @Test
+  public void accountsStreamsPersistedAccountsInAddressHashOrder() {
+    final MutableWorldState worldState = createEmpty();
+    final WorldUpdater updater = worldState.updater();
+    final List<Address> addresses = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final Address address = Address.fromHexString(String.format("0x%040x", i + 1));
+      updater.createAccount(address).setBalance(Wei.of(i + 1));
+      addresses.add(address);
+    }
+    final MutableAccount contract = updater.createAccount(ADDRESS);
+    contract.setStorageValue(UInt256.ONE, UInt256.of(2));
+    contract.setStorageValue(UInt256.of(2), UInt256.of(5));
+    updater.commit();
+    worldState.persist();
+    addresses.add(ADDRESS);
+
+    final List<StreamableAccount> accounts = worldState.accounts().collect(Collectors.toList());
+    assertThat(accounts)
+        .extracting(StreamableAccount::getAddressHash)
+        .isEqualTo(addresses.stream().map(Hash::hash).sorted().collect(Collectors.toList()));
+    // Only address hashes are stored
+    assertThat(accounts).extracting(StreamableAccount::getAddress).containsOnly(Optional.empty());
+    assertThat(
+            worldState
+                .accounts()
+                .parallel()
+                .map(StreamableAccount::getBalance)
+                .reduce(Wei.ZERO, Wei::plus))
+        .isEqualTo(Wei.of(100 * 101 / 2));
+
+    final StreamableAccount streamedContract =
+        accounts.stream()
+            .filter(account -> account.getAddressHash().equals(Hash.hash(ADDRESS)))
+            .findFirst()
+            .get();
+    assertThat(
+            streamedContract
+                .storageEntries()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+        .containsOnly(
+            entry(hash(UInt256.ONE), UInt256.of(2)), entry(hash(UInt256.of(2)), UInt256.of(5)));
+  }
+
+  @Test
+  public void accountsHaveAddressesWhileTheirChangesAreNotPersisted() {
+    final MutableWorldState worldState = createEmpty();
+    final WorldUpdater updater = worldState.updater();
+    updater.createAccount(ADDRESS).setStorageValue(UInt256.ONE, UInt256.of(2));
+    updater.commit();
+
+    final StreamableAccount account = worldState.accounts().findFirst().get();
+    assertThat(account.getAddress()).contains(ADDRESS);
+    assertThat(account.storageEntries()).containsExactly(entry(hash(UInt256.ONE), UInt256.of(2)));
+  }
+
   private Hash hash(final UInt256 key) {
     return Hash.hash(key.getBytes());
   }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageFlatWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorageAdapter;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class FlatWorldStateUpdaterTest {
+
+  private static final Address ADDRESS1 = Address.fromHexString("0x01");
+  private static final Address ADDRESS2 = Address.fromHexString("0x02");
+
+  private final SegmentedKeyValueStorage keyValueStorage =
+      new SegmentedKeyValueStorageAdapter(new InMemoryKeyValueStorage());
+  private final FlatWorldStateStorage flatState =
+      new KeyValueStorageFlatWorldStateStorage(keyValueStorage);
+  private final WorldStateStorage storage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage, flatState);
+
+  @Test
+  public void flatStateFollowsPersistedWorldState() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount account = updater.createAccount(ADDRESS1);
+    account.setBalance(Wei.of(100));
+    account.setStorageValue(UInt256.ONE, UInt256.of(2));
+    updater.createAccount(ADDRESS2).setBalance(Wei.of(200));
+    updater.commit();
+    worldState.persist();
+
+    assertThat(flatState.getRootHash()).contains(worldState.rootHash());
+    assertFlatStateMatches(worldState, ADDRESS1, ADDRESS2);
+    assertThat(flatStorageValue(worldState.rootHash(), ADDRESS1, UInt256.ONE))
+        .contains(encoded(UInt256.of(2)));
+  }
+
+  @Test
+  public void accountsAreReadFromFlatStateWhenItHoldsTheWorldState() {
+    final Hash rootHash = persistAccounts(new DefaultMutableWorldState(storage), 100);
+    final WorldStateStorage trieStorage = spy(storage);
+
+    final MutableWorldState worldState = new DefaultMutableWorldState(rootHash, trieStorage);
+
+    assertThat(worldState.get(ADDRESS1).getBalance()).isEqualTo(Wei.of(100));
+    assertThat(worldState.get(ADDRESS1).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.of(100));
+    assertThat(worldState.get(Address.fromHexString("0x03"))).isNull();
+    verify(trieStorage, never()).getAccountStateTrieNode(any());
+    verify(trieStorage, never()).getAccountStorageTrieNode(any());
+  }
+
+  @Test
+  public void olderWorldStatesAreReadFromTries() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final Hash oldRootHash = persistAccounts(worldState, 100);
+    persistAccounts(worldState, 200);
+
+    final MutableWorldState oldWorldState = new DefaultMutableWorldState(oldRootHash, storage);
+
+    assertThat(oldWorldState.get(ADDRESS1).getBalance()).isEqualTo(Wei.of(100));
+    assertThat(oldWorldState.get(ADDRESS1).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.of(100));
+  }
+
+  @Test
+  public void uncommittedChangesAreNotHiddenByFlatState() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    persistAccounts(worldState, 100);
+
+    final WorldUpdater updater = worldState.updater();
+    updater.getMutable(ADDRESS1).setStorageValue(UInt256.ONE, UInt256.of(5));
+    updater.deleteAccount(ADDRESS2);
+    updater.commit();
+
+    assertThat(worldState.get(ADDRESS1).getStorageValue(UInt256.ONE)).isEqualTo(UInt256.of(5));
+    assertThat(worldState.get(ADDRESS2)).isNull();
+  }
+
+  @Test
+  public void flatStateMovesToWorldStateBuiltOnAnotherFork() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final Hash forkRootHash = persistAccounts(worldState, 100);
+
+    final MutableWorldState fork1 = new DefaultMutableWorldState(forkRootHash, storage);
+    persistAccounts(fork1, 200);
+    assertThat(flatState.getRootHash()).contains(fork1.rootHash());
+
+    final MutableWorldState fork2 = new DefaultMutableWorldState(forkRootHash, storage);
+    final WorldUpdater updater = fork2.updater();
+    updater.getMutable(ADDRESS1).setStorageValue(UInt256.ONE, UInt256.ZERO);
+    updater.deleteAccount(ADDRESS2);
+    updater.commit();
+    fork2.persist();
+
+    assertThat(flatState.getRootHash()).contains(fork2.rootHash());
+    assertFlatStateMatches(fork2, ADDRESS1, ADDRESS2);
+    assertThat(flatStorageValue(fork2.rootHash(), ADDRESS1, UInt256.ONE)).isEmpty();
+    assertThat(flatStorageValue(fork2.rootHash(), ADDRESS2, UInt256.ONE)).isEmpty();
+  }
+
+  @Test
+  public void rewritingGenesisStateDoesNotMoveFlatState() {
+    final Hash rootHash = persistAccounts(new DefaultMutableWorldState(storage), 100);
+
+    final MutableWorldState genesisState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = genesisState.updater();
+    updater.createAccount(ADDRESS1).setBalance(Wei.of(1));
+    updater.commit();
+    genesisState.persist();
+
+    assertThat(flatState.getRootHash()).contains(rootHash);
+  }
+
+  @Test
+  public void flatStateIsDisabledWhenItsTriesAreMissing() {
+    final Hash rootHash = persistAccounts(new DefaultMutableWorldState(storage), 100);
+    final FlatWorldStateStorage.Updater updater = flatState.updater();
+    final Hash missingRootHash = Hash.hash(BytesValue.of(1));
+    updater.commit(missingRootHash);
+
+    FlatWorldStateUpdater.update(flatState, storage, rootHash, rootHash);
+    assertThat(flatState.getRootHash()).isEmpty();
+
+    persistAccounts(new DefaultMutableWorldState(rootHash, storage), 200);
+
+    assertThat(flatState.getRootHash()).isEmpty();
+    assertThat(new KeyValueStorageFlatWorldStateStorage(keyValueStorage).getRootHash()).isEmpty();
+  }
+
+  @Test
+  public void disabledFlatStateIsNotUpdated() {
+    flatState.disable();
+
+    persistAccounts(new DefaultMutableWorldState(storage), 100);
+
+    assertThat(flatState.getRootHash()).isEmpty();
+    assertThat(new KeyValueStorageFlatWorldStateStorage(keyValueStorage).getRootHash()).isEmpty();
+  }
+
+  @Test
+  public void newFlatStateHoldsEmptyWorldState() {
+    assertThat(flatState.getRootHash()).contains(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
+  }
+
+  private Hash persistAccounts(final MutableWorldState worldState, final long value) {
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount account1 = updater.getOrCreate(ADDRESS1);
+    account1.setBalance(Wei.of(value));
+    account1.setStorageValue(UInt256.ONE, UInt256.of(value));
+    updater.getOrCreate(ADDRESS2).setStorageValue(UInt256.ONE, UInt256.of(value));
+    updater.commit();
+    worldState.persist();
+    return worldState.rootHash();
+  }
+
+  private void assertFlatStateMatches(
+      final MutableWorldState worldState, final Address... addresses) {
+    final MerklePatriciaTrie<Bytes32, BytesValue> accountTrie =
+        new StoredMerklePatriciaTrie<>(
+            storage::getAccountStateTrieNode, worldState.rootHash(), b -> b, b -> b);
+    for (final Address address : addresses) {
+      final Hash addressHash = Hash.hash(address);
+      assertThat(flatState.read(worldState.rootHash(), reader -> reader.getAccount(addressHash)))
+          .contains(accountTrie.get(addressHash));
+    }
+  }
+
+  private Optional<BytesValue> flatStorageValue(
+      final Hash rootHash, final Address address, final UInt256 slot) {
+    return flatState
+        .read(
+            rootHash,
+            reader -> reader.getAccountStorage(Hash.hash(address), Hash.hash(slot.getBytes())))
+        .get();
+  }
+
+  private static BytesValue encoded(final UInt256 value) {
+    return RLP.encode(out -> out.writeUInt256Scalar(value));
+  }
+}
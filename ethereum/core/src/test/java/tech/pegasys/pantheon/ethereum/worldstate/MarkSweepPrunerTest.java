@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.ethereum.core.Account;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class MarkSweepPrunerTest {
+
+  private static final int ACCOUNT_COUNT = 20;
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final WorldStateStorage worldStateStorage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage);
+  private final MutableWorldState worldState = new DefaultMutableWorldState(worldStateStorage);
+  private final MarkSweepPruner pruner =
+      new MarkSweepPruner(worldStateStorage, new NoOpMetricsSystem());
+
+  @Test
+  public void sweepRemovesNodesNotReachableFromMarkedRoot() {
+    final List<Hash> stateRoots = new ArrayList<>();
+    for (int round = 1; round <= 5; round++) {
+      stateRoots.add(updateAccounts(round));
+    }
+    final Hash retainedRoot = stateRoots.get(stateRoots.size() - 1);
+    final long entriesBeforePruning = countEntries();
+
+    pruner.prepare();
+    pruner.mark(retainedRoot);
+    final long prunedBytes = pruner.sweep();
+
+    assertThat(prunedBytes).isGreaterThan(0);
+    assertThat(countEntries()).isLessThan(entriesBeforePruning);
+    assertAccountsMatchRound(retainedRoot, 5);
+    for (final Hash prunedRoot : stateRoots.subList(0, stateRoots.size() - 1)) {
+      assertThat(worldStateStorage.isWorldStateAvailable(prunedRoot)).isFalse();
+    }
+  }
+
+  @Test
+  public void nodesAddedAfterPrepareAreNotPruned() {
+    final Hash markedRoot = updateAccounts(1);
+
+    pruner.prepare();
+    pruner.mark(markedRoot);
+    final Hash laterRoot = updateAccounts(2);
+    pruner.sweep();
+
+    assertAccountsMatchRound(markedRoot, 1);
+    assertAccountsMatchRound(laterRoot, 2);
+  }
+
+  @Test
+  public void markFailsWhenWorldStateIsIncomplete() {
+    pruner.prepare();
+
+    assertThatThrownBy(() -> pruner.mark(Hash.hash(BytesValue.of(1))))
+        .isInstanceOf(MerkleTrieException.class);
+    pruner.cancel();
+  }
+
+  @Test
+  public void cancelledCycleDoesNotMarkNewNodes() {
+    pruner.prepare();
+    pruner.cancel();
+
+    // Committing after the cycle was cancelled must not fail
+    final Hash root = updateAccounts(1);
+    assertAccountsMatchRound(root, 1);
+  }
+
+  private Hash updateAccounts(final int round) {
+    final WorldUpdater updater = worldState.updater();
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final MutableAccount account = updater.getOrCreate(address(i));
+      account.setBalance(Wei.of(round * 1000 + i));
+      account.setCode(code(round, i));
+      account.setStorageValue(UInt256.of(i), UInt256.of(round));
+    }
+    updater.commit();
+    worldState.persist();
+    return worldState.rootHash();
+  }
+
+  private void assertAccountsMatchRound(final Hash rootHash, final int round) {
+    final MutableWorldState state = new DefaultMutableWorldState(rootHash, worldStateStorage);
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final Account account = state.get(address(i));
+      assertThat(account.getBalance()).isEqualTo(Wei.of(round * 1000 + i));
+      assertThat(account.getCode()).isEqualTo(code(round, i));
+      assertThat(account.getStorageValue(UInt256.of(i))).isEqualTo(UInt256.of(round));
+    }
+  }
+
+  private long countEntries() {
+    try (final Stream<?> entries = keyValueStorage.entries()) {
+      return entries.count();
+    }
+  }
+
+  private static Address address(final int index) {
+    return Address.fromHexString(String.format("0x%040x", index + 1));
+  }
+
+  private static BytesValue code(final int round, final int index) {
+    return BytesValue.of(0x60, round, 0x60, index);
+  }
+}
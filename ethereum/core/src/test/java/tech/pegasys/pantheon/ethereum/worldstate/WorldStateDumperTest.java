@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.trie.MerkleTrieException;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateDumper.Result;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+public class WorldStateDumperTest {
+
+  private static final int ACCOUNT_COUNT = 300;
+  private static final int CONTRACT_INTERVAL = 10;
+  private static final int SLOTS_PER_CONTRACT = 20;
+  private static final BytesValue CODE = BytesValue.fromHexString("0x60016002");
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final KeyValueStorageWorldStateStorage worldStateStorage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage);
+  private final MutableWorldState worldState = new DefaultMutableWorldState(worldStateStorage);
+
+  @Test
+  public void dumpsNothingForEmptyWorldState() throws IOException {
+    final StringWriter out = new StringWriter();
+
+    final Result result =
+        new WorldStateDumper(worldStateStorage, 4).dump(Hash.EMPTY_TRIE_HASH, out);
+
+    assertThat(result.getAccountCount()).isZero();
+    assertThat(out.toString()).isEmpty();
+  }
+
+  @Test
+  public void dumpsAccountsInAddressHashOrderWithOneThread() throws IOException {
+    populateWorldState();
+    final StringWriter out = new StringWriter();
+
+    final Result result =
+        new WorldStateDumper(worldStateStorage, 1).dump(worldState.rootHash(), out);
+
+    assertThat(result.getAccountCount()).isEqualTo(ACCOUNT_COUNT);
+    final List<JsonObject> accountLines =
+        lines(out).stream()
+            .filter(line -> line.getString("type").equals("account"))
+            .collect(Collectors.toList());
+    assertThat(accountLines)
+        .extracting(line -> line.getString("addressHash"))
+        .isSorted()
+        .hasSize(ACCOUNT_COUNT);
+
+    final JsonObject contract = accountLine(out, address(0));
+    assertThat(contract.getLong("nonce")).isEqualTo(0);
+    assertThat(contract.getString("balance")).isEqualTo("0x1");
+    assertThat(contract.getString("codeHash")).isEqualTo(Hash.hash(CODE).toString());
+    assertThat(contract.getString("code")).isEqualTo(CODE.toString());
+    final JsonObject account = accountLine(out, address(1));
+    assertThat(account.getString("balance")).isEqualTo("0x2");
+    assertThat(account.getString("codeHash")).isEqualTo(Hash.EMPTY.toString());
+    assertThat(account.containsKey("code")).isFalse();
+  }
+
+  @Test
+  public void dumpsEveryStorageSlotWithItsAccount() throws IOException {
+    populateWorldState();
+    final StringWriter out = new StringWriter();
+
+    final Result result =
+        new WorldStateDumper(worldStateStorage, 4).dump(worldState.rootHash(), out);
+
+    assertThat(result.getAccountCount()).isEqualTo(ACCOUNT_COUNT);
+    assertThat(result.getStorageSlotCount())
+        .isEqualTo(ACCOUNT_COUNT / CONTRACT_INTERVAL * SLOTS_PER_CONTRACT);
+    final Map<String, String> contractStorage =
+        lines(out).stream()
+            .filter(line -> line.getString("type").equals("storage"))
+            .filter(line -> line.getString("addressHash").equals(Hash.hash(address(10)).toString()))
+            .collect(
+                Collectors.toMap(
+                    line -> line.getString("slotHash"), line -> line.getString("value")));
+    assertThat(contractStorage)
+        .hasSize(SLOTS_PER_CONTRACT)
+        .containsEntry(Hash.hash(UInt256.of(3).getBytes()).toString(), "0xcc");
+  }
+
+  @Test
+  public void failsOnMissingTrieNode() {
+    populateWorldState();
+    final Transaction transaction = keyValueStorage.startTransaction();
+    transaction.remove(worldState.rootHash());
+    transaction.commit();
+
+    assertThatThrownBy(
+            () ->
+                new WorldStateDumper(worldStateStorage, 4)
+                    .dump(worldState.rootHash(), new StringWriter()))
+        .isInstanceOf(IllegalStateException.class)
+        .hasCauseInstanceOf(MerkleTrieException.class);
+  }
+
+  private void populateWorldState() {
+    final WorldUpdater updater = worldState.updater();
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final MutableAccount account = updater.createAccount(address(i));
+      account.setBalance(Wei.of(i + 1));
+      if (i % CONTRACT_INTERVAL == 0) {
+        account.setCode(CODE);
+        for (int slot = 0; slot < SLOTS_PER_CONTRACT; slot++) {
+          account.setStorageValue(UInt256.of(slot), UInt256.of(i * SLOTS_PER_CONTRACT + slot + 1));
+        }
+      }
+    }
+    updater.commit();
+    worldState.persist();
+  }
+
+  private static List<JsonObject> lines(final StringWriter out) {
+    return Arrays.stream(out.toString().split("\n"))
+        .map(JsonObject::new)
+        .collect(Collectors.toList());
+  }
+
+  private static JsonObject accountLine(final StringWriter out, final Address address) {
+    return lines(out).stream()
+        .filter(line -> line.getString("type").equals("account"))
+        .filter(line -> line.getString("addressHash").equals(Hash.hash(address).toString()))
+        .findFirst()
+        .get();
+  }
+
+  private static Address address(final int index) {
+    return Address.fromHexString(String.format("0x%040x", index + 1));
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorldStatePrefetcherTest {
+
+  private static final Address CONTRACT =
+      Address.fromHexString("0x0000000000000000000000000000000000000abc");
+  private static final BytesValue CODE = BytesValue.fromHexString("0x6001600155");
+
+  private final WorldStateStorage storage =
+      spy(new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
+  private final WorldStatePrefetcher prefetcher =
+      new WorldStatePrefetcher(2, new NoOpMetricsSystem());
+  private Hash rootHash;
+
+  @Before
+  public void setUp() {
+    final MutableWorldState worldState = new DefaultMutableWorldState(storage);
+    final WorldUpdater updater = worldState.updater();
+    final MutableAccount contract = updater.createAccount(CONTRACT);
+    contract.setCode(CODE);
+    for (int slot = 1; slot <= 20; slot++) {
+      contract.setStorageValue(UInt256.of(slot), UInt256.of(slot));
+    }
+    for (int i = 0; i < 20; i++) {
+      updater.createAccount(Address.fromHexString(String.format("%040x", i + 1)));
+    }
+    updater.commit();
+    worldState.persist();
+    rootHash = worldState.rootHash();
+  }
+
+  @Test
+  public void prefetchedAccountsAndSlotsAreReadFromCache() throws Exception {
+    final WorldStateStorage cachingStorage = cachingStorage();
+    prefetcher.recordStorageRead(CONTRACT, slotHash(3));
+
+    prefetcher.prefetch(cachingStorage, rootHash, singletonList(CONTRACT)).completion().get();
+    verify(storage).getCode(Hash.hash(CODE));
+    clearInvocations(storage);
+
+    final MutableWorldState worldState = new DefaultMutableWorldState(rootHash, cachingStorage);
+    assertThat(worldState.get(CONTRACT).getStorageValue(UInt256.of(3))).isEqualTo(UInt256.of(3));
+    verify(storage, never()).getAccountStateTrieNode(any());
+    verify(storage, never()).getAccountStorageTrieNode(any());
+  }
+
+  @Test
+  public void storageReadsAreRememberedForLaterBlocks() throws Exception {
+    final MutableWorldState previousBlockState =
+        new DefaultMutableWorldState(rootHash, cachingStorage(), Optional.of(prefetcher));
+    previousBlockState.get(CONTRACT).getStorageValue(UInt256.of(5));
+
+    final WorldStateStorage cachingStorage = cachingStorage();
+    prefetcher.prefetch(cachingStorage, rootHash, singletonList(CONTRACT)).completion().get();
+    clearInvocations(storage);
+
+    final MutableWorldState worldState = new DefaultMutableWorldState(rootHash, cachingStorage);
+    assertThat(worldState.get(CONTRACT).getStorageValue(UInt256.of(5))).isEqualTo(UInt256.of(5));
+    verify(storage, never()).getAccountStorageTrieNode(any());
+  }
+
+  @Test
+  public void missingStateIsSkipped() throws Exception {
+    final Address unknownAccount =
+        Address.fromHexString("0x0000000000000000000000000000000000000def");
+    prefetcher
+        .prefetch(cachingStorage(), rootHash, Arrays.asList(unknownAccount, CONTRACT))
+        .completion()
+        .get();
+    prefetcher
+        .prefetch(cachingStorage(), Bytes32.fromHexStringLenient("0x1234"), singletonList(CONTRACT))
+        .completion()
+        .get();
+  }
+
+  @Test
+  public void countsAccountsSkippedOnceTheBlockIsDone() throws Exception {
+    final Counter readAccounts = mock(Counter.class);
+    final Counter skippedAccounts = mock(Counter.class);
+    final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+    when(metricsSystem.createLabelledCounter(any(), any(), any(), any()))
+        .thenReturn(labels -> labels[0].equals("read") ? readAccounts : skippedAccounts);
+    final WorldStatePrefetcher singleThreadPrefetcher = new WorldStatePrefetcher(1, metricsSystem);
+
+    // Hold the only thread inside the first account until the block is done
+    final CountDownLatch reading = new CountDownLatch(1);
+    final CountDownLatch blockDone = new CountDownLatch(1);
+    final WorldStateStorage blockingStorage = spy(storage);
+    doAnswer(
+            invocation -> {
+              reading.countDown();
+              blockDone.await();
+              return invocation.callRealMethod();
+            })
+        .when(blockingStorage)
+        .getAccountStateTrieNode(any());
+
+    final WorldStatePrefetcher.Prefetch prefetch =
+        singleThreadPrefetcher.prefetch(
+            blockingStorage,
+            rootHash,
+            Arrays.asList(
+                CONTRACT,
+                Address.fromHexString("0x0000000000000000000000000000000000000001"),
+                Address.fromHexString("0x0000000000000000000000000000000000000002")));
+    reading.await();
+    prefetch.cancel();
+    blockDone.countDown();
+    prefetch.completion().get();
+
+    verify(readAccounts).inc();
+    verify(skippedAccounts, times(2)).inc();
+  }
+
+  private WorldStateStorage cachingStorage() {
+    return new CachingWorldStateStorage(storage, 1024 * 1024, new NoOpMetricsSystem());
+  }
+
+  private static Bytes32 slotHash(final int slot) {
+    return Hash.hash(UInt256.of(slot).getBytes());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.pantheon.ethereum.chain.Blockchain;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Block;
+import tech.pegasys.pantheon.ethereum.core.BlockBody;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.mainnet.BlockProcessor;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSpec;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorldStateRecoveryTest {
+
+  private static final Address ADDRESS = Address.fromHexString("0x1234");
+  private static final int CHAIN_HEAD = 3;
+
+  private final WorldStateArchive worldStateArchive =
+      new WorldStateArchive(new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
+  private final Blockchain blockchain = mock(Blockchain.class);
+  private final BlockProcessor blockProcessor = mock(BlockProcessor.class);
+  private final BlockProcessor.Result successfulResult = mock(BlockProcessor.Result.class);
+
+  @SuppressWarnings("unchecked")
+  private final ProtocolSchedule<Void> protocolSchedule = mock(ProtocolSchedule.class);
+
+  @SuppressWarnings("unchecked")
+  private final ProtocolSpec<Void> protocolSpec = mock(ProtocolSpec.class);
+
+  private final Hash[] stateRoots = new Hash[CHAIN_HEAD + 1];
+
+  @Before
+  public void setUp() {
+    final MutableWorldState worldState = worldStateArchive.getMutable();
+    for (int blockNumber = 0; blockNumber <= CHAIN_HEAD; blockNumber++) {
+      applyBlockChanges(worldState, blockNumber);
+      stateRoots[blockNumber] = worldState.rootHash();
+    }
+
+    when(blockchain.getChainHeadBlockNumber()).thenReturn((long) CHAIN_HEAD);
+    when(blockchain.getBlockHeader(anyLong())).thenReturn(Optional.empty());
+    when(blockchain.getBlockBody(any()))
+        .thenReturn(Optional.of(new BlockBody(Collections.emptyList(), Collections.emptyList())));
+    when(protocolSchedule.getByBlockNumber(anyLong())).thenReturn(protocolSpec);
+    when(protocolSpec.getBlockProcessor()).thenReturn(blockProcessor);
+    when(successfulResult.isSuccessful()).thenReturn(true);
+    when(blockProcessor.processBlock(any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              final MutableWorldState blockWorldState = invocation.getArgument(1);
+              final Block block = invocation.getArgument(2);
+              applyBlockChanges(blockWorldState, block.getHeader().getNumber());
+              blockWorldState.persist();
+              return successfulResult;
+            });
+  }
+
+  @Test
+  public void nothingIsExecutedWhenChainHeadStateIsAvailable() {
+    persistStateUpTo(CHAIN_HEAD);
+    setUpChain(stateRoots);
+
+    WorldStateRecovery.recoverChainHeadState(blockchain, worldStateArchive, protocolSchedule);
+
+    verify(blockProcessor, never()).processBlock(any(), any(), any());
+  }
+
+  @Test
+  public void blocksAfterLastAvailableStateAreExecuted() {
+    persistStateUpTo(1);
+    setUpChain(stateRoots);
+
+    WorldStateRecovery.recoverChainHeadState(blockchain, worldStateArchive, protocolSchedule);
+
+    verify(blockProcessor, times(2)).processBlock(any(), any(), any());
+    assertThat(worldStateArchive.isWorldStateAvailable(stateRoots[CHAIN_HEAD])).isTrue();
+  }
+
+  @Test
+  public void nothingIsExecutedWhenNoStateIsAvailable() {
+    setUpChain(stateRoots);
+
+    WorldStateRecovery.recoverChainHeadState(blockchain, worldStateArchive, protocolSchedule);
+
+    verify(blockProcessor, never()).processBlock(any(), any(), any());
+  }
+
+  @Test
+  public void failsWhenExecutedStateDoesNotMatchHeader() {
+    persistStateUpTo(1);
+    final Hash[] badStateRoots = stateRoots.clone();
+    badStateRoots[2] = Hash.ZERO;
+    setUpChain(badStateRoots);
+
+    assertThatThrownBy(
+            () ->
+                WorldStateRecovery.recoverChainHeadState(
+                    blockchain, worldStateArchive, protocolSchedule))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private void persistStateUpTo(final int blockNumber) {
+    final MutableWorldState worldState = worldStateArchive.getMutable();
+    for (int i = 0; i <= blockNumber; i++) {
+      applyBlockChanges(worldState, i);
+    }
+    worldState.persist();
+  }
+
+  private void setUpChain(final Hash[] blockStateRoots) {
+    for (int blockNumber = 0; blockNumber <= CHAIN_HEAD; blockNumber++) {
+      final BlockHeader header =
+          new BlockHeaderTestFixture()
+              .number(blockNumber)
+              .stateRoot(blockStateRoots[blockNumber])
+              .buildHeader();
+      when(blockchain.getBlockHeader(blockNumber)).thenReturn(Optional.of(header));
+    }
+  }
+
+  private static void applyBlockChanges(
+      final MutableWorldState worldState, final long blockNumber) {
+    final WorldUpdater updater = worldState.updater();
+    updater.getOrCreate(ADDRESS).setBalance(Wei.of(blockNumber + 1));
+    updater.commit();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.worldstate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableAccount;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateVerifier.Problem;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateVerifier.ProblemType;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateVerifier.Result;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class WorldStateVerifierTest {
+
+  private static final int ACCOUNT_COUNT = 300;
+  private static final int CONTRACT_INTERVAL = 10;
+  private static final int SLOTS_PER_CONTRACT = 20;
+
+  private final InMemoryKeyValueStorage keyValueStorage = new InMemoryKeyValueStorage();
+  private final KeyValueStorageWorldStateStorage worldStateStorage =
+      new KeyValueStorageWorldStateStorage(keyValueStorage);
+  private final MutableWorldState worldState = new DefaultMutableWorldState(worldStateStorage);
+  private final WorldStateVerifier verifier = new WorldStateVerifier(worldStateStorage, 4);
+
+  @Test
+  public void emptyWorldStateIsComplete() {
+    final Result result = verifier.verify(Hash.EMPTY_TRIE_HASH);
+
+    assertThat(result.isComplete()).isTrue();
+    assertThat(result.getNodeCount()).isZero();
+  }
+
+  @Test
+  public void completeWorldStateHasNoProblems() {
+    populateWorldState();
+
+    final Result result = verifier.verify(worldState.rootHash());
+
+    assertThat(result.isComplete()).isTrue();
+    assertThat(result.getProblems()).isEmpty();
+    assertThat(result.getAccountCount()).isEqualTo(ACCOUNT_COUNT);
+    // Contracts share their code, which is only checked once
+    assertThat(result.getCodeCount()).isEqualTo(1);
+    assertThat(result.getStorageSlotCount())
+        .isEqualTo(ACCOUNT_COUNT / CONTRACT_INTERVAL * SLOTS_PER_CONTRACT);
+    assertThat(result.getNodeCount()).isGreaterThan(ACCOUNT_COUNT);
+  }
+
+  @Test
+  public void reportsMissingStorageTrieNode() {
+    populateWorldState();
+    final Hash storageRoot = storedAccount(address(0)).getStorageRoot();
+    remove(storageRoot);
+
+    final Result result = verifier.verify(worldState.rootHash());
+
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.getProblems()).hasSize(1);
+    final Problem problem = result.getProblems().get(0);
+    assertThat(problem.getType()).isEqualTo(ProblemType.MISSING_NODE);
+    assertThat(problem.getHash()).isEqualTo(storageRoot);
+    assertThat(problem.getStorageRoot()).contains(storageRoot);
+  }
+
+  @Test
+  public void reportsCorruptAccountTrieNode() {
+    populateWorldState();
+    final Hash stateRoot = worldState.rootHash();
+    final Transaction transaction = keyValueStorage.startTransaction();
+    transaction.put(stateRoot, MerklePatriciaTrie.EMPTY_TRIE_NODE);
+    transaction.commit();
+
+    final Result result = verifier.verify(stateRoot);
+
+    assertThat(result.getProblems()).hasSize(1);
+    assertThat(result.getProblems().get(0).getType()).isEqualTo(ProblemType.CORRUPT_NODE);
+    assertThat(result.getProblems().get(0).getStorageRoot()).isEmpty();
+    assertThat(result.getAccountCount()).isZero();
+  }
+
+  @Test
+  public void reportsMissingCodeOnce() {
+    populateWorldState();
+    final Hash codeHash = worldState.get(address(0)).getCodeHash();
+    remove(codeHash);
+
+    final Result result = verifier.verify(worldState.rootHash());
+
+    assertThat(result.getProblemCount()).isEqualTo(1);
+    assertThat(result.getProblems().get(0).getType()).isEqualTo(ProblemType.MISSING_CODE);
+    assertThat(result.getProblems().get(0).getHash()).isEqualTo(codeHash);
+  }
+
+  @Test
+  public void sharedStorageTrieIsCheckedOnce() {
+    final WorldUpdater updater = worldState.updater();
+    for (int i = 0; i < CONTRACT_INTERVAL; i++) {
+      // Identical storage gives every account the same storage root
+      final MutableAccount account = updater.createAccount(address(i));
+      for (int slot = 0; slot < SLOTS_PER_CONTRACT; slot++) {
+        account.setStorageValue(UInt256.of(slot), UInt256.of(slot + 1));
+      }
+    }
+    updater.commit();
+    worldState.persist();
+    remove(storedAccount(address(0)).getStorageRoot());
+
+    final Result result = verifier.verify(worldState.rootHash());
+
+    assertThat(result.getAccountCount()).isEqualTo(CONTRACT_INTERVAL);
+    assertThat(result.getProblemCount()).isEqualTo(1);
+    assertThat(result.getProblems().get(0).getType()).isEqualTo(ProblemType.MISSING_NODE);
+  }
+
+  private void populateWorldState() {
+    final WorldUpdater updater = worldState.updater();
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      final MutableAccount account = updater.createAccount(address(i));
+      account.setBalance(Wei.of(i + 1));
+      if (i % CONTRACT_INTERVAL == 0) {
+        // Every contract shares the same code but has its own storage
+        account.setCode(BytesValue.fromHexString("0x60016002"));
+        for (int slot = 0; slot < SLOTS_PER_CONTRACT; slot++) {
+          account.setStorageValue(UInt256.of(slot), UInt256.of(i * SLOTS_PER_CONTRACT + slot + 1));
+        }
+      }
+    }
+    updater.commit();
+    worldState.persist();
+  }
+
+  private void remove(final Hash key) {
+    assertThat(keyValueStorage.get(key)).isNotEqualTo(Optional.empty());
+    final Transaction transaction = keyValueStorage.startTransaction();
+    transaction.remove(key);
+    transaction.commit();
+  }
+
+  private StateTrieAccountValue storedAccount(final Address address) {
+    final MerklePatriciaTrie<Bytes32, BytesValue> accountTrie =
+        new StoredMerklePatriciaTrie<>(
+            worldStateStorage::getAccountStateTrieNode,
+            worldState.rootHash(),
+            Function.identity(),
+            Function.identity());
+    return StateTrieAccountValue.readFrom(RLP.input(accountTrie.get(Hash.hash(address)).get()));
+  }
+
+  private static Address address(final int index) {
+    return Address.fromHexString(String.format("0x%040x", index + 1));
+  }
+}
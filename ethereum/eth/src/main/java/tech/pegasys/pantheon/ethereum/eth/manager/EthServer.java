@@ -32,12 +32,14 @@ import tech.pegasys.pantheon.ethereum.p2p.api.PeerConnection.PeerNotConnected;
 import tech.pegasys.pantheon.ethereum.p2p.wire.messages.DisconnectMessage.DisconnectReason;
 import tech.pegasys.pantheon.ethereum.rlp.RLPException;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateArchive;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.google.common.collect.Lists;
@@ -141,42 +143,75 @@ class EthServer {
     final Collection<BlockHeader> resp;
     if (firstHeader == null) {
       resp = Collections.emptyList();
-    } else {
+    } else if (skip == 0 && !reversed) {
+      // Consecutive headers can be found with a single scan of the canonical index
       resp = Lists.newArrayList(firstHeader);
+      resp.addAll(
+          getHeaders(
+              blockchain,
+              blockchain.getBlockHashesByNumber(firstHeader.getNumber() + 1, maxHeaders - 1)));
+    } else {
+      final List<Long> blockNumbers = new ArrayList<>();
       final long numberDelta = reversed ? -(skip + 1) : (skip + 1);
       for (int i = 1; i < maxHeaders; i++) {
         final long blockNumber = firstHeader.getNumber() + i * numberDelta;
         if (blockNumber < BlockHeader.GENESIS_BLOCK_NUMBER) {
           break;
         }
-        final Optional<BlockHeader> maybeHeader = blockchain.getBlockHeader(blockNumber);
-        if (maybeHeader.isPresent()) {
-          resp.add(maybeHeader.get());
-        } else {
-          break;
-        }
+        blockNumbers.add(blockNumber);
       }
+      resp = Lists.newArrayList(firstHeader);
+      resp.addAll(getCanonicalHeaders(blockchain, blockNumbers));
     }
     return BlockHeadersMessage.create(resp);
   }
 
+  /**
+   * Looks up the canonical headers at the given block numbers, stopping at the first one that is
+   * not available.
+   */
+  private static List<BlockHeader> getCanonicalHeaders(
+      final Blockchain blockchain, final List<Long> blockNumbers) {
+    final Map<Long, Hash> hashesByNumber = blockchain.getBlockHashesByNumber(blockNumbers);
+    final List<Hash> hashes = new ArrayList<>(blockNumbers.size());
+    for (final Long blockNumber : blockNumbers) {
+      final Hash hash = hashesByNumber.get(blockNumber);
+      if (hash == null) {
+        break;
+      }
+      hashes.add(hash);
+    }
+    return getHeaders(blockchain, hashes);
+  }
+
+  /** Looks up the headers with the given hashes, stopping at the first one that is missing. */
+  private static List<BlockHeader> getHeaders(
+      final Blockchain blockchain, final List<Hash> hashes) {
+    final Map<Hash, BlockHeader> headersByHash = blockchain.getBlockHeaders(hashes);
+    final List<BlockHeader> headers = new ArrayList<>(hashes.size());
+    for (final Hash hash : hashes) {
+      final BlockHeader header = headersByHash.get(hash);
+      if (header == null) {
+        break;
+      }
+      headers.add(header);
+    }
+    return headers;
+  }
+
   static MessageData constructGetBodiesResponse(
       final Blockchain blockchain, final MessageData message, final int requestLimit) {
     final GetBlockBodiesMessage getBlockBodiesMessage = GetBlockBodiesMessage.readFrom(message);
     final Iterable<Hash> hashes = getBlockBodiesMessage.hashes();
 
+    final List<Hash> requestedHashes = limit(hashes, requestLimit);
+    final Map<Hash, BlockBody> bodiesByHash = blockchain.getBlockBodies(requestedHashes);
     final Collection<BlockBody> bodies = new ArrayList<>();
-    int count = 0;
-    for (final Hash hash : hashes) {
-      if (count >= requestLimit) {
-        break;
-      }
-      count++;
-      final Optional<BlockBody> maybeBody = blockchain.getBlockBody(hash);
-      if (!maybeBody.isPresent()) {
-        continue;
+    for (final Hash hash : requestedHashes) {
+      final BlockBody body = bodiesByHash.get(hash);
+      if (body != null) {
+        bodies.add(body);
       }
-      bodies.add(maybeBody.get());
     }
     return BlockBodiesMessage.create(bodies);
   }
@@ -209,16 +244,27 @@ class EthServer {
     final GetNodeDataMessage getNodeDataMessage = GetNodeDataMessage.readFrom(message);
     final Iterable<Hash> hashes = getNodeDataMessage.hashes();
 
+    final List<Hash> requestedHashes = limit(hashes, requestLimit);
+    final Map<Bytes32, BytesValue> nodeDataByHash =
+        worldStateArchive.getAllNodeData(requestedHashes);
     final List<BytesValue> nodeData = new ArrayList<>();
-    int count = 0;
+    for (final Hash hash : requestedHashes) {
+      final BytesValue data = nodeDataByHash.get(hash);
+      if (data != null) {
+        nodeData.add(data);
+      }
+    }
+    return NodeDataMessage.create(nodeData);
+  }
+
+  private static List<Hash> limit(final Iterable<Hash> hashes, final int requestLimit) {
+    final List<Hash> limited = new ArrayList<>();
     for (final Hash hash : hashes) {
-      if (count >= requestLimit) {
+      if (limited.size() >= requestLimit) {
         break;
       }
-      count++;
-
-      worldStateArchive.getNodeData(hash).ifPresent(nodeData::add);
+      limited.add(hash);
     }
-    return NodeDataMessage.create(nodeData);
+    return limited;
   }
 }
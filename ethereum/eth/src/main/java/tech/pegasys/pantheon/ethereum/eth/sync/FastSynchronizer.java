@@ -26,12 +26,14 @@ import tech.pegasys.pantheon.ethereum.mainnet.ProtocolSchedule;
 import tech.pegasys.pantheon.ethereum.mainnet.ScheduleBasedBlockHashFunction;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
-import tech.pegasys.pantheon.services.queue.RocksDbTaskQueue;
+import tech.pegasys.pantheon.services.queue.HybridTaskQueue;
+import tech.pegasys.pantheon.services.queue.PriorityTaskQueue;
 import tech.pegasys.pantheon.services.queue.TaskQueue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -89,7 +91,8 @@ class FastSynchronizer<C> {
     }
 
     final TaskQueue<NodeDataRequest> stateQueue =
-        createWorldStateDownloaderQueue(getStateQueueDirectory(dataDirectory), metricsSystem);
+        createWorldStateDownloaderQueue(
+            getStateQueueDirectory(dataDirectory), syncConfig, metricsSystem);
     final WorldStateDownloader worldStateDownloader =
         new WorldStateDownloader(
             ethContext,
@@ -139,13 +142,14 @@ class FastSynchronizer<C> {
   }
 
   private static Path getStateQueueDirectory(final Path dataDirectory) {
-    final Path queueDataDir = getFastSyncDataDirectory(dataDirectory).resolve("statequeue");
+    final Path queueDataDir =
+        getFastSyncDataDirectory(dataDirectory).resolve(FastSyncStateStorage.STATE_QUEUE_PATH);
     ensureDirectoryExists(queueDataDir.toFile());
     return queueDataDir;
   }
 
   private static Path getFastSyncDataDirectory(final Path dataDirectory) {
-    final Path fastSyncDataDir = dataDirectory.resolve("fastsync");
+    final Path fastSyncDataDir = dataDirectory.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH);
     ensureDirectoryExists(fastSyncDataDir.toFile());
     return fastSyncDataDir;
   }
@@ -157,8 +161,27 @@ class FastSynchronizer<C> {
   }
 
   private static TaskQueue<NodeDataRequest> createWorldStateDownloaderQueue(
-      final Path dataDirectory, final MetricsSystem metricsSystem) {
-    return RocksDbTaskQueue.create(
-        dataDirectory, NodeDataRequest::serialize, NodeDataRequest::deserialize, metricsSystem);
+      final Path dataDirectory,
+      final SynchronizerConfiguration syncConfig,
+      final MetricsSystem metricsSystem) {
+    if (syncConfig.isWorldStateDepthFirst()) {
+      return PriorityTaskQueue.create(
+          dataDirectory,
+          NodeDataRequest::serialize,
+          NodeDataRequest::deserialize,
+          Comparator.comparingInt(NodeDataRequest::getDepth).reversed(),
+          syncConfig.getWorldStateQueueMemoryCapacity(),
+          PriorityTaskQueue.DEFAULT_CHECKPOINT_INTERVAL,
+          syncConfig.getWorldStateQueueStorageConfiguration(),
+          metricsSystem);
+    }
+    return HybridTaskQueue.create(
+        dataDirectory,
+        NodeDataRequest::serialize,
+        NodeDataRequest::deserialize,
+        syncConfig.getWorldStateQueueMemoryCapacity(),
+        syncConfig.getWorldStateQueueMemoryCapacity(),
+        syncConfig.getWorldStateQueueStorageConfiguration(),
+        metricsSystem);
   }
 }
@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.ethereum.eth.sync;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.time.Duration;
@@ -30,6 +31,7 @@ public class SynchronizerConfiguration {
   private static final int DEFAULT_WORLD_STATE_HASH_COUNT_PER_REQUEST = 384;
   private static final int DEFAULT_WORLD_STATE_REQUEST_PARALLELISM = 10;
   private static final int DEFAULT_WORLD_STATE_MAX_REQUESTS_WITHOUT_PROGRESS = 100;
+  private static final int DEFAULT_WORLD_STATE_QUEUE_MEMORY_CAPACITY = 1_000_000;
 
   // Fast sync config
   private final int fastSyncPivotDistance;
@@ -39,6 +41,9 @@ public class SynchronizerConfiguration {
   private final int worldStateHashCountPerRequest;
   private final int worldStateRequestParallelism;
   private final int worldStateMaxRequestsWithoutProgress;
+  private final int worldStateQueueMemoryCapacity;
+  private final boolean worldStateDepthFirst;
+  private final RocksDbConfiguration worldStateQueueStorageConfiguration;
 
   // Block propagation config
   private final Range<Long> blockPropagationRange;
@@ -67,6 +72,9 @@ public class SynchronizerConfiguration {
       final int worldStateHashCountPerRequest,
       final int worldStateRequestParallelism,
       final int worldStateMaxRequestsWithoutProgress,
+      final int worldStateQueueMemoryCapacity,
+      final boolean worldStateDepthFirst,
+      final RocksDbConfiguration worldStateQueueStorageConfiguration,
       final Range<Long> blockPropagationRange,
       final SyncMode syncMode,
       final long downloaderChangeTargetThresholdByHeight,
@@ -87,6 +95,9 @@ public class SynchronizerConfiguration {
     this.worldStateHashCountPerRequest = worldStateHashCountPerRequest;
     this.worldStateRequestParallelism = worldStateRequestParallelism;
     this.worldStateMaxRequestsWithoutProgress = worldStateMaxRequestsWithoutProgress;
+    this.worldStateQueueMemoryCapacity = worldStateQueueMemoryCapacity;
+    this.worldStateDepthFirst = worldStateDepthFirst;
+    this.worldStateQueueStorageConfiguration = worldStateQueueStorageConfiguration;
     this.blockPropagationRange = blockPropagationRange;
     this.syncMode = syncMode;
     this.downloaderChangeTargetThresholdByHeight = downloaderChangeTargetThresholdByHeight;
@@ -215,6 +226,37 @@ public class SynchronizerConfiguration {
     return worldStateMaxRequestsWithoutProgress;
   }
 
+  /**
+   * The number of pending world state requests held in memory before further requests are spilled
+   * to disk.
+   *
+   * @return the memory capacity of the world state request queue
+   */
+  public int getWorldStateQueueMemoryCapacity() {
+    return worldStateQueueMemoryCapacity;
+  }
+
+  /**
+   * Whether world state requests are served deepest first rather than in the order they were
+   * queued. Walking the trie depth first keeps the number of pending requests small. Either way at
+   * most {@link #getWorldStateQueueMemoryCapacity()} pending requests are held in memory, with the
+   * shallowest requests spilled to disk beyond that.
+   *
+   * @return true if world state requests are served deepest first
+   */
+  public boolean isWorldStateDepthFirst() {
+    return worldStateDepthFirst;
+  }
+
+  /**
+   * The RocksDB tuning for the database that world state requests are spilled and checkpointed to.
+   *
+   * @return the storage configuration of the world state request queue
+   */
+  public RocksDbConfiguration getWorldStateQueueStorageConfiguration() {
+    return worldStateQueueStorageConfiguration;
+  }
+
   public static class Builder {
     private SyncMode syncMode = SyncMode.FULL;
     private Range<Long> blockPropagationRange = Range.closed(-10L, 30L);
@@ -236,6 +278,10 @@ public class SynchronizerConfiguration {
     private int worldStateRequestParallelism = DEFAULT_WORLD_STATE_REQUEST_PARALLELISM;
     private int worldStateMaxRequestsWithoutProgress =
         DEFAULT_WORLD_STATE_MAX_REQUESTS_WITHOUT_PROGRESS;
+    private int worldStateQueueMemoryCapacity = DEFAULT_WORLD_STATE_QUEUE_MEMORY_CAPACITY;
+    private boolean worldStateDepthFirst = true;
+    private RocksDbConfiguration worldStateQueueStorageConfiguration =
+        RocksDbConfiguration.createDefault();
     private Duration fastSyncMaximumPeerWaitTime = DEFAULT_FAST_SYNC_MAXIMUM_PEER_WAIT_TIME;
 
     public Builder fastSyncPivotDistance(final int distance) {
@@ -339,6 +385,22 @@ public class SynchronizerConfiguration {
       return this;
     }
 
+    public Builder worldStateQueueMemoryCapacity(final int worldStateQueueMemoryCapacity) {
+      this.worldStateQueueMemoryCapacity = worldStateQueueMemoryCapacity;
+      return this;
+    }
+
+    public Builder worldStateDepthFirst(final boolean worldStateDepthFirst) {
+      this.worldStateDepthFirst = worldStateDepthFirst;
+      return this;
+    }
+
+    public Builder worldStateQueueStorageConfiguration(
+        final RocksDbConfiguration worldStateQueueStorageConfiguration) {
+      this.worldStateQueueStorageConfiguration = worldStateQueueStorageConfiguration;
+      return this;
+    }
+
     public Builder fastSyncMaximumPeerWaitTime(final Duration fastSyncMaximumPeerWaitTime) {
       this.fastSyncMaximumPeerWaitTime = fastSyncMaximumPeerWaitTime;
       return this;
@@ -353,6 +415,9 @@ public class SynchronizerConfiguration {
           worldStateHashCountPerRequest,
           worldStateRequestParallelism,
           worldStateMaxRequestsWithoutProgress,
+          worldStateQueueMemoryCapacity,
+          worldStateDepthFirst,
+          worldStateQueueStorageConfiguration,
           blockPropagationRange,
           syncMode,
           downloaderChangeTargetThresholdByHeight,
@@ -36,6 +36,11 @@ import org.apache.logging.log4j.Logger;
  */
 public class FastSyncStateStorage {
   private static final Logger LOG = LogManager.getLogger();
+  /** Directory under the node's data directory holding all fast sync state. */
+  public static final String FAST_SYNC_DATA_PATH = "fastsync";
+  /** Directory under {@link #FAST_SYNC_DATA_PATH} holding the world state download queue. */
+  public static final String STATE_QUEUE_PATH = "statequeue";
+
   private static final String PIVOT_BLOCK_HEADER_FILENAME = "pivotBlockHeader.rlp";
   private final File pivotBlockHeaderFile;
 
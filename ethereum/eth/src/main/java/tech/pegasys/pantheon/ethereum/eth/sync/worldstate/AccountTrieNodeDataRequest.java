@@ -16,13 +16,11 @@ import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.rlp.RLP;
 import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
 import tech.pegasys.pantheon.ethereum.worldstate.StateTrieAccountValue;
-import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage.Updater;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 class AccountTrieNodeDataRequest extends TrieNodeDataRequest {
 
@@ -35,11 +33,6 @@ class AccountTrieNodeDataRequest extends TrieNodeDataRequest {
     updater.putAccountStateTrieNode(getHash(), getData());
   }
 
-  @Override
-  public Optional<BytesValue> getExistingData(final WorldStateStorage worldStateStorage) {
-    return worldStateStorage.getAccountStateTrieNode(getHash());
-  }
-
   @Override
   protected NodeDataRequest createChildNodeDataRequest(final Hash childHash) {
     return NodeDataRequest.createAccountDataRequest(childHash);
@@ -13,13 +13,10 @@
 package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
 
 import tech.pegasys.pantheon.ethereum.core.Hash;
-import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage.Updater;
-import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 class CodeNodeDataRequest extends NodeDataRequest {
 
@@ -37,9 +34,4 @@ class CodeNodeDataRequest extends NodeDataRequest {
     // Code nodes have nothing further to download
     return Collections.emptyList();
   }
-
-  @Override
-  public Optional<BytesValue> getExistingData(final WorldStateStorage worldStateStorage) {
-    return worldStateStorage.getCode(getHash());
-  }
 }
@@ -22,11 +22,12 @@ import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.List;
-import java.util.Optional;
 
 public abstract class NodeDataRequest {
   private final RequestType requestType;
   private final Hash hash;
+  // Distance from the state root, counting storage trie and code nodes as children of the account
+  private int depth = 0;
   private BytesValue data;
   private boolean requiresPersisting = true;
 
@@ -56,6 +57,8 @@ public abstract class NodeDataRequest {
     in.enterList();
     final RequestType requestType = RequestType.fromValue(in.readByte());
     final Hash hash = Hash.wrap(in.readBytes32());
+    // Requests queued before depth was tracked don't include it
+    final int depth = in.isEndOfCurrentList() ? 0 : in.readIntScalar();
     in.leaveList();
 
     final NodeDataRequest deserialized;
@@ -75,6 +78,7 @@ public abstract class NodeDataRequest {
                 + NodeDataRequest.class.getSimpleName());
     }
 
+    deserialized.depth = depth;
     return deserialized;
   }
 
@@ -82,6 +86,7 @@ public abstract class NodeDataRequest {
     out.startList();
     out.writeByte(requestType.getValue());
     out.writeBytesValue(hash);
+    out.writeIntScalar(depth);
     out.endList();
   }
 
@@ -93,6 +98,15 @@ public abstract class NodeDataRequest {
     return hash;
   }
 
+  public int getDepth() {
+    return depth;
+  }
+
+  protected NodeDataRequest setDepth(final int depth) {
+    this.depth = depth;
+    return this;
+  }
+
   public BytesValue getData() {
     return data;
   }
@@ -117,6 +131,4 @@ public abstract class NodeDataRequest {
   protected abstract void doPersist(final WorldStateStorage.Updater updater);
 
   public abstract List<NodeDataRequest> getChildRequests();
-
-  public abstract Optional<BytesValue> getExistingData(final WorldStateStorage worldStateStorage);
 }
@@ -13,13 +13,11 @@
 package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
 
 import tech.pegasys.pantheon.ethereum.core.Hash;
-import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage.Updater;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 class StorageTrieNodeDataRequest extends TrieNodeDataRequest {
 
@@ -32,11 +30,6 @@ class StorageTrieNodeDataRequest extends TrieNodeDataRequest {
     updater.putAccountStorageTrieNode(getHash(), getData());
   }
 
-  @Override
-  public Optional<BytesValue> getExistingData(final WorldStateStorage worldStateStorage) {
-    return worldStateStorage.getAccountStorageTrieNode(getHash());
-  }
-
   @Override
   protected NodeDataRequest createChildNodeDataRequest(final Hash childHash) {
     return NodeDataRequest.createStorageDataRequest(childHash);
@@ -56,6 +56,7 @@ abstract class TrieNodeDataRequest extends NodeDataRequest {
         .map(this::getRequestsFromTrieNodeValue)
         .forEach(requests::addAll);
 
+    requests.forEach(request -> request.setDepth(getDepth() + 1));
     return requests;
   }
 
@@ -23,6 +23,7 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CancellationException;
@@ -157,15 +158,15 @@ class WorldDownloadState {
 
   public synchronized void enqueueRequests(final Collection<NodeDataRequest> requests) {
     if (!internalFuture.isDone()) {
-      requests.forEach(pendingRequests::enqueue);
+      pendingRequests.enqueueAll(requests);
     }
   }
 
-  public synchronized Task<NodeDataRequest> dequeueRequest() {
+  public synchronized List<Task<NodeDataRequest>> dequeueRequests(final int max) {
     if (internalFuture.isDone()) {
-      return null;
+      return Collections.emptyList();
     }
-    return pendingRequests.dequeue();
+    return pendingRequests.dequeue(max);
   }
 
   public synchronized void setRootNodeData(final BytesValue rootNodeData) {
@@ -240,4 +241,8 @@ class WorldDownloadState {
   public synchronized boolean isDownloading() {
     return !internalFuture.isDone();
   }
+
+  public synchronized boolean isCompletedSuccessfully() {
+    return internalFuture.isDone() && !internalFuture.isCompletedExceptionally();
+  }
 }
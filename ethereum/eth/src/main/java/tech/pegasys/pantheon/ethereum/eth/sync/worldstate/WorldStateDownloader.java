@@ -30,6 +30,7 @@ import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.services.queue.TaskQueue;
 import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
 import tech.pegasys.pantheon.util.ExceptionUtils;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.time.Duration;
@@ -55,6 +56,12 @@ import org.apache.logging.log4j.Logger;
 public class WorldStateDownloader {
   private static final Logger LOG = LogManager.getLogger();
 
+  /**
+   * Number of downloaded nodes held by the bulk updater before they are flushed to disk as one
+   * sorted table file. Larger flushes mean fewer, larger files and less compaction later.
+   */
+  static final int BULK_LOAD_FLUSH_SIZE = 100_000;
+
   private final Counter completedRequestsCounter;
   private final Counter retriedRequestsCounter;
   private final Counter existingNodeCounter;
@@ -235,19 +242,29 @@ public class WorldStateDownloader {
       final WorldDownloadState downloadState) {
     final List<Task<NodeDataRequest>> toRequest = new ArrayList<>();
     while (toRequest.size() < hashCountPerRequest) {
-      final Task<NodeDataRequest> pendingRequestTask = downloadState.dequeueRequest();
-      if (pendingRequestTask == null) {
+      final List<Task<NodeDataRequest>> pendingRequestTasks =
+          downloadState.dequeueRequests(hashCountPerRequest - toRequest.size());
+      if (pendingRequestTasks.isEmpty()) {
         break;
       }
-      final NodeDataRequest pendingRequest = pendingRequestTask.getData();
-      final Optional<BytesValue> existingData = pendingRequest.getExistingData(worldStateStorage);
-      if (existingData.isPresent()) {
-        existingNodeCounter.inc();
-        pendingRequest.setData(existingData.get()).setRequiresPersisting(false);
-        downloadState.addToPersistenceQueue(pendingRequestTask);
-        continue;
+
+      // Look up any data we already have locally in one batch rather than node by node
+      final Map<Bytes32, BytesValue> existingData =
+          worldStateStorage.getAllNodeData(
+              pendingRequestTasks.stream()
+                  .map(task -> task.getData().getHash())
+                  .collect(Collectors.toList()));
+      for (final Task<NodeDataRequest> pendingRequestTask : pendingRequestTasks) {
+        final NodeDataRequest pendingRequest = pendingRequestTask.getData();
+        final BytesValue data = existingData.get(pendingRequest.getHash());
+        if (data != null) {
+          existingNodeCounter.inc();
+          pendingRequest.setData(data).setRequiresPersisting(false);
+          downloadState.addToPersistenceQueue(pendingRequestTask);
+        } else {
+          toRequest.add(pendingRequestTask);
+        }
       }
-      toRequest.add(pendingRequestTask);
     }
     return toRequest;
   }
@@ -338,6 +355,8 @@ public class WorldStateDownloader {
   private class PersistNodeDataTask extends AbstractEthTask<Void> {
 
     private final List<Task<NodeDataRequest>> batch;
+    // Tasks whose nodes have been written by the bulk updater but not yet flushed to disk
+    private final List<Task<NodeDataRequest>> unflushed;
     private final BlockHeader header;
     private final WorldDownloadState downloadState;
 
@@ -346,10 +365,29 @@ public class WorldStateDownloader {
       this.header = header;
       this.downloadState = downloadState;
       batch = new ArrayList<>();
+      unflushed = new ArrayList<>();
     }
 
     @Override
     protected void executeTask() {
+      worldStateStorage.startBulkLoad();
+      try {
+        persistUntilDone();
+      } finally {
+        try {
+          if (downloadState.isCompletedSuccessfully()) {
+            worldStateStorage.finishBulkLoad();
+          } else {
+            // Cancelled or stalled, so the download may be resumed and compacting now is wasted
+            worldStateStorage.stopBulkLoad();
+          }
+        } catch (final RuntimeException e) {
+          LOG.error("Unable to finish loading world state", e);
+        }
+      }
+    }
+
+    private void persistUntilDone() {
       while (!isDone()) {
         try {
           final ArrayBlockingQueue<Task<NodeDataRequest>> requestsToPersist =
@@ -359,29 +397,47 @@ public class WorldStateDownloader {
             batch.clear();
             batch.add(task);
             requestsToPersist.drainTo(batch, 1000);
-            final Updater storageUpdater = worldStateStorage.updater();
+            final Updater storageUpdater = worldStateStorage.bulkUpdater();
+            final List<NodeDataRequest> childRequests = new ArrayList<>();
             batch.forEach(
                 taskToPersist -> {
                   final NodeDataRequest request = taskToPersist.getData();
                   request.persist(storageUpdater);
-                  downloadState.enqueueRequests(request.getChildRequests());
-                  taskToPersist.markCompleted();
-                  completedRequestsCounter.inc();
+                  childRequests.addAll(request.getChildRequests());
                 });
             storageUpdater.commit();
+            downloadState.enqueueRequests(childRequests);
+            unflushed.addAll(batch);
+            batch.clear();
+          }
 
-            if (downloadState.shouldRequestRootNode()) {
-              downloadState.enqueueRequest(
-                  NodeDataRequest.createAccountDataRequest(header.getStateRoot()));
-            }
-
-            if (downloadState.checkCompletion(worldStateStorage, header)) {
-              result.get().complete(null);
-            } else {
-              ethContext
-                  .getScheduler()
-                  .scheduleSyncWorkerTask(() -> requestNodeData(header, downloadState));
-            }
+          // Tasks are only completed once their nodes are on disk. Otherwise a download resumed
+          // after a restart could have a node's children queued while the node itself is missing.
+          final boolean shouldFlush =
+              task == null || unflushed.size() >= BULK_LOAD_FLUSH_SIZE || taskQueue.isEmpty();
+          if (shouldFlush && !unflushed.isEmpty()) {
+            worldStateStorage.flushBulkLoad();
+            unflushed.forEach(
+                flushedTask -> {
+                  flushedTask.markCompleted();
+                  completedRequestsCounter.inc();
+                });
+            unflushed.clear();
+          } else if (task == null) {
+            continue;
+          }
+
+          if (downloadState.shouldRequestRootNode()) {
+            downloadState.enqueueRequest(
+                NodeDataRequest.createAccountDataRequest(header.getStateRoot()));
+          }
+
+          if (downloadState.checkCompletion(worldStateStorage, header)) {
+            result.get().complete(null);
+          } else {
+            ethContext
+                .getScheduler()
+                .scheduleSyncWorkerTask(() -> requestNodeData(header, downloadState));
           }
         } catch (final InterruptedException ignore) {
           Thread.currentThread().interrupt();
@@ -390,6 +446,9 @@ public class WorldStateDownloader {
           // Assume we failed to persist any of the requests and ensure we have something
           // scheduled to kick off another round of requests.
           batch.forEach(Task::markFailed);
+          unflushed.forEach(Task::markFailed);
+          batch.clear();
+          unflushed.clear();
           ethContext
               .getScheduler()
               .scheduleSyncWorkerTask(() -> requestNodeData(header, downloadState));
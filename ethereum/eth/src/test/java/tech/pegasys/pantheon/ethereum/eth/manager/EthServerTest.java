@@ -16,17 +16,17 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 import tech.pegasys.pantheon.ethereum.chain.Blockchain;
 import tech.pegasys.pantheon.ethereum.core.Hash;
 import tech.pegasys.pantheon.ethereum.eth.messages.GetNodeDataMessage;
 import tech.pegasys.pantheon.ethereum.eth.messages.NodeDataMessage;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStorageWorldStateStorage;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateArchive;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
-import java.util.Optional;
-
 import org.junit.Before;
 import org.junit.Test;
 
@@ -39,7 +39,9 @@ public class EthServerTest {
   private static final Hash HASH2 = Hash.hash(VALUE2);
   private static final Hash HASH3 = Hash.hash(VALUE3);
   private final Blockchain blockchain = mock(Blockchain.class);
-  private final WorldStateArchive worldStateArchive = mock(WorldStateArchive.class);
+  private final WorldStateStorage worldStateStorage =
+      new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+  private final WorldStateArchive worldStateArchive = new WorldStateArchive(worldStateStorage);
   private final EthPeer ethPeer = mock(EthPeer.class);
   private final EthMessages ethMessages = new EthMessages();
 
@@ -50,8 +52,8 @@ public class EthServerTest {
 
   @Test
   public void shouldRespondToNodeDataRequests() throws Exception {
-    when(worldStateArchive.getNodeData(HASH1)).thenReturn(Optional.of(VALUE1));
-    when(worldStateArchive.getNodeData(HASH2)).thenReturn(Optional.of(VALUE2));
+    storeNodeData(VALUE1);
+    storeNodeData(VALUE2);
     ethMessages.dispatch(new EthMessage(ethPeer, GetNodeDataMessage.create(asList(HASH1, HASH2))));
 
     verify(ethPeer).send(NodeDataMessage.create(asList(VALUE1, VALUE2)));
@@ -59,8 +61,7 @@ public class EthServerTest {
 
   @Test
   public void shouldHandleDataBeingUnavailableWhenRespondingToNodeDataRequests() throws Exception {
-    when(worldStateArchive.getNodeData(HASH1)).thenReturn(Optional.of(VALUE1));
-    when(worldStateArchive.getNodeData(HASH2)).thenReturn(Optional.empty());
+    storeNodeData(VALUE1);
     ethMessages.dispatch(new EthMessage(ethPeer, GetNodeDataMessage.create(asList(HASH1, HASH2))));
 
     verify(ethPeer).send(NodeDataMessage.create(singletonList(VALUE1)));
@@ -68,8 +69,8 @@ public class EthServerTest {
 
   @Test
   public void shouldLimitNumberOfResponsesToNodeDataRequests() throws Exception {
-    when(worldStateArchive.getNodeData(HASH1)).thenReturn(Optional.of(VALUE1));
-    when(worldStateArchive.getNodeData(HASH2)).thenReturn(Optional.of(VALUE2));
+    storeNodeData(VALUE1);
+    storeNodeData(VALUE2);
     ethMessages.dispatch(
         new EthMessage(ethPeer, GetNodeDataMessage.create(asList(HASH1, HASH2, HASH3))));
 
@@ -79,12 +80,17 @@ public class EthServerTest {
   @Test
   public void shouldLimitTheNumberOfNodeDataResponsesLookedUpNotTheNumberReturned()
       throws Exception {
-    when(worldStateArchive.getNodeData(HASH1)).thenReturn(Optional.of(VALUE1));
-    when(worldStateArchive.getNodeData(HASH2)).thenReturn(Optional.empty());
-    when(worldStateArchive.getNodeData(HASH3)).thenReturn(Optional.of(VALUE3));
+    storeNodeData(VALUE1);
+    storeNodeData(VALUE3);
     ethMessages.dispatch(
         new EthMessage(ethPeer, GetNodeDataMessage.create(asList(HASH1, HASH2, HASH3))));
 
     verify(ethPeer).send(NodeDataMessage.create(singletonList(VALUE1)));
   }
+
+  private void storeNodeData(final BytesValue value) {
+    final WorldStateStorage.Updater updater = worldStateStorage.updater();
+    updater.putCode(value);
+    updater.commit();
+  }
 }
@@ -15,6 +15,17 @@ package tech.pegasys.pantheon.ethereum.eth.sync.worldstate;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.ethereum.trie.MerklePatriciaTrie;
+import tech.pegasys.pantheon.ethereum.trie.StoredMerklePatriciaTrie;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 
 import org.junit.Test;
 
@@ -47,6 +58,53 @@ public class NodeDataRequestTest {
     assertThat(sedeRequest).isInstanceOf(CodeNodeDataRequest.class);
   }
 
+  @Test
+  public void serializesRequestDepth() {
+    BlockDataGenerator gen = new BlockDataGenerator(0);
+    NodeDataRequest request = NodeDataRequest.createStorageDataRequest(gen.hash()).setDepth(7);
+    NodeDataRequest sedeRequest = serializeThenDeserialize(request);
+    assertRequestsEquals(sedeRequest, request);
+    assertThat(sedeRequest.getDepth()).isEqualTo(7);
+  }
+
+  @Test
+  public void deserializesRequestsWithoutDepth() {
+    BlockDataGenerator gen = new BlockDataGenerator(0);
+    Hash hash = gen.hash();
+    BytesValue encoded =
+        RLP.encode(
+            out -> {
+              out.startList();
+              out.writeByte(RequestType.ACCOUNT_TRIE_NODE.getValue());
+              out.writeBytesValue(hash);
+              out.endList();
+            });
+    NodeDataRequest sedeRequest = NodeDataRequest.deserialize(encoded);
+    assertThat(sedeRequest.getHash()).isEqualTo(hash);
+    assertThat(sedeRequest.getDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void childRequestsAreOneLevelDeeper() {
+    final Map<Bytes32, BytesValue> nodes = new HashMap<>();
+    final MerklePatriciaTrie<Bytes32, BytesValue> trie =
+        new StoredMerklePatriciaTrie<>(
+            hash -> Optional.ofNullable(nodes.get(hash)), Function.identity(), Function.identity());
+    BlockDataGenerator gen = new BlockDataGenerator(0);
+    for (int i = 0; i < 20; i++) {
+      trie.put(gen.hash(), gen.bytesValue(40, 60));
+    }
+    trie.commit(nodes::put);
+
+    NodeDataRequest request =
+        NodeDataRequest.createStorageDataRequest(Hash.wrap(trie.getRootHash())).setDepth(3);
+    request.setData(nodes.get(trie.getRootHash()));
+
+    assertThat(request.getChildRequests())
+        .isNotEmpty()
+        .allSatisfy(child -> assertThat(child.getDepth()).isEqualTo(4));
+  }
+
   private NodeDataRequest serializeThenDeserialize(final NodeDataRequest request) {
     return NodeDataRequest.deserialize(NodeDataRequest.serialize(request));
   }
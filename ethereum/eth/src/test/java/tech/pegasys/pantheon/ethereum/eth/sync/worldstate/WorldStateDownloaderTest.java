@@ -59,6 +59,7 @@ import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage.Updater;
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import tech.pegasys.pantheon.services.queue.InMemoryTaskQueue;
+import tech.pegasys.pantheon.services.queue.PriorityTaskQueue;
 import tech.pegasys.pantheon.services.queue.TaskQueue;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
@@ -66,6 +67,7 @@ import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -86,12 +88,16 @@ import java.util.stream.StreamSupport;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class WorldStateDownloaderTest {
 
   private static final Hash EMPTY_TRIE_ROOT = Hash.wrap(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
 
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
   private final BlockDataGenerator dataGen = new BlockDataGenerator(1);
   private final ExecutorService persistenceThread =
       Executors.newSingleThreadExecutor(
@@ -136,6 +142,23 @@ public class WorldStateDownloaderTest {
     downloadAvailableWorldStateFromPeers(5, 1, 50, 50);
   }
 
+  @Test
+  public void downloadWorldStateFromPeers_deepestRequestsFirst() throws Exception {
+    final int memoryCapacity = 20;
+    try (final PriorityTaskQueue<NodeDataRequest> queue =
+        PriorityTaskQueue.create(
+            folder.newFolder().toPath(),
+            NodeDataRequest::serialize,
+            NodeDataRequest::deserialize,
+            Comparator.comparingInt(NodeDataRequest::getDepth).reversed(),
+            memoryCapacity,
+            new NoOpMetricsSystem())) {
+      downloadAvailableWorldStateFromPeers(5, 100, 10, 10, this::respondFully, queue);
+      // The shallowest requests are spilled to disk rather than held in memory
+      assertThat(queue.getPeakMemorySize()).isEqualTo(memoryCapacity);
+    }
+  }
+
   @Test
   public void downloadEmptyWorldState() {
     final EthProtocolManager ethProtocolManager =
@@ -379,7 +402,7 @@ public class WorldStateDownloaderTest {
 
     final TaskQueue<NodeDataRequest> queue = spy(new InMemoryTaskQueue<>());
     final WorldStateStorage localStorage =
-        new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
+        spy(new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage()));
 
     final WorldStateDownloader downloader =
         createDownloader(ethProtocolManager.ethContext(), localStorage, queue);
@@ -421,6 +444,10 @@ public class WorldStateDownloaderTest {
     verify(queue, times(1)).clear();
     verify(queue, never()).dequeue();
     verify(queue, never()).enqueue(any());
+    // The bulk load is flushed so it can be resumed, but not compacted
+    verify(localStorage, times(1)).startBulkLoad();
+    verify(localStorage, times(1)).stopBulkLoad();
+    verify(localStorage, never()).finishBulkLoad();
     // Target world state should not be available
     assertThat(localStorage.isWorldStateAvailable(header.getStateRoot())).isFalse();
   }
@@ -810,6 +837,22 @@ public class WorldStateDownloaderTest {
       final int hashesPerRequest,
       final int maxOutstandingRequests,
       final NetworkResponder networkResponder) {
+    downloadAvailableWorldStateFromPeers(
+        peerCount,
+        accountCount,
+        hashesPerRequest,
+        maxOutstandingRequests,
+        networkResponder,
+        new InMemoryTaskQueue<>());
+  }
+
+  private void downloadAvailableWorldStateFromPeers(
+      final int peerCount,
+      final int accountCount,
+      final int hashesPerRequest,
+      final int maxOutstandingRequests,
+      final NetworkResponder networkResponder,
+      final TaskQueue<NodeDataRequest> queue) {
     final EthProtocolManager ethProtocolManager =
         EthProtocolManagerTestUtil.create(new EthScheduler(1, 1, 1, new NoOpMetricsSystem()));
 
@@ -837,7 +880,6 @@ public class WorldStateDownloaderTest {
             .getHeader();
     assertThat(otherStateRoot).isNotEqualTo(stateRoot); // Sanity check
 
-    final TaskQueue<NodeDataRequest> queue = new InMemoryTaskQueue<>();
     final WorldStateStorage localStorage =
         new KeyValueStorageWorldStateStorage(new InMemoryKeyValueStorage());
     final WorldStateArchive localWorldStateArchive = new WorldStateArchive(localStorage);
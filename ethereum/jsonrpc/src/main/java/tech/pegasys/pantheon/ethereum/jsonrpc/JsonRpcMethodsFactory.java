@@ -21,6 +21,8 @@ import tech.pegasys.pantheon.ethereum.core.Synchronizer;
 import tech.pegasys.pantheon.ethereum.core.TransactionPool;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterManager;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminAddPeer;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminCreateSnapshot;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminCreateSnapshot.Snapshotter;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminNodeInfo;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminPeers;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.DebugMetrics;
@@ -124,7 +126,8 @@ public class JsonRpcMethodsFactory {
       final Collection<RpcApi> rpcApis,
       final FilterManager filterManager,
       final Optional<AccountWhitelistController> accountsWhitelistController,
-      final PrivacyParameters privacyParameters) {
+      final PrivacyParameters privacyParameters,
+      final Snapshotter snapshotter) {
     final BlockchainQueries blockchainQueries =
         new BlockchainQueries(blockchain, worldStateArchive);
     return methods(
@@ -142,7 +145,8 @@ public class JsonRpcMethodsFactory {
         supportedCapabilities,
         accountsWhitelistController,
         rpcApis,
-        privacyParameters);
+        privacyParameters,
+        snapshotter);
   }
 
   public Map<String, JsonRpcMethod> methods(
@@ -160,7 +164,8 @@ public class JsonRpcMethodsFactory {
       final Set<Capability> supportedCapabilities,
       final Optional<AccountWhitelistController> accountsWhitelistController,
       final Collection<RpcApi> rpcApis,
-      final PrivacyParameters privacyParameters) {
+      final PrivacyParameters privacyParameters,
+      final Snapshotter snapshotter) {
     final Map<String, JsonRpcMethod> enabledMethods = new HashMap<>();
     if (!rpcApis.isEmpty()) {
       addMethods(enabledMethods, new RpcModules(rpcApis));
@@ -270,7 +275,8 @@ public class JsonRpcMethodsFactory {
           new AdminAddPeer(p2pNetwork, parameter),
           new AdminNodeInfo(
               clientVersion, networkId, genesisConfigOptions, p2pNetwork, blockchainQueries),
-          new AdminPeers(p2pNetwork));
+          new AdminPeers(p2pNetwork),
+          new AdminCreateSnapshot(snapshotter, parameter));
     }
     if (rpcApis.contains(RpcApis.EEA)) {
       addMethods(
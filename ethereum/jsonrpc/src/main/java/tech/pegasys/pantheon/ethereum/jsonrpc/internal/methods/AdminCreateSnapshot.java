@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods;
+
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.JsonRpcRequest;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.JsonRpcParameter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcError;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcErrorResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcSuccessResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.results.SnapshotResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Takes a snapshot of the running node's database that another node can be started from. The only
+ * parameter is the absolute path of the directory on the node's file system to write the snapshot
+ * to, which must not exist yet.
+ */
+public class AdminCreateSnapshot implements JsonRpcMethod {
+  private static final Logger LOG = LogManager.getLogger();
+  private final Snapshotter snapshotter;
+  private final JsonRpcParameter parameters;
+
+  public AdminCreateSnapshot(final Snapshotter snapshotter, final JsonRpcParameter parameters) {
+    this.snapshotter = snapshotter;
+    this.parameters = parameters;
+  }
+
+  @Override
+  public String getName() {
+    return "admin_createSnapshot";
+  }
+
+  @Override
+  public JsonRpcResponse response(final JsonRpcRequest req) {
+    if (req.getParamLength() != 1) {
+      return new JsonRpcErrorResponse(req.getId(), JsonRpcError.INVALID_PARAMS);
+    }
+    try {
+      final Path snapshotDirectory =
+          Paths.get(parameters.required(req.getParams(), 0, String.class));
+      // Relative paths would depend on the node's working directory, and existing files are never
+      // overwritten
+      if (!snapshotDirectory.isAbsolute() || Files.exists(snapshotDirectory)) {
+        return new JsonRpcErrorResponse(req.getId(), JsonRpcError.INVALID_PARAMS);
+      }
+      return new JsonRpcSuccessResponse(req.getId(), snapshotter.snapshot(snapshotDirectory));
+    } catch (final IllegalArgumentException e) {
+      // Includes missing parameters, malformed paths and directories created since the check above
+      return new JsonRpcErrorResponse(req.getId(), JsonRpcError.INVALID_PARAMS);
+    } catch (final UnsupportedOperationException e) {
+      return new JsonRpcErrorResponse(req.getId(), JsonRpcError.SNAPSHOT_NOT_SUPPORTED);
+    } catch (final IOException | RuntimeException e) {
+      LOG.error("Unable to create snapshot", e);
+      return new JsonRpcErrorResponse(req.getId(), JsonRpcError.INTERNAL_ERROR);
+    }
+  }
+
+  @FunctionalInterface
+  public interface Snapshotter {
+
+    /**
+     * Writes a snapshot of the database to the given directory.
+     *
+     * @param snapshotDirectory the directory to write the snapshot to
+     * @return the chain head the snapshot was taken at
+     * @throws IOException On Failure
+     */
+    SnapshotResult snapshot(Path snapshotDirectory) throws IOException;
+  }
+}
@@ -42,6 +42,8 @@ import com.google.common.collect.Lists;
 
 public class BlockchainQueries {
 
+  private static final int BLOCK_HASH_BATCH_SIZE = 1_000;
+
   private final WorldStateArchive worldStateArchive;
   private final Blockchain blockchain;
 
@@ -486,21 +488,29 @@ public class BlockchainQueries {
       return Lists.newArrayList();
     }
     List<LogWithMetadata> matchingLogs = Lists.newArrayList();
-    for (long blockNumber = fromBlockNumber; blockNumber <= toBlockNumber; blockNumber++) {
-      final Hash blockhash = blockchain.getBlockHashByNumber(blockNumber).get();
-      final boolean logHasBeenRemoved = !blockchain.blockIsOnCanonicalChain(blockhash);
-      final List<TransactionReceipt> receipts = blockchain.getTxReceipts(blockhash).get();
-      final List<Transaction> transaction =
-          blockchain.getBlockBody(blockhash).get().getTransactions();
-      matchingLogs =
-          generateLogWithMetadata(
-              receipts,
-              blockNumber,
-              query,
-              blockhash,
-              matchingLogs,
-              transaction,
-              logHasBeenRemoved);
+    long blockNumber = fromBlockNumber;
+    while (blockNumber <= toBlockNumber) {
+      final int count = (int) Math.min(BLOCK_HASH_BATCH_SIZE, toBlockNumber - blockNumber + 1);
+      final List<Hash> blockHashes = blockchain.getBlockHashesByNumber(blockNumber, count);
+      for (final Hash blockhash : blockHashes) {
+        final boolean logHasBeenRemoved = !blockchain.blockIsOnCanonicalChain(blockhash);
+        final List<TransactionReceipt> receipts = blockchain.getTxReceipts(blockhash).get();
+        final List<Transaction> transaction =
+            blockchain.getBlockBody(blockhash).get().getTransactions();
+        matchingLogs =
+            generateLogWithMetadata(
+                receipts,
+                blockNumber,
+                query,
+                blockhash,
+                matchingLogs,
+                transaction,
+                logHasBeenRemoved);
+        blockNumber++;
+      }
+      if (blockHashes.size() < count) {
+        break;
+      }
     }
     return matchingLogs;
   }
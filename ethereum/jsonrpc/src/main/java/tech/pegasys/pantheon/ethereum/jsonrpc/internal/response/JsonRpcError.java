@@ -47,6 +47,9 @@ public enum JsonRpcError {
   COINBASE_NOT_SET(-32010, "Coinbase not set. Unable to start mining without a coinbase"),
   NO_HASHES_PER_SECOND(-32011, "No hashes being generated by the current node"),
 
+  // Admin errors
+  SNAPSHOT_NOT_SUPPORTED(-32000, "The node's storage does not support snapshots"),
+
   // Wallet errors
   COINBASE_NOT_SPECIFIED(-32000, "Coinbase must be explicitly specified"),
 
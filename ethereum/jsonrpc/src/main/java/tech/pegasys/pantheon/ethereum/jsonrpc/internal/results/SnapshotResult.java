@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.results;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonPropertyOrder({"chainHeadHash", "chainHeadNumber"})
+public class SnapshotResult implements JsonRpcResult {
+
+  private final String chainHeadHash;
+  private final String chainHeadNumber;
+
+  public SnapshotResult(final Hash chainHeadHash, final long chainHeadNumber) {
+    this.chainHeadHash = chainHeadHash.toString();
+    this.chainHeadNumber = Quantity.create(chainHeadNumber);
+  }
+
+  @JsonGetter(value = "chainHeadHash")
+  public String getChainHeadHash() {
+    return chainHeadHash;
+  }
+
+  @JsonGetter(value = "chainHeadNumber")
+  public String getChainHeadNumber() {
+    return chainHeadNumber;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (!(other instanceof SnapshotResult)) {
+      return false;
+    }
+    final SnapshotResult that = (SnapshotResult) other;
+    return this.chainHeadHash.equals(that.chainHeadHash)
+        && this.chainHeadNumber.equals(that.chainHeadNumber);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(chainHeadHash, chainHeadNumber);
+  }
+}
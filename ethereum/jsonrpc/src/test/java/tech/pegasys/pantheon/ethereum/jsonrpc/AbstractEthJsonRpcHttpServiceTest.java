@@ -36,6 +36,7 @@ import tech.pegasys.pantheon.ethereum.eth.EthProtocol;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterIdGenerator;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterManager;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterRepository;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminCreateSnapshot.Snapshotter;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.JsonRpcMethod;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
 import tech.pegasys.pantheon.ethereum.mainnet.HeaderValidationMode;
@@ -187,7 +188,8 @@ public abstract class AbstractEthJsonRpcHttpServiceTest {
                 supportedCapabilities,
                 Optional.empty(),
                 JSON_RPC_APIS,
-                privacyParameters);
+                privacyParameters,
+                mock(Snapshotter.class));
     final JsonRpcConfiguration config = JsonRpcConfiguration.createDefault();
     config.setPort(0);
     service =
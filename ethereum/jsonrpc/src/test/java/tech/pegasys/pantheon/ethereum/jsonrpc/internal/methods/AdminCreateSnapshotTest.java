@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.JsonRpcRequest;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminCreateSnapshot.Snapshotter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.parameters.JsonRpcParameter;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcError;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcErrorResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.response.JsonRpcSuccessResponse;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.results.SnapshotResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+public class AdminCreateSnapshotTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  @Mock private Snapshotter snapshotter;
+  private final JsonRpcParameter parameter = new JsonRpcParameter();
+
+  private AdminCreateSnapshot method;
+  private Path snapshotDirectory;
+
+  @Before
+  public void setup() {
+    method = new AdminCreateSnapshot(snapshotter, parameter);
+    snapshotDirectory = folder.getRoot().toPath().resolve("snapshot");
+  }
+
+  @Test
+  public void requestIsMissingParameter() {
+    final JsonRpcRequest request =
+        new JsonRpcRequest("2.0", "admin_createSnapshot", new String[] {});
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void requestHasNullArrayParameter() {
+    final JsonRpcRequest request =
+        new JsonRpcRequest("2.0", "admin_createSnapshot", new String[] {null});
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void returnsChainHeadOfSnapshot() throws IOException {
+    final SnapshotResult result = new SnapshotResult(Hash.ZERO, 10);
+    when(snapshotter.snapshot(snapshotDirectory)).thenReturn(result);
+    final JsonRpcRequest request = createRequest(snapshotDirectory.toString());
+    final JsonRpcResponse expectedResponse = new JsonRpcSuccessResponse(request.getId(), result);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void existingDirectoryIsInvalid() throws IOException {
+    final JsonRpcRequest request = createRequest(folder.newFolder().toString());
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void relativePathIsInvalid() {
+    final JsonRpcRequest request = createRequest("snapshot");
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void storageWithoutCheckpointsIsNotSupported() throws IOException {
+    when(snapshotter.snapshot(any())).thenThrow(new UnsupportedOperationException());
+    final JsonRpcRequest request = createRequest(snapshotDirectory.toString());
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.SNAPSHOT_NOT_SUPPORTED);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void directoryRejectedBySnapshotterIsInvalid() throws IOException {
+    when(snapshotter.snapshot(any())).thenThrow(new IllegalArgumentException("not empty"));
+    final JsonRpcRequest request = createRequest(snapshotDirectory.toString());
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INVALID_PARAMS);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  @Test
+  public void failureToWriteSnapshotIsInternalError() throws IOException {
+    when(snapshotter.snapshot(any())).thenThrow(new IOException("disk full"));
+    final JsonRpcRequest request = createRequest(snapshotDirectory.toString());
+    final JsonRpcResponse expectedResponse =
+        new JsonRpcErrorResponse(request.getId(), JsonRpcError.INTERNAL_ERROR);
+
+    final JsonRpcResponse actualResponse = method.response(request);
+
+    assertThat(actualResponse).isEqualToComparingFieldByField(expectedResponse);
+  }
+
+  private JsonRpcRequest createRequest(final String snapshotDirectory) {
+    return new JsonRpcRequest("2.0", "admin_createSnapshot", new String[] {snapshotDirectory});
+  }
+}
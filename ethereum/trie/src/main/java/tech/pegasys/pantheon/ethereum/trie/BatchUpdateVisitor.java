@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+
+/**
+ * Applies a batch of updates in a single walk of the trie. Updates are sorted by path, so the
+ * updates below any node form one contiguous range. Each node is visited with the range of updates
+ * below it and rewritten once, rather than once per updated key.
+ *
+ * <p>Every node is treated as a branch while its range is applied: extensions and leaves are split
+ * at their first nibble, and the result is collapsed back into the canonical form afterwards.
+ */
+class BatchUpdateVisitor<V> implements PathNodeVisitor<V> {
+
+  private final NodeFactory<V> nodeFactory;
+  private final List<BytesValue> paths;
+  private final List<Optional<V>> values;
+  private final int from;
+  private final int to;
+  private final int depth;
+
+  private BatchUpdateVisitor(
+      final NodeFactory<V> nodeFactory,
+      final List<BytesValue> paths,
+      final List<Optional<V>> values,
+      final int from,
+      final int to,
+      final int depth) {
+    this.nodeFactory = nodeFactory;
+    this.paths = paths;
+    this.values = values;
+    this.from = from;
+    this.to = to;
+    this.depth = depth;
+  }
+
+  /**
+   * @param nodeFactory the factory for updated nodes
+   * @param root the root of the trie to update
+   * @param updates the new value for each path, or empty to remove it
+   * @return the root of the updated trie
+   */
+  static <V> Node<V> apply(
+      final NodeFactory<V> nodeFactory,
+      final Node<V> root,
+      final SortedMap<BytesValue, Optional<V>> updates) {
+    if (updates.isEmpty()) {
+      return root;
+    }
+    return update(
+        nodeFactory,
+        root,
+        new ArrayList<>(updates.keySet()),
+        new ArrayList<>(updates.values()),
+        0,
+        updates.size(),
+        0);
+  }
+
+  private static <V> Node<V> update(
+      final NodeFactory<V> nodeFactory,
+      final Node<V> node,
+      final List<BytesValue> paths,
+      final List<Optional<V>> values,
+      final int from,
+      final int to,
+      final int depth) {
+    final BytesValue path = paths.get(from).slice(depth);
+    if (to - from == 1) {
+      final Optional<V> value = values.get(from);
+      return value.isPresent()
+          ? node.accept(new PutVisitor<>(nodeFactory, value.get()), path)
+          : node.accept(new RemoveVisitor<>(), path);
+    }
+    // The path of the first update in the range isn't used, the visitor holds the whole range
+    return node.accept(new BatchUpdateVisitor<>(nodeFactory, paths, values, from, to, depth), path);
+  }
+
+  @Override
+  public Node<V> visit(final ExtensionNode<V> extensionNode, final BytesValue path) {
+    final BytesValue extensionPath = extensionNode.getPath();
+    final Node<V>[] children = BranchNode.emptyChildren();
+    children[extensionPath.get(0)] = extensionNode.replacePath(extensionPath.slice(1));
+    return updateChildren(extensionNode, children, Optional.empty());
+  }
+
+  @Override
+  public Node<V> visit(final BranchNode<V> branchNode, final BytesValue path) {
+    final Node<V>[] children = BranchNode.emptyChildren();
+    for (byte i = 0; i < BranchNode.RADIX; i++) {
+      children[i] = branchNode.child(i);
+    }
+    return updateChildren(branchNode, children, branchNode.getValue());
+  }
+
+  @Override
+  public Node<V> visit(final LeafNode<V> leafNode, final BytesValue path) {
+    final BytesValue leafPath = leafNode.getPath();
+    final Node<V>[] children = BranchNode.emptyChildren();
+    final byte index = leafPath.get(0);
+    if (index == CompactEncoding.LEAF_TERMINATOR) {
+      return updateChildren(leafNode, children, leafNode.getValue());
+    }
+    children[index] = leafNode.replacePath(leafPath.slice(1));
+    return updateChildren(leafNode, children, Optional.empty());
+  }
+
+  @Override
+  public Node<V> visit(final NullNode<V> nullNode, final BytesValue path) {
+    return updateChildren(nullNode, BranchNode.emptyChildren(), Optional.empty());
+  }
+
+  private Node<V> updateChildren(
+      final Node<V> original, final Node<V>[] children, final Optional<V> originalValue) {
+    Optional<V> value = originalValue;
+    boolean changed = false;
+    int rangeStart = from;
+    while (rangeStart < to) {
+      final byte index = paths.get(rangeStart).get(depth);
+      int rangeEnd = rangeStart + 1;
+      while (rangeEnd < to && paths.get(rangeEnd).get(depth) == index) {
+        rangeEnd++;
+      }
+
+      if (index == CompactEncoding.LEAF_TERMINATOR) {
+        // Paths are unique, so only one update can end here
+        final Optional<V> updatedValue = values.get(rangeStart);
+        changed |= !updatedValue.equals(value);
+        value = updatedValue;
+      } else {
+        final Node<V> child = children[index];
+        final Node<V> updatedChild =
+            update(nodeFactory, child, paths, values, rangeStart, rangeEnd, depth + 1);
+        changed |= updatedChild != child;
+        children[index] = updatedChild;
+      }
+      rangeStart = rangeEnd;
+    }
+
+    // Keep untouched nodes so they aren't stored again
+    return changed ? collapse(children, value) : original;
+  }
+
+  private Node<V> collapse(final Node<V>[] children, final Optional<V> value) {
+    int childCount = 0;
+    int lastChildIndex = -1;
+    for (int i = 0; i < BranchNode.RADIX; i++) {
+      if (children[i] != NullNode.instance()) {
+        childCount++;
+        lastChildIndex = i;
+      }
+    }
+
+    if (childCount == 0) {
+      return value
+          .map(v -> nodeFactory.createLeaf(BytesValue.of(CompactEncoding.LEAF_TERMINATOR), v))
+          .orElse(NullNode.instance());
+    }
+    if (childCount == 1 && !value.isPresent()) {
+      final Node<V> onlyChild = children[lastChildIndex];
+      return onlyChild.replacePath(
+          BytesValues.concatenate(BytesValue.of(lastChildIndex), onlyChild.getPath()));
+    }
+    return nodeFactory.createBranch(children, value);
+  }
+}
@@ -20,9 +20,7 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.bytes.MutableBytesValue;
 
-import java.lang.ref.SoftReference;
-import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -35,26 +33,33 @@ class BranchNode<V> implements Node<V> {
   @SuppressWarnings("rawtypes")
   private static final Node NULL_NODE = NullNode.instance();
 
-  private final ArrayList<Node<V>> children;
+  private final Node<V>[] children;
   private final Optional<V> value;
   private final NodeFactory<V> nodeFactory;
   private final Function<V, BytesValue> valueSerializer;
-  private WeakReference<BytesValue> rlp;
-  private SoftReference<Bytes32> hash;
+  private BytesValue rlp;
+  private Bytes32 hash;
   private boolean dirty = false;
 
   BranchNode(
-      final ArrayList<Node<V>> children,
+      final Node<V>[] children,
       final Optional<V> value,
       final NodeFactory<V> nodeFactory,
       final Function<V, BytesValue> valueSerializer) {
-    assert (children.size() == RADIX);
+    assert (children.length == RADIX);
     this.children = children;
     this.value = value;
     this.nodeFactory = nodeFactory;
     this.valueSerializer = valueSerializer;
   }
 
+  @SuppressWarnings("unchecked")
+  static <V> Node<V>[] emptyChildren() {
+    final Node<V>[] children = new Node[RADIX];
+    Arrays.fill(children, NULL_NODE);
+    return children;
+  }
+
   @Override
   public Node<V> accept(final PathNodeVisitor<V> visitor, final BytesValue path) {
     return visitor.visit(this, path);
@@ -77,25 +82,22 @@ class BranchNode<V> implements Node<V> {
 
   @Override
   public Optional<List<Node<V>>> getChildren() {
-    return Optional.of(Collections.unmodifiableList(children));
+    return Optional.of(Collections.unmodifiableList(Arrays.asList(children)));
   }
 
   public Node<V> child(final byte index) {
-    return children.get(index);
+    return children[index];
   }
 
   @Override
   public BytesValue getRlp() {
     if (rlp != null) {
-      final BytesValue encoded = rlp.get();
-      if (encoded != null) {
-        return encoded;
-      }
+      return rlp;
     }
     final BytesValueRLPOutput out = new BytesValueRLPOutput();
     out.startList();
     for (int i = 0; i < RADIX; ++i) {
-      out.writeRLPUnsafe(children.get(i).getRlpRef());
+      out.writeRLPUnsafe(children[i].getRlpRef());
     }
     if (value.isPresent()) {
       out.writeBytesValue(valueSerializer.apply(value.get()));
@@ -103,9 +105,8 @@ class BranchNode<V> implements Node<V> {
       out.writeNull();
     }
     out.endList();
-    final BytesValue encoded = out.encoded();
-    rlp = new WeakReference<>(encoded);
-    return encoded;
+    rlp = out.encoded();
+    return rlp;
   }
 
   @Override
@@ -119,15 +120,10 @@ class BranchNode<V> implements Node<V> {
 
   @Override
   public Bytes32 getHash() {
-    if (hash != null) {
-      final Bytes32 hashed = hash.get();
-      if (hashed != null) {
-        return hashed;
-      }
+    if (hash == null) {
+      hash = keccak256(getRlp());
     }
-    final Bytes32 hashed = keccak256(getRlp());
-    hash = new SoftReference<>(hashed);
-    return hashed;
+    return hash;
   }
 
   @Override
@@ -136,8 +132,8 @@ class BranchNode<V> implements Node<V> {
   }
 
   public Node<V> replaceChild(final byte index, final Node<V> updatedChild) {
-    final ArrayList<Node<V>> newChildren = new ArrayList<>(children);
-    newChildren.set(index, updatedChild);
+    final Node<V>[] newChildren = children.clone();
+    newChildren[index] = updatedChild;
 
     if (updatedChild == NULL_NODE) {
       if (value.isPresent() && !hasChildren()) {
@@ -170,11 +166,11 @@ class BranchNode<V> implements Node<V> {
     return false;
   }
 
-  private static <V> Optional<Node<V>> maybeFlatten(final ArrayList<Node<V>> children) {
+  private static <V> Optional<Node<V>> maybeFlatten(final Node<V>[] children) {
     final int onlyChildIndex = findOnlyChild(children);
     if (onlyChildIndex >= 0) {
       // replace the path of the only child and return it
-      final Node<V> onlyChild = children.get(onlyChildIndex);
+      final Node<V> onlyChild = children[onlyChildIndex];
       final BytesValue onlyChildPath = onlyChild.getPath();
       final MutableBytesValue completePath = MutableBytesValue.create(1 + onlyChildPath.size());
       completePath.set(0, (byte) onlyChildIndex);
@@ -184,11 +180,11 @@ class BranchNode<V> implements Node<V> {
     return Optional.empty();
   }
 
-  private static <V> int findOnlyChild(final ArrayList<Node<V>> children) {
+  private static <V> int findOnlyChild(final Node<V>[] children) {
     int onlyChildIndex = -1;
-    assert (children.size() == RADIX);
+    assert (children.length == RADIX);
     for (int i = 0; i < RADIX; ++i) {
-      if (children.get(i) != NULL_NODE) {
+      if (children[i] != NULL_NODE) {
         if (onlyChildIndex >= 0) {
           return -1;
         }
@@ -12,14 +12,39 @@
  */
 package tech.pegasys.pantheon.ethereum.trie;
 
+import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the RLP and hash of every dirty node and stores them, children before their parents.
+ *
+ * <p>Branches near the top of the trie that have many dirty children commit each child subtree as a
+ * separate fork-join task. Those subtrees collect their nodes rather than storing them, and the
+ * branch stores them in child order once all have finished. The node updater is therefore only ever
+ * called from one thread, in exactly the order a serial commit would use.
+ */
 class CommitVisitor<V> implements NodeVisitor<V> {
 
+  // Fewer dirty children than this don't have enough work to be worth handing to other threads
+  static final int MIN_DIRTY_CHILDREN_TO_FORK = 4;
+  // Forking in the first two levels gives up to 256 tasks, which is plenty to keep cores busy
+  static final int MAX_FORK_DEPTH = 2;
+
   private final NodeUpdater nodeUpdater;
+  private int depth;
 
   public CommitVisitor(final NodeUpdater nodeUpdater) {
+    this(nodeUpdater, 0);
+  }
+
+  private CommitVisitor(final NodeUpdater nodeUpdater, final int depth) {
     this.nodeUpdater = nodeUpdater;
+    this.depth = depth;
   }
 
   @Override
@@ -42,14 +67,44 @@ class CommitVisitor<V> implements NodeVisitor<V> {
       return;
     }
 
+    if (depth < MAX_FORK_DEPTH && dirtyChildCount(branchNode) >= MIN_DIRTY_CHILDREN_TO_FORK) {
+      commitChildrenInParallel(branchNode);
+    } else {
+      depth++;
+      for (byte i = 0; i < BranchNode.RADIX; ++i) {
+        final Node<V> child = branchNode.child(i);
+        if (child.isDirty()) {
+          child.accept(this);
+        }
+      }
+      depth--;
+    }
+
+    maybeStoreNode(branchNode);
+  }
+
+  private int dirtyChildCount(final BranchNode<V> branchNode) {
+    int count = 0;
+    for (byte i = 0; i < BranchNode.RADIX; ++i) {
+      if (branchNode.child(i).isDirty()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void commitChildrenInParallel(final BranchNode<V> branchNode) {
+    final List<ChildCommit<V>> commits = new ArrayList<>(BranchNode.RADIX);
     for (byte i = 0; i < BranchNode.RADIX; ++i) {
       final Node<V> child = branchNode.child(i);
       if (child.isDirty()) {
-        child.accept(this);
+        commits.add(new ChildCommit<>(child, depth + 1));
       }
     }
-
-    maybeStoreNode(branchNode);
+    ForkJoinTask.invokeAll(commits);
+    for (final ChildCommit<V> commit : commits) {
+      commit.storeNodes(nodeUpdater);
+    }
   }
 
   @Override
@@ -70,4 +125,33 @@ class CommitVisitor<V> implements NodeVisitor<V> {
       this.nodeUpdater.store(node.getHash(), nodeRLP);
     }
   }
+
+  private static class ChildCommit<V> extends RecursiveAction {
+    private final Node<V> child;
+    private final int depth;
+    private final List<Bytes32> hashes = new ArrayList<>();
+    private final List<BytesValue> values = new ArrayList<>();
+
+    private ChildCommit(final Node<V> child, final int depth) {
+      this.child = child;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      child.accept(
+          new CommitVisitor<>(
+              (hash, value) -> {
+                hashes.add(hash);
+                values.add(value);
+              },
+              depth));
+    }
+
+    private void storeNodes(final NodeUpdater nodeUpdater) {
+      for (int i = 0; i < hashes.size(); i++) {
+        nodeUpdater.store(hashes.get(i), values.get(i));
+      }
+    }
+  }
 }
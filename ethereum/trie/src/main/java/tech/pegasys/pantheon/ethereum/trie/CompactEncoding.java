@@ -51,6 +51,10 @@ abstract class CompactEncoding {
   }
 
   public static BytesValue encode(final BytesValue path) {
+    if (path instanceof PackedPath) {
+      return ((PackedPath) path).compactEncoding();
+    }
+
     int size = path.size();
     final boolean isLeaf = size > 0 && path.get(size - 1) == LEAF_TERMINATOR;
     if (isLeaf) {
@@ -14,15 +14,10 @@ package tech.pegasys.pantheon.ethereum.trie;
 
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Optional;
 import java.util.function.Function;
 
 class DefaultNodeFactory<V> implements NodeFactory<V> {
-  @SuppressWarnings("rawtypes")
-  private static final Node NULL_NODE = NullNode.instance();
-
   private final Function<V, BytesValue> valueSerializer;
 
   DefaultNodeFactory(final Function<V, BytesValue> valueSerializer) {
@@ -34,7 +29,6 @@ class DefaultNodeFactory<V> implements NodeFactory<V> {
     return new ExtensionNode<>(path, child, this);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Node<V> createBranch(
       final byte leftIndex, final Node<V> left, final byte rightIndex, final Node<V> right) {
@@ -42,23 +36,22 @@ class DefaultNodeFactory<V> implements NodeFactory<V> {
     assert (rightIndex <= BranchNode.RADIX);
     assert (leftIndex != rightIndex);
 
-    final ArrayList<Node<V>> children =
-        new ArrayList<>(Collections.nCopies(BranchNode.RADIX, (Node<V>) NULL_NODE));
+    final Node<V>[] children = BranchNode.emptyChildren();
     if (leftIndex == BranchNode.RADIX) {
-      children.set(rightIndex, right);
+      children[rightIndex] = right;
       return createBranch(children, left.getValue());
     } else if (rightIndex == BranchNode.RADIX) {
-      children.set(leftIndex, left);
+      children[leftIndex] = left;
       return createBranch(children, right.getValue());
     } else {
-      children.set(leftIndex, left);
-      children.set(rightIndex, right);
+      children[leftIndex] = left;
+      children[rightIndex] = right;
       return createBranch(children, Optional.empty());
     }
   }
 
   @Override
-  public Node<V> createBranch(final ArrayList<Node<V>> children, final Optional<V> value) {
+  public Node<V> createBranch(final Node<V>[] children, final Optional<V> value) {
     return new BranchNode<>(children, value, this, valueSerializer);
   }
 
@@ -20,8 +20,6 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.bytes.BytesValues;
 
-import java.lang.ref.SoftReference;
-import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -30,15 +28,15 @@ class ExtensionNode<V> implements Node<V> {
   private final BytesValue path;
   private final Node<V> child;
   private final NodeFactory<V> nodeFactory;
-  private WeakReference<BytesValue> rlp;
-  private SoftReference<Bytes32> hash;
+  private BytesValue rlp;
+  private Bytes32 hash;
   private boolean dirty = false;
 
   ExtensionNode(final BytesValue path, final Node<V> child, final NodeFactory<V> nodeFactory) {
     assert (path.size() > 0);
     assert (path.get(path.size() - 1) != CompactEncoding.LEAF_TERMINATOR)
         : "Extension path ends in a leaf terminator";
-    this.path = path;
+    this.path = PackedPath.of(path);
     this.child = child;
     this.nodeFactory = nodeFactory;
   }
@@ -75,19 +73,15 @@ class ExtensionNode<V> implements Node<V> {
   @Override
   public BytesValue getRlp() {
     if (rlp != null) {
-      final BytesValue encoded = rlp.get();
-      if (encoded != null) {
-        return encoded;
-      }
+      return rlp;
     }
     final BytesValueRLPOutput out = new BytesValueRLPOutput();
     out.startList();
     out.writeBytesValue(CompactEncoding.encode(path));
     out.writeRLPUnsafe(child.getRlpRef());
     out.endList();
-    final BytesValue encoded = out.encoded();
-    rlp = new WeakReference<>(encoded);
-    return encoded;
+    rlp = out.encoded();
+    return rlp;
   }
 
   @Override
@@ -101,16 +95,10 @@ class ExtensionNode<V> implements Node<V> {
 
   @Override
   public Bytes32 getHash() {
-    if (hash != null) {
-      final Bytes32 hashed = hash.get();
-      if (hashed != null) {
-        return hashed;
-      }
+    if (hash == null) {
+      hash = keccak256(getRlp());
     }
-    final BytesValue rlp = getRlp();
-    final Bytes32 hashed = keccak256(rlp);
-    hash = new SoftReference<>(hashed);
-    return hashed;
+    return hash;
   }
 
   public Node<V> replaceChild(final Node<V> updatedChild) {
@@ -19,8 +19,6 @@ import tech.pegasys.pantheon.ethereum.rlp.RLP;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
-import java.lang.ref.SoftReference;
-import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -30,8 +28,8 @@ class LeafNode<V> implements Node<V> {
   private final V value;
   private final NodeFactory<V> nodeFactory;
   private final Function<V, BytesValue> valueSerializer;
-  private WeakReference<BytesValue> rlp;
-  private SoftReference<Bytes32> hash;
+  private BytesValue rlp;
+  private Bytes32 hash;
   private boolean dirty = false;
 
   LeafNode(
@@ -39,7 +37,7 @@ class LeafNode<V> implements Node<V> {
       final V value,
       final NodeFactory<V> nodeFactory,
       final Function<V, BytesValue> valueSerializer) {
-    this.path = path;
+    this.path = PackedPath.of(path);
     this.value = value;
     this.nodeFactory = nodeFactory;
     this.valueSerializer = valueSerializer;
@@ -73,10 +71,7 @@ class LeafNode<V> implements Node<V> {
   @Override
   public BytesValue getRlp() {
     if (rlp != null) {
-      final BytesValue encoded = rlp.get();
-      if (encoded != null) {
-        return encoded;
-      }
+      return rlp;
     }
 
     final BytesValueRLPOutput out = new BytesValueRLPOutput();
@@ -84,9 +79,8 @@ class LeafNode<V> implements Node<V> {
     out.writeBytesValue(CompactEncoding.encode(path));
     out.writeBytesValue(valueSerializer.apply(value));
     out.endList();
-    final BytesValue encoded = out.encoded();
-    rlp = new WeakReference<>(encoded);
-    return encoded;
+    rlp = out.encoded();
+    return rlp;
   }
 
   @Override
@@ -100,15 +94,10 @@ class LeafNode<V> implements Node<V> {
 
   @Override
   public Bytes32 getHash() {
-    if (hash != null) {
-      final Bytes32 hashed = hash.get();
-      if (hashed != null) {
-        return hashed;
-      }
+    if (hash == null) {
+      hash = keccak256(getRlp());
     }
-    final Bytes32 hashed = keccak256(getRlp());
-    hash = new SoftReference<>(hashed);
-    return hashed;
+    return hash;
   }
 
   @Override
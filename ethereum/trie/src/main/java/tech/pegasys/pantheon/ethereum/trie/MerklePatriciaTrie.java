@@ -20,6 +20,7 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /** An Merkle Patricial Trie. */
 public interface MerklePatriciaTrie<K, V> {
@@ -51,6 +52,14 @@ public interface MerklePatriciaTrie<K, V> {
    */
   void remove(K key);
 
+  /**
+   * Applies a batch of updates in a single walk of the trie. Keys are applied in sorted order, so
+   * each node above several updated keys is rewritten once rather than once per key.
+   *
+   * @param updates The new value of each key, or empty to delete the key's value.
+   */
+  void applyUpdates(Map<K, Optional<V>> updates);
+
   /**
    * Returns the KECCAK256 hash of the root node of the trie.
    *
@@ -74,4 +83,12 @@ public interface MerklePatriciaTrie<K, V> {
    * @return the requested storage entries as a map of key hash to value.
    */
   Map<Bytes32, V> entriesFrom(Bytes32 startKeyHash, int limit);
+
+  /**
+   * Streams all entries in ascending order of their key hash. Nodes are loaded lazily as the stream
+   * reaches them, and a parallel stream walks separate key ranges of the trie on each thread.
+   *
+   * @return a stream of all entries as key hash and value.
+   */
+  Stream<Map.Entry<Bytes32, V>> entries();
 }
@@ -15,8 +15,26 @@ package tech.pegasys.pantheon.ethereum.trie;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public interface NodeLoader {
   Optional<BytesValue> getNode(Bytes32 hash);
+
+  /**
+   * Looks up several nodes at once. Loaders backed by a database should override this to fetch all
+   * nodes in a single round trip.
+   *
+   * @param hashes The hashes of the nodes to look up.
+   * @return The available nodes keyed by hash. Hashes without a node are omitted.
+   */
+  default Map<Bytes32, BytesValue> getNodes(final Collection<Bytes32> hashes) {
+    final Map<Bytes32, BytesValue> nodes = new HashMap<>(hashes.size());
+    for (final Bytes32 hash : hashes) {
+      getNode(hash).ifPresent(node -> nodes.put(hash, node));
+    }
+    return nodes;
+  }
 }
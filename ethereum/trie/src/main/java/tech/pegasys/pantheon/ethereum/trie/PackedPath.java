@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import tech.pegasys.pantheon.util.bytes.AbstractBytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.MutableBytesValue;
+
+/**
+ * A trie path that stores two nibbles per byte.
+ *
+ * <p>The nibbles are held in their hex-prefix compact encoding, so a path takes half the memory of
+ * its one-nibble-per-byte form and encoding it for a node's RLP requires no work at all. Reading it
+ * back yields the expanded nibbles, terminated by {@link CompactEncoding#LEAF_TERMINATOR} for leaf
+ * paths.
+ */
+final class PackedPath extends AbstractBytesValue {
+  private static final byte ODD_FLAG = 0x10;
+  private static final byte LEAF_FLAG = 0x20;
+
+  private final byte[] encoded;
+  private final int size;
+
+  private PackedPath(final byte[] encoded) {
+    this.encoded = encoded;
+    final byte metadata = encoded[0];
+    final boolean isOdd = (metadata & ODD_FLAG) != 0;
+    final boolean isLeaf = (metadata & LEAF_FLAG) != 0;
+    this.size = (encoded.length - 1) * 2 + (isOdd ? 1 : 0) + (isLeaf ? 1 : 0);
+  }
+
+  /**
+   * Packs the given nibble path.
+   *
+   * @param path The path, one nibble per byte.
+   * @return The packed path, or {@code path} itself if it is already packed.
+   */
+  static PackedPath of(final BytesValue path) {
+    if (path instanceof PackedPath) {
+      return (PackedPath) path;
+    }
+    return new PackedPath(CompactEncoding.encode(path).extractArray());
+  }
+
+  /**
+   * Creates a packed path from its hex-prefix compact encoding.
+   *
+   * @param encoded The compact encoding of the path.
+   * @return The packed path.
+   */
+  static PackedPath fromCompactEncoding(final BytesValue encoded) {
+    checkArgument(encoded.size() > 0);
+    final byte[] bytes = encoded.extractArray();
+    final byte metadata = bytes[0];
+    checkArgument((metadata & 0xc0) == 0, "Invalid compact encoding");
+    if ((metadata & ODD_FLAG) == 0) {
+      // the lower nibble is padding for even length paths
+      bytes[0] = (byte) (metadata & 0xf0);
+    }
+    return new PackedPath(bytes);
+  }
+
+  /** @return The hex-prefix compact encoding of this path. */
+  BytesValue compactEncoding() {
+    return BytesValue.wrap(encoded);
+  }
+
+  private boolean isLeaf() {
+    return (encoded[0] & LEAF_FLAG) != 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public byte get(final int i) {
+    checkElementIndex(i, size);
+    if (i == size - 1 && isLeaf()) {
+      return CompactEncoding.LEAF_TERMINATOR;
+    }
+    // odd paths start in the lower nibble of the metadata byte, even paths in the next byte
+    final int nibble = (encoded[0] & ODD_FLAG) != 0 ? i + 1 : i + 2;
+    final byte b = encoded[nibble >> 1];
+    return (byte) ((nibble & 1) == 0 ? (b >>> 4) & 0x0f : b & 0x0f);
+  }
+
+  @Override
+  public BytesValue slice(final int index, final int length) {
+    if (index == 0 && length == size) {
+      return this;
+    }
+    if (length == 0) {
+      return BytesValue.EMPTY;
+    }
+    checkElementIndex(index, size);
+    checkArgument(
+        index + length <= size,
+        "Provided length %s is too big: the value has size %s and has only %s bytes from %s",
+        length,
+        size,
+        size - index,
+        index);
+    final MutableBytesValue slice = MutableBytesValue.create(length);
+    for (int i = 0; i < length; i++) {
+      slice.set(i, get(index + i));
+    }
+    return slice;
+  }
+}
@@ -25,8 +25,10 @@ class RemoveVisitor<V> implements PathNodeVisitor<V> {
         : "Visiting path doesn't end with a non-matching terminator";
 
     if (commonPathLength == extensionPath.size()) {
-      final Node<V> newChild = extensionNode.getChild().accept(this, path.slice(commonPathLength));
-      return extensionNode.replaceChild(newChild);
+      final Node<V> child = extensionNode.getChild();
+      final Node<V> newChild = child.accept(this, path.slice(commonPathLength));
+      // Keep the node if the key wasn't present, so it isn't stored again
+      return newChild == child ? extensionNode : extensionNode.replaceChild(newChild);
     }
 
     // path diverges before the end of the extension, so it cannot match
@@ -40,11 +42,12 @@ class RemoveVisitor<V> implements PathNodeVisitor<V> {
 
     final byte childIndex = path.get(0);
     if (childIndex == CompactEncoding.LEAF_TERMINATOR) {
-      return branchNode.removeValue();
+      return branchNode.getValue().isPresent() ? branchNode.removeValue() : branchNode;
     }
 
-    final Node<V> updatedChild = branchNode.child(childIndex).accept(this, path.slice(1));
-    return branchNode.replaceChild(childIndex, updatedChild);
+    final Node<V> child = branchNode.child(childIndex);
+    final Node<V> updatedChild = child.accept(this, path.slice(1));
+    return updatedChild == child ? branchNode : branchNode.replaceChild(childIndex, updatedChild);
   }
 
   @Override
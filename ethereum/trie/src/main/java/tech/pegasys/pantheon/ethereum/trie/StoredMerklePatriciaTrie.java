@@ -20,7 +20,11 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A {@link MerklePatriciaTrie} that persists trie nodes to a {@link MerkleStorage} key/value store.
@@ -88,6 +92,18 @@ public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements Merkle
     this.root = root.accept(removeVisitor, bytesToPath(key));
   }
 
+  @Override
+  public void applyUpdates(final Map<K, Optional<V>> updates) {
+    final SortedMap<BytesValue, Optional<V>> pathUpdates = new TreeMap<>();
+    updates.forEach(
+        (key, value) -> {
+          checkNotNull(key);
+          checkNotNull(value);
+          pathUpdates.put(bytesToPath(key), value);
+        });
+    this.root = BatchUpdateVisitor.apply(nodeFactory, root, pathUpdates);
+  }
+
   @Override
   public void commit(final NodeUpdater nodeUpdater) {
     final CommitVisitor<V> commitVisitor = new CommitVisitor<>(nodeUpdater);
@@ -109,6 +125,11 @@ public class StoredMerklePatriciaTrie<K extends BytesValue, V> implements Merkle
     return StorageEntriesCollector.collectEntries(root, startKeyHash, limit);
   }
 
+  @Override
+  public Stream<Map.Entry<Bytes32, V>> entries() {
+    return StreamSupport.stream(new TrieEntrySpliterator<>(root), false);
+  }
+
   @Override
   public Bytes32 getRootHash() {
     return root.getHash();
@@ -45,7 +45,9 @@ class StoredNode<V> implements Node<V> {
   @Override
   public Node<V> accept(final PathNodeVisitor<V> visitor, final BytesValue path) {
     final Node<V> node = load();
-    return node.accept(visitor, path);
+    final Node<V> result = node.accept(visitor, path);
+    // Let callers tell that an unchanged node is still the one in storage
+    return result == node ? this : result;
   }
 
   @Override
@@ -96,6 +98,10 @@ class StoredNode<V> implements Node<V> {
     return load().replacePath(path);
   }
 
+  StoredNodeFactory<V> getNodeFactory() {
+    return nodeFactory;
+  }
+
   private Node<V> load() {
     if (loaded == null) {
       loaded =
@@ -20,8 +20,9 @@ import tech.pegasys.pantheon.ethereum.rlp.RLPInput;
 import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -48,7 +49,6 @@ class StoredNodeFactory<V> implements NodeFactory<V> {
     return handleNewNode(new ExtensionNode<>(path, child, this));
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Node<V> createBranch(
       final byte leftIndex, final Node<V> left, final byte rightIndex, final Node<V> right) {
@@ -56,24 +56,22 @@ class StoredNodeFactory<V> implements NodeFactory<V> {
     assert (rightIndex <= BranchNode.RADIX);
     assert (leftIndex != rightIndex);
 
-    final ArrayList<Node<V>> children =
-        new ArrayList<>(Collections.nCopies(BranchNode.RADIX, (Node<V>) NULL_NODE));
-
+    final Node<V>[] children = BranchNode.emptyChildren();
     if (leftIndex == BranchNode.RADIX) {
-      children.set(rightIndex, right);
+      children[rightIndex] = right;
       return createBranch(children, left.getValue());
     } else if (rightIndex == BranchNode.RADIX) {
-      children.set(leftIndex, left);
+      children[leftIndex] = left;
       return createBranch(children, right.getValue());
     } else {
-      children.set(leftIndex, left);
-      children.set(rightIndex, right);
+      children[leftIndex] = left;
+      children[rightIndex] = right;
       return createBranch(children, Optional.empty());
     }
   }
 
   @Override
-  public Node<V> createBranch(final ArrayList<Node<V>> children, final Optional<V> value) {
+  public Node<V> createBranch(final Node<V>[] children, final Optional<V> value) {
     return handleNewNode(new BranchNode<>(children, value, this, valueSerializer));
   }
 
@@ -100,6 +98,26 @@ class StoredNodeFactory<V> implements NodeFactory<V> {
             });
   }
 
+  /**
+   * Loads several nodes in a single call to the node loader.
+   *
+   * @param hashes The hashes of the nodes to load.
+   * @return The loaded nodes keyed by hash. Hashes without a stored node are omitted.
+   */
+  public Map<Bytes32, Node<V>> retrieveAll(final Collection<Bytes32> hashes)
+      throws MerkleTrieException {
+    final Map<Bytes32, BytesValue> rlps = nodeLoader.getNodes(hashes);
+    final Map<Bytes32, Node<V>> nodes = new HashMap<>(rlps.size());
+    rlps.forEach(
+        (hash, rlp) -> {
+          final Node<V> node = decode(rlp, () -> format("Invalid RLP value for hash %s", hash));
+          assert (hash.equals(node.getHash()))
+              : "Node hash " + node.getHash() + " not equal to expected " + hash;
+          nodes.put(hash, node);
+        });
+    return nodes;
+  }
+
   public Node<V> decode(final BytesValue rlp) {
     return decode(rlp, () -> String.format("Failed to decode value %s", rlp.toString()));
   }
@@ -124,7 +142,7 @@ class StoredNodeFactory<V> implements NodeFactory<V> {
           final BytesValue encodedPath = nodeRLPs.readBytesValue();
           final BytesValue path;
           try {
-            path = CompactEncoding.decode(encodedPath);
+            path = PackedPath.fromCompactEncoding(encodedPath);
           } catch (final IllegalArgumentException ex) {
             throw new MerkleTrieException(errMessage.get() + ": invalid path " + encodedPath, ex);
           }
@@ -161,19 +179,16 @@ class StoredNodeFactory<V> implements NodeFactory<V> {
     }
   }
 
-  @SuppressWarnings("unchecked")
   private BranchNode<V> decodeBranch(final RLPInput nodeRLPs, final Supplier<String> errMessage) {
-    final ArrayList<Node<V>> children = new ArrayList<>(BranchNode.RADIX);
+    final Node<V>[] children = BranchNode.emptyChildren();
     for (int i = 0; i < BranchNode.RADIX; ++i) {
       if (nodeRLPs.nextIsNull()) {
         nodeRLPs.skipNext();
-        children.add(NULL_NODE);
       } else if (nodeRLPs.nextIsList()) {
-        final Node<V> child = decode(nodeRLPs, errMessage);
-        children.add(child);
+        children[i] = decode(nodeRLPs, errMessage);
       } else {
         final Bytes32 childHash = nodeRLPs.readBytes32();
-        children.add(new StoredNode<>(this, childHash));
+        children[i] = new StoredNode<>(this, childHash);
       }
     }
 
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Finds the entries that differ between two versions of a stored trie whose keys are all 32 byte
+ * hashes, such as the account state trie and account storage tries.
+ *
+ * <p>Both tries are walked together and any subtree with the same hash in both is skipped, so only
+ * the nodes on the paths to changed entries are loaded.
+ */
+public class TrieDiff {
+
+  private final StoredNodeFactory<BytesValue> nodeFactory;
+  private final DifferenceHandler handler;
+
+  private TrieDiff(final NodeLoader nodeLoader, final DifferenceHandler handler) {
+    this.nodeFactory =
+        new StoredNodeFactory<>(nodeLoader, Function.identity(), Function.identity());
+    this.handler = handler;
+  }
+
+  /**
+   * Reports each entry that was added, changed or removed between two tries.
+   *
+   * @param nodeLoader the loader for the nodes of both tries
+   * @param fromRootHash the root hash of the original trie
+   * @param toRootHash the root hash of the updated trie
+   * @param handler called with the key hash and the original and updated values of each entry that
+   *     differs
+   * @throws MerkleTrieException if a node of either trie is missing
+   */
+  public static void compare(
+      final NodeLoader nodeLoader,
+      final Bytes32 fromRootHash,
+      final Bytes32 toRootHash,
+      final DifferenceHandler handler) {
+    final TrieDiff diff = new TrieDiff(nodeLoader, handler);
+    diff.compare(diff.root(fromRootHash), diff.root(toRootHash), BytesValue.EMPTY);
+  }
+
+  private Node<BytesValue> root(final Bytes32 rootHash) {
+    return rootHash.equals(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH)
+        ? NullNode.instance()
+        : new StoredNode<>(nodeFactory, rootHash);
+  }
+
+  private void compare(
+      final Node<BytesValue> from, final Node<BytesValue> to, final BytesValue path) {
+    if (from.getHash().equals(to.getHash())) {
+      return;
+    }
+    final NodeType fromType = NodeType.of(from);
+    final NodeType toType = NodeType.of(to);
+    if (fromType == NodeType.NULL) {
+      forEachLeaf(to, path, (key, value) -> handler.onDifference(key, Optional.empty(), value));
+    } else if (toType == NodeType.NULL) {
+      forEachLeaf(from, path, (key, value) -> handler.onDifference(key, value, Optional.empty()));
+    } else if (fromType == NodeType.LEAF
+        && toType == NodeType.LEAF
+        && from.getPath().equals(to.getPath())) {
+      handler.onDifference(keyHash(path, from.getPath()), from.getValue(), to.getValue());
+    } else {
+      for (byte i = 0; i < BranchNode.RADIX; i++) {
+        compare(child(from, fromType, i), child(to, toType, i), extend(path, i));
+      }
+    }
+  }
+
+  /**
+   * Returns the subtree of a node under the given nibble, treating extensions and leaves as
+   * branches with a single child.
+   */
+  private static Node<BytesValue> child(
+      final Node<BytesValue> node, final NodeType type, final byte index) {
+    switch (type) {
+      case BRANCH:
+        return node.getChildren().get().get(index);
+      case EXTENSION:
+      case LEAF:
+        final BytesValue nodePath = node.getPath();
+        if (nodePath.get(0) != index) {
+          return NullNode.instance();
+        }
+        if (type == NodeType.EXTENSION && nodePath.size() == 1) {
+          return node.getChildren().get().get(0);
+        }
+        return node.replacePath(nodePath.slice(1));
+      default:
+        return NullNode.instance();
+    }
+  }
+
+  private void forEachLeaf(
+      final Node<BytesValue> node, final BytesValue path, final LeafConsumer consumer) {
+    final NodeType type = NodeType.of(node);
+    switch (type) {
+      case BRANCH:
+        for (byte i = 0; i < BranchNode.RADIX; i++) {
+          forEachLeaf(child(node, type, i), extend(path, i), consumer);
+        }
+        break;
+      case EXTENSION:
+        forEachLeaf(node.getChildren().get().get(0), concat(path, node.getPath()), consumer);
+        break;
+      case LEAF:
+        consumer.accept(keyHash(path, node.getPath()), node.getValue());
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static Bytes32 keyHash(final BytesValue path, final BytesValue leafPath) {
+    return Bytes32.wrap(CompactEncoding.pathToBytes(concat(path, leafPath)), 0);
+  }
+
+  private static BytesValue extend(final BytesValue path, final byte nibble) {
+    return concat(path, BytesValue.of(nibble));
+  }
+
+  private static BytesValue concat(final BytesValue path, final BytesValue suffix) {
+    return path.isEmpty() ? suffix : BytesValue.wrap(path, suffix);
+  }
+
+  private enum NodeType {
+    NULL,
+    BRANCH,
+    EXTENSION,
+    LEAF;
+
+    static NodeType of(final Node<BytesValue> node) {
+      final NodeTypeVisitor visitor = new NodeTypeVisitor();
+      node.accept(visitor);
+      return visitor.type;
+    }
+  }
+
+  private static class NodeTypeVisitor implements NodeVisitor<BytesValue> {
+    private NodeType type;
+
+    @Override
+    public void visit(final ExtensionNode<BytesValue> extensionNode) {
+      type = NodeType.EXTENSION;
+    }
+
+    @Override
+    public void visit(final BranchNode<BytesValue> branchNode) {
+      type = NodeType.BRANCH;
+    }
+
+    @Override
+    public void visit(final LeafNode<BytesValue> leafNode) {
+      type = NodeType.LEAF;
+    }
+
+    @Override
+    public void visit(final NullNode<BytesValue> nullNode) {
+      type = NodeType.NULL;
+    }
+  }
+
+  private interface LeafConsumer {
+    void accept(Bytes32 keyHash, Optional<BytesValue> value);
+  }
+
+  public interface DifferenceHandler {
+    void onDifference(
+        Bytes32 keyHash, Optional<BytesValue> fromValue, Optional<BytesValue> toValue);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.bytes.BytesValues;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the entries of a trie in ascending order of their key hash.
+ *
+ * <p>Nodes are loaded as the walk reaches them and dropped once their subtree has been walked, so a
+ * trie far larger than memory can be streamed. Stored nodes that are about to be walked are loaded
+ * together with a single {@link NodeLoader#getNodes} call. Splitting hands the subtrees with the
+ * lowest key prefixes to a new spliterator, so a parallel stream walks separate key ranges on each
+ * thread. Only the top few levels of the trie are split, as deeper subtrees are better walked
+ * whole.
+ */
+class TrieEntrySpliterator<V> implements Spliterator<Map.Entry<Bytes32, V>>, NodeVisitor<V> {
+  static final int LOAD_BATCH_SIZE = 64;
+  // Subtrees with longer key prefixes are walked without splitting them further
+  private static final int MAX_SPLIT_PATH_LENGTH = 3;
+
+  // The subtrees still to walk, the next one last
+  private final List<PendingNode<V>> pending;
+  private BytesValue visitedPath;
+  private Optional<Map.Entry<Bytes32, V>> visitedEntry;
+
+  TrieEntrySpliterator(final Node<V> root) {
+    this(new ArrayList<>(Collections.singletonList(new PendingNode<>(BytesValue.EMPTY, root))));
+  }
+
+  private TrieEntrySpliterator(final List<PendingNode<V>> pending) {
+    this.pending = pending;
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super Map.Entry<Bytes32, V>> action) {
+    while (!pending.isEmpty()) {
+      if (pending.get(pending.size() - 1).node instanceof StoredNode) {
+        loadNextStoredNodes();
+      }
+      final Optional<Map.Entry<Bytes32, V>> entry = expand(pending.remove(pending.size() - 1));
+      if (entry.isPresent()) {
+        action.accept(entry.get());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Spliterator<Map.Entry<Bytes32, V>> trySplit() {
+    // Open up a lone subtree so its children can be divided
+    while (pending.size() == 1) {
+      if (pending.get(0).path.size() >= MAX_SPLIT_PATH_LENGTH) {
+        return null;
+      }
+      if (pending.get(0).node instanceof StoredNode) {
+        loadNextStoredNodes();
+      }
+      if (pending.get(0).node.getValue().isPresent()) {
+        return null;
+      }
+      expand(pending.remove(0));
+    }
+    if (pending.size() < 2 || pending.get(0).path.size() >= MAX_SPLIT_PATH_LENGTH) {
+      return null;
+    }
+    // The subtrees at the end of the list hold the lowest keys and must come first
+    final List<PendingNode<V>> lowest = pending.subList(pending.size() / 2, pending.size());
+    final TrieEntrySpliterator<V> prefix = new TrieEntrySpliterator<>(new ArrayList<>(lowest));
+    lowest.clear();
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return pending.isEmpty() ? 0 : Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+  }
+
+  private void loadNextStoredNodes() {
+    final List<Integer> indexes = new ArrayList<>(LOAD_BATCH_SIZE);
+    final List<Bytes32> hashes = new ArrayList<>(LOAD_BATCH_SIZE);
+    for (int i = pending.size() - 1; i >= 0 && hashes.size() < LOAD_BATCH_SIZE; i--) {
+      final Node<V> node = pending.get(i).node;
+      if (node instanceof StoredNode) {
+        indexes.add(i);
+        hashes.add(node.getHash());
+      }
+    }
+    final StoredNode<V> next = (StoredNode<V>) pending.get(indexes.get(0)).node;
+    final Map<Bytes32, Node<V>> loaded = next.getNodeFactory().retrieveAll(hashes);
+    for (int i = 0; i < indexes.size(); i++) {
+      final Bytes32 hash = hashes.get(i);
+      final Node<V> node = loaded.get(hash);
+      if (node == null) {
+        throw new MerkleTrieException("Unable to load trie node value for hash " + hash);
+      }
+      final int index = indexes.get(i);
+      pending.set(index, new PendingNode<>(pending.get(index).path, node));
+    }
+  }
+
+  private Optional<Map.Entry<Bytes32, V>> expand(final PendingNode<V> pendingNode) {
+    visitedPath = pendingNode.path;
+    visitedEntry = Optional.empty();
+    pendingNode.node.accept(this);
+    return visitedEntry;
+  }
+
+  @Override
+  public void visit(final ExtensionNode<V> extensionNode) {
+    pending.add(
+        new PendingNode<>(
+            BytesValues.concatenate(visitedPath, extensionNode.getPath()),
+            extensionNode.getChild()));
+  }
+
+  @Override
+  public void visit(final BranchNode<V> branchNode) {
+    for (byte i = BranchNode.RADIX - 1; i >= 0; i--) {
+      final Node<V> child = branchNode.child(i);
+      if (!(child instanceof NullNode)) {
+        pending.add(
+            new PendingNode<>(BytesValues.concatenate(visitedPath, BytesValue.of(i)), child));
+      }
+    }
+    final BytesValue valuePath =
+        BytesValues.concatenate(visitedPath, BytesValue.of(CompactEncoding.LEAF_TERMINATOR));
+    visitedEntry = branchNode.getValue().map(value -> entry(valuePath, value));
+  }
+
+  @Override
+  public void visit(final LeafNode<V> leafNode) {
+    final BytesValue leafPath = BytesValues.concatenate(visitedPath, leafNode.getPath());
+    visitedEntry = leafNode.getValue().map(value -> entry(leafPath, value));
+  }
+
+  @Override
+  public void visit(final NullNode<V> nullNode) {}
+
+  private static <V> Map.Entry<Bytes32, V> entry(final BytesValue path, final V value) {
+    return new AbstractMap.SimpleImmutableEntry<>(
+        Bytes32.wrap(CompactEncoding.pathToBytes(path), 0), value);
+  }
+
+  private static class PendingNode<V> {
+    private final BytesValue path;
+    private final Node<V> node;
+
+    PendingNode(final BytesValue path, final Node<V> node) {
+      this.path = path;
+      this.node = node;
+    }
+  }
+}
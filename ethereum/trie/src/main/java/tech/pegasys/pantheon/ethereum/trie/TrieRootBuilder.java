@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static tech.pegasys.pantheon.crypto.Hash.keccak256;
+
+import tech.pegasys.pantheon.ethereum.rlp.BytesValueRLPOutput;
+import tech.pegasys.pantheon.ethereum.rlp.RLP;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Computes the root hash of a trie from entries added in ascending key order, without building the
+ * trie.
+ *
+ * <p>A subtree is complete as soon as a key outside of it is added. It is encoded at that point and
+ * only its reference is kept. The only nodes held are the branches on the path of the last added
+ * key, so memory use is bounded by the key length rather than by the number of entries.
+ */
+public class TrieRootBuilder {
+
+  // Branches on the path of the last added key, deepest first
+  private final Deque<Branch> openBranches = new ArrayDeque<>();
+  // The last added entry isn't placed until the next key shows how deep its leaf is
+  private BytesValue pendingPath;
+  private BytesValue pendingValue;
+  private Bytes32 rootHash;
+
+  /**
+   * Adds an entry to the trie. Keys must be added in ascending order of their paths, which is
+   * ascending unsigned byte order as long as no key is a prefix of another.
+   *
+   * @param key The key of the entry.
+   * @param value The value of the entry.
+   */
+  public void put(final BytesValue key, final BytesValue value) {
+    checkState(rootHash == null, "Root hash has already been computed");
+    final BytesValue path = CompactEncoding.bytesToPath(key);
+    if (pendingPath != null) {
+      checkArgument(path.compareTo(pendingPath) > 0, "Keys must be added in ascending order");
+      addPending(pendingPath.commonPrefixLength(path));
+    }
+    pendingPath = path;
+    pendingValue = value;
+  }
+
+  /**
+   * Returns the root hash of the trie. No entries can be added afterwards.
+   *
+   * @return The KECCAK256 hash of the root node of the trie.
+   */
+  public Bytes32 getRootHash() {
+    if (rootHash == null) {
+      rootHash = computeRootHash();
+    }
+    return rootHash;
+  }
+
+  private Bytes32 computeRootHash() {
+    if (pendingPath == null) {
+      return MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH;
+    }
+    if (openBranches.isEmpty()) {
+      return keccak256(encodeLeaf(pendingPath, pendingValue));
+    }
+    // Close everything into the shallowest branch, which holds all entries
+    final Branch rootBranch = openBranches.getLast();
+    addPending(rootBranch.depth);
+    return keccak256(encode(rootBranch, 0));
+  }
+
+  /**
+   * Places the pending entry and encodes the branches that no later key can reach.
+   *
+   * @param nextKeyDepth the length of the path the next key shares with the pending one
+   */
+  private void addPending(final int nextKeyDepth) {
+    Branch branch = openBranches.peek();
+    if (branch == null || branch.depth < nextKeyDepth) {
+      branch = new Branch(nextKeyDepth, pendingPath);
+      openBranches.push(branch);
+    }
+    branch.put(pendingPath, pendingValue);
+
+    while (branch.depth > nextKeyDepth) {
+      openBranches.pop();
+      Branch parent = openBranches.peek();
+      if (parent == null || parent.depth < nextKeyDepth) {
+        parent = new Branch(nextKeyDepth, branch.path);
+        openBranches.push(parent);
+      }
+      parent.children[branch.path.get(parent.depth)] = reference(encode(branch, parent.depth + 1));
+      branch = parent;
+    }
+  }
+
+  // Encodes a branch along with the extension that leads to it from the given depth, if any
+  private static BytesValue encode(final Branch branch, final int fromDepth) {
+    final BytesValue branchRlp = branch.encode();
+    if (branch.depth == fromDepth) {
+      return branchRlp;
+    }
+    final BytesValueRLPOutput out = new BytesValueRLPOutput();
+    out.startList();
+    out.writeBytesValue(
+        CompactEncoding.encode(branch.path.slice(fromDepth, branch.depth - fromDepth)));
+    out.writeRLPUnsafe(reference(branchRlp));
+    out.endList();
+    return out.encoded();
+  }
+
+  private static BytesValue encodeLeaf(final BytesValue path, final BytesValue value) {
+    final BytesValueRLPOutput out = new BytesValueRLPOutput();
+    out.startList();
+    out.writeBytesValue(CompactEncoding.encode(path));
+    out.writeBytesValue(value);
+    out.endList();
+    return out.encoded();
+  }
+
+  private static BytesValue reference(final BytesValue rlp) {
+    return rlp.size() < 32 ? rlp : RLP.encodeOne(keccak256(rlp));
+  }
+
+  private static class Branch {
+    private final int depth;
+    // The path of any key below this branch, as they all share the first depth nibbles
+    private final BytesValue path;
+    private final BytesValue[] children = new BytesValue[BranchNode.RADIX];
+    private BytesValue value;
+
+    private Branch(final int depth, final BytesValue path) {
+      this.depth = depth;
+      this.path = path;
+    }
+
+    private void put(final BytesValue path, final BytesValue value) {
+      final byte index = path.get(depth);
+      if (index == CompactEncoding.LEAF_TERMINATOR) {
+        this.value = value;
+      } else {
+        children[index] = reference(encodeLeaf(path.slice(depth + 1), value));
+      }
+    }
+
+    private BytesValue encode() {
+      final BytesValueRLPOutput out = new BytesValueRLPOutput();
+      out.startList();
+      for (final BytesValue child : children) {
+        if (child == null) {
+          out.writeNull();
+        } else {
+          out.writeRLPUnsafe(child);
+        }
+      }
+      if (value == null) {
+        out.writeNull();
+      } else {
+        out.writeBytesValue(value);
+      }
+      out.endList();
+      return out.encoded();
+    }
+  }
+}
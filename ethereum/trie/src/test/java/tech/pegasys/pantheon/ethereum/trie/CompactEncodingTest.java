@@ -65,4 +65,34 @@ public class CompactEncodingTest {
     assertThat(CompactEncoding.decode(BytesValue.of(0x3f, 0x1c, 0xb8)))
         .isEqualTo(BytesValue.of(0x0f, 0x01, 0x0c, 0x0b, 0x08, 0x10));
   }
+
+  @Test
+  public void packedPathReadsAsUnpackedPath() {
+    final BytesValue[] paths = {
+      BytesValue.EMPTY,
+      BytesValue.of(0x10),
+      BytesValue.of(0x01, 0x02, 0x03, 0x04, 0x05),
+      BytesValue.of(0x00, 0x01, 0x02, 0x03, 0x04, 0x05),
+      BytesValue.of(0x00, 0x0f, 0x01, 0x0c, 0x0b, 0x08, 0x10),
+      BytesValue.of(0x0f, 0x01, 0x0c, 0x0b, 0x08, 0x10)
+    };
+    for (final BytesValue path : paths) {
+      final PackedPath packed = PackedPath.of(path);
+      assertThat(packed).isEqualTo(path);
+      assertThat(packed.hashCode()).isEqualTo(path.hashCode());
+      assertThat(CompactEncoding.encode(packed)).isEqualTo(CompactEncoding.encode(path));
+      assertThat(PackedPath.fromCompactEncoding(CompactEncoding.encode(path))).isEqualTo(path);
+      for (int i = 0; i < path.size(); i++) {
+        assertThat(packed.slice(i)).isEqualTo(path.slice(i));
+        assertThat(packed.slice(0, i)).isEqualTo(path.slice(0, i));
+      }
+    }
+  }
+
+  @Test
+  public void packedPathNormalizesPaddingOfEvenPaths() {
+    final PackedPath packed = PackedPath.fromCompactEncoding(BytesValue.of(0x0f, 0x01, 0x23));
+    assertThat(packed).isEqualTo(BytesValue.of(0x00, 0x01, 0x02, 0x03));
+    assertThat(CompactEncoding.encode(packed)).isEqualTo(BytesValue.of(0x00, 0x01, 0x23));
+  }
 }
@@ -19,6 +19,8 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -285,4 +287,28 @@ public class SimpleMerklePatriciaTrieTest {
     trie.remove(key3);
     assertThat(trie.getRootHash()).isEqualTo(hash1);
   }
+
+  @Test
+  public void applyUpdatesPutsAndRemovesValues() {
+    final BytesValue key1 = BytesValue.of(1, 5, 8, 9);
+    final BytesValue key2 = BytesValue.of(1, 6, 1, 2);
+    final BytesValue key3 = BytesValue.of(1, 6, 1, 3);
+    trie.put(key1, "value1");
+    trie.put(key2, "value2");
+
+    final Map<BytesValue, Optional<String>> updates = new HashMap<>();
+    updates.put(key1, Optional.empty());
+    updates.put(key2, Optional.of("updated2"));
+    updates.put(key3, Optional.of("value3"));
+    trie.applyUpdates(updates);
+
+    final SimpleMerklePatriciaTrie<BytesValue, String> expected =
+        new SimpleMerklePatriciaTrie<>(
+            value -> BytesValue.wrap(value.getBytes(Charset.forName("UTF-8"))));
+    expected.put(key2, "updated2");
+    expected.put(key3, "value3");
+    assertThat(trie.get(key1)).isEmpty();
+    assertThat(trie.get(key2)).contains("updated2");
+    assertThat(trie.getRootHash()).isEqualTo(expected.getRootHash());
+  }
 }
@@ -14,6 +14,7 @@ package tech.pegasys.pantheon.ethereum.trie;
 
 import static junit.framework.TestCase.assertFalse;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage;
@@ -21,8 +22,19 @@ import tech.pegasys.pantheon.util.bytes.Bytes32;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -417,4 +429,212 @@ public class StoredMerklePatriciaTrieTest {
 
     newTrie.get(BytesValue.fromHexString("0x0401"));
   }
+
+  @Test
+  public void largeCommitStoresSameNodesInSameOrderAsSerialCommit() {
+    final List<Bytes32> keys = randomKeys(5000);
+    final SimpleMerklePatriciaTrie<Bytes32, BytesValue> expectedTrie =
+        new SimpleMerklePatriciaTrie<>(b -> b);
+    keys.forEach(key -> expectedTrie.put(key, key));
+
+    final List<Bytes32> storedHashes = new ArrayList<>();
+    final List<BytesValue> storedValues = new ArrayList<>();
+    final Thread committingThread = Thread.currentThread();
+    final Bytes32 rootHash =
+        commitTrie(
+            keys,
+            (hash, value) -> {
+              assertThat(Thread.currentThread()).isSameAs(committingThread);
+              storedHashes.add(hash);
+              storedValues.add(value);
+            });
+    assertThat(rootHash).isEqualTo(expectedTrie.getRootHash());
+
+    // Committing the same changes again gives exactly the same sequence of nodes
+    final List<Bytes32> repeatedHashes = new ArrayList<>();
+    commitTrie(keys, (hash, value) -> repeatedHashes.add(hash));
+    assertThat(repeatedHashes).isEqualTo(storedHashes);
+
+    // Every node is stored after all of the nodes it references by hash
+    final Set<Bytes32> seen = new HashSet<>();
+    for (int i = 0; i < storedHashes.size(); i++) {
+      final Bytes32 hash = storedHashes.get(i);
+      TrieNodeDecoder.decodeNodes(storedValues.get(i)).stream()
+          .filter(node -> !node.getHash().equals(hash) && node.isReferencedByHash())
+          .forEach(node -> assertThat(seen).contains(node.getHash()));
+      seen.add(hash);
+    }
+    assertThat(storedHashes.get(storedHashes.size() - 1)).isEqualTo(rootHash);
+  }
+
+  @Test
+  public void entriesStreamsAllEntriesInKeyOrder() {
+    final List<Bytes32> keys = randomKeys(2000);
+    final Bytes32 rootHash = commitTrie(keys, merkleStorage::put);
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> storedTrie =
+        new StoredMerklePatriciaTrie<>(merkleStorage::get, rootHash, b -> b, b -> b);
+
+    final List<Bytes32> sortedKeys = new ArrayList<>(keys);
+    Collections.sort(sortedKeys);
+    final List<Map.Entry<Bytes32, BytesValue>> entries =
+        storedTrie.entries().collect(Collectors.toList());
+    assertThat(entries).extracting(Map.Entry::getKey).isEqualTo(sortedKeys);
+    assertThat(entries).allMatch(entry -> entry.getKey().equals(entry.getValue()));
+
+    // A parallel stream splits the walk but keeps the encounter order
+    assertThat(storedTrie.entries().parallel().collect(Collectors.toList())).isEqualTo(entries);
+  }
+
+  @Test
+  public void entriesIncludesChangesThatAreNotCommitted() {
+    final List<Bytes32> keys = randomKeys(100);
+    final Bytes32 rootHash = commitTrie(keys, merkleStorage::put);
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> storedTrie =
+        new StoredMerklePatriciaTrie<>(merkleStorage::get, rootHash, b -> b, b -> b);
+    final Bytes32 addedKey = Bytes32.fromHexStringLenient("0x01");
+    storedTrie.put(addedKey, BytesValue.of(1));
+    storedTrie.remove(keys.get(0));
+
+    final Map<Bytes32, BytesValue> entries =
+        storedTrie.entries().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    assertThat(entries).hasSize(keys.size()).containsEntry(addedKey, BytesValue.of(1));
+    assertThat(entries).doesNotContainKey(keys.get(0));
+  }
+
+  @Test
+  public void entriesLoadsStoredNodesInBatches() {
+    final Bytes32 rootHash = commitTrie(randomKeys(2000), merkleStorage::put);
+    final AtomicInteger nodesLoaded = new AtomicInteger();
+    final AtomicInteger batchesLoaded = new AtomicInteger();
+    final NodeLoader nodeLoader =
+        new NodeLoader() {
+          @Override
+          public Optional<BytesValue> getNode(final Bytes32 hash) {
+            throw new AssertionError("Nodes must be loaded in batches");
+          }
+
+          @Override
+          public Map<Bytes32, BytesValue> getNodes(final Collection<Bytes32> hashes) {
+            assertThat(hashes.size()).isLessThanOrEqualTo(TrieEntrySpliterator.LOAD_BATCH_SIZE);
+            nodesLoaded.addAndGet(hashes.size());
+            batchesLoaded.incrementAndGet();
+            final Map<Bytes32, BytesValue> nodes = new HashMap<>();
+            hashes.forEach(hash -> merkleStorage.get(hash).ifPresent(rlp -> nodes.put(hash, rlp)));
+            return nodes;
+          }
+        };
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> storedTrie =
+        new StoredMerklePatriciaTrie<>(nodeLoader, rootHash, b -> b, b -> b);
+
+    assertThat(storedTrie.entries().count()).isEqualTo(2000);
+    assertThat(batchesLoaded.get()).isLessThan(nodesLoaded.get() / 4);
+  }
+
+  @Test
+  public void entriesFailsOnMissingNode() {
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> storedTrie =
+        new StoredMerklePatriciaTrie<>(merkleStorage::get, Bytes32.ZERO, b -> b, b -> b);
+
+    assertThatThrownBy(() -> storedTrie.entries().count())
+        .isInstanceOf(MerkleTrieException.class)
+        .hasMessage("Unable to load trie node value for hash " + Bytes32.ZERO);
+  }
+
+  @Test
+  public void applyUpdatesMatchesTrieBuiltFromScratch() {
+    final Random random = new Random(2);
+    // Short keys of different lengths give leaves and branches with values at every level
+    final List<BytesValue> keys = new ArrayList<>();
+    keys.add(BytesValue.EMPTY);
+    for (int i = 0; i < 300; i++) {
+      final byte[] key = new byte[1 + random.nextInt(3)];
+      random.nextBytes(key);
+      keys.add(BytesValue.wrap(key));
+    }
+    keys.subList(0, 200).forEach(key -> trie.put(key, "initial" + key));
+    trie.commit(merkleStorage::put);
+
+    final Map<BytesValue, Optional<String>> updates = new HashMap<>();
+    for (final BytesValue key : keys) {
+      if (random.nextBoolean()) {
+        updates.put(key, random.nextBoolean() ? Optional.empty() : Optional.of("updated" + key));
+      }
+    }
+    // Built from scratch rather than by putting and removing the updates one at a time, so the
+    // expected root doesn't depend on how updates are applied to an existing trie
+    final Map<BytesValue, String> expectedValues = new HashMap<>();
+    keys.subList(0, 200).forEach(key -> expectedValues.put(key, "initial" + key));
+    updates.forEach(
+        (key, value) -> {
+          if (value.isPresent()) {
+            expectedValues.put(key, value.get());
+          } else {
+            expectedValues.remove(key);
+          }
+        });
+    final SimpleMerklePatriciaTrie<BytesValue, String> expected =
+        new SimpleMerklePatriciaTrie<>(valueSerializer);
+    expectedValues.forEach(expected::put);
+
+    trie.applyUpdates(updates);
+
+    assertThat(trie.getRootHash()).isEqualTo(expected.getRootHash());
+    trie.commit(merkleStorage::put);
+    final StoredMerklePatriciaTrie<BytesValue, String> reloaded =
+        new StoredMerklePatriciaTrie<>(
+            merkleStorage::get, trie.getRootHash(), valueSerializer, valueDeserializer);
+    for (final BytesValue key : keys) {
+      assertThat(reloaded.get(key)).isEqualTo(expected.get(key));
+    }
+  }
+
+  @Test
+  public void applyUpdatesCanEmptyTrie() {
+    final List<Bytes32> keys = randomKeys(50);
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> trie =
+        new StoredMerklePatriciaTrie<>(
+            merkleStorage::get, commitTrie(keys, merkleStorage::put), b -> b, b -> b);
+
+    final Map<Bytes32, Optional<BytesValue>> updates = new HashMap<>();
+    keys.forEach(key -> updates.put(key, Optional.empty()));
+    trie.applyUpdates(updates);
+
+    assertThat(trie.getRootHash()).isEqualTo(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
+  }
+
+  @Test
+  public void removingMissingKeysStoresNothing() {
+    final List<Bytes32> keys = randomKeys(50);
+    final Bytes32 rootHash = commitTrie(keys.subList(0, 40), merkleStorage::put);
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> trie =
+        new StoredMerklePatriciaTrie<>(merkleStorage::get, rootHash, b -> b, b -> b);
+
+    final Map<Bytes32, Optional<BytesValue>> updates = new HashMap<>();
+    keys.subList(40, 50).forEach(key -> updates.put(key, Optional.empty()));
+    trie.applyUpdates(updates);
+
+    assertThat(trie.getRootHash()).isEqualTo(rootHash);
+    final AtomicInteger storedNodes = new AtomicInteger();
+    trie.commit((hash, value) -> storedNodes.incrementAndGet());
+    assertThat(storedNodes).hasValue(0);
+  }
+
+  private List<Bytes32> randomKeys(final int count) {
+    final Random random = new Random(1);
+    final List<Bytes32> keys = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final byte[] key = new byte[Bytes32.SIZE];
+      random.nextBytes(key);
+      keys.add(Bytes32.wrap(key));
+    }
+    return keys;
+  }
+
+  private Bytes32 commitTrie(final List<Bytes32> keys, final NodeUpdater nodeUpdater) {
+    final StoredMerklePatriciaTrie<Bytes32, BytesValue> trie =
+        new StoredMerklePatriciaTrie<>(merkleStorage::get, b -> b, b -> b);
+    keys.forEach(key -> trie.put(key, key));
+    trie.commit(nodeUpdater);
+    return trie.getRootHash();
+  }
 }
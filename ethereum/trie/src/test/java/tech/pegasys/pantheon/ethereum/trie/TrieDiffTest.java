@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.services.kvstore.InMemoryKeyValueStorage;
+import tech.pegasys.pantheon.util.bytes.Bytes32;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class TrieDiffTest {
+
+  private final MerkleStorage merkleStorage =
+      new KeyValueMerkleStorage(new InMemoryKeyValueStorage());
+  private final StoredMerklePatriciaTrie<Bytes32, BytesValue> trie =
+      new StoredMerklePatriciaTrie<>(merkleStorage::get, Function.identity(), Function.identity());
+  private final Random random = new Random(1);
+
+  @Test
+  public void identicalTriesHaveNoDifferences() {
+    final Bytes32 rootHash = putRandomEntries(100, new HashMap<>());
+
+    assertThat(differences(rootHash, rootHash)).isEmpty();
+  }
+
+  @Test
+  public void allEntriesAreAddedToEmptyTrie() {
+    final Map<Bytes32, BytesValue> entries = new HashMap<>();
+    final Bytes32 rootHash = putRandomEntries(100, entries);
+
+    final Map<Bytes32, Difference> expected = new HashMap<>();
+    entries.forEach((key, value) -> expected.put(key, new Difference(null, value)));
+    assertThat(differences(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH, rootHash)).isEqualTo(expected);
+    assertThat(differences(rootHash, MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH))
+        .hasSize(entries.size());
+  }
+
+  @Test
+  public void addedChangedAndRemovedEntriesAreReported() {
+    final Map<Bytes32, BytesValue> entries = new HashMap<>();
+    final Bytes32 fromRootHash = putRandomEntries(500, entries);
+
+    final Map<Bytes32, Difference> expected = new HashMap<>();
+    int count = 0;
+    for (final Map.Entry<Bytes32, BytesValue> entry : entries.entrySet()) {
+      if (count % 10 == 0) {
+        trie.remove(entry.getKey());
+        expected.put(entry.getKey(), new Difference(entry.getValue(), null));
+      } else if (count % 10 == 1) {
+        final BytesValue updated = randomValue();
+        trie.put(entry.getKey(), updated);
+        expected.put(entry.getKey(), new Difference(entry.getValue(), updated));
+      }
+      count++;
+    }
+    final Map<Bytes32, BytesValue> added = new HashMap<>();
+    final Bytes32 toRootHash = putRandomEntries(20, added);
+    added.forEach((key, value) -> expected.put(key, new Difference(null, value)));
+
+    assertThat(differences(fromRootHash, toRootHash)).isEqualTo(expected);
+  }
+
+  @Test
+  public void missingNodesCauseFailure() {
+    final Bytes32 rootHash = putRandomEntries(10, new HashMap<>());
+
+    assertThatThrownBy(
+            () ->
+                TrieDiff.compare(
+                    hash -> Optional.empty(),
+                    MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH,
+                    rootHash,
+                    (key, from, to) -> {}))
+        .isInstanceOf(MerkleTrieException.class);
+  }
+
+  private Bytes32 putRandomEntries(final int count, final Map<Bytes32, BytesValue> entries) {
+    for (int i = 0; i < count; i++) {
+      final Bytes32 key = randomKey();
+      final BytesValue value = randomValue();
+      trie.put(key, value);
+      entries.put(key, value);
+    }
+    trie.commit(merkleStorage::put);
+    merkleStorage.commit();
+    return trie.getRootHash();
+  }
+
+  private Map<Bytes32, Difference> differences(
+      final Bytes32 fromRootHash, final Bytes32 toRootHash) {
+    final Map<Bytes32, Difference> differences = new HashMap<>();
+    TrieDiff.compare(
+        merkleStorage::get,
+        fromRootHash,
+        toRootHash,
+        (key, from, to) ->
+            differences.put(key, new Difference(from.orElse(null), to.orElse(null))));
+    return differences;
+  }
+
+  private Bytes32 randomKey() {
+    final byte[] bytes = new byte[Bytes32.SIZE];
+    random.nextBytes(bytes);
+    return Bytes32.wrap(bytes);
+  }
+
+  private BytesValue randomValue() {
+    final byte[] bytes = new byte[1 + random.nextInt(40)];
+    random.nextBytes(bytes);
+    return BytesValue.wrap(bytes);
+  }
+
+  private static class Difference {
+    private final BytesValue from;
+    private final BytesValue to;
+
+    private Difference(final BytesValue from, final BytesValue to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof Difference)) {
+        return false;
+      }
+      final Difference that = (Difference) other;
+      return Objects.equals(from, that.from) && java.util.Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+      return from + " -> " + to;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.ethereum.trie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TrieRootBuilderTest {
+
+  private final TrieRootBuilder builder = new TrieRootBuilder();
+
+  @Test
+  public void emptyTrieHasKnownRootHash() {
+    assertThat(builder.getRootHash()).isEqualTo(MerklePatriciaTrie.EMPTY_TRIE_NODE_HASH);
+  }
+
+  @Test
+  public void singleEntryMatchesTrie() {
+    final TreeMap<BytesValue, BytesValue> entries = new TreeMap<>();
+    entries.put(BytesValue.of(1, 2, 3), BytesValue.of(4));
+    assertMatchesTrie(entries);
+  }
+
+  @Test
+  public void fixedLengthKeysMatchTrie() {
+    final Random random = new Random(1);
+    for (final int count : new int[] {2, 3, 17, 300, 2000}) {
+      final TreeMap<BytesValue, BytesValue> entries = new TreeMap<>();
+      while (entries.size() < count) {
+        final byte[] key = new byte[32];
+        random.nextBytes(key);
+        final byte[] value = new byte[1 + random.nextInt(40)];
+        random.nextBytes(value);
+        entries.put(BytesValue.wrap(key), BytesValue.wrap(value));
+      }
+      assertMatchesTrie(entries);
+    }
+  }
+
+  @Test
+  public void sharedPrefixesMatchTrie() {
+    // Keys that share long prefixes give extensions, and small values give inlined nodes
+    final TreeMap<BytesValue, BytesValue> entries = new TreeMap<>();
+    for (int i = 0; i < 40; i++) {
+      entries.put(BytesValue.of(0xab, 0xcd, 0xef, i / 16, i % 3, i), BytesValue.of(i));
+    }
+    entries.put(BytesValue.of(0xab, 0xce), BytesValue.of(0xff));
+    assertMatchesTrie(entries);
+  }
+
+  @Test
+  public void keysThatArePrefixesOfOtherKeysMatchTrie() {
+    final TrieRootBuilder builder = new TrieRootBuilder();
+    final SimpleMerklePatriciaTrie<BytesValue, BytesValue> trie =
+        new SimpleMerklePatriciaTrie<>(b -> b);
+    // Paths end with a terminator that sorts after all nibbles, so longer keys come first
+    for (final BytesValue key :
+        new BytesValue[] {
+          BytesValue.of(1, 2, 3), BytesValue.of(1, 2), BytesValue.of(1), BytesValue.EMPTY
+        }) {
+      builder.put(key, BytesValue.of(7).concat(key));
+      trie.put(key, BytesValue.of(7).concat(key));
+    }
+    assertThat(builder.getRootHash()).isEqualTo(trie.getRootHash());
+  }
+
+  @Test
+  public void rejectsKeysOutOfOrder() {
+    builder.put(BytesValue.of(2), BytesValue.of(1));
+    assertThatThrownBy(() -> builder.put(BytesValue.of(1), BytesValue.of(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.put(BytesValue.of(2), BytesValue.of(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void rejectsEntriesAfterRootHash() {
+    builder.put(BytesValue.of(1), BytesValue.of(1));
+    builder.getRootHash();
+    assertThatThrownBy(() -> builder.put(BytesValue.of(2), BytesValue.of(1)))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private void assertMatchesTrie(final TreeMap<BytesValue, BytesValue> entries) {
+    final TrieRootBuilder builder = new TrieRootBuilder();
+    final SimpleMerklePatriciaTrie<BytesValue, BytesValue> trie =
+        new SimpleMerklePatriciaTrie<>(b -> b);
+    entries.forEach(
+        (key, value) -> {
+          builder.put(key, value);
+          trie.put(key, value);
+        });
+    assertThat(builder.getRootHash()).isEqualTo(trie.getRootHash());
+  }
+}
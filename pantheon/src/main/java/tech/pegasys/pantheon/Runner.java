@@ -18,6 +18,7 @@ import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketService;
 import tech.pegasys.pantheon.ethereum.p2p.NetworkRunner;
 import tech.pegasys.pantheon.ethereum.p2p.peers.Endpoint;
 import tech.pegasys.pantheon.ethereum.p2p.peers.Peer;
+import tech.pegasys.pantheon.ethereum.worldstate.Pruner;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsService;
 
 import java.io.File;
@@ -45,6 +46,7 @@ public class Runner implements AutoCloseable {
   private final Optional<JsonRpcHttpService> jsonRpc;
   private final Optional<WebSocketService> websocketRpc;
   private final Optional<MetricsService> metrics;
+  private final Optional<Pruner> pruner;
 
   private final PantheonController<?> pantheonController;
   private final Path dataDir;
@@ -55,6 +57,7 @@ public class Runner implements AutoCloseable {
       final Optional<JsonRpcHttpService> jsonRpc,
       final Optional<WebSocketService> websocketRpc,
       final Optional<MetricsService> metrics,
+      final Optional<Pruner> pruner,
       final PantheonController<?> pantheonController,
       final Path dataDir) {
     this.vertx = vertx;
@@ -62,6 +65,7 @@ public class Runner implements AutoCloseable {
     this.jsonRpc = jsonRpc;
     this.websocketRpc = websocketRpc;
     this.metrics = metrics;
+    this.pruner = pruner;
     this.pantheonController = pantheonController;
     this.dataDir = dataDir;
   }
@@ -76,6 +80,7 @@ public class Runner implements AutoCloseable {
       jsonRpc.ifPresent(service -> service.start().join());
       websocketRpc.ifPresent(service -> service.start().join());
       metrics.ifPresent(service -> service.start().join());
+      pruner.ifPresent(Pruner::start);
       LOG.info("Ethereum main loop is up.");
       writePantheonPortsToFile();
       networkRunner.awaitStop();
@@ -95,6 +100,9 @@ public class Runner implements AutoCloseable {
 
     exec.shutdown();
     try {
+      if (pruner.isPresent()) {
+        pruner.get().stop();
+      }
       jsonRpc.ifPresent(service -> service.stop().join());
       websocketRpc.ifPresent(service -> service.stop().join());
       metrics.ifPresent(service -> service.stop().join());
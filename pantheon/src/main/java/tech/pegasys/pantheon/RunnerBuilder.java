@@ -28,8 +28,10 @@ import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApi;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterIdGenerator;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterManager;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.filter.FilterRepository;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.AdminCreateSnapshot.Snapshotter;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.methods.JsonRpcMethod;
 import tech.pegasys.pantheon.ethereum.jsonrpc.internal.queries.BlockchainQueries;
+import tech.pegasys.pantheon.ethereum.jsonrpc.internal.results.SnapshotResult;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketRequestHandler;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketService;
@@ -55,10 +57,15 @@ import tech.pegasys.pantheon.ethereum.p2p.wire.SubProtocol;
 import tech.pegasys.pantheon.ethereum.permissioning.AccountWhitelistController;
 import tech.pegasys.pantheon.ethereum.permissioning.NodeWhitelistController;
 import tech.pegasys.pantheon.ethereum.permissioning.PermissioningConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.MarkSweepPruner;
+import tech.pegasys.pantheon.ethereum.worldstate.Pruner;
+import tech.pegasys.pantheon.ethereum.worldstate.PruningConfiguration;
 import tech.pegasys.pantheon.ethereum.worldstate.WorldStateArchive;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsConfiguration;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsService;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter.SnapshotMetadata;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.enode.EnodeURL;
 
@@ -69,6 +76,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
@@ -91,6 +99,7 @@ public class RunnerBuilder {
   private MetricsConfiguration metricsConfiguration;
   private MetricsSystem metricsSystem;
   private Optional<PermissioningConfiguration> permissioningConfiguration = Optional.empty();
+  private Optional<PruningConfiguration> pruningConfiguration = Optional.empty();
 
   public RunnerBuilder vertx(final Vertx vertx) {
     this.vertx = vertx;
@@ -148,6 +157,11 @@ public class RunnerBuilder {
     return this;
   }
 
+  public RunnerBuilder pruningConfiguration(final PruningConfiguration pruningConfiguration) {
+    this.pruningConfiguration = Optional.of(pruningConfiguration);
+    return this;
+  }
+
   public RunnerBuilder dataDir(final Path dataDir) {
     this.dataDir = dataDir;
     return this;
@@ -325,12 +339,22 @@ public class RunnerBuilder {
       metricsService = Optional.of(createMetricsService(vertx, metricsConfiguration));
     }
 
+    final Optional<Pruner> pruner =
+        pruningConfiguration.map(
+            configuration ->
+                new Pruner(
+                    new MarkSweepPruner(context.getWorldStateArchive().getStorage(), metricsSystem),
+                    context.getBlockchain(),
+                    configuration,
+                    Executors.newSingleThreadExecutor()));
+
     return new Runner(
         vertx,
         networkRunner,
         jsonRpcHttpService,
         webSocketService,
         metricsService,
+        pruner,
         pantheonController,
         dataDir);
   }
@@ -361,6 +385,14 @@ public class RunnerBuilder {
       final FilterManager filterManager,
       final Optional<AccountWhitelistController> accountWhitelistController,
       final PrivacyParameters privacyParameters) {
+    final DatabaseSnapshotter databaseSnapshotter = new DatabaseSnapshotter();
+    final Snapshotter snapshotter =
+        snapshotDirectory -> {
+          final SnapshotMetadata metadata =
+              databaseSnapshotter.snapshot(
+                  pantheonController.getStorageProvider(), snapshotDirectory);
+          return new SnapshotResult(metadata.getChainHeadHash(), metadata.getChainHeadNumber());
+        };
     final Map<String, JsonRpcMethod> methods =
         new JsonRpcMethodsFactory()
             .methods(
@@ -379,7 +411,8 @@ public class RunnerBuilder {
                 jsonRpcApis,
                 filterManager,
                 accountWhitelistController,
-                privacyParameters);
+                privacyParameters,
+                snapshotter);
     methods.putAll(pantheonController.getAdditionalJsonRpcMethods(jsonRpcApis));
     return methods;
   }
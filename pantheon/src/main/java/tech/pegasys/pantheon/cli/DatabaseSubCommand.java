@@ -0,0 +1,310 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.cli;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static tech.pegasys.pantheon.cli.DatabaseSubCommand.COMMAND_NAME;
+import static tech.pegasys.pantheon.cli.DefaultCommandValues.MANDATORY_INTEGER_FORMAT_HELP;
+import static tech.pegasys.pantheon.cli.DefaultCommandValues.MANDATORY_PATH_FORMAT_HELP;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
+
+import tech.pegasys.pantheon.cli.DatabaseSubCommand.RestoreSubCommand;
+import tech.pegasys.pantheon.cli.DatabaseSubCommand.SnapshotSubCommand;
+import tech.pegasys.pantheon.cli.DatabaseSubCommand.VerifyStateSubCommand;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateVerifier;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter.SnapshotMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ExecutionException;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.ParentCommand;
+import picocli.CommandLine.Spec;
+
+/** Database related sub-command */
+@Command(
+    name = COMMAND_NAME,
+    description = "This command provides database related actions.",
+    mixinStandardHelpOptions = true,
+    subcommands = {SnapshotSubCommand.class, RestoreSubCommand.class, VerifyStateSubCommand.class})
+class DatabaseSubCommand implements Runnable {
+  private static final Logger LOG = LogManager.getLogger();
+  private static final long MEGABYTE = 1024 * 1024;
+
+  static final String COMMAND_NAME = "database";
+
+  @SuppressWarnings("unused")
+  @ParentCommand
+  private PantheonCommand parentCommand; // Picocli injects reference to parent command
+
+  @SuppressWarnings("unused")
+  @Spec
+  private CommandSpec spec; // Picocli injects reference to command spec
+
+  private final DatabaseSnapshotter snapshotter;
+  private final PrintStream out;
+
+  DatabaseSubCommand(final DatabaseSnapshotter snapshotter, final PrintStream out) {
+    this.snapshotter = snapshotter;
+    this.out = out;
+  }
+
+  @Override
+  public void run() {
+    spec.commandLine().usage(out);
+  }
+
+  /**
+   * database snapshot sub-command
+   *
+   * <p>Takes a consistent snapshot of the database that a new node can be bootstrapped from
+   */
+  @Command(
+      name = "snapshot",
+      description =
+          "This command takes a snapshot of the database and fast sync state of a stopped node. "
+              + "Use the admin_createSnapshot RPC method to snapshot a running node.",
+      mixinStandardHelpOptions = true)
+  static class SnapshotSubCommand implements Runnable {
+    @SuppressWarnings("unused")
+    @ParentCommand
+    private DatabaseSubCommand parentCommand; // Picocli injects reference to parent command
+
+    @Option(
+        names = "--to",
+        required = true,
+        paramLabel = MANDATORY_PATH_FORMAT_HELP,
+        description = "Empty directory to write the snapshot to",
+        arity = "1..1")
+    private final File snapshotDirectory = null;
+
+    @Override
+    public void run() {
+      LOG.info("Runs snapshot sub command with snapshotDirectory : {}", snapshotDirectory);
+
+      checkNotNull(parentCommand);
+      checkNotNull(parentCommand.parentCommand);
+      checkNotNull(parentCommand.snapshotter);
+
+      try {
+        // As snapshotDirectory is mandatory it's always injected by PicoCLI
+        //noinspection ConstantConditions
+        final SnapshotMetadata metadata =
+            parentCommand.snapshotter.snapshot(
+                parentCommand.parentCommand.dataDir(),
+                Optional.ofNullable(parentCommand.parentCommand.ancientDataPath()),
+                snapshotDirectory.toPath());
+        parentCommand.out.println(
+            "Snapshot of block "
+                + metadata.getChainHeadNumber()
+                + " ("
+                + metadata.getChainHeadHash()
+                + ") written to "
+                + snapshotDirectory);
+      } catch (final IllegalArgumentException | IllegalStateException e) {
+        throw new ExecutionException(new CommandLine(this), e.getMessage());
+      } catch (final IOException | StorageException e) {
+        throw new ExecutionException(
+            new CommandLine(this), "Unable to write snapshot to " + snapshotDirectory, e);
+      }
+    }
+  }
+
+  /**
+   * database restore sub-command
+   *
+   * <p>Restores a snapshot into the data directory of a node that has no database yet
+   */
+  @Command(
+      name = "restore",
+      description = "This command restores a database snapshot into an empty data directory.",
+      mixinStandardHelpOptions = true)
+  static class RestoreSubCommand implements Runnable {
+    @SuppressWarnings("unused")
+    @ParentCommand
+    private DatabaseSubCommand parentCommand; // Picocli injects reference to parent command
+
+    @Option(
+        names = "--from",
+        required = true,
+        paramLabel = MANDATORY_PATH_FORMAT_HELP,
+        description = "Directory containing the snapshot to restore",
+        arity = "1..1")
+    private final File snapshotDirectory = null;
+
+    @Override
+    public void run() {
+      LOG.info("Runs restore sub command with snapshotDirectory : {}", snapshotDirectory);
+
+      checkNotNull(parentCommand);
+      checkNotNull(parentCommand.parentCommand);
+      checkNotNull(parentCommand.snapshotter);
+
+      try {
+        // As snapshotDirectory is mandatory it's always injected by PicoCLI
+        //noinspection ConstantConditions
+        final SnapshotMetadata metadata =
+            parentCommand.snapshotter.restore(
+                snapshotDirectory.toPath(),
+                parentCommand.parentCommand.dataDir(),
+                Optional.ofNullable(parentCommand.parentCommand.ancientDataPath()));
+        parentCommand.out.println(
+            "Restored database at block "
+                + metadata.getChainHeadNumber()
+                + " ("
+                + metadata.getChainHeadHash()
+                + ")");
+      } catch (final IllegalArgumentException | IllegalStateException e) {
+        throw new ExecutionException(new CommandLine(this), e.getMessage());
+      } catch (final IOException | StorageException e) {
+        throw new ExecutionException(
+            new CommandLine(this), "Unable to restore snapshot from " + snapshotDirectory, e);
+      }
+    }
+  }
+
+  /**
+   * database verify-state sub-command
+   *
+   * <p>Walks the world state of a block to check no trie node or contract code is missing or
+   * corrupt
+   */
+  @Command(
+      name = "verify-state",
+      description =
+          "This command checks the world state of a block is complete and intact in the database of a stopped node.",
+      mixinStandardHelpOptions = true)
+  static class VerifyStateSubCommand implements Runnable {
+    @SuppressWarnings("unused")
+    @ParentCommand
+    private DatabaseSubCommand parentCommand; // Picocli injects reference to parent command
+
+    @Option(
+        names = "--block",
+        paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+        description = "Number of the block whose world state to verify (default: chain head)",
+        arity = "1..1")
+    private final Long blockNumber = null;
+
+    @Option(
+        names = "--threads",
+        paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+        description =
+            "Number of threads walking the world state in parallel (default: ${DEFAULT-VALUE})",
+        arity = "1..1")
+    private final Integer threads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public void run() {
+      checkNotNull(parentCommand);
+      checkNotNull(parentCommand.parentCommand);
+
+      if (threads < 1) {
+        throw new ParameterException(new CommandLine(this), "--threads must be at least 1");
+      }
+      final PantheonCommand pantheonCommand = parentCommand.parentCommand;
+      final Path databaseDirectory = pantheonCommand.dataDir().resolve(DATABASE_PATH);
+      if (!Files.exists(databaseDirectory.resolve("CURRENT"))) {
+        throw new ExecutionException(
+            new CommandLine(this), "No database found in " + pantheonCommand.dataDir());
+      }
+
+      final WorldStateVerifier.Result result;
+      final BlockHeader header;
+      try (final StorageProvider storageProvider =
+          RocksDbStorageProvider.create(
+              databaseDirectory,
+              pantheonCommand.buildRocksDbConfiguration(),
+              0,
+              0,
+              0,
+              Optional.ofNullable(pantheonCommand.ancientDataPath()),
+              new NoOpMetricsSystem())) {
+        final BlockchainStorage blockchainStorage =
+            storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create());
+        final Optional<Hash> blockHash =
+            blockNumber == null
+                ? blockchainStorage.getChainHead()
+                : blockchainStorage.getBlockHash(blockNumber);
+        header =
+            blockHash
+                .flatMap(blockchainStorage::getBlockHeader)
+                .orElseThrow(
+                    () ->
+                        new ExecutionException(
+                            new CommandLine(this),
+                            blockNumber == null
+                                ? "Database has no chain head"
+                                : "Block " + blockNumber + " not found"));
+        LOG.info(
+            "Verifying world state {} of block {} ({}) with {} threads",
+            header.getStateRoot(),
+            header.getNumber(),
+            header.getHash(),
+            threads);
+        result =
+            new WorldStateVerifier(storageProvider.createWorldStateStorage(), threads)
+                .verify(header.getStateRoot());
+      } catch (final IOException | StorageException e) {
+        throw new ExecutionException(
+            new CommandLine(this), "Unable to read database in " + databaseDirectory, e);
+      }
+
+      final PrintStream out = parentCommand.out;
+      out.println(
+          String.format(
+              "Verified world state of block %d (%s) in %d s: %d accounts, %d storage slots, "
+                  + "%d contract codes, %d nodes, %d MB at %d nodes/s, %d MB/s",
+              header.getNumber(),
+              header.getHash(),
+              result.getElapsedMillis() / 1000,
+              result.getAccountCount(),
+              result.getStorageSlotCount(),
+              result.getCodeCount(),
+              result.getNodeCount(),
+              result.getByteCount() / MEGABYTE,
+              result.getNodesPerSecond(),
+              result.getBytesPerSecond() / MEGABYTE));
+      result.getProblems().forEach(problem -> out.println("  " + problem));
+      if (!result.isComplete()) {
+        throw new ExecutionException(
+            new CommandLine(this),
+            "World state of block "
+                + header.getNumber()
+                + " has "
+                + result.getProblemCount()
+                + " missing or corrupt entries");
+      }
+    }
+  }
+}
@@ -56,6 +56,8 @@ public interface DefaultCommandValues {
   // but we use FULL for the moment as Fast is still in progress
   SyncMode DEFAULT_SYNC_MODE = SyncMode.FULL;
   int DEFAULT_MAX_PEERS = 25;
+  int DEFAULT_TRIE_NODE_CACHE_SIZE_MB = 256;
+  int DEFAULT_WORLD_STATE_BUFFER_SIZE_MB = 64;
   int MAX_TRAILING_PEERS = Integer.MAX_VALUE;
 
   static Path getDefaultPantheonDataPath(final Object command) {
@@ -49,11 +49,18 @@ import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApis;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
 import tech.pegasys.pantheon.ethereum.permissioning.PermissioningConfiguration;
 import tech.pegasys.pantheon.ethereum.permissioning.PermissioningConfigurationBuilder;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.KeyValueStoragePrefixedKeyBlockchainStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.BufferedWorldStateStorage;
+import tech.pegasys.pantheon.ethereum.worldstate.PruningConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.MetricCategory;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsConfiguration;
 import tech.pegasys.pantheon.metrics.prometheus.PrometheusMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration.WriteMode;
 import tech.pegasys.pantheon.util.BlockImporter;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter;
 import tech.pegasys.pantheon.util.InvalidConfigurationException;
 import tech.pegasys.pantheon.util.PermissioningConfigurationValidator;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
@@ -68,6 +75,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -207,6 +215,121 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
           "Synchronization mode, possible values are ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
   private final SyncMode syncMode = DEFAULT_SYNC_MODE;
 
+  @Option(
+      hidden = true,
+      names = {"--rocksdb-write-mode"},
+      paramLabel = MANDATORY_MODE_FORMAT_HELP,
+      description =
+          "How storage transactions are written to RocksDB, possible values are ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  private final WriteMode rocksDbWriteMode = RocksDbConfiguration.DEFAULT_WRITE_MODE;
+
+  @Option(
+      hidden = true,
+      names = {"--rocksdb-sync-writes-enabled"},
+      description =
+          "Wait for each storage commit to be synced to disk before returning (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Boolean isRocksDbSyncWritesEnabled = false;
+
+  @Option(
+      names = {"--rocksdb-cache-size"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Memory in megabytes for the RocksDB block cache (default: 1/16 of physical memory, between 128 and 8192)",
+      arity = "1")
+  private final Integer rocksDbCacheSize = null;
+
+  @Option(
+      names = {"--rocksdb-write-buffer-size"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Memory in megabytes for each RocksDB memtable before it is flushed to disk (default: 1/512 of physical memory, between 64 and 256)",
+      arity = "1")
+  private final Integer rocksDbWriteBufferSize = null;
+
+  @Option(
+      names = {"--rocksdb-max-open-files"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Maximum number of files RocksDB keeps open, -1 for no limit (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer rocksDbMaxOpenFiles = RocksDbConfiguration.DEFAULT_MAX_OPEN_FILES;
+
+  @Option(
+      names = {"--rocksdb-max-background-jobs"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Maximum number of concurrent RocksDB flushes and compactions (default: half the available processors, between 2 and 16)",
+      arity = "1")
+  private final Integer rocksDbMaxBackgroundJobs = null;
+
+  @Option(
+      names = {"--rocksdb-rate-limit"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Limit in megabytes per second on RocksDB flush and compaction writes, 0 for no limit (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer rocksDbRateLimit = 0;
+
+  @Option(
+      names = {"--trie-node-cache-size"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Maximum memory in megabytes used to cache world state trie nodes, 0 disables the cache (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer trieNodeCacheSize = DEFAULT_TRIE_NODE_CACHE_SIZE_MB;
+
+  @Option(
+      hidden = true,
+      names = {"--world-state-flush-interval"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Number of blocks whose world state changes are held in memory before being written to the database, 0 writes them after every block (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer worldStateFlushInterval = 0;
+
+  @Option(
+      hidden = true,
+      names = {"--world-state-buffer-size"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Maximum memory in megabytes used to hold unwritten world state changes (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer worldStateBufferSize = DEFAULT_WORLD_STATE_BUFFER_SIZE_MB;
+
+  @Option(
+      hidden = true,
+      names = {"--world-state-prefetch-threads"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Number of threads reading the state of upcoming transactions ahead of block execution, 0 disables prefetching (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Integer worldStatePrefetchThreads = WorldStatePrefetcher.DEFAULT_THREADS;
+
+  @Option(
+      names = {"--ancient-storage-enabled"},
+      description =
+          "Move headers, bodies and receipts of blocks older than "
+              + KeyValueStoragePrefixedKeyBlockchainStorage.ANCIENT_BLOCK_DISTANCE
+              + " blocks to append-only files outside the database (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Boolean isAncientStorageEnabled = false;
+
+  @Option(
+      names = {"--pruning-enabled"},
+      description =
+          "Remove world state that is no longer needed to process recent blocks (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Boolean isPruningEnabled = false;
+
+  @Option(
+      names = {"--pruning-blocks-retained"},
+      paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+      description =
+          "Minimum number of recent blocks for which to keep the world state when pruning (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private final Long pruningBlocksRetained = PruningConfiguration.DEFAULT_BLOCKS_RETAINED;
+
   @Option(
       names = {"--network"},
       paramLabel = MANDATORY_NETWORK_FORMAT_HELP,
@@ -521,12 +644,17 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
 
     commandLine.addSubcommand(
         BlocksSubCommand.COMMAND_NAME, new BlocksSubCommand(blockImporter, resultHandler.out()));
+    commandLine.addSubcommand(
+        DatabaseSubCommand.COMMAND_NAME,
+        new DatabaseSubCommand(new DatabaseSnapshotter(), resultHandler.out()));
     commandLine.addSubcommand(
         PublicKeySubCommand.COMMAND_NAME, new PublicKeySubCommand(resultHandler.out()));
     commandLine.addSubcommand(
         PasswordSubCommand.COMMAND_NAME, new PasswordSubCommand(resultHandler.out()));
     commandLine.addSubcommand(
         RLPSubCommand.COMMAND_NAME, new RLPSubCommand(resultHandler.out(), in));
+    commandLine.addSubcommand(
+        StateSubCommand.COMMAND_NAME, new StateSubCommand(resultHandler.out()));
 
     commandLine.registerConverter(Address.class, Address::fromHexString);
     commandLine.registerConverter(BytesValue.class, BytesValue::fromHexString);
@@ -579,6 +707,72 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
               + "or specify the beneficiary of mining (via --miner-coinbase <Address>)");
     }
 
+    if (rocksDbCacheSize != null && rocksDbCacheSize < 0) {
+      throw new ParameterException(this.commandLine, "--rocksdb-cache-size must not be negative");
+    }
+
+    if (rocksDbWriteBufferSize != null && rocksDbWriteBufferSize <= 0) {
+      throw new ParameterException(
+          this.commandLine, "--rocksdb-write-buffer-size must be greater than 0");
+    }
+
+    if (rocksDbMaxOpenFiles != -1 && rocksDbMaxOpenFiles <= 0) {
+      throw new ParameterException(
+          this.commandLine, "--rocksdb-max-open-files must be -1 or greater than 0");
+    }
+
+    if (rocksDbMaxBackgroundJobs != null && rocksDbMaxBackgroundJobs <= 0) {
+      throw new ParameterException(
+          this.commandLine, "--rocksdb-max-background-jobs must be greater than 0");
+    }
+
+    if (rocksDbRateLimit < 0) {
+      throw new ParameterException(this.commandLine, "--rocksdb-rate-limit must not be negative");
+    }
+
+    if (trieNodeCacheSize < 0) {
+      throw new ParameterException(this.commandLine, "--trie-node-cache-size must not be negative");
+    }
+
+    if (worldStateFlushInterval < 0
+        || worldStateFlushInterval > BufferedWorldStateStorage.MAX_FLUSH_INTERVAL) {
+      throw new ParameterException(
+          this.commandLine,
+          "--world-state-flush-interval must be between 0 and "
+              + BufferedWorldStateStorage.MAX_FLUSH_INTERVAL);
+    }
+
+    if (worldStatePrefetchThreads < 0) {
+      throw new ParameterException(
+          this.commandLine, "--world-state-prefetch-threads must not be negative");
+    }
+
+    if (worldStateBufferSize <= 0) {
+      throw new ParameterException(
+          this.commandLine, "--world-state-buffer-size must be greater than 0");
+    }
+
+    CommandLineUtils.checkOptionDependencies(
+        logger,
+        commandLine,
+        "--ancient-storage-enabled",
+        !isAncientStorageEnabled,
+        Collections.singletonList("--ancient-data-path"));
+
+    CommandLineUtils.checkOptionDependencies(
+        logger,
+        commandLine,
+        "--pruning-enabled",
+        !isPruningEnabled,
+        Collections.singletonList("--pruning-blocks-retained"));
+
+    if (pruningBlocksRetained <= PruningConfiguration.DEFAULT_BLOCK_CONFIRMATIONS) {
+      throw new ParameterException(
+          this.commandLine,
+          "--pruning-blocks-retained must be greater than "
+              + PruningConfiguration.DEFAULT_BLOCK_CONFIRMATIONS);
+    }
+
     if (permissionsConfigFile() != null) {
       if (!permissionsAccountsEnabled && !permissionsNodesEnabled) {
         logger.warn(
@@ -641,6 +835,12 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
           .nodePrivateKeyFile(nodePrivateKeyFile())
           .metricsSystem(metricsSystem.get())
           .privacyParameters(privacyParameters())
+          .rocksDbConfiguration(buildRocksDbConfiguration())
+          .trieNodeCacheSize(trieNodeCacheSize * 1024L * 1024L)
+          .worldStateFlushInterval(worldStateFlushInterval)
+          .worldStateBufferSize(worldStateBufferSize * 1024L * 1024L)
+          .worldStatePrefetchThreads(worldStatePrefetchThreads)
+          .ancientDataPath(ancientDataPath())
           .build();
     } catch (final InvalidConfigurationException e) {
       throw new ExecutionException(this.commandLine, e.getMessage());
@@ -764,6 +964,14 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
     return metricsConfiguration;
   }
 
+  private Optional<PruningConfiguration> pruningConfiguration() {
+    if (!isPruningEnabled) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        PruningConfiguration.builder().blocksRetained(pruningBlocksRetained).build());
+  }
+
   private Optional<PermissioningConfiguration> permissioningConfiguration() throws Exception {
 
     if (!permissionsAccountsEnabled && !permissionsNodesEnabled) {
@@ -808,9 +1016,30 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
   private SynchronizerConfiguration buildSyncConfig() {
     synchronizerConfigurationBuilder.syncMode(syncMode);
     synchronizerConfigurationBuilder.maxTrailingPeers(MAX_TRAILING_PEERS);
+    synchronizerConfigurationBuilder.worldStateQueueStorageConfiguration(
+        buildRocksDbConfiguration());
     return synchronizerConfigurationBuilder.build();
   }
 
+  RocksDbConfiguration buildRocksDbConfiguration() {
+    final RocksDbConfiguration.Builder builder =
+        RocksDbConfiguration.builder()
+            .maxOpenFiles(rocksDbMaxOpenFiles)
+            .rateLimit(rocksDbRateLimit * 1024L * 1024L)
+            .writeMode(rocksDbWriteMode)
+            .syncWrites(isRocksDbSyncWritesEnabled);
+    if (rocksDbCacheSize != null) {
+      builder.blockCacheSize(rocksDbCacheSize * 1024L * 1024L);
+    }
+    if (rocksDbWriteBufferSize != null) {
+      builder.writeBufferSize(rocksDbWriteBufferSize * 1024L * 1024L);
+    }
+    if (rocksDbMaxBackgroundJobs != null) {
+      builder.maxBackgroundJobs(rocksDbMaxBackgroundJobs);
+    }
+    return builder.build();
+  }
+
   // Blockchain synchronisation from peers.
   private void synchronize(
       final PantheonController<?> controller,
@@ -828,6 +1057,7 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
     checkNotNull(runnerBuilder);
 
     permissioningConfiguration.ifPresent(runnerBuilder::permissioningConfiguration);
+    pruningConfiguration().ifPresent(runnerBuilder::pruningConfiguration);
 
     final Runner runner =
         runnerBuilder
@@ -968,7 +1198,7 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
     }
   }
 
-  private Path dataDir() {
+  Path dataDir() {
     if (isFullInstantiation()) {
       return standaloneCommands.dataPath.toAbsolutePath();
     } else if (isDocker) {
@@ -978,6 +1208,16 @@ public class PantheonCommand implements DefaultCommandValues, Runnable {
     }
   }
 
+  Path ancientDataPath() {
+    if (!isAncientStorageEnabled) {
+      return null;
+    } else if (isFullInstantiation() && standaloneCommands.ancientDataPath != null) {
+      return standaloneCommands.ancientDataPath.toAbsolutePath();
+    } else {
+      return dataDir().resolve(PantheonController.ANCIENT_DATA_PATH);
+    }
+  }
+
   private File nodePrivateKeyFile() {
     File nodePrivateKeyFile = null;
     if (isFullInstantiation()) {
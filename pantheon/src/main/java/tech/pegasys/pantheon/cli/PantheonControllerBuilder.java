@@ -23,11 +23,14 @@ import tech.pegasys.pantheon.ethereum.core.PrivacyParameters;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
 import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
 
 public class PantheonControllerBuilder {
 
@@ -40,6 +43,12 @@ public class PantheonControllerBuilder {
   private File nodePrivateKeyFile;
   private MetricsSystem metricsSystem;
   private PrivacyParameters privacyParameters;
+  private RocksDbConfiguration rocksDbConfiguration = RocksDbConfiguration.createDefault();
+  private long trieNodeCacheSize;
+  private int worldStateFlushInterval;
+  private long worldStateBufferSize;
+  private int worldStatePrefetchThreads = WorldStatePrefetcher.DEFAULT_THREADS;
+  private Path ancientDataPath;
 
   public PantheonControllerBuilder synchronizerConfiguration(
       final SynchronizerConfiguration synchronizerConfiguration) {
@@ -87,13 +96,51 @@ public class PantheonControllerBuilder {
     return this;
   }
 
+  public PantheonControllerBuilder rocksDbConfiguration(
+      final RocksDbConfiguration rocksDbConfiguration) {
+    this.rocksDbConfiguration = rocksDbConfiguration;
+    return this;
+  }
+
+  public PantheonControllerBuilder trieNodeCacheSize(final long trieNodeCacheSize) {
+    this.trieNodeCacheSize = trieNodeCacheSize;
+    return this;
+  }
+
+  public PantheonControllerBuilder worldStateFlushInterval(final int worldStateFlushInterval) {
+    this.worldStateFlushInterval = worldStateFlushInterval;
+    return this;
+  }
+
+  public PantheonControllerBuilder worldStateBufferSize(final long worldStateBufferSize) {
+    this.worldStateBufferSize = worldStateBufferSize;
+    return this;
+  }
+
+  public PantheonControllerBuilder worldStatePrefetchThreads(final int worldStatePrefetchThreads) {
+    this.worldStatePrefetchThreads = worldStatePrefetchThreads;
+    return this;
+  }
+
+  public PantheonControllerBuilder ancientDataPath(final Path ancientDataPath) {
+    this.ancientDataPath = ancientDataPath;
+    return this;
+  }
+
   public PantheonController<?> build() throws IOException {
     // instantiate a controller with mainnet config if no genesis file is defined
     // otherwise use the indicated genesis file
     final KeyPair nodeKeys = loadKeyPair(nodePrivateKeyFile);
 
     final StorageProvider storageProvider =
-        RocksDbStorageProvider.create(homePath.resolve(DATABASE_PATH), metricsSystem);
+        RocksDbStorageProvider.create(
+            homePath.resolve(DATABASE_PATH),
+            rocksDbConfiguration,
+            trieNodeCacheSize,
+            worldStateFlushInterval,
+            worldStateBufferSize,
+            Optional.ofNullable(ancientDataPath),
+            metricsSystem);
 
     final GenesisConfigFile genesisConfigFile;
     if (devMode) {
@@ -106,6 +153,7 @@ public class PantheonControllerBuilder {
     return PantheonController.fromConfig(
         genesisConfigFile,
         synchronizerConfiguration,
+        worldStatePrefetchThreads,
         storageProvider,
         syncWithOttoman,
         ethNetworkConfig.getNetworkId(),
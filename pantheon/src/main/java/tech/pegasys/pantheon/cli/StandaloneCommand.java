@@ -33,6 +33,13 @@ class StandaloneCommand implements DefaultCommandValues {
       description = "The path to Pantheon data directory (default: ${DEFAULT-VALUE})")
   final Path dataPath = getDefaultPantheonDataPath(this);
 
+  @CommandLine.Option(
+      names = {"--ancient-data-path"},
+      paramLabel = MANDATORY_PATH_FORMAT_HELP,
+      description =
+          "The path to the directory holding blocks moved out of the database by --ancient-storage-enabled (default: a folder named \"ancient\" in the Pantheon data folder)")
+  final Path ancientDataPath = null;
+
   // Genesis file path with null default option if the option
   // is not defined on command line as this default is handled by Runner
   // to use mainnet json file from resources as indicated in the
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.cli;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static tech.pegasys.pantheon.cli.DefaultCommandValues.MANDATORY_INTEGER_FORMAT_HELP;
+import static tech.pegasys.pantheon.cli.DefaultCommandValues.MANDATORY_PATH_FORMAT_HELP;
+import static tech.pegasys.pantheon.cli.StateSubCommand.COMMAND_NAME;
+import static tech.pegasys.pantheon.controller.PantheonController.DATABASE_PATH;
+
+import tech.pegasys.pantheon.cli.StateSubCommand.DumpSubCommand;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateDumper;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStateStorage;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ExecutionException;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.ParentCommand;
+import picocli.CommandLine.Spec;
+
+/** World state related sub-command */
+@Command(
+    name = COMMAND_NAME,
+    description = "This command provides world state related actions.",
+    mixinStandardHelpOptions = true,
+    subcommands = {DumpSubCommand.class})
+class StateSubCommand implements Runnable {
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final String COMMAND_NAME = "state";
+
+  @SuppressWarnings("unused")
+  @ParentCommand
+  private PantheonCommand parentCommand; // Picocli injects reference to parent command
+
+  @SuppressWarnings("unused")
+  @Spec
+  private CommandSpec spec; // Picocli injects reference to command spec
+
+  private final PrintStream out;
+
+  StateSubCommand(final PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void run() {
+    spec.commandLine().usage(out);
+  }
+
+  /**
+   * state dump sub-command
+   *
+   * <p>Writes every account and storage slot of the world state of a block as newline delimited
+   * JSON
+   */
+  @Command(
+      name = "dump",
+      description =
+          "This command writes the world state of a block in the database of a stopped node to a file as newline delimited JSON.",
+      mixinStandardHelpOptions = true)
+  static class DumpSubCommand implements Runnable {
+    @SuppressWarnings("unused")
+    @ParentCommand
+    private StateSubCommand parentCommand; // Picocli injects reference to parent command
+
+    @Option(
+        names = "--to",
+        required = true,
+        paramLabel = MANDATORY_PATH_FORMAT_HELP,
+        description = "File to write the world state to",
+        arity = "1..1")
+    private final File dumpFile = null;
+
+    @Option(
+        names = "--block",
+        paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+        description = "Number of the block whose world state to dump (default: chain head)",
+        arity = "1..1")
+    private final Long blockNumber = null;
+
+    @Option(
+        names = "--threads",
+        paramLabel = MANDATORY_INTEGER_FORMAT_HELP,
+        description =
+            "Number of threads walking the world state in parallel (default: ${DEFAULT-VALUE})",
+        arity = "1..1")
+    private final Integer threads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public void run() {
+      checkNotNull(parentCommand);
+      checkNotNull(parentCommand.parentCommand);
+
+      if (threads < 1) {
+        throw new ParameterException(new CommandLine(this), "--threads must be at least 1");
+      }
+      final PantheonCommand pantheonCommand = parentCommand.parentCommand;
+      final Path databaseDirectory = pantheonCommand.dataDir().resolve(DATABASE_PATH);
+      if (!Files.exists(databaseDirectory.resolve("CURRENT"))) {
+        throw new ExecutionException(
+            new CommandLine(this), "No database found in " + pantheonCommand.dataDir());
+      }
+
+      final WorldStateDumper.Result result;
+      final BlockHeader header;
+      try (final StorageProvider storageProvider =
+          RocksDbStorageProvider.create(
+              databaseDirectory,
+              pantheonCommand.buildRocksDbConfiguration(),
+              0,
+              0,
+              0,
+              Optional.ofNullable(pantheonCommand.ancientDataPath()),
+              new NoOpMetricsSystem())) {
+        final BlockchainStorage blockchainStorage =
+            storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create());
+        final Optional<Hash> blockHash =
+            blockNumber == null
+                ? blockchainStorage.getChainHead()
+                : blockchainStorage.getBlockHash(blockNumber);
+        header =
+            blockHash
+                .flatMap(blockchainStorage::getBlockHeader)
+                .orElseThrow(
+                    () ->
+                        new ExecutionException(
+                            new CommandLine(this),
+                            blockNumber == null
+                                ? "Database has no chain head"
+                                : "Block " + blockNumber + " not found"));
+        final WorldStateStorage worldStateStorage = storageProvider.createWorldStateStorage();
+        if (!worldStateStorage.isWorldStateAvailable(header.getStateRoot())) {
+          throw new ExecutionException(
+              new CommandLine(this),
+              "World state of block " + header.getNumber() + " is not available");
+        }
+        LOG.info(
+            "Dumping world state {} of block {} ({}) to {} with {} threads",
+            header.getStateRoot(),
+            header.getNumber(),
+            header.getHash(),
+            dumpFile,
+            threads);
+        // As dumpFile is mandatory it's always injected by PicoCLI
+        //noinspection ConstantConditions
+        try (final Writer writer =
+            Files.newBufferedWriter(dumpFile.toPath(), StandardCharsets.UTF_8)) {
+          result =
+              new WorldStateDumper(worldStateStorage, threads).dump(header.getStateRoot(), writer);
+        }
+      } catch (final IOException | StorageException e) {
+        throw new ExecutionException(
+            new CommandLine(this), "Unable to dump world state to " + dumpFile, e);
+      }
+
+      parentCommand.out.println(
+          String.format(
+              "Dumped world state of block %d (%s) to %s in %d s: %d accounts, %d storage slots",
+              header.getNumber(),
+              header.getHash(),
+              dumpFile,
+              result.getElapsedMillis() / 1000,
+              result.getAccountCount(),
+              result.getStorageSlotCount()));
+    }
+  }
+}
@@ -77,6 +77,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
   private final KeyPair keyPair;
   private final TransactionPool transactionPool;
   private final Runnable closer;
+  private final StorageProvider storageProvider;
 
   private final MiningCoordinator miningCoordinator;
 
@@ -89,6 +90,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
       final KeyPair keyPair,
       final TransactionPool transactionPool,
       final MiningCoordinator miningCoordinator,
+      final StorageProvider storageProvider,
       final Runnable closer) {
 
     this.protocolSchedule = protocolSchedule;
@@ -99,6 +101,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
     this.keyPair = keyPair;
     this.transactionPool = transactionPool;
     this.closer = closer;
+    this.storageProvider = storageProvider;
     this.miningCoordinator = miningCoordinator;
   }
 
@@ -106,6 +109,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
       final StorageProvider storageProvider,
       final GenesisConfigFile genesisConfig,
       final SynchronizerConfiguration syncConfig,
+      final int prefetchThreads,
       final MiningParameters miningParams,
       final int networkId,
       final KeyPair nodeKeys,
@@ -128,6 +132,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
             genesisState,
             protocolSchedule,
             metricsSystem,
+            prefetchThreads,
             (blockchain, worldStateArchive) ->
                 new CliqueContext(
                     new VoteTallyCache(
@@ -202,6 +207,7 @@ public class CliquePantheonController implements PantheonController<CliqueContex
         nodeKeys,
         transactionPool,
         miningCoordinator,
+        storageProvider,
         () -> {
           miningCoordinator.disable();
           minerThreadPool.shutdownNow();
@@ -263,6 +269,11 @@ public class CliquePantheonController implements PantheonController<CliqueContex
     return PrivacyParameters.noPrivacy();
   }
 
+  @Override
+  public StorageProvider getStorageProvider() {
+    return storageProvider;
+  }
+
   @Override
   public Map<String, JsonRpcMethod> getAdditionalJsonRpcMethods(
       final Collection<RpcApi> enabledRpcApis) {
@@ -70,6 +70,7 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
   private final KeyPair keyPair;
   private final TransactionPool transactionPool;
   private final Runnable closer;
+  private final StorageProvider storageProvider;
 
   private IbftLegacyPantheonController(
       final ProtocolSchedule<IbftContext> protocolSchedule,
@@ -80,6 +81,7 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
       final Synchronizer synchronizer,
       final KeyPair keyPair,
       final TransactionPool transactionPool,
+      final StorageProvider storageProvider,
       final Runnable closer) {
 
     this.protocolSchedule = protocolSchedule;
@@ -91,12 +93,14 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
     this.keyPair = keyPair;
     this.transactionPool = transactionPool;
     this.closer = closer;
+    this.storageProvider = storageProvider;
   }
 
   static PantheonController<IbftContext> init(
       final StorageProvider storageProvider,
       final GenesisConfigFile genesisConfig,
       final SynchronizerConfiguration syncConfig,
+      final int prefetchThreads,
       final boolean ottomanTestnetOperation,
       final int networkId,
       final KeyPair nodeKeys,
@@ -114,6 +118,7 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
             genesisState,
             protocolSchedule,
             metricsSystem,
+            prefetchThreads,
             (blockchain, worldStateArchive) -> {
               final EpochManager epochManager = new EpochManager(ibftConfig.getEpochLength());
               final VoteTallyCache voteTallyCache =
@@ -193,6 +198,7 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
         synchronizer,
         nodeKeys,
         transactionPool,
+        storageProvider,
         closer);
   }
 
@@ -241,6 +247,11 @@ public class IbftLegacyPantheonController implements PantheonController<IbftCont
     return PrivacyParameters.noPrivacy();
   }
 
+  @Override
+  public StorageProvider getStorageProvider() {
+    return storageProvider;
+  }
+
   @Override
   public Map<String, JsonRpcMethod> getAdditionalJsonRpcMethods(
       final Collection<RpcApi> enabledRpcApis) {
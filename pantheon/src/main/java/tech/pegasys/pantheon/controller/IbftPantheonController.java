@@ -104,6 +104,7 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
   private final TransactionPool transactionPool;
   private final MiningCoordinator ibftMiningCoordinator;
   private final Runnable closer;
+  private final StorageProvider storageProvider;
 
   private IbftPantheonController(
       final ProtocolSchedule<IbftContext> protocolSchedule,
@@ -116,6 +117,7 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
       final KeyPair keyPair,
       final TransactionPool transactionPool,
       final MiningCoordinator ibftMiningCoordinator,
+      final StorageProvider storageProvider,
       final Runnable closer) {
     this.protocolSchedule = protocolSchedule;
     this.context = context;
@@ -128,12 +130,14 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
     this.transactionPool = transactionPool;
     this.ibftMiningCoordinator = ibftMiningCoordinator;
     this.closer = closer;
+    this.storageProvider = storageProvider;
   }
 
   static PantheonController<IbftContext> init(
       final StorageProvider storageProvider,
       final GenesisConfigFile genesisConfig,
       final SynchronizerConfiguration syncConfig,
+      final int prefetchThreads,
       final MiningParameters miningParams,
       final int networkId,
       final KeyPair nodeKeys,
@@ -153,6 +157,7 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
             genesisState,
             protocolSchedule,
             metricsSystem,
+            prefetchThreads,
             (blockchain, worldStateArchive) -> {
               final EpochManager epochManager = new EpochManager(ibftConfig.getEpochLength());
               return new IbftContext(
@@ -315,6 +320,7 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
         nodeKeys,
         transactionPool,
         ibftMiningCoordinator,
+        storageProvider,
         closer);
   }
 
@@ -365,6 +371,11 @@ public class IbftPantheonController implements PantheonController<IbftContext> {
     return PrivacyParameters.noPrivacy();
   }
 
+  @Override
+  public StorageProvider getStorageProvider() {
+    return storageProvider;
+  }
+
   @Override
   public Map<String, JsonRpcMethod> getAdditionalJsonRpcMethods(
       final Collection<RpcApi> enabledRpcApis) {
@@ -69,6 +69,7 @@ public class MainnetPantheonController implements PantheonController<Void> {
   private final MiningCoordinator miningCoordinator;
   private final PrivacyParameters privacyParameters;
   private final Runnable close;
+  private final StorageProvider storageProvider;
 
   private MainnetPantheonController(
       final ProtocolSchedule<Void> protocolSchedule,
@@ -80,6 +81,7 @@ public class MainnetPantheonController implements PantheonController<Void> {
       final TransactionPool transactionPool,
       final MiningCoordinator miningCoordinator,
       final PrivacyParameters privacyParameters,
+      final StorageProvider storageProvider,
       final Runnable close) {
     this.protocolSchedule = protocolSchedule;
     this.protocolContext = protocolContext;
@@ -91,6 +93,7 @@ public class MainnetPantheonController implements PantheonController<Void> {
     this.miningCoordinator = miningCoordinator;
     this.privacyParameters = privacyParameters;
     this.close = close;
+    this.storageProvider = storageProvider;
   }
 
   public static PantheonController<Void> init(
@@ -98,6 +101,7 @@ public class MainnetPantheonController implements PantheonController<Void> {
       final GenesisConfigFile genesisConfig,
       final ProtocolSchedule<Void> protocolSchedule,
       final SynchronizerConfiguration syncConfig,
+      final int prefetchThreads,
       final MiningParameters miningParams,
       final int networkId,
       final KeyPair nodeKeys,
@@ -108,7 +112,12 @@ public class MainnetPantheonController implements PantheonController<Void> {
     final GenesisState genesisState = GenesisState.fromConfig(genesisConfig, protocolSchedule);
     final ProtocolContext<Void> protocolContext =
         ProtocolContext.init(
-            storageProvider, genesisState, protocolSchedule, metricsSystem, (a, b) -> null);
+            storageProvider,
+            genesisState,
+            protocolSchedule,
+            metricsSystem,
+            prefetchThreads,
+            (a, b) -> null);
     final MutableBlockchain blockchain = protocolContext.getBlockchain();
 
     final boolean fastSyncEnabled = syncConfig.syncMode().equals(SyncMode.FAST);
@@ -179,6 +188,7 @@ public class MainnetPantheonController implements PantheonController<Void> {
         transactionPool,
         miningCoordinator,
         privacyParameters,
+        storageProvider,
         () -> {
           miningCoordinator.disable();
           minerThreadPool.shutdownNow();
@@ -244,4 +254,9 @@ public class MainnetPantheonController implements PantheonController<Void> {
   public PrivacyParameters getPrivacyParameters() {
     return privacyParameters;
   }
+
+  @Override
+  public StorageProvider getStorageProvider() {
+    return storageProvider;
+  }
 }
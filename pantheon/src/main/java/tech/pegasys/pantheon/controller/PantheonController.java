@@ -40,10 +40,12 @@ import java.util.Map;
 public interface PantheonController<C> extends Closeable {
 
   String DATABASE_PATH = "database";
+  String ANCIENT_DATA_PATH = "ancient";
 
   static PantheonController<?> fromConfig(
       final GenesisConfigFile genesisConfigFile,
       final SynchronizerConfiguration syncConfig,
+      final int prefetchThreads,
       final StorageProvider storageProvider,
       final boolean ottomanTestnetOperation,
       final int networkId,
@@ -61,6 +63,7 @@ public interface PantheonController<C> extends Closeable {
           genesisConfigFile,
           MainnetProtocolSchedule.fromConfig(configOptions, privacyParameters),
           syncConfig,
+          prefetchThreads,
           miningParameters,
           networkId,
           nodeKeys,
@@ -72,6 +75,7 @@ public interface PantheonController<C> extends Closeable {
           storageProvider,
           genesisConfigFile,
           syncConfig,
+          prefetchThreads,
           miningParameters,
           networkId,
           nodeKeys,
@@ -82,6 +86,7 @@ public interface PantheonController<C> extends Closeable {
           storageProvider,
           genesisConfigFile,
           syncConfig,
+          prefetchThreads,
           ottomanTestnetOperation,
           networkId,
           nodeKeys,
@@ -92,6 +97,7 @@ public interface PantheonController<C> extends Closeable {
           storageProvider,
           genesisConfigFile,
           syncConfig,
+          prefetchThreads,
           miningParameters,
           networkId,
           nodeKeys,
@@ -120,6 +126,8 @@ public interface PantheonController<C> extends Closeable {
 
   PrivacyParameters getPrivacyParameters();
 
+  StorageProvider getStorageProvider();
+
   default Map<String, JsonRpcMethod> getAdditionalJsonRpcMethods(
       final Collection<RpcApi> enabledRpcApis) {
     return emptyMap();
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.util;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import tech.pegasys.pantheon.controller.PantheonController;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.eth.sync.fastsync.FastSyncStateStorage;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbCheckpoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import io.vertx.core.json.JsonObject;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pantheon database snapshot util.
+ *
+ * <p>A snapshot holds a RocksDB checkpoint of the node's database and of the fast sync download
+ * queue, copies of the remaining fast sync state and ancient block files, and a metadata file
+ * recording the chain head the snapshot was taken at. Checkpoints hard link the database files, so
+ * a snapshot on the same file system as the data directory takes seconds. Restoring hard links the
+ * immutable SST files back where possible.
+ *
+ * <p>Snapshots can be taken from a stopped node's data directory or, without the fast sync state,
+ * from the storage of a running node.
+ */
+public class DatabaseSnapshotter {
+  private static final Logger LOG = getLogger();
+
+  static final String METADATA_FILENAME = "snapshot.json";
+  private static final String CHAIN_HEAD_HASH = "chainHeadHash";
+  private static final String CHAIN_HEAD_NUMBER = "chainHeadNumber";
+  private static final String SST_FILE_SUFFIX = ".sst";
+
+  /**
+   * Takes a snapshot of the node data in {@code dataDir}. The node must not be running.
+   *
+   * @param dataDir the node's data directory
+   * @param ancientDataDir the directory old blocks are moved to, if ancient storage is enabled
+   * @param snapshotDir the directory to write the snapshot to, which must not exist or be empty
+   * @return the chain head the snapshot was taken at
+   * @throws IOException On Failure
+   */
+  public SnapshotMetadata snapshot(
+      final Path dataDir, final Optional<Path> ancientDataDir, final Path snapshotDir)
+      throws IOException {
+    final Path databaseDir = dataDir.resolve(PantheonController.DATABASE_PATH);
+    if (!Files.exists(databaseDir.resolve("CURRENT"))) {
+      throw new IllegalArgumentException("No database found in " + dataDir);
+    }
+    checkEmpty(snapshotDir);
+    Files.createDirectories(snapshotDir);
+    try {
+      LOG.info("Creating checkpoint of {}", databaseDir);
+      RocksDbCheckpoint.create(databaseDir, snapshotDir.resolve(PantheonController.DATABASE_PATH));
+
+      final Path fastSyncDir = dataDir.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH);
+      if (Files.isDirectory(fastSyncDir)) {
+        snapshotFastSyncState(
+            fastSyncDir, snapshotDir.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH));
+      }
+      if (ancientDataDir.isPresent() && Files.isDirectory(ancientDataDir.get())) {
+        LOG.info("Copying ancient blocks from {}", ancientDataDir.get());
+        copyDirectory(
+            ancientDataDir.get(), snapshotDir.resolve(PantheonController.ANCIENT_DATA_PATH));
+      }
+
+      return writeMetadata(snapshotDir);
+    } catch (final IOException | RuntimeException e) {
+      MoreFiles.deleteRecursively(snapshotDir, RecursiveDeleteOption.ALLOW_INSECURE);
+      throw e;
+    }
+  }
+
+  /**
+   * Takes a snapshot of the database of a running node. Unlike {@link #snapshot(Path, Optional,
+   * Path)} the fast sync state isn't included, as the download queue is in use while fast sync is
+   * running. A node restored from a snapshot taken during fast sync starts a new fast sync.
+   *
+   * @param storageProvider the running node's storage
+   * @param snapshotDir the directory to write the snapshot to, which must not exist or be empty
+   * @return the chain head the snapshot was taken at
+   * @throws IOException On Failure
+   */
+  public SnapshotMetadata snapshot(final StorageProvider storageProvider, final Path snapshotDir)
+      throws IOException {
+    checkEmpty(snapshotDir);
+    Files.createDirectories(snapshotDir);
+    try {
+      LOG.info("Creating checkpoint of the running node's database in {}", snapshotDir);
+      storageProvider.createCheckpoint(
+          snapshotDir.resolve(PantheonController.DATABASE_PATH),
+          snapshotDir.resolve(PantheonController.ANCIENT_DATA_PATH));
+      return writeMetadata(snapshotDir);
+    } catch (final IOException | RuntimeException e) {
+      MoreFiles.deleteRecursively(snapshotDir, RecursiveDeleteOption.ALLOW_INSECURE);
+      throw e;
+    }
+  }
+
+  /**
+   * Restores a snapshot into {@code dataDir} and checks the restored database has the chain head
+   * recorded in the snapshot. The node must not be running.
+   *
+   * @param snapshotDir the directory of the snapshot to restore
+   * @param dataDir the node's data directory, which must not contain a database yet
+   * @param ancientDataDir the directory old blocks are moved to, if ancient storage is enabled
+   * @return the chain head of the restored database
+   * @throws IOException On Failure
+   */
+  public SnapshotMetadata restore(
+      final Path snapshotDir, final Path dataDir, final Optional<Path> ancientDataDir)
+      throws IOException {
+    final Path metadataFile = snapshotDir.resolve(METADATA_FILENAME);
+    if (!Files.isRegularFile(metadataFile)) {
+      throw new IllegalArgumentException("No database snapshot found in " + snapshotDir);
+    }
+    final SnapshotMetadata expected =
+        SnapshotMetadata.fromJson(
+            new JsonObject(new String(Files.readAllBytes(metadataFile), StandardCharsets.UTF_8)));
+
+    final List<Path> sources = new ArrayList<>();
+    final List<Path> targets = new ArrayList<>();
+    sources.add(snapshotDir.resolve(PantheonController.DATABASE_PATH));
+    targets.add(dataDir.resolve(PantheonController.DATABASE_PATH));
+    final Path fastSyncSnapshot = snapshotDir.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH);
+    if (Files.isDirectory(fastSyncSnapshot)) {
+      sources.add(fastSyncSnapshot);
+      targets.add(dataDir.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH));
+    }
+    final Path ancientSnapshot = snapshotDir.resolve(PantheonController.ANCIENT_DATA_PATH);
+    if (Files.isDirectory(ancientSnapshot)) {
+      if (!ancientDataDir.isPresent()) {
+        throw new IllegalArgumentException(
+            "Snapshot contains ancient blocks, ancient storage must be enabled to restore it");
+      }
+      sources.add(ancientSnapshot);
+      targets.add(ancientDataDir.get());
+    }
+    for (final Path target : targets) {
+      checkEmpty(target);
+    }
+
+    try {
+      for (int i = 0; i < sources.size(); i++) {
+        LOG.info("Restoring {} to {}", sources.get(i), targets.get(i));
+        copyDirectory(sources.get(i), targets.get(i));
+      }
+      final SnapshotMetadata restored =
+          readMetadata(dataDir.resolve(PantheonController.DATABASE_PATH));
+      if (!restored.equals(expected)) {
+        throw new IllegalStateException(
+            "Restored database is at " + restored + " but the snapshot was taken at " + expected);
+      }
+      return restored;
+    } catch (final IOException | RuntimeException e) {
+      for (final Path target : targets) {
+        if (Files.exists(target)) {
+          MoreFiles.deleteRecursively(target, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+      }
+      throw e;
+    }
+  }
+
+  private void snapshotFastSyncState(final Path fastSyncDir, final Path target) throws IOException {
+    Files.createDirectories(target);
+    try (final Stream<Path> files = Files.list(fastSyncDir)) {
+      for (final Path file : (Iterable<Path>) files::iterator) {
+        if (Files.exists(file.resolve("CURRENT"))) {
+          LOG.info("Creating checkpoint of {}", file);
+          RocksDbCheckpoint.create(file, target.resolve(file.getFileName()));
+        } else if (Files.isRegularFile(file)) {
+          Files.copy(file, target.resolve(file.getFileName()));
+        }
+      }
+    }
+  }
+
+  private SnapshotMetadata writeMetadata(final Path snapshotDir) throws IOException {
+    final SnapshotMetadata metadata =
+        readMetadata(snapshotDir.resolve(PantheonController.DATABASE_PATH));
+    Files.write(
+        snapshotDir.resolve(METADATA_FILENAME),
+        metadata.toJson().encodePrettily().getBytes(StandardCharsets.UTF_8));
+    return metadata;
+  }
+
+  private SnapshotMetadata readMetadata(final Path databaseDir) throws IOException {
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(databaseDir, new NoOpMetricsSystem())) {
+      final BlockchainStorage blockchainStorage =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create());
+      final Hash chainHead =
+          blockchainStorage
+              .getChainHead()
+              .orElseThrow(
+                  () -> new IllegalStateException("Database in " + databaseDir + " is empty"));
+      final BlockHeader header =
+          blockchainStorage
+              .getBlockHeader(chainHead)
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          "Header of chain head " + chainHead + " is missing in " + databaseDir));
+      return new SnapshotMetadata(chainHead, header.getNumber());
+    }
+  }
+
+  private static void checkEmpty(final Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (final Stream<Path> files = Files.list(directory)) {
+      if (files.findAny().isPresent()) {
+        throw new IllegalArgumentException(directory + " already exists and is not empty");
+      }
+    }
+  }
+
+  /** Copies a directory tree, hard linking SST files as RocksDB never modifies them. */
+  private static void copyDirectory(final Path source, final Path target) throws IOException {
+    try (final Stream<Path> files = Files.walk(source)) {
+      for (final Path file : (Iterable<Path>) files::iterator) {
+        final Path copy = target.resolve(source.relativize(file).toString());
+        if (Files.isDirectory(file)) {
+          Files.createDirectories(copy);
+        } else if (file.getFileName().toString().endsWith(SST_FILE_SUFFIX)) {
+          try {
+            Files.createLink(copy, file);
+          } catch (final IOException | UnsupportedOperationException e) {
+            Files.copy(file, copy);
+          }
+        } else {
+          Files.copy(file, copy);
+        }
+      }
+    }
+  }
+
+  /** The chain head a snapshot was taken at. */
+  public static final class SnapshotMetadata {
+    private final Hash chainHeadHash;
+    private final long chainHeadNumber;
+
+    SnapshotMetadata(final Hash chainHeadHash, final long chainHeadNumber) {
+      this.chainHeadHash = chainHeadHash;
+      this.chainHeadNumber = chainHeadNumber;
+    }
+
+    public Hash getChainHeadHash() {
+      return chainHeadHash;
+    }
+
+    public long getChainHeadNumber() {
+      return chainHeadNumber;
+    }
+
+    private JsonObject toJson() {
+      return new JsonObject()
+          .put(CHAIN_HEAD_HASH, chainHeadHash.toString())
+          .put(CHAIN_HEAD_NUMBER, chainHeadNumber);
+    }
+
+    private static SnapshotMetadata fromJson(final JsonObject json) {
+      return new SnapshotMetadata(
+          Hash.fromHexString(json.getString(CHAIN_HEAD_HASH)), json.getLong(CHAIN_HEAD_NUMBER));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof SnapshotMetadata)) {
+        return false;
+      }
+      final SnapshotMetadata other = (SnapshotMetadata) obj;
+      return chainHeadNumber == other.chainHeadNumber && chainHeadHash.equals(other.chainHeadHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return chainHeadHash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("chainHeadNumber", chainHeadNumber)
+          .add("chainHeadHash", chainHeadHash)
+          .toString();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import tech.pegasys.pantheon.ethereum.core.MiningParametersTestBuilder;
 import tech.pegasys.pantheon.ethereum.core.PrivacyParameters;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
 import tech.pegasys.pantheon.ethereum.mainnet.PrecompiledContract;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
 
 import java.io.IOException;
@@ -50,6 +51,7 @@ public class PrivacyTest {
             PantheonController.fromConfig(
                 GenesisConfigFile.mainnet(),
                 SynchronizerConfiguration.builder().build(),
+                WorldStatePrefetcher.DEFAULT_THREADS,
                 new InMemoryStorageProvider(),
                 false,
                 1,
@@ -41,6 +41,7 @@ import tech.pegasys.pantheon.ethereum.p2p.peers.Peer;
 import tech.pegasys.pantheon.ethereum.permissioning.PermissioningConfiguration;
 import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
 import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsConfiguration;
@@ -107,6 +108,7 @@ public final class RunnerTest {
             GenesisConfigFile.mainnet(),
             MainnetProtocolSchedule.create(),
             syncConfigAhead,
+            WorldStatePrefetcher.DEFAULT_THREADS,
             new MiningParametersTestBuilder().enabled(false).build(),
             networkId,
             aheadDbNodeKeys,
@@ -123,6 +125,7 @@ public final class RunnerTest {
             GenesisConfigFile.mainnet(),
             MainnetProtocolSchedule.create(),
             syncConfigAhead,
+            WorldStatePrefetcher.DEFAULT_THREADS,
             new MiningParametersTestBuilder().enabled(false).build(),
             networkId,
             aheadDbNodeKeys,
@@ -177,6 +180,7 @@ public final class RunnerTest {
               GenesisConfigFile.mainnet(),
               MainnetProtocolSchedule.create(),
               syncConfigBehind,
+              WorldStatePrefetcher.DEFAULT_THREADS,
               new MiningParametersTestBuilder().enabled(false).build(),
               networkId,
               KeyPair.generate(),
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.cli;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.controller.PantheonController;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+
+import java.nio.file.Path;
+
+import org.junit.Test;
+import picocli.CommandLine.ExecutionException;
+import picocli.CommandLine.Model.CommandSpec;
+
+public class DatabaseSubCommandTest extends CommandTestAbstract {
+
+  private static final String EXPECTED_DATABASE_USAGE =
+      "Usage: pantheon database [-hV] [COMMAND]"
+          + System.lineSeparator()
+          + "This command provides database related actions."
+          + System.lineSeparator()
+          + "  -h, --help      Show this help message and exit."
+          + System.lineSeparator()
+          + "  -V, --version   Print version information and exit."
+          + System.lineSeparator()
+          + "Commands:"
+          + System.lineSeparator()
+          + "  snapshot      This command takes a snapshot of the database and fast sync"
+          + System.lineSeparator()
+          + "                  state of a stopped node. Use the admin_createSnapshot RPC"
+          + System.lineSeparator()
+          + "                  method to snapshot a running node."
+          + System.lineSeparator()
+          + "  restore       This command restores a database snapshot into an empty data"
+          + System.lineSeparator()
+          + "                  directory."
+          + System.lineSeparator()
+          + "  verify-state  This command checks the world state of a block is complete and"
+          + System.lineSeparator()
+          + "                  intact in the database of a stopped node."
+          + System.lineSeparator();
+
+  private static final String DATABASE_SUBCOMMAND_NAME = "database";
+  private static final String SNAPSHOT_SUBCOMMAND_NAME = "snapshot";
+  private static final String RESTORE_SUBCOMMAND_NAME = "restore";
+  private static final String VERIFY_STATE_SUBCOMMAND_NAME = "verify-state";
+
+  // Database sub-command
+  @Test
+  public void databaseSubCommandExistAndHaveSubCommands() {
+    final CommandSpec spec = parseCommand();
+    assertThat(spec.subcommands()).containsKeys(DATABASE_SUBCOMMAND_NAME);
+    assertThat(spec.subcommands().get(DATABASE_SUBCOMMAND_NAME).getSubcommands())
+        .containsKeys(
+            SNAPSHOT_SUBCOMMAND_NAME, RESTORE_SUBCOMMAND_NAME, VERIFY_STATE_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void callingDatabaseSubCommandWithoutSubSubcommandMustDisplayUsage() {
+    parseCommand(DATABASE_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).startsWith(EXPECTED_DATABASE_USAGE);
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  // Snapshot sub-sub-command
+  @Test
+  public void callingSnapshotSubCommandWithoutPathMustDisplayError() {
+    parseCommand(DATABASE_SUBCOMMAND_NAME, SNAPSHOT_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).startsWith("Missing required option '--to=<PATH>'");
+  }
+
+  @Test
+  public void callingSnapshotSubCommandWithoutDatabaseMustFail() throws Exception {
+    final String dataPath = temp.newFolder().getPath();
+    final String snapshotPath = temp.getRoot().toPath().resolve("snapshot").toString();
+    assertThatThrownBy(
+            () ->
+                parseCommand(
+                    "--data-path",
+                    dataPath,
+                    DATABASE_SUBCOMMAND_NAME,
+                    SNAPSHOT_SUBCOMMAND_NAME,
+                    "--to",
+                    snapshotPath))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("No database found in " + dataPath);
+    assertThat(commandOutput.toString()).isEmpty();
+  }
+
+  // Restore sub-sub-command
+  @Test
+  public void callingRestoreSubCommandWithoutPathMustDisplayError() {
+    parseCommand(DATABASE_SUBCOMMAND_NAME, RESTORE_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).startsWith("Missing required option '--from=<PATH>'");
+  }
+
+  @Test
+  public void callingRestoreSubCommandWithoutSnapshotMustFail() throws Exception {
+    final String dataPath = temp.newFolder().getPath();
+    final String snapshotPath = temp.newFolder().getPath();
+    assertThatThrownBy(
+            () ->
+                parseCommand(
+                    "--data-path",
+                    dataPath,
+                    DATABASE_SUBCOMMAND_NAME,
+                    RESTORE_SUBCOMMAND_NAME,
+                    "--from",
+                    snapshotPath))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("No database snapshot found in " + snapshotPath);
+    assertThat(commandOutput.toString()).isEmpty();
+  }
+
+  // Verify state sub-sub-command
+  @Test
+  public void callingVerifyStateSubCommandWithoutDatabaseMustFail() throws Exception {
+    final String dataPath = temp.newFolder().getPath();
+    assertThatThrownBy(
+            () ->
+                parseCommand(
+                    "--data-path",
+                    dataPath,
+                    DATABASE_SUBCOMMAND_NAME,
+                    VERIFY_STATE_SUBCOMMAND_NAME))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("No database found in " + dataPath);
+  }
+
+  @Test
+  public void callingVerifyStateSubCommandWithInvalidThreadsMustDisplayError() {
+    parseCommand(DATABASE_SUBCOMMAND_NAME, VERIFY_STATE_SUBCOMMAND_NAME, "--threads", "0");
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).startsWith("--threads must be at least 1");
+  }
+
+  @Test
+  public void callingVerifyStateSubCommandMustReportMissingState() throws Exception {
+    final Path dataPath = temp.newFolder().toPath();
+    final BlockHeader chainHead = new BlockDataGenerator().header(3);
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            dataPath.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      final BlockchainStorage.Updater updater =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create()).updater();
+      updater.putBlockHeader(chainHead.getHash(), chainHead);
+      updater.setChainHead(chainHead.getHash());
+      updater.commit();
+    }
+
+    assertThatThrownBy(
+            () ->
+                parseCommand(
+                    "--data-path",
+                    dataPath.toString(),
+                    DATABASE_SUBCOMMAND_NAME,
+                    VERIFY_STATE_SUBCOMMAND_NAME,
+                    "--threads",
+                    "2"))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("World state of block 3 has 1 missing or corrupt entries");
+    assertThat(commandOutput.toString())
+        .startsWith("Verified world state of block 3 (" + chainHead.getHash() + ")")
+        .contains("MISSING_NODE " + chainHead.getStateRoot());
+  }
+}
@@ -17,9 +17,12 @@ import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assume.assumeFalse;
 import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNotNull;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static tech.pegasys.pantheon.cli.NetworkName.DEV;
@@ -44,8 +47,11 @@ import tech.pegasys.pantheon.ethereum.jsonrpc.JsonRpcConfiguration;
 import tech.pegasys.pantheon.ethereum.jsonrpc.RpcApi;
 import tech.pegasys.pantheon.ethereum.jsonrpc.websocket.WebSocketConfiguration;
 import tech.pegasys.pantheon.ethereum.permissioning.PermissioningConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.MetricCategory;
 import tech.pegasys.pantheon.metrics.prometheus.MetricsConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration.WriteMode;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.File;
@@ -891,6 +897,274 @@ public class PantheonCommandTest extends CommandTestAbstract {
     assertThat(commandErrorOutput.toString()).isEmpty();
   }
 
+  @Test
+  public void rocksDbOptionsMustBeUsed() throws Exception {
+    parseCommand("--rocksdb-write-mode", "WRITE_BATCH", "--rocksdb-sync-writes-enabled", "true");
+
+    verify(mockControllerBuilder).rocksDbConfiguration(rocksDbConfigArgumentCaptor.capture());
+    verify(mockControllerBuilder).build();
+
+    assertThat(rocksDbConfigArgumentCaptor.getValue().getWriteMode())
+        .isEqualTo(WriteMode.WRITE_BATCH);
+    assertThat(rocksDbConfigArgumentCaptor.getValue().isSyncWrites()).isTrue();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void rocksDbTuningOptionsMustBeUsed() throws Exception {
+    parseCommand(
+        "--rocksdb-cache-size",
+        "4096",
+        "--rocksdb-write-buffer-size",
+        "128",
+        "--rocksdb-max-open-files",
+        "-1",
+        "--rocksdb-max-background-jobs",
+        "12",
+        "--rocksdb-rate-limit",
+        "100");
+
+    verify(mockControllerBuilder).rocksDbConfiguration(rocksDbConfigArgumentCaptor.capture());
+    verify(mockControllerBuilder).build();
+
+    final RocksDbConfiguration rocksDbConfiguration = rocksDbConfigArgumentCaptor.getValue();
+    assertThat(rocksDbConfiguration.getBlockCacheSize()).isEqualTo(4096L * 1024 * 1024);
+    assertThat(rocksDbConfiguration.getWriteBufferSize()).isEqualTo(128L * 1024 * 1024);
+    assertThat(rocksDbConfiguration.getMaxOpenFiles()).isEqualTo(-1);
+    assertThat(rocksDbConfiguration.getMaxBackgroundJobs()).isEqualTo(12);
+    assertThat(rocksDbConfiguration.getRateLimit()).isEqualTo(100L * 1024 * 1024);
+
+    verify(mockSyncConfBuilder)
+        .worldStateQueueStorageConfiguration(rocksDbConfigArgumentCaptor.capture());
+    assertThat(rocksDbConfigArgumentCaptor.getValue().getBlockCacheSize())
+        .isEqualTo(4096L * 1024 * 1024);
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void rocksDbTuningDefaultsMustBeScaledToHost() throws Exception {
+    parseCommand();
+
+    verify(mockControllerBuilder).rocksDbConfiguration(rocksDbConfigArgumentCaptor.capture());
+    verify(mockControllerBuilder).build();
+
+    final RocksDbConfiguration expected = RocksDbConfiguration.createDefault();
+    final RocksDbConfiguration rocksDbConfiguration = rocksDbConfigArgumentCaptor.getValue();
+    assertThat(rocksDbConfiguration.getBlockCacheSize()).isEqualTo(expected.getBlockCacheSize());
+    assertThat(rocksDbConfiguration.getWriteBufferSize()).isEqualTo(expected.getWriteBufferSize());
+    assertThat(rocksDbConfiguration.getMaxOpenFiles())
+        .isEqualTo(RocksDbConfiguration.DEFAULT_MAX_OPEN_FILES);
+    assertThat(rocksDbConfiguration.getMaxBackgroundJobs())
+        .isEqualTo(expected.getMaxBackgroundJobs());
+    assertThat(rocksDbConfiguration.getRateLimit()).isZero();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void invalidRocksDbMaxOpenFilesMustDisplayError() {
+    parseCommand("--rocksdb-max-open-files", "0");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--rocksdb-max-open-files must be -1 or greater than 0");
+  }
+
+  @Test
+  public void trieNodeCacheSizeOptionMustBeUsed() throws Exception {
+    parseCommand("--trie-node-cache-size", "64");
+
+    verify(mockControllerBuilder).trieNodeCacheSize(64L * 1024 * 1024);
+    verify(mockControllerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void negativeTrieNodeCacheSizeMustDisplayError() {
+    parseCommand("--trie-node-cache-size", "-1");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--trie-node-cache-size must not be negative");
+  }
+
+  @Test
+  public void worldStateBufferingIsDisabledByDefault() throws Exception {
+    parseCommand();
+
+    verify(mockControllerBuilder).worldStateFlushInterval(0);
+    verify(mockControllerBuilder).worldStateBufferSize(64L * 1024 * 1024);
+    verify(mockControllerBuilder).worldStatePrefetchThreads(WorldStatePrefetcher.DEFAULT_THREADS);
+    verify(mockControllerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void worldStateBufferingOptionsMustBeUsed() throws Exception {
+    parseCommand("--world-state-flush-interval", "128", "--world-state-buffer-size", "16");
+
+    verify(mockControllerBuilder).worldStateFlushInterval(128);
+    verify(mockControllerBuilder).worldStateBufferSize(16L * 1024 * 1024);
+    verify(mockControllerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void worldStatePrefetchThreadsMustBeUsed() throws Exception {
+    parseCommand("--world-state-prefetch-threads", "0");
+
+    verify(mockControllerBuilder).worldStatePrefetchThreads(0);
+    verify(mockControllerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void negativeWorldStatePrefetchThreadsMustDisplayError() {
+    parseCommand("--world-state-prefetch-threads", "-1");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--world-state-prefetch-threads must not be negative");
+  }
+
+  @Test
+  public void tooLargeWorldStateFlushIntervalMustDisplayError() {
+    parseCommand("--world-state-flush-interval", "1025");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--world-state-flush-interval must be between 0 and 1024");
+  }
+
+  @Test
+  public void zeroWorldStateBufferSizeMustDisplayError() {
+    parseCommand("--world-state-buffer-size", "0");
+
+    verifyZeroInteractions(mockControllerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--world-state-buffer-size must be greater than 0");
+  }
+
+  @Test
+  public void ancientStorageIsDisabledByDefault() throws Exception {
+    parseCommand();
+
+    verify(mockControllerBuilder).ancientDataPath(isNull());
+    verify(mockControllerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void ancientDataPathDefaultsToDataPath() throws Exception {
+    assumeTrue(isFullInstantiation());
+
+    final Path path = Paths.get(".");
+
+    parseCommand("--data-path", path.toString(), "--ancient-storage-enabled", "true");
+
+    verify(mockControllerBuilder).ancientDataPath(pathArgumentCaptor.capture());
+    verify(mockControllerBuilder).build();
+
+    assertThat(pathArgumentCaptor.getValue())
+        .isEqualByComparingTo(path.toAbsolutePath().resolve("ancient"));
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void ancientDataPathOptionMustBeUsed() throws Exception {
+    assumeTrue(isFullInstantiation());
+
+    final Path path = Paths.get("ancient-blocks");
+
+    parseCommand("--ancient-storage-enabled", "true", "--ancient-data-path", path.toString());
+
+    verify(mockControllerBuilder).ancientDataPath(pathArgumentCaptor.capture());
+    verify(mockControllerBuilder).build();
+
+    assertThat(pathArgumentCaptor.getValue()).isEqualByComparingTo(path.toAbsolutePath());
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void ancientDataPathRequiresAncientStorageToBeEnabled() {
+    assumeTrue(isFullInstantiation());
+
+    parseCommand("--ancient-data-path", "ancient-blocks");
+
+    verifyOptionsConstraintLoggerCall("--ancient-data-path", "--ancient-storage-enabled");
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void pruningIsDisabledByDefault() {
+    parseCommand();
+
+    verify(mockRunnerBuilder, never()).pruningConfiguration(any());
+    verify(mockRunnerBuilder).build();
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void pruningOptionsMustBeUsed() {
+    parseCommand("--pruning-enabled", "true", "--pruning-blocks-retained", "512");
+
+    verify(mockRunnerBuilder).pruningConfiguration(pruningConfigurationArgumentCaptor.capture());
+    verify(mockRunnerBuilder).build();
+
+    assertThat(pruningConfigurationArgumentCaptor.getValue().getBlocksRetained()).isEqualTo(512);
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void pruningOptionsRequirePruningToBeEnabled() {
+    parseCommand("--pruning-blocks-retained", "512");
+
+    verifyOptionsConstraintLoggerCall("--pruning-blocks-retained", "--pruning-enabled");
+
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void tooFewPruningBlocksRetainedMustDisplayError() {
+    parseCommand("--pruning-enabled", "true", "--pruning-blocks-retained", "10");
+
+    verifyZeroInteractions(mockRunnerBuilder);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString())
+        .startsWith("--pruning-blocks-retained must be greater than 10");
+  }
+
   @Test
   public void rpcHttpEnabledPropertyDefaultIsFalse() {
     parseCommand();
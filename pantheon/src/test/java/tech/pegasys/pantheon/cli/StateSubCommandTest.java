@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.cli;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.controller.PantheonController;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.Address;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.core.BlockHeaderTestFixture;
+import tech.pegasys.pantheon.ethereum.core.Hash;
+import tech.pegasys.pantheon.ethereum.core.MutableWorldState;
+import tech.pegasys.pantheon.ethereum.core.Wei;
+import tech.pegasys.pantheon.ethereum.core.WorldUpdater;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.ethereum.worldstate.DefaultMutableWorldState;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+import picocli.CommandLine.ExecutionException;
+import picocli.CommandLine.Model.CommandSpec;
+
+public class StateSubCommandTest extends CommandTestAbstract {
+
+  private static final String EXPECTED_STATE_USAGE =
+      "Usage: pantheon state [-hV] [COMMAND]"
+          + System.lineSeparator()
+          + "This command provides world state related actions."
+          + System.lineSeparator()
+          + "  -h, --help      Show this help message and exit."
+          + System.lineSeparator()
+          + "  -V, --version   Print version information and exit."
+          + System.lineSeparator()
+          + "Commands:"
+          + System.lineSeparator()
+          + "  dump  This command writes the world state of a block in the database of a"
+          + System.lineSeparator()
+          + "          stopped node to a file as newline delimited JSON."
+          + System.lineSeparator();
+
+  private static final String STATE_SUBCOMMAND_NAME = "state";
+  private static final String DUMP_SUBCOMMAND_NAME = "dump";
+
+  // State sub-command
+  @Test
+  public void stateSubCommandExistAndHaveSubCommands() {
+    final CommandSpec spec = parseCommand();
+    assertThat(spec.subcommands()).containsKeys(STATE_SUBCOMMAND_NAME);
+    assertThat(spec.subcommands().get(STATE_SUBCOMMAND_NAME).getSubcommands())
+        .containsKeys(DUMP_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  @Test
+  public void callingStateSubCommandWithoutSubSubcommandMustDisplayUsage() {
+    parseCommand(STATE_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).startsWith(EXPECTED_STATE_USAGE);
+    assertThat(commandErrorOutput.toString()).isEmpty();
+  }
+
+  // Dump sub-sub-command
+  @Test
+  public void callingDumpSubCommandWithoutPathMustDisplayError() {
+    parseCommand(STATE_SUBCOMMAND_NAME, DUMP_SUBCOMMAND_NAME);
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).startsWith("Missing required option '--to=<PATH>'");
+  }
+
+  @Test
+  public void callingDumpSubCommandWithInvalidThreadsMustDisplayError() throws Exception {
+    final String dumpPath = temp.getRoot().toPath().resolve("state.ndjson").toString();
+    parseCommand(STATE_SUBCOMMAND_NAME, DUMP_SUBCOMMAND_NAME, "--to", dumpPath, "--threads", "0");
+    assertThat(commandOutput.toString()).isEmpty();
+    assertThat(commandErrorOutput.toString()).startsWith("--threads must be at least 1");
+  }
+
+  @Test
+  public void callingDumpSubCommandWithoutDatabaseMustFail() throws Exception {
+    final String dataPath = temp.newFolder().getPath();
+    final String dumpPath = temp.getRoot().toPath().resolve("state.ndjson").toString();
+    assertThatThrownBy(
+            () ->
+                parseCommand(
+                    "--data-path",
+                    dataPath,
+                    STATE_SUBCOMMAND_NAME,
+                    DUMP_SUBCOMMAND_NAME,
+                    "--to",
+                    dumpPath))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("No database found in " + dataPath);
+  }
+
+  @Test
+  public void callingDumpSubCommandMustWriteWorldStateOfChainHead() throws Exception {
+    final Path dataPath = temp.newFolder().toPath();
+    final Address address = Address.fromHexString("0xa94f5374fce5edbc8e2a8697c15331677e6ebf0b");
+    final BlockHeader chainHead;
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            dataPath.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      final MutableWorldState worldState =
+          new DefaultMutableWorldState(storageProvider.createWorldStateStorage());
+      final WorldUpdater worldUpdater = worldState.updater();
+      worldUpdater.createAccount(address).setBalance(Wei.of(10));
+      worldUpdater.commit();
+      worldState.persist();
+
+      chainHead =
+          new BlockHeaderTestFixture().number(5).stateRoot(worldState.rootHash()).buildHeader();
+      final BlockchainStorage.Updater updater =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create()).updater();
+      updater.putBlockHeader(chainHead.getHash(), chainHead);
+      updater.putBlockHash(chainHead.getNumber(), chainHead.getHash());
+      updater.setChainHead(chainHead.getHash());
+      updater.commit();
+    }
+    final Path dumpPath = temp.getRoot().toPath().resolve("state.ndjson");
+
+    parseCommand(
+        "--data-path",
+        dataPath.toString(),
+        STATE_SUBCOMMAND_NAME,
+        DUMP_SUBCOMMAND_NAME,
+        "--to",
+        dumpPath.toString());
+
+    assertThat(commandOutput.toString())
+        .startsWith("Dumped world state of block 5 (" + chainHead.getHash() + ")")
+        .contains("1 accounts, 0 storage slots");
+    final List<String> lines = Files.readAllLines(dumpPath, StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(1);
+    final JsonObject account = new JsonObject(lines.get(0));
+    assertThat(account.getString("type")).isEqualTo("account");
+    assertThat(account.getString("addressHash")).isEqualTo(Hash.hash(address).toString());
+    assertThat(account.getString("balance")).isEqualTo("0xa");
+  }
+}
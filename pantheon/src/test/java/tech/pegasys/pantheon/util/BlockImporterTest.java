@@ -22,6 +22,7 @@ import tech.pegasys.pantheon.ethereum.core.InMemoryStorageProvider;
 import tech.pegasys.pantheon.ethereum.core.MiningParametersTestBuilder;
 import tech.pegasys.pantheon.ethereum.core.PrivacyParameters;
 import tech.pegasys.pantheon.ethereum.eth.sync.SynchronizerConfiguration;
+import tech.pegasys.pantheon.ethereum.worldstate.WorldStatePrefetcher;
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
 import tech.pegasys.pantheon.testutil.BlockTestUtil;
 import tech.pegasys.pantheon.util.uint.UInt256;
@@ -52,6 +53,7 @@ public final class BlockImporterTest {
         PantheonController.fromConfig(
             GenesisConfigFile.mainnet(),
             SynchronizerConfiguration.builder().build(),
+            WorldStatePrefetcher.DEFAULT_THREADS,
             new InMemoryStorageProvider(),
             false,
             1,
@@ -88,6 +90,7 @@ public final class BlockImporterTest {
         PantheonController.fromConfig(
             GenesisConfigFile.fromConfig(config),
             SynchronizerConfiguration.builder().build(),
+            WorldStatePrefetcher.DEFAULT_THREADS,
             new InMemoryStorageProvider(),
             false,
             10,
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.pantheon.controller.PantheonController;
+import tech.pegasys.pantheon.ethereum.chain.BlockchainStorage;
+import tech.pegasys.pantheon.ethereum.core.BlockDataGenerator;
+import tech.pegasys.pantheon.ethereum.core.BlockHeader;
+import tech.pegasys.pantheon.ethereum.eth.sync.fastsync.FastSyncStateStorage;
+import tech.pegasys.pantheon.ethereum.mainnet.MainnetProtocolSchedule;
+import tech.pegasys.pantheon.ethereum.storage.StorageProvider;
+import tech.pegasys.pantheon.ethereum.storage.keyvalue.RocksDbStorageProvider;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.util.DatabaseSnapshotter.SnapshotMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DatabaseSnapshotterTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final BlockDataGenerator gen = new BlockDataGenerator();
+  private final DatabaseSnapshotter snapshotter = new DatabaseSnapshotter();
+
+  @Test
+  public void restoredSnapshotHasChainHeadOfSource() throws IOException {
+    final Path source = folder.newFolder().toPath();
+    final BlockHeader chainHead = gen.header(42);
+    writeChainHead(source, chainHead);
+    final Path pivotBlockHeader =
+        Files.createDirectories(source.resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH))
+            .resolve("pivotBlockHeader.rlp");
+    Files.write(pivotBlockHeader, new byte[] {1, 2, 3});
+    final Path snapshot = folder.getRoot().toPath().resolve("snapshot");
+
+    final SnapshotMetadata taken = snapshotter.snapshot(source, Optional.empty(), snapshot);
+
+    assertThat(taken.getChainHeadHash()).isEqualTo(chainHead.getHash());
+    assertThat(taken.getChainHeadNumber()).isEqualTo(42);
+    assertThat(snapshot.resolve(DatabaseSnapshotter.METADATA_FILENAME)).isRegularFile();
+
+    final Path target = folder.newFolder().toPath();
+    final SnapshotMetadata restored = snapshotter.restore(snapshot, target, Optional.empty());
+
+    assertThat(restored).isEqualTo(taken);
+    assertThat(
+            target
+                .resolve(FastSyncStateStorage.FAST_SYNC_DATA_PATH)
+                .resolve("pivotBlockHeader.rlp"))
+        .hasBinaryContent(new byte[] {1, 2, 3});
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            target.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      final BlockchainStorage blockchainStorage =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create());
+      assertThat(blockchainStorage.getBlockHeader(chainHead.getHash())).contains(chainHead);
+    }
+  }
+
+  @Test
+  public void snapshotIncludesAncientBlocks() throws IOException {
+    final Path source = folder.newFolder().toPath();
+    writeChainHead(source, gen.header(7));
+    final Path ancient = folder.newFolder().toPath();
+    Files.write(ancient.resolve("headers.dat"), new byte[] {4, 5});
+    final Path snapshot = folder.getRoot().toPath().resolve("snapshot");
+    snapshotter.snapshot(source, Optional.of(ancient), snapshot);
+
+    assertThatThrownBy(
+            () -> snapshotter.restore(snapshot, folder.newFolder().toPath(), Optional.empty()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("ancient storage must be enabled");
+
+    final Path target = folder.newFolder().toPath();
+    final Path restoredAncient = target.resolve(PantheonController.ANCIENT_DATA_PATH);
+    snapshotter.restore(snapshot, target, Optional.of(restoredAncient));
+
+    assertThat(restoredAncient.resolve("headers.dat")).hasBinaryContent(new byte[] {4, 5});
+  }
+
+  @Test
+  public void snapshotOfRunningNodeCanBeRestored() throws IOException {
+    final Path source = folder.newFolder().toPath();
+    final BlockHeader chainHead = gen.header(12);
+    final Path snapshot = folder.getRoot().toPath().resolve("snapshot");
+    final SnapshotMetadata taken;
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            source.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      final BlockchainStorage.Updater updater =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create()).updater();
+      updater.putBlockHeader(chainHead.getHash(), chainHead);
+      updater.setChainHead(chainHead.getHash());
+      updater.commit();
+
+      taken = snapshotter.snapshot(storageProvider, snapshot);
+    }
+
+    assertThat(taken.getChainHeadHash()).isEqualTo(chainHead.getHash());
+    final Path target = folder.newFolder().toPath();
+    assertThat(snapshotter.restore(snapshot, target, Optional.empty())).isEqualTo(taken);
+  }
+
+  @Test
+  public void snapshotFailsWithoutDatabase() {
+    assertThatThrownBy(
+            () ->
+                snapshotter.snapshot(
+                    folder.newFolder().toPath(),
+                    Optional.empty(),
+                    folder.getRoot().toPath().resolve("snapshot")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageStartingWith("No database found");
+  }
+
+  @Test
+  public void restoreDoesNotOverwriteExistingDatabase() throws IOException {
+    final Path source = folder.newFolder().toPath();
+    writeChainHead(source, gen.header(1));
+    final Path snapshot = folder.getRoot().toPath().resolve("snapshot");
+    snapshotter.snapshot(source, Optional.empty(), snapshot);
+
+    final Path target = folder.newFolder().toPath();
+    final BlockHeader existingHead = gen.header(2);
+    writeChainHead(target, existingHead);
+
+    assertThatThrownBy(() -> snapshotter.restore(snapshot, target, Optional.empty()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageEndingWith("already exists and is not empty");
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            target.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      assertThat(
+              storageProvider
+                  .createBlockchainStorage(MainnetProtocolSchedule.create())
+                  .getChainHead())
+          .contains(existingHead.getHash());
+    }
+  }
+
+  private void writeChainHead(final Path dataDir, final BlockHeader header) throws IOException {
+    try (final StorageProvider storageProvider =
+        RocksDbStorageProvider.create(
+            dataDir.resolve(PantheonController.DATABASE_PATH), new NoOpMetricsSystem())) {
+      final BlockchainStorage.Updater updater =
+          storageProvider.createBlockchainStorage(MainnetProtocolSchedule.create()).updater();
+      updater.putBlockHeader(header.getHash(), header);
+      updater.setChainHead(header.getHash());
+      updater.commit();
+    }
+  }
+}
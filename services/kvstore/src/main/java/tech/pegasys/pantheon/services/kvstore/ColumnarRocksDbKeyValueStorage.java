@@ -0,0 +1,580 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import tech.pegasys.pantheon.metrics.Counter;
+import tech.pegasys.pantheon.metrics.LabelledMetric;
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.metrics.OperationTimer;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.services.util.RocksDbUtil;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.MutableColumnFamilyOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.RocksObject;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.TransactionDB;
+import org.rocksdb.TransactionDBOptions;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * A {@link SegmentedKeyValueStorage} backed by a single RocksDB database where each segment is
+ * stored in its own column family, with its own block cache, bloom filter, compression and
+ * compaction settings. Depending on the configured {@link RocksDbConfiguration.WriteMode},
+ * transactions are backed either by a RocksDB transaction or by a plain write batch.
+ */
+public class ColumnarRocksDbKeyValueStorage implements SegmentedKeyValueStorage, Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final String DEFAULT_COLUMN = new String(RocksDB.DEFAULT_COLUMN_FAMILY, UTF_8);
+  private static final String INGEST_DIRECTORY = "ingest";
+
+  private final RocksDbConfiguration configuration;
+  private final DBOptions options;
+  private final TransactionDBOptions txOptions;
+  private final RocksDB db;
+  private final Path ingestDirectory;
+  private final AtomicLong ingestFileCounter = new AtomicLong();
+  private final Map<Segment, ColumnFamilyHandle> columnHandles = new HashMap<>();
+  private final Map<Segment, ColumnFamilyOptions> columnOptions = new HashMap<>();
+  private final List<ColumnFamilyHandle> openHandles = new ArrayList<>();
+  private final List<RocksObject> columnResources = new ArrayList<>();
+  private final RocksDbStats stats;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  private final LabelledMetric<OperationTimer> readLatency;
+  private final LabelledMetric<OperationTimer> multiGetLatency;
+  private final LabelledMetric<OperationTimer> removeLatency;
+  private final LabelledMetric<OperationTimer> writeLatency;
+  private final LabelledMetric<OperationTimer> ingestLatency;
+  private final OperationTimer commitLatency;
+  private final Counter rollbackCount;
+
+  /**
+   * Opens or creates a column family database.
+   *
+   * @param storageDirectory The directory holding the database.
+   * @param configuration The database configuration. Its block cache budget is shared out between
+   *     the segments.
+   * @param segments The segments to open, with their tuning. A segment named {@code default} is
+   *     mapped onto RocksDB's default column family.
+   * @param metricsSystem The metrics system to report to.
+   * @return The opened storage.
+   * @throws StorageException If the database cannot be opened.
+   */
+  public static ColumnarRocksDbKeyValueStorage create(
+      final Path storageDirectory,
+      final RocksDbConfiguration configuration,
+      final List<RocksDbSegmentConfiguration> segments,
+      final MetricsSystem metricsSystem)
+      throws StorageException {
+    return new ColumnarRocksDbKeyValueStorage(
+        storageDirectory, configuration, segments, metricsSystem);
+  }
+
+  /**
+   * Checks whether the directory holds a database written before storage was split into column
+   * families, i.e. an existing database with only the default column family.
+   *
+   * @param storageDirectory The directory to check.
+   * @return True if an unsegmented database exists in the directory.
+   * @throws StorageException If the existing database cannot be inspected.
+   */
+  public static boolean isUnsegmentedDatabase(final Path storageDirectory) throws StorageException {
+    if (!Files.exists(storageDirectory.resolve("CURRENT"))) {
+      return false;
+    }
+    RocksDbUtil.loadNativeLibrary();
+    try (final Options options = new Options()) {
+      final List<byte[]> columnFamilies =
+          RocksDB.listColumnFamilies(options, storageDirectory.toString());
+      return columnFamilies.size() == 1
+          && Arrays.equals(columnFamilies.get(0), RocksDB.DEFAULT_COLUMN_FAMILY);
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private ColumnarRocksDbKeyValueStorage(
+      final Path storageDirectory,
+      final RocksDbConfiguration configuration,
+      final List<RocksDbSegmentConfiguration> segments,
+      final MetricsSystem metricsSystem) {
+    this.configuration = configuration;
+    this.ingestDirectory = storageDirectory.resolve(INGEST_DIRECTORY);
+    RocksDbUtil.loadNativeLibrary();
+    stats = new RocksDbStats();
+    try {
+      final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+      boolean hasDefaultColumn = false;
+      for (final RocksDbSegmentConfiguration segment : segments) {
+        final String name = segment.getSegment().getName();
+        hasDefaultColumn |= name.equals(DEFAULT_COLUMN);
+        final ColumnFamilyOptions segmentOptions = createColumnOptions(segment, configuration);
+        columnOptions.put(segment.getSegment(), segmentOptions);
+        descriptors.add(new ColumnFamilyDescriptor(name.getBytes(UTF_8), segmentOptions));
+      }
+      if (!hasDefaultColumn) {
+        final ColumnFamilyOptions defaultOptions = new ColumnFamilyOptions();
+        columnResources.add(defaultOptions);
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions));
+      }
+
+      options =
+          new DBOptions()
+              .setCreateIfMissing(true)
+              .setCreateMissingColumnFamilies(true)
+              .setMaxOpenFiles(configuration.getMaxOpenFiles())
+              .setMaxBackgroundJobs(configuration.getMaxBackgroundJobs())
+              .setStatistics(stats.getStatistics());
+      if (configuration.getRateLimit() > 0) {
+        final RateLimiter rateLimiter = new RateLimiter(configuration.getRateLimit());
+        columnResources.add(rateLimiter);
+        options.setRateLimiter(rateLimiter);
+      }
+      txOptions = new TransactionDBOptions();
+      if (configuration.getWriteMode() == RocksDbConfiguration.WriteMode.WRITE_BATCH) {
+        db = RocksDB.open(options, storageDirectory.toString(), descriptors, openHandles);
+      } else {
+        db =
+            TransactionDB.open(
+                options, txOptions, storageDirectory.toString(), descriptors, openHandles);
+      }
+      for (int i = 0; i < segments.size(); i++) {
+        columnHandles.put(segments.get(i).getSegment(), openHandles.get(i));
+      }
+
+      readLatency =
+          metricsSystem.createLabelledTimer(
+              MetricCategory.ROCKSDB,
+              "read_latency_seconds",
+              "Latency for read from RocksDB.",
+              "segment");
+      multiGetLatency =
+          metricsSystem.createLabelledTimer(
+              MetricCategory.ROCKSDB,
+              "multi_get_latency_seconds",
+              "Latency for batched reads from RocksDB.",
+              "segment");
+      removeLatency =
+          metricsSystem.createLabelledTimer(
+              MetricCategory.ROCKSDB,
+              "remove_latency_seconds",
+              "Latency of remove requests from RocksDB.",
+              "segment");
+      writeLatency =
+          metricsSystem.createLabelledTimer(
+              MetricCategory.ROCKSDB,
+              "write_latency_seconds",
+              "Latency for write to RocksDB.",
+              "segment");
+      ingestLatency =
+          metricsSystem.createLabelledTimer(
+              MetricCategory.ROCKSDB,
+              "ingest_latency_seconds",
+              "Latency for writing and ingesting sorted table files into RocksDB.",
+              "segment");
+      commitLatency =
+          metricsSystem.createTimer(
+              MetricCategory.ROCKSDB, "commit_latency_seconds", "Latency for commits to RocksDB.");
+
+      rollbackCount =
+          metricsSystem.createCounter(
+              MetricCategory.ROCKSDB,
+              "rollback_count",
+              "Number of RocksDB transactions rolled back.");
+
+      stats.register(db, openHandles, metricsSystem);
+    } catch (final RocksDBException e) {
+      stats.close();
+      columnResources.forEach(RocksObject::close);
+      throw new StorageException(e);
+    }
+  }
+
+  private ColumnFamilyOptions createColumnOptions(
+      final RocksDbSegmentConfiguration segment, final RocksDbConfiguration configuration) {
+    final BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+    final long blockCacheSize =
+        (long) (configuration.getBlockCacheSize() * segment.getBlockCacheShare());
+    if (blockCacheSize > 0) {
+      final LRUCache blockCache = new LRUCache(blockCacheSize);
+      columnResources.add(blockCache);
+      tableConfig.setBlockCache(blockCache);
+    } else {
+      tableConfig.setNoBlockCache(true);
+    }
+    if (segment.getBloomFilterBitsPerKey() > 0) {
+      final BloomFilter bloomFilter = new BloomFilter(segment.getBloomFilterBitsPerKey(), false);
+      columnResources.add(bloomFilter);
+      tableConfig.setFilter(bloomFilter);
+    }
+
+    final ColumnFamilyOptions columnOptions =
+        new ColumnFamilyOptions()
+            .setTableFormatConfig(tableConfig)
+            .setWriteBufferSize(configuration.getWriteBufferSize())
+            .setCompressionType(toCompressionType(segment.getCompression()))
+            .setCompactionStyle(toCompactionStyle(segment.getCompactionStyle()));
+    columnResources.add(columnOptions);
+    return columnOptions;
+  }
+
+  private static CompressionType toCompressionType(
+      final RocksDbSegmentConfiguration.Compression compression) {
+    switch (compression) {
+      case LZ4:
+        return CompressionType.LZ4_COMPRESSION;
+      case NONE:
+      default:
+        return CompressionType.NO_COMPRESSION;
+    }
+  }
+
+  private static CompactionStyle toCompactionStyle(
+      final RocksDbSegmentConfiguration.CompactionStyle compactionStyle) {
+    switch (compactionStyle) {
+      case UNIVERSAL:
+        return CompactionStyle.UNIVERSAL;
+      case LEVEL:
+      default:
+        return CompactionStyle.LEVEL;
+    }
+  }
+
+  @Override
+  public Optional<BytesValue> get(final Segment segment, final BytesValue key)
+      throws StorageException {
+    throwIfClosed();
+
+    try (final OperationTimer.TimingContext ignored =
+        readLatency.labels(segment.getName()).startTimer()) {
+      return Optional.ofNullable(db.get(handle(segment), key.getArrayUnsafe()))
+          .map(BytesValue::wrap);
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public Map<BytesValue, BytesValue> getAll(
+      final Segment segment, final Collection<BytesValue> keys) throws StorageException {
+    throwIfClosed();
+    if (keys.isEmpty()) {
+      return new HashMap<>();
+    }
+
+    final ColumnFamilyHandle handle = handle(segment);
+    final List<BytesValue> orderedKeys = new ArrayList<>(keys);
+    final List<byte[]> keyArrays = new ArrayList<>(orderedKeys.size());
+    for (final BytesValue key : orderedKeys) {
+      keyArrays.add(key.getArrayUnsafe());
+    }
+
+    try (final OperationTimer.TimingContext ignored =
+        multiGetLatency.labels(segment.getName()).startTimer()) {
+      // The returned map is keyed by the exact arrays passed in, so look values up by reference.
+      final Map<byte[], byte[]> found =
+          db.multiGet(Collections.nCopies(keyArrays.size(), handle), keyArrays);
+      final Map<BytesValue, BytesValue> values = new HashMap<>(found.size());
+      for (int i = 0; i < orderedKeys.size(); i++) {
+        final byte[] value = found.get(keyArrays.get(i));
+        if (value != null) {
+          values.put(orderedKeys.get(i), BytesValue.wrap(value));
+        }
+      }
+      return values;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public Stream<Entry> entries(final Segment segment) {
+    throwIfClosed();
+    final RocksIterator rocksIterator = db.newIterator(handle(segment));
+    rocksIterator.seekToFirst();
+    return new RocksDbEntryIterator(rocksIterator).toStream();
+  }
+
+  @Override
+  public Stream<Entry> entriesFrom(final Segment segment, final BytesValue startKey) {
+    throwIfClosed();
+    final RocksIterator rocksIterator = db.newIterator(handle(segment));
+    rocksIterator.seek(startKey.getArrayUnsafe());
+    return new RocksDbEntryIterator(rocksIterator).toStream();
+  }
+
+  /**
+   * Writes the entries to a sorted table file built with the segment's own table options, then
+   * moves the file into the database. RocksDB places it at the lowest level whose files don't
+   * overlap its key range.
+   */
+  @Override
+  public void ingest(final Segment segment, final SortedMap<BytesValue, BytesValue> entries)
+      throws StorageException {
+    throwIfClosed();
+    if (entries.isEmpty()) {
+      return;
+    }
+    final ColumnFamilyHandle handle = handle(segment);
+    final Path file =
+        ingestDirectory.resolve(
+            segment.getName() + "-" + ingestFileCounter.incrementAndGet() + ".sst");
+    try (final OperationTimer.TimingContext ignored =
+            ingestLatency.labels(segment.getName()).startTimer();
+        final EnvOptions envOptions = new EnvOptions();
+        final Options fileOptions = new Options(options, columnOptions.get(segment));
+        final SstFileWriter writer = new SstFileWriter(envOptions, fileOptions);
+        final IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+      Files.createDirectories(ingestDirectory);
+      writer.open(file.toString());
+      for (final Map.Entry<BytesValue, BytesValue> entry : entries.entrySet()) {
+        writer.put(entry.getKey().getArrayUnsafe(), entry.getValue().getArrayUnsafe());
+      }
+      writer.finish();
+      ingestOptions.setMoveFiles(true);
+      db.ingestExternalFile(handle, Collections.singletonList(file.toString()), ingestOptions);
+    } catch (final RocksDBException | IOException e) {
+      throw new StorageException(e);
+    } finally {
+      deleteIngestFile(file);
+    }
+  }
+
+  @Override
+  public void setAutoCompactionEnabled(final Segment segment, final boolean enabled)
+      throws StorageException {
+    throwIfClosed();
+    try {
+      db.setOptions(
+          handle(segment),
+          MutableColumnFamilyOptions.builder().setDisableAutoCompactions(!enabled).build());
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public void compact(final Segment segment) throws StorageException {
+    throwIfClosed();
+    try {
+      db.compactRange(handle(segment));
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private static void deleteIngestFile(final Path file) {
+    try {
+      // Ingestion moves the file into the database, so it only remains if ingestion failed
+      Files.deleteIfExists(file);
+    } catch (final IOException e) {
+      LOG.warn("Unable to delete table file {}", file, e);
+    }
+  }
+
+  @Override
+  public void createCheckpoint(final Path checkpointDirectory) throws StorageException {
+    throwIfClosed();
+    RocksDbCheckpoint.create(db, checkpointDirectory);
+  }
+
+  @Override
+  public Transaction startTransaction() throws StorageException {
+    throwIfClosed();
+    final WriteOptions options = new WriteOptions().setSync(configuration.isSyncWrites());
+    if (configuration.getWriteMode() == RocksDbConfiguration.WriteMode.WRITE_BATCH) {
+      return new RocksDbWriteBatchTransaction(options);
+    }
+    return new RocksDbTransaction(((TransactionDB) db).beginTransaction(options), options);
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      stats.close();
+      openHandles.forEach(ColumnFamilyHandle::close);
+      db.close();
+      txOptions.close();
+      options.close();
+      columnResources.forEach(RocksObject::close);
+    }
+  }
+
+  private ColumnFamilyHandle handle(final Segment segment) {
+    final ColumnFamilyHandle handle = columnHandles.get(segment);
+    if (handle == null) {
+      throw new IllegalArgumentException("Unknown storage segment " + segment.getName());
+    }
+    return handle;
+  }
+
+  private void throwIfClosed() {
+    if (closed.get()) {
+      LOG.error("Attempting to use a closed ColumnarRocksDbKeyValueStorage");
+      throw new IllegalStateException("Storage has been closed");
+    }
+  }
+
+  private class RocksDbTransaction extends AbstractTransaction {
+    private final org.rocksdb.Transaction innerTx;
+    private final WriteOptions options;
+
+    RocksDbTransaction(final org.rocksdb.Transaction innerTx, final WriteOptions options) {
+      this.innerTx = innerTx;
+      this.options = options;
+    }
+
+    @Override
+    protected void doPut(final Segment segment, final BytesValue key, final BytesValue value) {
+      try (final OperationTimer.TimingContext ignored =
+          writeLatency.labels(segment.getName()).startTimer()) {
+        innerTx.put(handle(segment), key.getArrayUnsafe(), value.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doRemove(final Segment segment, final BytesValue key) {
+      try (final OperationTimer.TimingContext ignored =
+          removeLatency.labels(segment.getName()).startTimer()) {
+        innerTx.delete(handle(segment), key.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doCommit() throws StorageException {
+      try (final OperationTimer.TimingContext ignored = commitLatency.startTimer()) {
+        innerTx.commit();
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    protected void doRollback() {
+      try {
+        innerTx.rollback();
+        rollbackCount.inc();
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    private void close() {
+      innerTx.close();
+      options.close();
+    }
+  }
+
+  /**
+   * Buffers changes in a {@link WriteBatch} and writes them in a single atomic write on commit.
+   * Puts and removes only append to the in-memory batch, so they are not timed individually.
+   */
+  private class RocksDbWriteBatchTransaction extends AbstractTransaction {
+    private final WriteBatch batch = new WriteBatch();
+    private final WriteOptions options;
+
+    RocksDbWriteBatchTransaction(final WriteOptions options) {
+      this.options = options;
+    }
+
+    @Override
+    protected void doPut(final Segment segment, final BytesValue key, final BytesValue value) {
+      try {
+        batch.put(handle(segment), key.getArrayUnsafe(), value.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doRemove(final Segment segment, final BytesValue key) {
+      try {
+        batch.delete(handle(segment), key.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doCommit() throws StorageException {
+      try (final OperationTimer.TimingContext ignored = commitLatency.startTimer()) {
+        db.write(options, batch);
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    protected void doRollback() {
+      rollbackCount.inc();
+      close();
+    }
+
+    private void close() {
+      batch.close();
+      options.close();
+    }
+  }
+}
@@ -14,14 +14,19 @@ package tech.pegasys.pantheon.services.kvstore;
 
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 public class InMemoryKeyValueStorage implements KeyValueStorage {
 
@@ -39,6 +44,43 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
     }
   }
 
+  @Override
+  public Map<BytesValue, BytesValue> getAll(final Collection<BytesValue> keys) {
+    final Map<BytesValue, BytesValue> values = new HashMap<>(keys.size());
+    final Lock lock = rwLock.readLock();
+    lock.lock();
+    try {
+      for (final BytesValue key : keys) {
+        final BytesValue value = hashValueStore.get(key);
+        if (value != null) {
+          values.put(key, value);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return values;
+  }
+
+  @Override
+  public Stream<Entry> entries() {
+    final Lock lock = rwLock.readLock();
+    lock.lock();
+    try {
+      // Copy the entries so the stream isn't affected by concurrent commits
+      final List<Entry> entries = new ArrayList<>(hashValueStore.size());
+      hashValueStore.forEach((key, value) -> entries.add(Entry.create(key, value)));
+      return entries.stream();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void createCheckpoint(final Path checkpointDirectory) {
+    throw new UnsupportedOperationException("In memory storage can't be checkpointed to disk");
+  }
+
   @Override
   public Transaction startTransaction() {
     return new InMemoryTransaction();
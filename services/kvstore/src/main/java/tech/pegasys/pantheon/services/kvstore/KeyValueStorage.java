@@ -17,8 +17,14 @@ import static com.google.common.base.Preconditions.checkState;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /** Service provided by pantheon to facilitate persistent data storage. */
 public interface KeyValueStorage extends Closeable {
@@ -29,6 +35,54 @@ public interface KeyValueStorage extends Closeable {
    */
   Optional<BytesValue> get(BytesValue key) throws StorageException;
 
+  /**
+   * Looks up several keys at once. Implementations backed by a database should override this to
+   * fetch all keys in a single round trip.
+   *
+   * @param keys Indexes into persistent data repository.
+   * @return The values persisted at the key indexes. Keys without a value are omitted.
+   */
+  default Map<BytesValue, BytesValue> getAll(final Collection<BytesValue> keys)
+      throws StorageException {
+    final Map<BytesValue, BytesValue> values = new HashMap<>(keys.size());
+    for (final BytesValue key : keys) {
+      get(key).ifPresent(value -> values.put(key, value));
+    }
+    return values;
+  }
+
+  /**
+   * Streams every entry in storage. The stream holds resources of the underlying store and must be
+   * closed once it is no longer needed.
+   *
+   * @return A stream of all key-value entries in storage.
+   */
+  Stream<Entry> entries();
+
+  /**
+   * Streams entries in ascending unsigned byte order of their keys, starting at the first key that
+   * is equal to or greater than {@code startKey}. Storages that keep their keys sorted should
+   * override this to seek directly to the start key. The stream must be closed once it is no longer
+   * needed.
+   *
+   * @param startKey The key to start from.
+   * @return A stream of the key-value entries from the start key onwards.
+   */
+  default Stream<Entry> entriesFrom(final BytesValue startKey) {
+    return entries()
+        .filter(entry -> entry.getKey().compareTo(startKey) >= 0)
+        .sorted(Comparator.comparing(Entry::getKey));
+  }
+
+  /**
+   * Writes a consistent point-in-time copy of the storage to a new directory while it stays open
+   * for reads and writes. Storages that can't do this, such as those held only in memory, throw
+   * {@link UnsupportedOperationException}.
+   *
+   * @param checkpointDirectory The directory to create the copy in, which must not exist yet.
+   */
+  void createCheckpoint(Path checkpointDirectory) throws StorageException;
+
   /**
    * Begins a transaction. Returns a transaction object that can be updated and committed.
    *
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.services.util.RocksDbUtil;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rocksdb.Checkpoint;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+/**
+ * Takes consistent point-in-time copies of RocksDB databases. A checkpoint hard links the immutable
+ * SST files of the source database when it is on the same file system, so it takes seconds
+ * regardless of the database size. Both the columnar and single keyspace layouts are supported.
+ */
+public class RocksDbCheckpoint {
+
+  private RocksDbCheckpoint() {}
+
+  /**
+   * Creates a checkpoint of the database in {@code databaseDirectory}. The database must not be
+   * open, use {@link KeyValueStorage#createCheckpoint(Path)} for a database that is.
+   *
+   * @param databaseDirectory the directory of the database to copy
+   * @param checkpointDirectory the directory to create the checkpoint in, which must not exist yet
+   */
+  public static void create(final Path databaseDirectory, final Path checkpointDirectory)
+      throws StorageException {
+    RocksDbUtil.loadNativeLibrary();
+    final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+    final List<ColumnFamilyHandle> handles = new ArrayList<>();
+    try (final Options options = new Options();
+        final DBOptions dbOptions = new DBOptions();
+        final ColumnFamilyOptions columnFamilyOptions = new ColumnFamilyOptions()) {
+      for (final byte[] name : RocksDB.listColumnFamilies(options, databaseDirectory.toString())) {
+        descriptors.add(new ColumnFamilyDescriptor(name, columnFamilyOptions));
+      }
+      final RocksDB db =
+          RocksDB.open(dbOptions, databaseDirectory.toString(), descriptors, handles);
+      try {
+        create(db, checkpointDirectory);
+      } finally {
+        handles.forEach(ColumnFamilyHandle::close);
+        db.close();
+      }
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Creates a checkpoint of a database that is open in this process. Writes to the database can
+   * continue while the checkpoint is taken.
+   *
+   * @param db the database to copy
+   * @param checkpointDirectory the directory to create the checkpoint in, which must not exist yet
+   */
+  static void create(final RocksDB db, final Path checkpointDirectory) throws StorageException {
+    try (final Checkpoint checkpoint = Checkpoint.create(db)) {
+      checkpoint.createCheckpoint(checkpointDirectory.toString());
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Tuning for a RocksDB database. The defaults returned by {@link #builder()} are scaled to the
+ * physical memory and processor count of the host rather than RocksDB's library defaults, which are
+ * sized for small machines.
+ */
+public class RocksDbConfiguration {
+
+  public static final long MIN_BLOCK_CACHE_SIZE = 128 * 1024 * 1024;
+  public static final long MAX_DEFAULT_BLOCK_CACHE_SIZE = 8L * 1024 * 1024 * 1024;
+  public static final long MIN_WRITE_BUFFER_SIZE = 64 * 1024 * 1024;
+  public static final long MAX_DEFAULT_WRITE_BUFFER_SIZE = 256 * 1024 * 1024;
+  public static final int MIN_BACKGROUND_JOBS = 2;
+  public static final int MAX_DEFAULT_BACKGROUND_JOBS = 16;
+  public static final int DEFAULT_MAX_OPEN_FILES = 1024;
+  public static final WriteMode DEFAULT_WRITE_MODE = WriteMode.TRANSACTIONAL;
+
+  /** How {@link KeyValueStorage.Transaction transactions} are written to the database. */
+  public enum WriteMode {
+    /** Backed by a pessimistic RocksDB transaction, locking every key as it is written. */
+    TRANSACTIONAL,
+    /**
+     * Changes are buffered in a write batch and written atomically on commit, without locking. Safe
+     * because storage transactions never read their own writes.
+     */
+    WRITE_BATCH
+  }
+
+  private final long blockCacheSize;
+  private final long writeBufferSize;
+  private final int maxOpenFiles;
+  private final int maxBackgroundJobs;
+  private final long rateLimit;
+  private final WriteMode writeMode;
+  private final boolean syncWrites;
+
+  private RocksDbConfiguration(
+      final long blockCacheSize,
+      final long writeBufferSize,
+      final int maxOpenFiles,
+      final int maxBackgroundJobs,
+      final long rateLimit,
+      final WriteMode writeMode,
+      final boolean syncWrites) {
+    this.blockCacheSize = blockCacheSize;
+    this.writeBufferSize = writeBufferSize;
+    this.maxOpenFiles = maxOpenFiles;
+    this.maxBackgroundJobs = maxBackgroundJobs;
+    this.rateLimit = rateLimit;
+    this.writeMode = writeMode;
+    this.syncWrites = syncWrites;
+  }
+
+  /** @return A builder with defaults scaled to the resources of this host. */
+  public static Builder builder() {
+    return new Builder()
+        .scaledTo(totalPhysicalMemory(), Runtime.getRuntime().availableProcessors());
+  }
+
+  public static RocksDbConfiguration createDefault() {
+    return builder().build();
+  }
+
+  /**
+   * @return The total size in bytes of the block caches, split between the column families of a
+   *     {@link ColumnarRocksDbKeyValueStorage} by their {@link
+   *     RocksDbSegmentConfiguration#getBlockCacheShare() shares}.
+   */
+  public long getBlockCacheSize() {
+    return blockCacheSize;
+  }
+
+  /** @return The size in bytes of each memtable before it is flushed to disk. */
+  public long getWriteBufferSize() {
+    return writeBufferSize;
+  }
+
+  /** @return The maximum number of files kept open by the database, or -1 for no limit. */
+  public int getMaxOpenFiles() {
+    return maxOpenFiles;
+  }
+
+  /** @return The maximum number of concurrent background flushes and compactions. */
+  public int getMaxBackgroundJobs() {
+    return maxBackgroundJobs;
+  }
+
+  /** @return The limit in bytes per second on flush and compaction writes, or 0 for no limit. */
+  public long getRateLimit() {
+    return rateLimit;
+  }
+
+  public WriteMode getWriteMode() {
+    return writeMode;
+  }
+
+  /**
+   * @return true if every commit waits for the write-ahead log to be synced to disk before
+   *     returning.
+   */
+  public boolean isSyncWrites() {
+    return syncWrites;
+  }
+
+  private static long totalPhysicalMemory() {
+    final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize();
+    }
+    // Without the physical memory size, fall back to the smallest defaults.
+    return 0;
+  }
+
+  private static long clamp(final long value, final long min, final long max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  public static class Builder {
+
+    private long blockCacheSize = MIN_BLOCK_CACHE_SIZE;
+    private long writeBufferSize = MIN_WRITE_BUFFER_SIZE;
+    private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    private int maxBackgroundJobs = MIN_BACKGROUND_JOBS;
+    private long rateLimit = 0;
+    private WriteMode writeMode = DEFAULT_WRITE_MODE;
+    private boolean syncWrites = false;
+
+    /**
+     * Sizes the block cache, write buffers and background jobs for a host. The block cache gets a
+     * sixteenth of physical memory, each write buffer a 512th, and background jobs half the
+     * processors, each within fixed bounds.
+     *
+     * @param totalMemory The physical memory of the host in bytes.
+     * @param processors The number of processors available.
+     * @return This builder.
+     */
+    public Builder scaledTo(final long totalMemory, final int processors) {
+      blockCacheSize = clamp(totalMemory / 16, MIN_BLOCK_CACHE_SIZE, MAX_DEFAULT_BLOCK_CACHE_SIZE);
+      writeBufferSize =
+          clamp(totalMemory / 512, MIN_WRITE_BUFFER_SIZE, MAX_DEFAULT_WRITE_BUFFER_SIZE);
+      maxBackgroundJobs =
+          (int) clamp(processors / 2, MIN_BACKGROUND_JOBS, MAX_DEFAULT_BACKGROUND_JOBS);
+      return this;
+    }
+
+    public Builder blockCacheSize(final long blockCacheSize) {
+      checkArgument(blockCacheSize >= 0, "Block cache size must not be negative");
+      this.blockCacheSize = blockCacheSize;
+      return this;
+    }
+
+    public Builder writeBufferSize(final long writeBufferSize) {
+      checkArgument(writeBufferSize > 0, "Write buffer size must be greater than 0");
+      this.writeBufferSize = writeBufferSize;
+      return this;
+    }
+
+    public Builder maxOpenFiles(final int maxOpenFiles) {
+      checkArgument(
+          maxOpenFiles == -1 || maxOpenFiles > 0, "Max open files must be -1 or greater than 0");
+      this.maxOpenFiles = maxOpenFiles;
+      return this;
+    }
+
+    public Builder maxBackgroundJobs(final int maxBackgroundJobs) {
+      checkArgument(maxBackgroundJobs > 0, "Max background jobs must be greater than 0");
+      this.maxBackgroundJobs = maxBackgroundJobs;
+      return this;
+    }
+
+    public Builder rateLimit(final long rateLimit) {
+      checkArgument(rateLimit >= 0, "Rate limit must not be negative");
+      this.rateLimit = rateLimit;
+      return this;
+    }
+
+    public Builder writeMode(final WriteMode writeMode) {
+      this.writeMode = writeMode;
+      return this;
+    }
+
+    public Builder syncWrites(final boolean syncWrites) {
+      this.syncWrites = syncWrites;
+      return this;
+    }
+
+    public RocksDbConfiguration build() {
+      return new RocksDbConfiguration(
+          blockCacheSize,
+          writeBufferSize,
+          maxOpenFiles,
+          maxBackgroundJobs,
+          rateLimit,
+          writeMode,
+          syncWrites);
+    }
+  }
+}
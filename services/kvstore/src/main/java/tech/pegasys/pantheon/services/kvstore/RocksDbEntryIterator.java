@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+/**
+ * Iterates over rocksDB key-value entries. Reads from a db snapshot implicitly taken when the
+ * RocksIterator passed to the constructor was created.
+ *
+ * <p>Implements {@link AutoCloseable} and can be used with try-with-resources construct. When
+ * transformed to a stream (see {@link #toStream}), iterator is automatically closed when the stream
+ * is closed.
+ */
+class RocksDbEntryIterator implements Iterator<Entry>, AutoCloseable {
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final RocksIterator rocksIt;
+  private volatile boolean closed = false;
+
+  RocksDbEntryIterator(final RocksIterator rocksIt) {
+    this.rocksIt = rocksIt;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return rocksIt.isValid();
+  }
+
+  @Override
+  public Entry next() {
+    if (closed) {
+      throw new IllegalStateException("Attempt to read from a closed RocksDbEntryIterator.");
+    }
+    try {
+      rocksIt.status();
+    } catch (final RocksDBException e) {
+      LOG.error("RocksDbEntryIterator encountered a problem while iterating.", e);
+    }
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final Entry entry =
+        Entry.create(BytesValue.wrap(rocksIt.key()), BytesValue.wrap(rocksIt.value()));
+    rocksIt.next();
+    return entry;
+  }
+
+  Stream<Entry> toStream() {
+    final Spliterator<Entry> split =
+        Spliterators.spliteratorUnknownSize(
+            this, Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL);
+
+    return StreamSupport.stream(split, false).onClose(this::close);
+  }
+
+  @Override
+  public void close() {
+    rocksIt.close();
+    closed = true;
+  }
+}
@@ -21,34 +21,46 @@ import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.Closeable;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.RocksObject;
 import org.rocksdb.TransactionDB;
 import org.rocksdb.TransactionDBOptions;
+import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
 public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
 
   private static final Logger LOG = LogManager.getLogger();
 
+  private final RocksDbConfiguration configuration;
   private final Options options;
   private final TransactionDBOptions txOptions;
-  private final TransactionDB db;
+  private final RocksDB db;
+  private final RocksDbStats stats;
+  private final List<RocksObject> resources = new ArrayList<>();
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
   private final OperationTimer readLatency;
+  private final OperationTimer multiGetLatency;
   private final OperationTimer removeLatency;
   private final OperationTimer writeLatency;
   private final OperationTimer commitLatency;
@@ -56,19 +68,53 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
 
   public static KeyValueStorage create(
       final Path storageDirectory, final MetricsSystem metricsSystem) throws StorageException {
-    return new RocksDbKeyValueStorage(storageDirectory, metricsSystem);
+    return create(storageDirectory, RocksDbConfiguration.createDefault(), metricsSystem);
   }
 
-  private RocksDbKeyValueStorage(final Path storageDirectory, final MetricsSystem metricsSystem) {
+  public static KeyValueStorage create(
+      final Path storageDirectory,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem)
+      throws StorageException {
+    return new RocksDbKeyValueStorage(storageDirectory, configuration, metricsSystem);
+  }
+
+  private RocksDbKeyValueStorage(
+      final Path storageDirectory,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    this.configuration = configuration;
     RocksDbUtil.loadNativeLibrary();
+    stats = new RocksDbStats();
     try {
-      options = new Options().setCreateIfMissing(true);
+      options =
+          new Options()
+              .setCreateIfMissing(true)
+              .setMaxOpenFiles(configuration.getMaxOpenFiles())
+              .setMaxBackgroundJobs(configuration.getMaxBackgroundJobs())
+              .setWriteBufferSize(configuration.getWriteBufferSize())
+              .setTableFormatConfig(createTableConfig(configuration))
+              .setStatistics(stats.getStatistics());
+      if (configuration.getRateLimit() > 0) {
+        final RateLimiter rateLimiter = new RateLimiter(configuration.getRateLimit());
+        resources.add(rateLimiter);
+        options.setRateLimiter(rateLimiter);
+      }
       txOptions = new TransactionDBOptions();
-      db = TransactionDB.open(options, txOptions, storageDirectory.toString());
+      if (configuration.getWriteMode() == RocksDbConfiguration.WriteMode.WRITE_BATCH) {
+        db = RocksDB.open(options, storageDirectory.toString());
+      } else {
+        db = TransactionDB.open(options, txOptions, storageDirectory.toString());
+      }
 
       readLatency =
           metricsSystem.createTimer(
               MetricCategory.ROCKSDB, "read_latency_seconds", "Latency for read from RocksDB.");
+      multiGetLatency =
+          metricsSystem.createTimer(
+              MetricCategory.ROCKSDB,
+              "multi_get_latency_seconds",
+              "Latency for batched reads from RocksDB.");
       removeLatency =
           metricsSystem.createTimer(
               MetricCategory.ROCKSDB,
@@ -86,11 +132,31 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
               MetricCategory.ROCKSDB,
               "rollback_count",
               "Number of RocksDB transactions rolled back.");
+
+      stats.register(db, Collections.emptyList(), metricsSystem);
     } catch (final RocksDBException e) {
+      stats.close();
+      resources.forEach(RocksObject::close);
       throw new StorageException(e);
     }
   }
 
+  private BlockBasedTableConfig createTableConfig(final RocksDbConfiguration configuration) {
+    final BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+    if (configuration.getBlockCacheSize() > 0) {
+      final LRUCache blockCache = new LRUCache(configuration.getBlockCacheSize());
+      resources.add(blockCache);
+      tableConfig.setBlockCache(blockCache);
+    } else {
+      tableConfig.setNoBlockCache(true);
+    }
+    final BloomFilter bloomFilter =
+        new BloomFilter(RocksDbSegmentConfiguration.DEFAULT_BLOOM_FILTER_BITS_PER_KEY, false);
+    resources.add(bloomFilter);
+    tableConfig.setFilter(bloomFilter);
+    return tableConfig;
+  }
+
   @Override
   public Optional<BytesValue> get(final BytesValue key) throws StorageException {
     throwIfClosed();
@@ -102,19 +168,76 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
     }
   }
 
+  @Override
+  public Map<BytesValue, BytesValue> getAll(final Collection<BytesValue> keys)
+      throws StorageException {
+    throwIfClosed();
+    if (keys.isEmpty()) {
+      return new HashMap<>();
+    }
+
+    final List<BytesValue> orderedKeys = new ArrayList<>(keys);
+    final List<byte[]> keyArrays = new ArrayList<>(orderedKeys.size());
+    for (final BytesValue key : orderedKeys) {
+      keyArrays.add(key.getArrayUnsafe());
+    }
+
+    try (final OperationTimer.TimingContext ignored = multiGetLatency.startTimer()) {
+      // The returned map is keyed by the exact arrays passed in, so look values up by reference.
+      final Map<byte[], byte[]> found = db.multiGet(keyArrays);
+      final Map<BytesValue, BytesValue> values = new HashMap<>(found.size());
+      for (int i = 0; i < orderedKeys.size(); i++) {
+        final byte[] value = found.get(keyArrays.get(i));
+        if (value != null) {
+          values.put(orderedKeys.get(i), BytesValue.wrap(value));
+        }
+      }
+      return values;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public Stream<Entry> entries() {
+    throwIfClosed();
+    final RocksIterator rocksIterator = db.newIterator();
+    rocksIterator.seekToFirst();
+    return new RocksDbEntryIterator(rocksIterator).toStream();
+  }
+
+  @Override
+  public Stream<Entry> entriesFrom(final BytesValue startKey) {
+    throwIfClosed();
+    final RocksIterator rocksIterator = db.newIterator();
+    rocksIterator.seek(startKey.getArrayUnsafe());
+    return new RocksDbEntryIterator(rocksIterator).toStream();
+  }
+
+  @Override
+  public void createCheckpoint(final Path checkpointDirectory) throws StorageException {
+    throwIfClosed();
+    RocksDbCheckpoint.create(db, checkpointDirectory);
+  }
+
   @Override
   public Transaction startTransaction() throws StorageException {
     throwIfClosed();
-    final WriteOptions options = new WriteOptions();
-    return new RocksDbTransaction(db.beginTransaction(options), options);
+    final WriteOptions options = new WriteOptions().setSync(configuration.isSyncWrites());
+    if (configuration.getWriteMode() == RocksDbConfiguration.WriteMode.WRITE_BATCH) {
+      return new RocksDbWriteBatchTransaction(options);
+    }
+    return new RocksDbTransaction(((TransactionDB) db).beginTransaction(options), options);
   }
 
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
+      stats.close();
       txOptions.close();
       options.close();
       db.close();
+      resources.forEach(RocksObject::close);
     }
   }
 
@@ -125,61 +248,6 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
     }
   }
 
-  /**
-   * Iterates over rocksDB key-value entries. Reads from a db snapshot implicitly taken when the
-   * RocksIterator passed to the constructor was created.
-   *
-   * <p>Implements {@link AutoCloseable} and can be used with try-with-resources construct. When
-   * transformed to a stream (see {@link #toStream}), iterator is automatically closed when the
-   * stream is closed.
-   */
-  private static class RocksDbEntryIterator implements Iterator<Entry>, AutoCloseable {
-    private final RocksIterator rocksIt;
-    private volatile boolean closed = false;
-
-    RocksDbEntryIterator(final RocksIterator rocksIt) {
-      this.rocksIt = rocksIt;
-    }
-
-    @Override
-    public boolean hasNext() {
-      return rocksIt.isValid();
-    }
-
-    @Override
-    public Entry next() {
-      if (closed) {
-        throw new IllegalStateException("Attempt to read from a closed RocksDbEntryIterator.");
-      }
-      try {
-        rocksIt.status();
-      } catch (final RocksDBException e) {
-        LOG.error("RocksDbEntryIterator encountered a problem while iterating.", e);
-      }
-      if (!hasNext()) {
-        throw new NoSuchElementException();
-      }
-      final Entry entry =
-          Entry.create(BytesValue.wrap(rocksIt.key()), BytesValue.wrap(rocksIt.value()));
-      rocksIt.next();
-      return entry;
-    }
-
-    Stream<Entry> toStream() {
-      final Spliterator<Entry> split =
-          Spliterators.spliteratorUnknownSize(
-              this, Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL);
-
-      return StreamSupport.stream(split, false).onClose(this::close);
-    }
-
-    @Override
-    public void close() {
-      rocksIt.close();
-      closed = true;
-    }
-  }
-
   private class RocksDbTransaction extends AbstractTransaction {
     private final org.rocksdb.Transaction innerTx;
     private final WriteOptions options;
@@ -235,4 +303,57 @@ public class RocksDbKeyValueStorage implements KeyValueStorage, Closeable {
       options.close();
     }
   }
+
+  /**
+   * Buffers changes in a {@link WriteBatch} and writes them in a single atomic write on commit.
+   * Puts and removes only append to the in-memory batch, so they are not timed individually.
+   */
+  private class RocksDbWriteBatchTransaction extends AbstractTransaction {
+    private final WriteBatch batch = new WriteBatch();
+    private final WriteOptions options;
+
+    RocksDbWriteBatchTransaction(final WriteOptions options) {
+      this.options = options;
+    }
+
+    @Override
+    protected void doPut(final BytesValue key, final BytesValue value) {
+      try {
+        batch.put(key.getArrayUnsafe(), value.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doRemove(final BytesValue key) {
+      try {
+        batch.delete(key.getArrayUnsafe());
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    protected void doCommit() throws StorageException {
+      try (final OperationTimer.TimingContext ignored = commitLatency.startTimer()) {
+        db.write(options, batch);
+      } catch (final RocksDBException e) {
+        throw new StorageException(e);
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    protected void doRollback() {
+      rollbackCount.inc();
+      close();
+    }
+
+    private void close() {
+      batch.close();
+      options.close();
+    }
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Segment;
+
+/**
+ * Tuning for one column family of a {@link ColumnarRocksDbKeyValueStorage}. Each segment gets its
+ * own block cache, sized as a share of the total block cache budget, so that churn in one segment
+ * cannot evict the hot blocks of another.
+ */
+public class RocksDbSegmentConfiguration {
+
+  public static final int DEFAULT_BLOOM_FILTER_BITS_PER_KEY = 10;
+
+  public enum Compression {
+    NONE,
+    LZ4
+  }
+
+  public enum CompactionStyle {
+    LEVEL,
+    UNIVERSAL
+  }
+
+  private final Segment segment;
+  private final double blockCacheShare;
+  private final int bloomFilterBitsPerKey;
+  private final Compression compression;
+  private final CompactionStyle compactionStyle;
+
+  private RocksDbSegmentConfiguration(
+      final Segment segment,
+      final double blockCacheShare,
+      final int bloomFilterBitsPerKey,
+      final Compression compression,
+      final CompactionStyle compactionStyle) {
+    this.segment = segment;
+    this.blockCacheShare = blockCacheShare;
+    this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+    this.compression = compression;
+    this.compactionStyle = compactionStyle;
+  }
+
+  public static Builder builder(final Segment segment) {
+    return new Builder(segment);
+  }
+
+  public Segment getSegment() {
+    return segment;
+  }
+
+  public double getBlockCacheShare() {
+    return blockCacheShare;
+  }
+
+  public int getBloomFilterBitsPerKey() {
+    return bloomFilterBitsPerKey;
+  }
+
+  public Compression getCompression() {
+    return compression;
+  }
+
+  public CompactionStyle getCompactionStyle() {
+    return compactionStyle;
+  }
+
+  public static class Builder {
+
+    private final Segment segment;
+    private double blockCacheShare = 0;
+    private int bloomFilterBitsPerKey = DEFAULT_BLOOM_FILTER_BITS_PER_KEY;
+    private Compression compression = Compression.LZ4;
+    private CompactionStyle compactionStyle = CompactionStyle.LEVEL;
+
+    private Builder(final Segment segment) {
+      this.segment = segment;
+    }
+
+    /**
+     * @param blockCacheShare Fraction of the total block cache budget reserved for this segment.
+     *     Zero disables the block cache for the segment.
+     * @return This builder.
+     */
+    public Builder blockCacheShare(final double blockCacheShare) {
+      checkArgument(
+          blockCacheShare >= 0 && blockCacheShare <= 1,
+          "Block cache share must be between 0 and 1");
+      this.blockCacheShare = blockCacheShare;
+      return this;
+    }
+
+    /**
+     * @param bloomFilterBitsPerKey Bits per key of the bloom filter. Zero disables the filter.
+     * @return This builder.
+     */
+    public Builder bloomFilterBitsPerKey(final int bloomFilterBitsPerKey) {
+      checkArgument(bloomFilterBitsPerKey >= 0, "Bloom filter bits per key must be positive");
+      this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+      return this;
+    }
+
+    public Builder compression(final Compression compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    public Builder compactionStyle(final CompactionStyle compactionStyle) {
+      this.compactionStyle = compactionStyle;
+      return this;
+    }
+
+    public RocksDbSegmentConfiguration build() {
+      return new RocksDbSegmentConfiguration(
+          segment, blockCacheShare, bloomFilterBitsPerKey, compression, compactionStyle);
+    }
+  }
+}
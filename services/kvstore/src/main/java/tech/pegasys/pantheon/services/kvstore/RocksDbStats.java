@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.StatsLevel;
+import org.rocksdb.TickerType;
+
+/**
+ * Exports RocksDB's internal statistics and properties as {@link MetricCategory#ROCKSDB} gauges.
+ *
+ * <p>Tickers are cumulative counts kept by the {@link Statistics} object attached to the database
+ * options. Properties are read from the database on every scrape and, for a database with column
+ * families, summed across all of them. Once the database is closed every gauge reports zero rather
+ * than touching freed native resources.
+ */
+class RocksDbStats {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  /** RocksDB's default number of levels for level-style compaction. */
+  static final int NUM_LEVELS = 7;
+
+  static final List<TickerType> TICKERS =
+      Arrays.asList(
+          TickerType.BLOCK_CACHE_HIT,
+          TickerType.BLOCK_CACHE_MISS,
+          TickerType.BLOCK_CACHE_DATA_HIT,
+          TickerType.BLOCK_CACHE_DATA_MISS,
+          TickerType.BLOCK_CACHE_INDEX_HIT,
+          TickerType.BLOCK_CACHE_INDEX_MISS,
+          TickerType.BLOCK_CACHE_FILTER_HIT,
+          TickerType.BLOCK_CACHE_FILTER_MISS,
+          TickerType.BLOOM_FILTER_USEFUL,
+          TickerType.MEMTABLE_HIT,
+          TickerType.MEMTABLE_MISS,
+          TickerType.GET_HIT_L0,
+          TickerType.GET_HIT_L1,
+          TickerType.GET_HIT_L2_AND_UP,
+          TickerType.NUMBER_KEYS_READ,
+          TickerType.NUMBER_KEYS_WRITTEN,
+          TickerType.BYTES_READ,
+          TickerType.BYTES_WRITTEN,
+          TickerType.ITER_BYTES_READ,
+          TickerType.COMPACT_READ_BYTES,
+          TickerType.COMPACT_WRITE_BYTES,
+          TickerType.FLUSH_WRITE_BYTES,
+          TickerType.WAL_FILE_BYTES,
+          TickerType.WAL_FILE_SYNCED,
+          TickerType.STALL_MICROS);
+
+  /** Properties kept per column family, which are summed to give a value for the database. */
+  static final List<String> COLUMN_PROPERTIES =
+      Arrays.asList(
+          "rocksdb.cur-size-all-mem-tables",
+          "rocksdb.size-all-mem-tables",
+          "rocksdb.num-immutable-mem-table",
+          "rocksdb.mem-table-flush-pending",
+          "rocksdb.compaction-pending",
+          "rocksdb.estimate-pending-compaction-bytes",
+          "rocksdb.estimate-num-keys",
+          "rocksdb.estimate-table-readers-mem",
+          "rocksdb.total-sst-files-size",
+          "rocksdb.live-sst-files-size",
+          "rocksdb.block-cache-usage",
+          "rocksdb.block-cache-pinned-usage");
+
+  /** Properties that describe the database as a whole. */
+  static final List<String> DATABASE_PROPERTIES =
+      Arrays.asList(
+          "rocksdb.num-running-compactions",
+          "rocksdb.num-running-flushes",
+          "rocksdb.is-write-stopped",
+          "rocksdb.actual-delayed-write-rate");
+
+  private static final String NUM_FILES_AT_LEVEL = "rocksdb.num-files-at-level";
+
+  private final Statistics statistics;
+  private RocksDB db;
+  private List<ColumnFamilyHandle> columnHandles = Collections.emptyList();
+  private boolean closed;
+
+  RocksDbStats() {
+    statistics = new Statistics();
+    statistics.setStatsLevel(StatsLevel.EXCEPT_DETAILED_TIMERS);
+  }
+
+  /** @return The statistics object to attach to the database options before opening it. */
+  Statistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Starts reporting metrics for an opened database.
+   *
+   * @param db The database the statistics were attached to.
+   * @param columnHandles The database's column families, or an empty list to read properties from
+   *     the default column family only.
+   * @param metricsSystem The metrics system to register gauges with.
+   */
+  synchronized void register(
+      final RocksDB db,
+      final List<ColumnFamilyHandle> columnHandles,
+      final MetricsSystem metricsSystem) {
+    this.db = db;
+    this.columnHandles = columnHandles;
+
+    for (final TickerType ticker : TICKERS) {
+      metricsSystem.createLongGauge(
+          MetricCategory.ROCKSDB,
+          ticker.name().toLowerCase(Locale.US),
+          "RocksDB internal statistic " + ticker.name(),
+          () -> getTickerCount(ticker));
+    }
+    for (final String property : COLUMN_PROPERTIES) {
+      metricsSystem.createLongGauge(
+          MetricCategory.ROCKSDB,
+          metricName(property),
+          "RocksDB property " + property + " summed across column families",
+          () -> getColumnProperty(property));
+    }
+    for (final String property : DATABASE_PROPERTIES) {
+      metricsSystem.createLongGauge(
+          MetricCategory.ROCKSDB,
+          metricName(property),
+          "RocksDB property " + property,
+          () -> getDatabaseProperty(property));
+    }
+    for (int level = 0; level < NUM_LEVELS; level++) {
+      final String property = NUM_FILES_AT_LEVEL + level;
+      metricsSystem.createLongGauge(
+          MetricCategory.ROCKSDB,
+          metricName(property),
+          "Number of SST files at level " + level + " summed across column families",
+          () -> getColumnProperty(property));
+    }
+  }
+
+  synchronized long getTickerCount(final TickerType ticker) {
+    return closed ? 0 : statistics.getTickerCount(ticker);
+  }
+
+  synchronized long getColumnProperty(final String property) {
+    if (closed || db == null) {
+      return 0;
+    }
+    if (columnHandles.isEmpty()) {
+      return readProperty(null, property);
+    }
+    long total = 0;
+    for (final ColumnFamilyHandle handle : columnHandles) {
+      total += readProperty(handle, property);
+    }
+    return total;
+  }
+
+  synchronized long getDatabaseProperty(final String property) {
+    return closed || db == null ? 0 : readProperty(null, property);
+  }
+
+  /** Stops reporting. Must be called before the database is closed. */
+  synchronized void close() {
+    if (!closed) {
+      closed = true;
+      statistics.close();
+    }
+  }
+
+  private long readProperty(final ColumnFamilyHandle handle, final String property) {
+    try {
+      // Not every property has an integer form in RocksDB, so parse the string representation.
+      final String value =
+          handle == null ? db.getProperty(property) : db.getProperty(handle, property);
+      return value == null || value.isEmpty() ? 0 : Long.parseLong(value.trim());
+    } catch (final RocksDBException | NumberFormatException e) {
+      LOG.debug("Unable to read RocksDB property {}", property, e);
+      return 0;
+    }
+  }
+
+  private static String metricName(final String property) {
+    return property.substring("rocksdb.".length()).replace('-', '_');
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+
+/**
+ * Key-value storage whose keyspace is divided into named segments. Each segment is an independent
+ * keyspace, but a single transaction may span several segments and is still committed atomically.
+ */
+public interface SegmentedKeyValueStorage extends Closeable {
+
+  /**
+   * @param segment The segment to read from.
+   * @param key Index into the segment.
+   * @return The value persisted at the key index within the given segment.
+   */
+  Optional<BytesValue> get(Segment segment, BytesValue key) throws StorageException;
+
+  /**
+   * Looks up several keys in one segment at once. Implementations backed by a database should
+   * override this to fetch all keys in a single round trip.
+   *
+   * @param segment The segment to read from.
+   * @param keys Indexes into the segment.
+   * @return The values persisted at the key indexes. Keys without a value are omitted.
+   */
+  default Map<BytesValue, BytesValue> getAll(
+      final Segment segment, final Collection<BytesValue> keys) throws StorageException {
+    final Map<BytesValue, BytesValue> values = new HashMap<>(keys.size());
+    for (final BytesValue key : keys) {
+      get(segment, key).ifPresent(value -> values.put(key, value));
+    }
+    return values;
+  }
+
+  /**
+   * Streams every entry in one segment. The stream holds resources of the underlying store and must
+   * be closed once it is no longer needed.
+   *
+   * @param segment The segment to read from.
+   * @return A stream of all key-value entries in the segment.
+   */
+  Stream<Entry> entries(Segment segment);
+
+  /**
+   * Streams entries of one segment in ascending unsigned byte order of their keys, starting at the
+   * first key that is equal to or greater than {@code startKey}. Storages that keep their keys
+   * sorted should override this to seek directly to the start key. The stream must be closed once
+   * it is no longer needed.
+   *
+   * @param segment The segment to read from.
+   * @param startKey The key to start from.
+   * @return A stream of the segment's key-value entries from the start key onwards.
+   */
+  default Stream<Entry> entriesFrom(final Segment segment, final BytesValue startKey) {
+    return entries(segment)
+        .filter(entry -> entry.getKey().compareTo(startKey) >= 0)
+        .sorted(Comparator.comparing(Entry::getKey));
+  }
+
+  /**
+   * Writes a large batch of entries into one segment. Storages that support it write the entries
+   * straight to sorted files on disk and add those to the database, bypassing the write-ahead log,
+   * memtable and the compactions needed to move data down from the first level. The entries are
+   * durable once this returns.
+   *
+   * @param segment The segment to write to.
+   * @param entries The entries to write.
+   */
+  default void ingest(final Segment segment, final SortedMap<BytesValue, BytesValue> entries)
+      throws StorageException {
+    final Transaction transaction = startTransaction();
+    entries.forEach((key, value) -> transaction.put(segment, key, value));
+    transaction.commit();
+  }
+
+  /**
+   * Pauses or resumes background compaction of a segment. Pausing is useful while loading data that
+   * will be compacted once with {@link #compact(Segment)} when loading completes.
+   *
+   * @param segment The segment to change.
+   * @param enabled Whether automatic compaction should run.
+   */
+  default void setAutoCompactionEnabled(final Segment segment, final boolean enabled)
+      throws StorageException {}
+
+  /**
+   * Compacts all data in a segment, returning once compaction completes.
+   *
+   * @param segment The segment to compact.
+   */
+  default void compact(final Segment segment) throws StorageException {}
+
+  /**
+   * Writes a consistent point-in-time copy of the storage to a new directory while it stays open
+   * for reads and writes. Storages that can't do this, such as those held only in memory, throw
+   * {@link UnsupportedOperationException}.
+   *
+   * @param checkpointDirectory The directory to create the copy in, which must not exist yet.
+   */
+  void createCheckpoint(Path checkpointDirectory) throws StorageException;
+
+  /**
+   * Begins a transaction. Returns a transaction object that can be updated and committed.
+   *
+   * @return An object representing the transaction.
+   */
+  Transaction startTransaction() throws StorageException;
+
+  /** Identifies one segment of a {@link SegmentedKeyValueStorage}. */
+  interface Segment {
+
+    /**
+     * The name of the segment. Names are persisted by some implementations and must not change.
+     *
+     * @return The segment name.
+     */
+    String getName();
+  }
+
+  /**
+   * Represents a set of changes, potentially touching several segments, to be committed atomically.
+   * A single transaction is not thread-safe, but multiple transactions can execute concurrently.
+   */
+  interface Transaction {
+
+    /**
+     * Add the given key-value pair to the set of updates to be committed.
+     *
+     * @param segment The segment the key belongs to.
+     * @param key The key to set / modify.
+     * @param value The value to be set.
+     */
+    void put(Segment segment, BytesValue key, BytesValue value);
+
+    /**
+     * Schedules the given key to be deleted from storage.
+     *
+     * @param segment The segment the key belongs to.
+     * @param key The key to delete
+     */
+    void remove(Segment segment, BytesValue key);
+
+    /**
+     * Atomically commit the set of changes contained in this transaction to the underlying
+     * key-value storage from which this transaction was started. After committing, the transaction
+     * is no longer usable and will throw exceptions if modifications are attempted.
+     */
+    void commit() throws StorageException;
+
+    /**
+     * Cancel this transaction. After rolling back, the transaction is no longer usable and will
+     * throw exceptions if modifications are attempted.
+     */
+    void rollback();
+  }
+
+  abstract class AbstractTransaction implements Transaction {
+
+    private boolean active = true;
+
+    @Override
+    public final void put(final Segment segment, final BytesValue key, final BytesValue value) {
+      checkState(active, "Cannot invoke put() on a completed transaction.");
+      doPut(segment, key, value);
+    }
+
+    @Override
+    public final void remove(final Segment segment, final BytesValue key) {
+      checkState(active, "Cannot invoke remove() on a completed transaction.");
+      doRemove(segment, key);
+    }
+
+    @Override
+    public final void commit() throws StorageException {
+      checkState(active, "Cannot commit a completed transaction.");
+      active = false;
+      doCommit();
+    }
+
+    @Override
+    public final void rollback() {
+      checkState(active, "Cannot rollback a completed transaction.");
+      active = false;
+      doRollback();
+    }
+
+    protected abstract void doPut(Segment segment, BytesValue key, BytesValue value);
+
+    protected abstract void doRemove(Segment segment, BytesValue key);
+
+    protected abstract void doCommit() throws StorageException;
+
+    protected abstract void doRollback();
+  }
+}
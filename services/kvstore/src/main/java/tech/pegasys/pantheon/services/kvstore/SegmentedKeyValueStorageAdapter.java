@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.StorageException;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Exposes a plain {@link KeyValueStorage} as a {@link SegmentedKeyValueStorage}. Segments are not
+ * separated: every segment maps onto the one underlying keyspace, so callers must ensure keys from
+ * different segments cannot collide.
+ */
+public class SegmentedKeyValueStorageAdapter implements SegmentedKeyValueStorage {
+
+  private final KeyValueStorage storage;
+
+  public SegmentedKeyValueStorageAdapter(final KeyValueStorage storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public Optional<BytesValue> get(final Segment segment, final BytesValue key)
+      throws StorageException {
+    return storage.get(key);
+  }
+
+  @Override
+  public Map<BytesValue, BytesValue> getAll(
+      final Segment segment, final Collection<BytesValue> keys) throws StorageException {
+    return storage.getAll(keys);
+  }
+
+  /** Streams the whole underlying keyspace, as segments are not separated. */
+  @Override
+  public Stream<Entry> entries(final Segment segment) {
+    return storage.entries();
+  }
+
+  @Override
+  public Stream<Entry> entriesFrom(final Segment segment, final BytesValue startKey) {
+    return storage.entriesFrom(startKey);
+  }
+
+  @Override
+  public void createCheckpoint(final Path checkpointDirectory) throws StorageException {
+    storage.createCheckpoint(checkpointDirectory);
+  }
+
+  @Override
+  public Transaction startTransaction() throws StorageException {
+    final KeyValueStorage.Transaction transaction = storage.startTransaction();
+    return new AbstractTransaction() {
+      @Override
+      protected void doPut(final Segment segment, final BytesValue key, final BytesValue value) {
+        transaction.put(key, value);
+      }
+
+      @Override
+      protected void doRemove(final Segment segment, final BytesValue key) {
+        transaction.remove(key);
+      }
+
+      @Override
+      protected void doCommit() throws StorageException {
+        transaction.commit();
+      }
+
+      @Override
+      protected void doRollback() {
+        transaction.rollback();
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    storage.close();
+  }
+}
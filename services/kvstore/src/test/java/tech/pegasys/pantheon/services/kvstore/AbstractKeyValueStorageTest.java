@@ -16,14 +16,21 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
 import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Transaction;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 import tech.pegasys.pantheon.util.bytes.BytesValues;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -62,6 +69,80 @@ public abstract class AbstractKeyValueStorageTest {
         Optional.of(BytesValue.fromHexString("0DEF")), store.get(BytesValue.fromHexString("0F")));
   }
 
+  @Test
+  public void getAllReturnsOnlyPresentKeys() throws Exception {
+    final KeyValueStorage store = createStore();
+    final Transaction tx = store.startTransaction();
+    tx.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0A"));
+    tx.put(BytesValue.fromHexString("02"), BytesValue.fromHexString("0B"));
+    tx.put(BytesValue.fromHexString("03"), BytesValue.fromHexString("0C"));
+    tx.commit();
+
+    final Map<BytesValue, BytesValue> expected = new HashMap<>();
+    expected.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0A"));
+    expected.put(BytesValue.fromHexString("03"), BytesValue.fromHexString("0C"));
+    assertEquals(
+        expected,
+        store.getAll(
+            Arrays.asList(
+                BytesValue.fromHexString("01"),
+                BytesValue.fromHexString("04"),
+                BytesValue.fromHexString("03"),
+                BytesValue.fromHexString("01"))));
+  }
+
+  @Test
+  public void getAllWithNoKeys() throws Exception {
+    final KeyValueStorage store = createStore();
+    assertEquals(Collections.emptyMap(), store.getAll(Collections.emptyList()));
+  }
+
+  @Test
+  public void entries() throws Exception {
+    final KeyValueStorage store = createStore();
+    final Transaction tx = store.startTransaction();
+    tx.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0A"));
+    tx.put(BytesValue.fromHexString("02"), BytesValue.fromHexString("0B"));
+    tx.commit();
+
+    try (final Stream<Entry> entries = store.entries()) {
+      assertEquals(
+          new HashSet<>(
+              Arrays.asList(
+                  Entry.create(BytesValue.fromHexString("01"), BytesValue.fromHexString("0A")),
+                  Entry.create(BytesValue.fromHexString("02"), BytesValue.fromHexString("0B")))),
+          entries.collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void entriesFromStartInKeyOrder() throws Exception {
+    final KeyValueStorage store = createStore();
+    final Transaction tx = store.startTransaction();
+    tx.put(BytesValue.fromHexString("0301"), BytesValue.fromHexString("0C"));
+    tx.put(BytesValue.fromHexString("01"), BytesValue.fromHexString("0A"));
+    tx.put(BytesValue.fromHexString("F0"), BytesValue.fromHexString("0D"));
+    tx.put(BytesValue.fromHexString("0201"), BytesValue.fromHexString("0B"));
+    tx.commit();
+
+    try (final Stream<Entry> entries = store.entriesFrom(BytesValue.fromHexString("02"))) {
+      assertEquals(
+          Arrays.asList(
+              BytesValue.fromHexString("0201"),
+              BytesValue.fromHexString("0301"),
+              BytesValue.fromHexString("F0")),
+          entries.map(Entry::getKey).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void entriesOfEmptyStore() throws Exception {
+    final KeyValueStorage store = createStore();
+    try (final Stream<Entry> entries = store.entries()) {
+      assertEquals(0, entries.count());
+    }
+  }
+
   @Test
   public void removeExisting() throws Exception {
     final KeyValueStorage store = createStore();
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.metrics.Observation;
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.metrics.prometheus.MetricsConfiguration;
+import tech.pegasys.pantheon.metrics.prometheus.PrometheusMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.KeyValueStorage.Entry;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration.WriteMode;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Segment;
+import tech.pegasys.pantheon.services.kvstore.SegmentedKeyValueStorage.Transaction;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class ColumnarRocksDbKeyValueStorageTest {
+
+  private static final BytesValue KEY = BytesValue.fromHexString("0F");
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Parameter public WriteMode writeMode;
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][] {{WriteMode.TRANSACTIONAL}, {WriteMode.WRITE_BATCH}});
+  }
+
+  private enum TestSegment implements Segment {
+    DEFAULT("default"),
+    FOO("foo"),
+    BAR("bar");
+
+    private final String name;
+
+    TestSegment(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  @Test
+  public void segmentsAreIndependent() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, KEY, BytesValue.of(2));
+    tx.commit();
+
+    assertThat(store.get(TestSegment.FOO, KEY)).contains(BytesValue.of(1));
+    assertThat(store.get(TestSegment.BAR, KEY)).contains(BytesValue.of(2));
+    assertThat(store.get(TestSegment.DEFAULT, KEY)).isEmpty();
+    store.close();
+  }
+
+  @Test
+  public void getAllOnlyReadsFromOneSegment() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+    final BytesValue otherKey = BytesValue.fromHexString("0E");
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, otherKey, BytesValue.of(2));
+    tx.commit();
+
+    assertThat(store.getAll(TestSegment.FOO, Arrays.asList(KEY, otherKey)))
+        .containsOnly(entry(KEY, BytesValue.of(1)));
+    assertThat(store.getAll(TestSegment.BAR, Arrays.asList(KEY, otherKey)))
+        .containsOnly(entry(otherKey, BytesValue.of(2)));
+    store.close();
+  }
+
+  @Test
+  public void entriesOnlyStreamsOneSegment() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+    final BytesValue otherKey = BytesValue.fromHexString("0E");
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, otherKey, BytesValue.of(2));
+    tx.commit();
+
+    try (final Stream<Entry> entries = store.entries(TestSegment.FOO)) {
+      assertThat(entries).containsExactly(Entry.create(KEY, BytesValue.of(1)));
+    }
+    store.close();
+  }
+
+  @Test
+  public void entriesFromSeeksWithinOneSegment() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, BytesValue.of(1), BytesValue.of(1));
+    tx.put(TestSegment.FOO, BytesValue.of(3), BytesValue.of(3));
+    tx.put(TestSegment.BAR, BytesValue.of(2), BytesValue.of(2));
+    tx.commit();
+
+    try (final Stream<Entry> entries = store.entriesFrom(TestSegment.FOO, BytesValue.of(2))) {
+      assertThat(entries).containsExactly(Entry.create(BytesValue.of(3), BytesValue.of(3)));
+    }
+    store.close();
+  }
+
+  @Test
+  public void removeOnlyAffectsOneSegment() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+
+    Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, KEY, BytesValue.of(2));
+    tx.commit();
+
+    tx = store.startTransaction();
+    tx.remove(TestSegment.FOO, KEY);
+    tx.commit();
+
+    assertThat(store.get(TestSegment.FOO, KEY)).isEmpty();
+    assertThat(store.get(TestSegment.BAR, KEY)).contains(BytesValue.of(2));
+    store.close();
+  }
+
+  @Test
+  public void rollbackDiscardsChangesInAllSegments() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, KEY, BytesValue.of(2));
+    tx.rollback();
+
+    assertThat(store.get(TestSegment.FOO, KEY)).isEmpty();
+    assertThat(store.get(TestSegment.BAR, KEY)).isEmpty();
+    store.close();
+  }
+
+  @Test
+  public void valuesArePersistedAcrossRestarts() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    final ColumnarRocksDbKeyValueStorage store = createStore(directory);
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.commit();
+    store.close();
+
+    final ColumnarRocksDbKeyValueStorage reopened = createStore(directory);
+    assertThat(reopened.get(TestSegment.FOO, KEY)).contains(BytesValue.of(1));
+    assertThat(ColumnarRocksDbKeyValueStorage.isUnsegmentedDatabase(directory)).isFalse();
+    reopened.close();
+  }
+
+  @Test
+  public void detectsUnsegmentedDatabase() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    assertThat(ColumnarRocksDbKeyValueStorage.isUnsegmentedDatabase(directory)).isFalse();
+
+    RocksDbKeyValueStorage.create(directory, new NoOpMetricsSystem()).close();
+    assertThat(ColumnarRocksDbKeyValueStorage.isUnsegmentedDatabase(directory)).isTrue();
+  }
+
+  @Test
+  public void defaultColumnIsCreatedWhenNotConfigured() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store =
+        ColumnarRocksDbKeyValueStorage.create(
+            folder.newFolder().toPath(),
+            configuration(),
+            Arrays.asList(RocksDbSegmentConfiguration.builder(TestSegment.FOO).build()),
+            new NoOpMetricsSystem());
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.commit();
+
+    assertThat(store.get(TestSegment.FOO, KEY)).isEqualTo(Optional.of(BytesValue.of(1)));
+    store.close();
+  }
+
+  @Test
+  public void ingestedEntriesAreReadable() throws Exception {
+    final Path directory = folder.newFolder().toPath();
+    final ColumnarRocksDbKeyValueStorage store = createStore(directory);
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, BytesValue.fromHexString("02"), BytesValue.of(9));
+    tx.commit();
+
+    final SortedMap<BytesValue, BytesValue> entries = new TreeMap<>();
+    entries.put(BytesValue.fromHexString("01"), BytesValue.of(1));
+    entries.put(BytesValue.fromHexString("02"), BytesValue.of(2));
+    entries.put(BytesValue.fromHexString("ff"), BytesValue.of(3));
+    store.ingest(TestSegment.FOO, entries);
+
+    try (final Stream<Entry> stored = store.entries(TestSegment.FOO)) {
+      assertThat(stored)
+          .containsExactly(
+              Entry.create(BytesValue.fromHexString("01"), BytesValue.of(1)),
+              Entry.create(BytesValue.fromHexString("02"), BytesValue.of(2)),
+              Entry.create(BytesValue.fromHexString("ff"), BytesValue.of(3)));
+    }
+    assertThat(store.get(TestSegment.BAR, BytesValue.fromHexString("01"))).isEmpty();
+    try (final Stream<Path> ingestFiles = Files.list(directory.resolve("ingest"))) {
+      assertThat(ingestFiles).isEmpty();
+    }
+    store.close();
+  }
+
+  @Test
+  public void segmentCanBeCompactedWithAutoCompactionPaused() throws Exception {
+    final ColumnarRocksDbKeyValueStorage store = createStore(folder.newFolder().toPath());
+    store.setAutoCompactionEnabled(TestSegment.FOO, false);
+    for (int i = 0; i < 3; i++) {
+      store.ingest(TestSegment.FOO, new TreeMap<>(ImmutableMap.of(KEY, BytesValue.of(i))));
+    }
+
+    store.compact(TestSegment.FOO);
+    store.setAutoCompactionEnabled(TestSegment.FOO, true);
+
+    assertThat(store.get(TestSegment.FOO, KEY)).contains(BytesValue.of(2));
+    store.close();
+  }
+
+  @Test
+  public void exportsInternalStatisticsAsMetrics() throws Exception {
+    final MetricsConfiguration metricsConfiguration = MetricsConfiguration.createDefault();
+    metricsConfiguration.setEnabled(true);
+    final MetricsSystem metricsSystem = PrometheusMetricsSystem.init(metricsConfiguration);
+    final ColumnarRocksDbKeyValueStorage store =
+        createStore(folder.newFolder().toPath(), metricsSystem);
+
+    final Transaction tx = store.startTransaction();
+    tx.put(TestSegment.FOO, KEY, BytesValue.of(1));
+    tx.put(TestSegment.BAR, KEY, BytesValue.of(2));
+    tx.commit();
+    store.get(TestSegment.FOO, KEY);
+
+    assertThat(rocksDbMetric(metricsSystem, "bytes_written")).isGreaterThan(0);
+    assertThat(rocksDbMetric(metricsSystem, "memtable_hit")).isEqualTo(1);
+    assertThat(rocksDbMetric(metricsSystem, "cur_size_all_mem_tables")).isGreaterThan(0);
+    assertThat(rocksDbMetric(metricsSystem, "num_files_at_level0")).isZero();
+
+    store.close();
+    assertThat(rocksDbMetric(metricsSystem, "bytes_written")).isZero();
+  }
+
+  private static double rocksDbMetric(final MetricsSystem metricsSystem, final String name) {
+    return metricsSystem
+        .getMetrics(MetricCategory.ROCKSDB)
+        .filter(observation -> observation.getMetricName().equals(name))
+        .map(Observation::getValue)
+        .map(value -> (Double) value)
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("Missing metric " + name));
+  }
+
+  private ColumnarRocksDbKeyValueStorage createStore(final Path directory) {
+    return createStore(directory, new NoOpMetricsSystem());
+  }
+
+  private ColumnarRocksDbKeyValueStorage createStore(
+      final Path directory, final MetricsSystem metricsSystem) {
+    return ColumnarRocksDbKeyValueStorage.create(
+        directory,
+        configuration(),
+        Arrays.asList(
+            RocksDbSegmentConfiguration.builder(TestSegment.DEFAULT).blockCacheShare(0.2).build(),
+            RocksDbSegmentConfiguration.builder(TestSegment.FOO)
+                .blockCacheShare(0.4)
+                .compactionStyle(RocksDbSegmentConfiguration.CompactionStyle.UNIVERSAL)
+                .build(),
+            RocksDbSegmentConfiguration.builder(TestSegment.BAR)
+                .blockCacheShare(0.4)
+                .bloomFilterBitsPerKey(0)
+                .compression(RocksDbSegmentConfiguration.Compression.NONE)
+                .build()),
+        metricsSystem);
+  }
+
+  private RocksDbConfiguration configuration() {
+    return RocksDbConfiguration.builder().blockCacheSize(1024 * 1024).writeMode(writeMode).build();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.kvstore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class RocksDbConfigurationTest {
+
+  private static final long GIGABYTE = 1024L * 1024 * 1024;
+
+  @Test
+  public void defaultsAreScaledToHostResources() {
+    final RocksDbConfiguration configuration =
+        new RocksDbConfiguration.Builder().scaledTo(16 * GIGABYTE, 8).build();
+
+    assertThat(configuration.getBlockCacheSize()).isEqualTo(GIGABYTE);
+    assertThat(configuration.getWriteBufferSize()).isEqualTo(64L * 1024 * 1024);
+    assertThat(configuration.getMaxBackgroundJobs()).isEqualTo(4);
+  }
+
+  @Test
+  public void scaledDefaultsAreCappedOnLargeHosts() {
+    final RocksDbConfiguration configuration =
+        new RocksDbConfiguration.Builder().scaledTo(512 * GIGABYTE, 128).build();
+
+    assertThat(configuration.getBlockCacheSize())
+        .isEqualTo(RocksDbConfiguration.MAX_DEFAULT_BLOCK_CACHE_SIZE);
+    assertThat(configuration.getWriteBufferSize())
+        .isEqualTo(RocksDbConfiguration.MAX_DEFAULT_WRITE_BUFFER_SIZE);
+    assertThat(configuration.getMaxBackgroundJobs())
+        .isEqualTo(RocksDbConfiguration.MAX_DEFAULT_BACKGROUND_JOBS);
+  }
+
+  @Test
+  public void scaledDefaultsHaveAFloorOnSmallHosts() {
+    final RocksDbConfiguration configuration =
+        new RocksDbConfiguration.Builder().scaledTo(0, 1).build();
+
+    assertThat(configuration.getBlockCacheSize())
+        .isEqualTo(RocksDbConfiguration.MIN_BLOCK_CACHE_SIZE);
+    assertThat(configuration.getWriteBufferSize())
+        .isEqualTo(RocksDbConfiguration.MIN_WRITE_BUFFER_SIZE);
+    assertThat(configuration.getMaxBackgroundJobs())
+        .isEqualTo(RocksDbConfiguration.MIN_BACKGROUND_JOBS);
+  }
+}
@@ -19,6 +19,8 @@ import tech.pegasys.pantheon.util.uint.UInt256;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
 import com.google.common.io.Files;
@@ -26,6 +28,7 @@ import com.google.common.io.MoreFiles;
 import com.google.common.io.RecursiveDeleteOption;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -34,6 +37,9 @@ import org.openjdk.jmh.annotations.TearDown;
 @State(Scope.Benchmark)
 public class RocksDbTaskQueueBenchmark {
 
+  // Matches the default number of hashes the world state downloader requests at once
+  private static final int BATCH_SIZE = 384;
+
   private File tempDir;
   private RocksDbTaskQueue<BytesValue> queue;
 
@@ -58,4 +64,59 @@ public class RocksDbTaskQueueBenchmark {
   public Task<BytesValue> dequeue() {
     return queue.dequeue();
   }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<Task<BytesValue>> dequeueBatch() {
+    return queue.dequeue(BATCH_SIZE);
+  }
+
+  /**
+   * Enqueues and dequeues a batch of items the way the world state downloader does, item by item or
+   * with the batch APIs, against a queue that stays at a steady size.
+   */
+  @State(Scope.Benchmark)
+  public static class RoundTrip {
+    private File tempDir;
+    private RocksDbTaskQueue<BytesValue> queue;
+    private final List<BytesValue> batch = new ArrayList<>(BATCH_SIZE);
+
+    @Setup(Level.Trial)
+    public void prepare() {
+      tempDir = Files.createTempDir();
+      queue =
+          RocksDbTaskQueue.create(
+              tempDir.toPath(), Function.identity(), Function.identity(), new NoOpMetricsSystem());
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        batch.add(UInt256.of(i).getBytes());
+      }
+      for (int i = 0; i < 100_000; i++) {
+        queue.enqueue(UInt256.of(i).getBytes());
+      }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      queue.close();
+      MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void roundTripOneByOne(final RoundTrip state) {
+    for (final BytesValue item : state.batch) {
+      state.queue.enqueue(item);
+    }
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      state.queue.dequeue().markCompleted();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void roundTripBatched(final RoundTrip state) {
+    state.queue.enqueueAll(state.batch);
+    state.queue.dequeue(BATCH_SIZE).forEach(Task::markCompleted);
+  }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+import tech.pegasys.pantheon.util.uint.UInt256;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures each queue implementation with several threads sharing it, the way the sync worker
+ * threads and the persistence task share the world state download queue.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class TaskQueueContentionBenchmark {
+
+  private static final int BATCH_SIZE = 16;
+
+  @Param({"InMemoryTaskQueue", "ConcurrentTaskQueue", "RocksDbTaskQueue"})
+  public String implementation;
+
+  private File tempDir;
+  private TaskQueue<BytesValue> queue;
+
+  @Setup(Level.Trial)
+  public void prepare() {
+    switch (implementation) {
+      case "InMemoryTaskQueue":
+        queue = new InMemoryTaskQueue<>();
+        break;
+      case "ConcurrentTaskQueue":
+        queue = new ConcurrentTaskQueue<>();
+        break;
+      case "RocksDbTaskQueue":
+        tempDir = Files.createTempDir();
+        queue =
+            RocksDbTaskQueue.create(
+                tempDir.toPath(),
+                Function.identity(),
+                Function.identity(),
+                new NoOpMetricsSystem());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown implementation: " + implementation);
+    }
+    for (int i = 0; i < 100_000; i++) {
+      queue.enqueue(UInt256.of(i).getBytes());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    queue.close();
+    if (tempDir != null) {
+      MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /** Each thread keeps its own batch of items to put back, like a worker queueing child nodes. */
+  @State(Scope.Thread)
+  public static class Worker {
+    private final List<BytesValue> batch = new ArrayList<>(BATCH_SIZE);
+
+    @Setup(Level.Trial)
+    public void prepare() {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        batch.add(UInt256.of(i).getBytes());
+      }
+    }
+  }
+
+  @Benchmark
+  public void roundTrip(final Worker worker) {
+    queue.enqueue(worker.batch.get(0));
+    final Task<BytesValue> task = queue.dequeue();
+    if (task != null) {
+      task.markCompleted();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void roundTripBatched(final Worker worker) {
+    queue.enqueueAll(worker.batch);
+    queue.dequeue(BATCH_SIZE).forEach(Task::markCompleted);
+  }
+
+  @Benchmark
+  public boolean allTasksCompleted() {
+    return queue.allTasksCompleted();
+  }
+}
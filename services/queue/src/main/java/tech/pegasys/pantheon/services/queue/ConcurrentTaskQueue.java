@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An unbounded in-memory task queue that many threads can enqueue to, dequeue from and complete
+ * tasks on without contending for a shared lock.
+ *
+ * <p>Rather than tracking outstanding tasks in a set, the queue keeps a single count of tasks that
+ * have been enqueued but not completed. Dequeuing a task moves it from pending to outstanding
+ * without changing that count, so {@link #allTasksCompleted()} can never observe a moment where a
+ * task being handed over is counted as neither.
+ *
+ * <p>Each pending entry records the generation it was counted in. A task enqueued while another
+ * thread {@link #clear() clears} the queue may land after the clear, but it belongs to the
+ * discarded generation and is dropped when it is polled rather than handed out uncounted.
+ *
+ * @param <T> the type of data held in the queue
+ */
+public class ConcurrentTaskQueue<T> implements TaskQueue<T> {
+  private final Queue<Entry<T>> internalQueue = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pendingCount = new AtomicLong();
+  private volatile Generation generation = new Generation();
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  @Override
+  public void enqueue(final T taskData) {
+    assertNotClosed();
+    final Generation current = generation;
+    current.unfinishedCount.incrementAndGet();
+    add(new Entry<>(current, taskData));
+  }
+
+  @Override
+  public void enqueueAll(final Collection<T> taskData) {
+    assertNotClosed();
+    final Generation current = generation;
+    current.unfinishedCount.addAndGet(taskData.size());
+    taskData.forEach(data -> add(new Entry<>(current, data)));
+  }
+
+  private void add(final Entry<T> entry) {
+    // Count the task only once it can be polled, so a non-empty queue always has a task to hand out
+    internalQueue.add(entry);
+    if (entry.generation != generation && internalQueue.remove(entry)) {
+      // The queue was cleared while the task was being added
+      return;
+    }
+    pendingCount.incrementAndGet();
+  }
+
+  private Entry<T> poll() {
+    Entry<T> entry;
+    while ((entry = internalQueue.poll()) != null) {
+      pendingCount.decrementAndGet();
+      if (entry.generation == generation) {
+        return entry;
+      }
+      // Enqueued by a thread that raced with clear(), so it was counted in the old generation
+    }
+    return null;
+  }
+
+  @Override
+  public Task<T> dequeue() {
+    assertNotClosed();
+    final Entry<T> entry = poll();
+    if (entry == null) {
+      return null;
+    }
+    return new ConcurrentTask<>(this, entry.generation, entry.data);
+  }
+
+  @Override
+  public List<Task<T>> dequeue(final int max) {
+    assertNotClosed();
+    final List<Task<T>> tasks = new ArrayList<>(Math.min(max, 1024));
+    while (tasks.size() < max) {
+      final Entry<T> entry = poll();
+      if (entry == null) {
+        break;
+      }
+      tasks.add(new ConcurrentTask<>(this, entry.generation, entry.data));
+    }
+    return tasks;
+  }
+
+  @Override
+  public long size() {
+    assertNotClosed();
+    // A task polled before its enqueuer has counted it briefly takes the count below zero
+    return Math.max(0, pendingCount.get());
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Clear all data from the queue. Tasks dequeued before the queue was cleared are no longer
+   * tracked, so completing or failing them has no effect. Safe to call while other threads are
+   * using the queue: tasks they enqueue concurrently are either kept and counted or discarded.
+   */
+  @Override
+  public void clear() {
+    assertNotClosed();
+    generation = new Generation();
+    while (internalQueue.poll() != null) {
+      pendingCount.decrementAndGet();
+    }
+  }
+
+  @Override
+  public boolean allTasksCompleted() {
+    assertNotClosed();
+    return generation.unfinishedCount.get() == 0;
+  }
+
+  @Override
+  public void close() {
+    closed.set(true);
+    internalQueue.clear();
+  }
+
+  private void assertNotClosed() {
+    if (closed.get()) {
+      throw new IllegalStateException("Attempt to access closed " + getClass().getSimpleName());
+    }
+  }
+
+  private void handleFailedTask(final ConcurrentTask<T> task) {
+    if (task.generation == generation) {
+      // The task goes straight back to pending so it is never counted as finished
+      add(new Entry<>(task.generation, task.getData()));
+    }
+  }
+
+  private static class Generation {
+    // Tasks that are pending or outstanding
+    private final AtomicLong unfinishedCount = new AtomicLong();
+  }
+
+  private static class Entry<T> {
+    private final Generation generation;
+    private final T data;
+
+    private Entry(final Generation generation, final T data) {
+      this.generation = generation;
+      this.data = data;
+    }
+  }
+
+  private static class ConcurrentTask<T> implements Task<T> {
+    private final ConcurrentTaskQueue<T> queue;
+    private final Generation generation;
+    private final T data;
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    private ConcurrentTask(
+        final ConcurrentTaskQueue<T> queue, final Generation generation, final T data) {
+      this.queue = queue;
+      this.generation = generation;
+      this.data = data;
+    }
+
+    @Override
+    public T getData() {
+      return data;
+    }
+
+    @Override
+    public void markCompleted() {
+      if (completed.compareAndSet(false, true)) {
+        generation.unfinishedCount.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void markFailed() {
+      if (completed.compareAndSet(false, true)) {
+        queue.handleFailedTask(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.queue.SpillableTaskStore.StoredTask;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+
+/**
+ * A task queue that keeps its head and tail in memory and only spills the middle of the queue to
+ * RocksDB once it holds more than {@code memoryCapacity} pending tasks.
+ *
+ * <p>Tasks held in memory are written to disk by {@link #checkpoint()}, which runs every {@code
+ * checkpointInterval} completed tasks and when the queue is closed. A checkpoint also deletes tasks
+ * that have completed since the previous one, so reopening the queue resumes with every task that
+ * was pending at the last checkpoint. Tasks completed after that checkpoint are handed out again,
+ * so consumers must be able to safely process a task more than once.
+ *
+ * <p>Tasks are dequeued in the order they were enqueued, except that after resuming the tasks that
+ * were outstanding or held in memory at the checkpoint come before those that were spilled.
+ *
+ * @param <T> the type of data held in the queue
+ */
+public class HybridTaskQueue<T> implements TaskQueue<T> {
+
+  private final SpillableTaskStore<T> store;
+
+  private final int memoryCapacity;
+  private final int spillSize;
+  private final int checkpointInterval;
+
+  // Tasks that will be dequeued next, some of which may have been read back from disk
+  private final Deque<HybridTask<T>> head = new ArrayDeque<>();
+  // Recently enqueued tasks waiting to be spilled behind the tasks on disk
+  private final Deque<HybridTask<T>> tail = new ArrayDeque<>();
+  private final Set<HybridTask<T>> outstandingTasks = Sets.newIdentityHashSet();
+
+  private int completedSinceCheckpoint = 0;
+
+  private boolean closed = false;
+
+  private HybridTaskQueue(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final int memoryCapacity,
+      final int checkpointInterval,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    checkArgument(memoryCapacity > 0, "Memory capacity must be greater than 0");
+    checkArgument(checkpointInterval > 0, "Checkpoint interval must be greater than 0");
+    this.memoryCapacity = memoryCapacity;
+    this.spillSize = Math.max(1, memoryCapacity / 4);
+    this.checkpointInterval = checkpointInterval;
+    this.store =
+        new SpillableTaskStore<>(
+            storageDirectory, serializer, deserializer, configuration, metricsSystem);
+  }
+
+  public static <T> HybridTaskQueue<T> create(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final int memoryCapacity,
+      final MetricsSystem metricsSystem) {
+    return create(
+        storageDirectory,
+        serializer,
+        deserializer,
+        memoryCapacity,
+        memoryCapacity,
+        RocksDbConfiguration.createDefault(),
+        metricsSystem);
+  }
+
+  public static <T> HybridTaskQueue<T> create(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final int memoryCapacity,
+      final int checkpointInterval,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    return new HybridTaskQueue<>(
+        storageDirectory,
+        serializer,
+        deserializer,
+        memoryCapacity,
+        checkpointInterval,
+        configuration,
+        metricsSystem);
+  }
+
+  @Override
+  public synchronized void enqueue(final T taskData) {
+    assertNotClosed();
+    add(taskData);
+  }
+
+  @Override
+  public synchronized void enqueueAll(final Collection<T> taskData) {
+    assertNotClosed();
+    taskData.forEach(this::add);
+  }
+
+  private void add(final T taskData) {
+    final HybridTask<T> task = new HybridTask<>(this, taskData);
+    if (store.getSpilledCount() == 0 && tail.isEmpty() && head.size() < memoryCapacity) {
+      head.add(task);
+    } else {
+      tail.add(task);
+      if (tail.size() >= spillSize) {
+        spillTail();
+      }
+    }
+  }
+
+  @Override
+  public synchronized Task<T> dequeue() {
+    assertNotClosed();
+    final HybridTask<T> task = poll();
+    if (task != null) {
+      outstandingTasks.add(task);
+    }
+    return task;
+  }
+
+  @Override
+  public synchronized List<Task<T>> dequeue(final int max) {
+    assertNotClosed();
+    final int count = (int) Math.min(max, size());
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+    final List<Task<T>> tasks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final HybridTask<T> task = poll();
+      outstandingTasks.add(task);
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  private HybridTask<T> poll() {
+    if (head.isEmpty()) {
+      if (store.getSpilledCount() > 0) {
+        store.refill(spillSize, (data, key) -> head.add(new HybridTask<>(this, data, key)));
+      } else {
+        head.addAll(tail);
+        tail.clear();
+      }
+    }
+    return head.poll();
+  }
+
+  private void spillTail() {
+    if (tail.isEmpty()) {
+      return;
+    }
+    store.spill(tail);
+    tail.clear();
+  }
+
+  /**
+   * Writes every pending task held in memory to disk and deletes tasks that have completed since
+   * the last checkpoint, so that the queue can be resumed from this point if the process stops.
+   */
+  public synchronized void checkpoint() {
+    assertNotClosed();
+    // Tail tasks sit behind the spilled tasks so become part of them
+    spillTail();
+    // Write the head in reverse so it is read back in order ahead of older tasks
+    store.checkpoint(Iterables.concat(head::descendingIterator, outstandingTasks));
+    completedSinceCheckpoint = 0;
+  }
+
+  @Override
+  public synchronized long size() {
+    assertNotClosed();
+    return head.size() + store.getSpilledCount() + tail.size();
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public synchronized void clear() {
+    assertNotClosed();
+    head.clear();
+    tail.clear();
+    outstandingTasks.clear();
+    store.clear();
+    completedSinceCheckpoint = 0;
+  }
+
+  @Override
+  public synchronized boolean allTasksCompleted() {
+    return isEmpty() && outstandingTasks.isEmpty();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    try {
+      checkpoint();
+    } finally {
+      closed = true;
+      store.close();
+    }
+  }
+
+  private void assertNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Attempt to access closed " + getClass().getSimpleName());
+    }
+  }
+
+  private synchronized void markTaskCompleted(final HybridTask<T> task) {
+    // Tasks handed out before the queue was cleared are no longer tracked
+    if (outstandingTasks.remove(task)) {
+      recordCompletion(task);
+    }
+  }
+
+  private synchronized void handleFailedTask(final HybridTask<T> task) {
+    if (outstandingTasks.remove(task)) {
+      // Requeue first, so a checkpoint triggered by the completion persists the retry in the same
+      // batch that deletes the failed task's key
+      enqueue(task.getData());
+      recordCompletion(task);
+    }
+  }
+
+  private void recordCompletion(final HybridTask<T> task) {
+    store.recordCompleted(task);
+    if (!closed && ++completedSinceCheckpoint >= checkpointInterval) {
+      checkpoint();
+    }
+  }
+
+  private static class HybridTask<T> extends StoredTask<T> {
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private final HybridTaskQueue<T> parentQueue;
+
+    private HybridTask(final HybridTaskQueue<T> parentQueue, final T data) {
+      super(data);
+      this.parentQueue = parentQueue;
+    }
+
+    private HybridTask(final HybridTaskQueue<T> parentQueue, final T data, final long key) {
+      super(data, key);
+      this.parentQueue = parentQueue;
+    }
+
+    @Override
+    public void markCompleted() {
+      if (completed.compareAndSet(false, true)) {
+        parentQueue.markTaskCompleted(this);
+      }
+    }
+
+    @Override
+    public void markFailed() {
+      if (completed.compareAndSet(false, true)) {
+        parentQueue.handleFailedTask(this);
+      }
+    }
+  }
+}
@@ -13,7 +13,10 @@
 package tech.pegasys.pantheon.services.queue;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -29,6 +32,12 @@ public class InMemoryTaskQueue<T> implements TaskQueue<T> {
     internalQueue.add(taskData);
   }
 
+  @Override
+  public synchronized void enqueueAll(final Collection<T> taskData) {
+    assertNotClosed();
+    internalQueue.addAll(taskData);
+  }
+
   @Override
   public synchronized Task<T> dequeue() {
     assertNotClosed();
@@ -41,6 +50,18 @@ public class InMemoryTaskQueue<T> implements TaskQueue<T> {
     return task;
   }
 
+  @Override
+  public synchronized List<Task<T>> dequeue(final int max) {
+    assertNotClosed();
+    final List<Task<T>> tasks = new ArrayList<>(Math.min(max, internalQueue.size()));
+    while (tasks.size() < max && !internalQueue.isEmpty()) {
+      final InMemoryTask<T> task = new InMemoryTask<>(this, internalQueue.poll());
+      unfinishedOutstandingTasks.add(task);
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
   @Override
   public synchronized long size() {
     assertNotClosed();
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.queue.SpillableTaskStore.StoredTask;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+
+/**
+ * A task queue that hands out tasks in priority order rather than the order they were enqueued.
+ * Tasks that compare as equal are dequeued in the order they were enqueued.
+ *
+ * <p>At most {@code memoryCapacity} pending tasks are held in memory. Beyond that the lowest
+ * priority tasks are spilled to RocksDB and only read back, in the order they were spilled, once
+ * every task held in memory has been dequeued. The priority order is therefore exact among the
+ * tasks in memory but only approximate overall, which suits consumers such as a depth-first tree
+ * walk where the spilled tasks are the shallowest ones.
+ *
+ * <p>Tasks held in memory are written to disk by {@link #checkpoint()}, which runs every {@code
+ * checkpointInterval} completed tasks and when the queue is closed. Reopening the queue resumes
+ * with every task that was pending at the last checkpoint, reading them back from disk in batches,
+ * so tasks completed after that checkpoint are handed out again and consumers must be able to
+ * safely process a task more than once.
+ *
+ * @param <T> the type of data held in the queue
+ */
+public class PriorityTaskQueue<T> implements TaskQueue<T> {
+
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+
+  private final SpillableTaskStore<T> store;
+
+  private final NavigableSet<PriorityTask<T>> pendingTasks;
+  private final Set<PriorityTask<T>> outstandingTasks = Sets.newIdentityHashSet();
+  private final int memoryCapacity;
+  private final int spillSize;
+  private final int checkpointInterval;
+
+  private long nextSequence = 0;
+  private int completedSinceCheckpoint = 0;
+  private int peakMemorySize = 0;
+
+  private boolean closed = false;
+
+  private PriorityTaskQueue(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final Comparator<T> priority,
+      final int memoryCapacity,
+      final int checkpointInterval,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    checkArgument(memoryCapacity > 0, "Memory capacity must be greater than 0");
+    checkArgument(checkpointInterval > 0, "Checkpoint interval must be greater than 0");
+    this.memoryCapacity = memoryCapacity;
+    this.spillSize = Math.max(1, memoryCapacity / 4);
+    this.checkpointInterval = checkpointInterval;
+    this.pendingTasks =
+        new TreeSet<>(
+            Comparator.<PriorityTask<T>, T>comparing(PriorityTask::getData, priority)
+                .thenComparingLong(PriorityTask::getSequence));
+    this.store =
+        new SpillableTaskStore<>(
+            storageDirectory, serializer, deserializer, configuration, metricsSystem);
+  }
+
+  public static <T> PriorityTaskQueue<T> create(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final Comparator<T> priority,
+      final int memoryCapacity,
+      final MetricsSystem metricsSystem) {
+    return create(
+        storageDirectory,
+        serializer,
+        deserializer,
+        priority,
+        memoryCapacity,
+        DEFAULT_CHECKPOINT_INTERVAL,
+        RocksDbConfiguration.createDefault(),
+        metricsSystem);
+  }
+
+  /**
+   * Creates a queue backed by the given directory, resuming from any checkpoint already stored
+   * there.
+   *
+   * @param storageDirectory the directory the queue is checkpointed to
+   * @param serializer converts task data to bytes for storage
+   * @param deserializer converts stored bytes back to task data
+   * @param priority orders task data so that the first task is dequeued first
+   * @param memoryCapacity the maximum number of pending tasks held in memory
+   * @param checkpointInterval the number of completed tasks between automatic checkpoints
+   * @param configuration the RocksDB configuration for the backing store
+   * @param metricsSystem the metrics system
+   * @param <T> the type of data held in the queue
+   * @return the queue
+   */
+  public static <T> PriorityTaskQueue<T> create(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final Comparator<T> priority,
+      final int memoryCapacity,
+      final int checkpointInterval,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    return new PriorityTaskQueue<>(
+        storageDirectory,
+        serializer,
+        deserializer,
+        priority,
+        memoryCapacity,
+        checkpointInterval,
+        configuration,
+        metricsSystem);
+  }
+
+  @Override
+  public synchronized void enqueue(final T taskData) {
+    assertNotClosed();
+    add(new PriorityTask<>(this, taskData, nextSequence++));
+  }
+
+  @Override
+  public synchronized void enqueueAll(final Collection<T> taskData) {
+    assertNotClosed();
+    for (final T data : taskData) {
+      add(new PriorityTask<>(this, data, nextSequence++));
+    }
+  }
+
+  private void add(final PriorityTask<T> task) {
+    if (pendingTasks.size() >= memoryCapacity) {
+      spillLowestPriority();
+    }
+    pendingTasks.add(task);
+    peakMemorySize = Math.max(peakMemorySize, pendingTasks.size());
+  }
+
+  @Override
+  public synchronized Task<T> dequeue() {
+    assertNotClosed();
+    final PriorityTask<T> task = poll();
+    if (task != null) {
+      outstandingTasks.add(task);
+    }
+    return task;
+  }
+
+  @Override
+  public synchronized List<Task<T>> dequeue(final int max) {
+    assertNotClosed();
+    final int count = (int) Math.min(max, size());
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+    final List<Task<T>> tasks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final PriorityTask<T> task = poll();
+      outstandingTasks.add(task);
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
+  private PriorityTask<T> poll() {
+    if (pendingTasks.isEmpty() && store.getSpilledCount() > 0) {
+      store.refill(
+          spillSize,
+          (data, key) -> pendingTasks.add(new PriorityTask<>(this, data, nextSequence++, key)));
+      peakMemorySize = Math.max(peakMemorySize, pendingTasks.size());
+    }
+    return pendingTasks.pollFirst();
+  }
+
+  private void spillLowestPriority() {
+    store.spill(Iterables.limit(pendingTasks.descendingSet(), spillSize));
+    for (int i = 0; i < spillSize && !pendingTasks.isEmpty(); i++) {
+      pendingTasks.pollLast();
+    }
+  }
+
+  /**
+   * Writes every pending and outstanding task held in memory that is not yet on disk and deletes
+   * tasks that have completed since the last checkpoint, so that the queue can be resumed from this
+   * point if the process stops.
+   */
+  public synchronized void checkpoint() {
+    assertNotClosed();
+    // Write the lowest priority first so the order is kept when resuming
+    store.checkpoint(Iterables.concat(pendingTasks.descendingSet(), outstandingTasks));
+    completedSinceCheckpoint = 0;
+  }
+
+  @Override
+  public synchronized long size() {
+    assertNotClosed();
+    return pendingTasks.size() + store.getSpilledCount();
+  }
+
+  /**
+   * Returns the largest number of pending tasks this queue has held in memory at once.
+   *
+   * @return the peak number of pending tasks held in memory
+   */
+  public synchronized int getPeakMemorySize() {
+    return peakMemorySize;
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public synchronized void clear() {
+    assertNotClosed();
+    pendingTasks.clear();
+    outstandingTasks.clear();
+    store.clear();
+    completedSinceCheckpoint = 0;
+  }
+
+  @Override
+  public synchronized boolean allTasksCompleted() {
+    return isEmpty() && outstandingTasks.isEmpty();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    try {
+      checkpoint();
+    } finally {
+      closed = true;
+      store.close();
+    }
+  }
+
+  private void assertNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Attempt to access closed " + getClass().getSimpleName());
+    }
+  }
+
+  private synchronized void markTaskCompleted(final PriorityTask<T> task) {
+    // Tasks handed out before the queue was cleared are no longer tracked
+    if (outstandingTasks.remove(task)) {
+      recordCompletion(task);
+    }
+  }
+
+  private synchronized void handleFailedTask(final PriorityTask<T> task) {
+    if (outstandingTasks.remove(task)) {
+      // Requeue before recording the completion so that a checkpoint it triggers persists the
+      // retry in the same batch that deletes the original task
+      enqueue(task.getData());
+      recordCompletion(task);
+    }
+  }
+
+  private void recordCompletion(final PriorityTask<T> task) {
+    store.recordCompleted(task);
+    if (!closed && ++completedSinceCheckpoint >= checkpointInterval) {
+      checkpoint();
+    }
+  }
+
+  private static class PriorityTask<T> extends StoredTask<T> {
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private final PriorityTaskQueue<T> parentQueue;
+    private final long sequence;
+
+    private PriorityTask(
+        final PriorityTaskQueue<T> parentQueue, final T data, final long sequence) {
+      super(data);
+      this.parentQueue = parentQueue;
+      this.sequence = sequence;
+    }
+
+    private PriorityTask(
+        final PriorityTaskQueue<T> parentQueue, final T data, final long sequence, final long key) {
+      super(data, key);
+      this.parentQueue = parentQueue;
+      this.sequence = sequence;
+    }
+
+    private long getSequence() {
+      return sequence;
+    }
+
+    @Override
+    public void markCompleted() {
+      if (completed.compareAndSet(false, true)) {
+        parentQueue.markTaskCompleted(this);
+      }
+    }
+
+    @Override
+    public void markFailed() {
+      if (completed.compareAndSet(false, true)) {
+        parentQueue.handleFailedTask(this);
+      }
+    }
+  }
+}
@@ -15,13 +15,18 @@ package tech.pegasys.pantheon.services.queue;
 import tech.pegasys.pantheon.metrics.MetricCategory;
 import tech.pegasys.pantheon.metrics.MetricsSystem;
 import tech.pegasys.pantheon.metrics.OperationTimer;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
 import tech.pegasys.pantheon.services.util.RocksDbUtil;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
@@ -30,10 +35,13 @@ import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 
 public class RocksDbTaskQueue<T> implements TaskQueue<T> {
 
   private final Options options;
+  private final WriteOptions writeOptions;
   private final RocksDB db;
 
   private long lastEnqueuedKey = 0;
@@ -41,7 +49,9 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
   private long oldestKey = 0;
   private RocksIterator dequeueIterator;
   private long lastValidKeyFromIterator;
-  private final Set<RocksDbTask<T>> outstandingTasks = new HashSet<>();
+  // Ordered by key so the oldest outstanding task can be found without a scan
+  private final NavigableSet<RocksDbTask<T>> outstandingTasks =
+      new TreeSet<>(Comparator.comparingLong(RocksDbTask::getKey));
 
   private boolean closed = false;
 
@@ -55,12 +65,19 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
       final Path storageDirectory,
       final Function<T, BytesValue> serializer,
       final Function<BytesValue, T> deserializer,
+      final RocksDbConfiguration configuration,
       final MetricsSystem metricsSystem) {
     this.serializer = serializer;
     this.deserializer = deserializer;
     try {
       RocksDbUtil.loadNativeLibrary();
-      options = new Options().setCreateIfMissing(true);
+      options =
+          new Options()
+              .setCreateIfMissing(true)
+              .setMaxOpenFiles(configuration.getMaxOpenFiles())
+              .setMaxBackgroundJobs(configuration.getMaxBackgroundJobs())
+              .setWriteBufferSize(configuration.getWriteBufferSize());
+      writeOptions = new WriteOptions();
       db = RocksDB.open(options, storageDirectory.toString());
 
       enqueueLatency =
@@ -102,7 +119,22 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
       final Function<T, BytesValue> serializer,
       final Function<BytesValue, T> deserializer,
       final MetricsSystem metricsSystem) {
-    return new RocksDbTaskQueue<>(storageDirectory, serializer, deserializer, metricsSystem);
+    return create(
+        storageDirectory,
+        serializer,
+        deserializer,
+        RocksDbConfiguration.createDefault(),
+        metricsSystem);
+  }
+
+  public static <T> RocksDbTaskQueue<T> create(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    return new RocksDbTaskQueue<>(
+        storageDirectory, serializer, deserializer, configuration, metricsSystem);
   }
 
   @Override
@@ -116,6 +148,25 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
     }
   }
 
+  @Override
+  public synchronized void enqueueAll(final Collection<T> taskData) {
+    assertNotClosed();
+    if (taskData.isEmpty()) {
+      return;
+    }
+    try (final OperationTimer.TimingContext ignored = enqueueLatency.startTimer();
+        final WriteBatch batch = new WriteBatch()) {
+      long key = lastEnqueuedKey;
+      for (final T data : taskData) {
+        batch.put(Longs.toByteArray(++key), serializer.apply(data).getArrayUnsafe());
+      }
+      db.write(writeOptions, batch);
+      lastEnqueuedKey = key;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public synchronized Task<T> dequeue() {
     assertNotClosed();
@@ -145,6 +196,40 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
     }
   }
 
+  @Override
+  public synchronized List<Task<T>> dequeue(final int max) {
+    assertNotClosed();
+    final int count = (int) Math.min(max, size());
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+    try (final OperationTimer.TimingContext ignored = dequeueLatency.startTimer()) {
+      if (dequeueIterator == null || lastDequeuedKey + count > lastValidKeyFromIterator) {
+        // The iterator only sees tasks enqueued before it was created
+        if (dequeueIterator != null) {
+          dequeueIterator.close();
+        }
+        createNewIterator();
+      }
+      // Keys are contiguous so the whole batch is read by stepping the iterator from one seek
+      dequeueIterator.seek(Longs.toByteArray(lastDequeuedKey + 1));
+      final List<Task<T>> tasks = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        final long key = lastDequeuedKey + 1;
+        if (!dequeueIterator.isValid() || Longs.fromByteArray(dequeueIterator.key()) != key) {
+          throw new IllegalStateException("Next expected value is missing");
+        }
+        final BytesValue data = BytesValue.of(dequeueIterator.value());
+        final RocksDbTask<T> task = new RocksDbTask<>(this, deserializer.apply(data), key);
+        outstandingTasks.add(task);
+        tasks.add(task);
+        lastDequeuedKey = key;
+        dequeueIterator.next();
+      }
+      return tasks;
+    }
+  }
+
   private void createNewIterator() {
     dequeueIterator = db.newIterator();
     lastValidKeyFromIterator = lastEnqueuedKey;
@@ -188,10 +273,7 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
 
   private synchronized void deleteCompletedTasks() {
     final long oldestOutstandingKey =
-        outstandingTasks.stream()
-            .min(Comparator.comparingLong(RocksDbTask::getKey))
-            .map(RocksDbTask::getKey)
-            .orElse(lastDequeuedKey + 1);
+        outstandingTasks.isEmpty() ? lastDequeuedKey + 1 : outstandingTasks.first().getKey();
 
     if (oldestKey < oldestOutstandingKey) {
       // Delete all contiguous completed tasks
@@ -216,6 +298,7 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
       dequeueIterator.close();
     }
     options.close();
+    writeOptions.close();
     db.close();
   }
 
@@ -226,7 +309,9 @@ public class RocksDbTaskQueue<T> implements TaskQueue<T> {
   }
 
   private synchronized boolean markTaskCompleted(final RocksDbTask<T> task) {
-    if (outstandingTasks.remove(task)) {
+    // Keys restart when the queue is cleared, so check this is the same task and not just the same
+    // key before removing it
+    if (outstandingTasks.ceiling(task) == task && outstandingTasks.remove(task)) {
       deleteCompletedTasks();
       return true;
     }
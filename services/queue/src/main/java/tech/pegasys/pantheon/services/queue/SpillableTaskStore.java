@@ -0,0 +1,280 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import tech.pegasys.pantheon.metrics.MetricCategory;
+import tech.pegasys.pantheon.metrics.MetricsSystem;
+import tech.pegasys.pantheon.metrics.OperationTimer;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.queue.RocksDbTaskQueue.StorageException;
+import tech.pegasys.pantheon.services.util.RocksDbUtil;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+
+import com.google.common.primitives.Longs;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * The RocksDB store behind {@link HybridTaskQueue} and {@link PriorityTaskQueue}, holding the tasks
+ * spilled out of memory as well as checkpointed copies of the tasks still held in memory.
+ *
+ * <p>Spilled tasks take keys counting up from {@code INITIAL_KEY} and are read back in key order.
+ * Checkpointed tasks take keys counting down from just below it, so they always sort before any
+ * spilled task. When an existing store is reopened everything on disk is treated as spilled, which
+ * reads the tasks that were in memory at the last checkpoint back first.
+ *
+ * <p>This class is not thread safe, the owning queue must synchronize access to it.
+ *
+ * @param <T> the type of data held in the store
+ */
+class SpillableTaskStore<T> implements AutoCloseable {
+
+  private static final long NOT_PERSISTED = -1;
+  private static final long INITIAL_KEY = Long.MAX_VALUE / 2;
+
+  private final Options options;
+  private final WriteOptions writeOptions;
+  private final RocksDB db;
+
+  private final Function<T, BytesValue> serializer;
+  private final Function<BytesValue, T> deserializer;
+
+  private final List<Long> completedPersistedKeys = new ArrayList<>();
+  private long spilledCount = 0;
+  private long nextSpilledKey = INITIAL_KEY;
+  private long nextSpillKey = INITIAL_KEY;
+  private long nextCheckpointKey = INITIAL_KEY - 1;
+
+  private final OperationTimer checkpointLatency;
+  private final OperationTimer spillLatency;
+  private final OperationTimer refillLatency;
+
+  SpillableTaskStore(
+      final Path storageDirectory,
+      final Function<T, BytesValue> serializer,
+      final Function<BytesValue, T> deserializer,
+      final RocksDbConfiguration configuration,
+      final MetricsSystem metricsSystem) {
+    this.serializer = serializer;
+    this.deserializer = deserializer;
+    try {
+      RocksDbUtil.loadNativeLibrary();
+      options =
+          new Options()
+              .setCreateIfMissing(true)
+              .setMaxOpenFiles(configuration.getMaxOpenFiles())
+              .setMaxBackgroundJobs(configuration.getMaxBackgroundJobs())
+              .setWriteBufferSize(configuration.getWriteBufferSize());
+      writeOptions = new WriteOptions();
+      db = RocksDB.open(options, storageDirectory.toString());
+
+      checkpointLatency =
+          metricsSystem.createTimer(
+              MetricCategory.BIG_QUEUE,
+              "checkpoint_latency_seconds",
+              "Latency for writing a checkpoint of the queue to disk.");
+      spillLatency =
+          metricsSystem.createTimer(
+              MetricCategory.BIG_QUEUE,
+              "spill_latency_seconds",
+              "Latency for spilling queued items to disk.");
+      refillLatency =
+          metricsSystem.createTimer(
+              MetricCategory.BIG_QUEUE,
+              "refill_latency_seconds",
+              "Latency for reading spilled items back from disk.");
+
+      // Initialize store from existing db
+      initialize();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private void initialize() {
+    try (final RocksIterator iter = db.newIterator()) {
+      iter.seekToFirst();
+      if (!iter.isValid()) {
+        // There is no data yet, nothing to do
+        return;
+      }
+      final long firstKey = Longs.fromByteArray(iter.key());
+      // Completed tasks are deleted individually, so the keys may have gaps and must be counted
+      long lastKey = firstKey;
+      long count = 0;
+      for (; iter.isValid(); iter.next()) {
+        lastKey = Longs.fromByteArray(iter.key());
+        count++;
+      }
+      // Everything on disk is pending again, in key order
+      spilledCount = count;
+      nextSpilledKey = firstKey;
+      nextSpillKey = Math.max(lastKey + 1, INITIAL_KEY);
+      nextCheckpointKey = Math.min(firstKey, INITIAL_KEY) - 1;
+    }
+  }
+
+  /**
+   * Returns the number of spilled tasks that have not been read back yet.
+   *
+   * @return the number of spilled tasks
+   */
+  long getSpilledCount() {
+    return spilledCount;
+  }
+
+  /**
+   * Writes the given tasks behind every task already spilled. The caller must drop the tasks from
+   * memory afterwards, as they will be read back by {@link #refill(long, ObjLongConsumer)}. Tasks
+   * that were already on disk are moved so they are only read back once.
+   *
+   * @param tasks the tasks to spill, in the order they should be read back
+   */
+  void spill(final Iterable<? extends StoredTask<T>> tasks) {
+    try (final OperationTimer.TimingContext ignored = spillLatency.startTimer();
+        final WriteBatch batch = new WriteBatch()) {
+      long key = nextSpillKey;
+      for (final StoredTask<T> task : tasks) {
+        batch.put(Longs.toByteArray(key++), serializer.apply(task.getData()).getArrayUnsafe());
+        if (task.key != NOT_PERSISTED) {
+          batch.delete(Longs.toByteArray(task.key));
+        }
+      }
+      db.write(writeOptions, batch);
+      spilledCount += key - nextSpillKey;
+      nextSpillKey = key;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Reads back up to {@code max} spilled tasks, in the order they were spilled. Each task stays on
+   * disk under the key passed to the consumer until it completes and the next checkpoint deletes
+   * it.
+   *
+   * @param max the maximum number of tasks to read back
+   * @param consumer receives the data and key of each task read back
+   */
+  void refill(final long max, final ObjLongConsumer<T> consumer) {
+    try (final OperationTimer.TimingContext ignored = refillLatency.startTimer();
+        final RocksIterator iter = db.newIterator()) {
+      iter.seek(Longs.toByteArray(nextSpilledKey));
+      final long count = Math.min(max, spilledCount);
+      for (long i = 0; i < count; i++) {
+        if (!iter.isValid()) {
+          throw new IllegalStateException("Next expected value is missing");
+        }
+        final long key = Longs.fromByteArray(iter.key());
+        consumer.accept(deserializer.apply(BytesValue.of(iter.value())), key);
+        nextSpilledKey = key + 1;
+        iter.next();
+      }
+      spilledCount -= count;
+    }
+  }
+
+  /**
+   * Records that a task has completed, so that the next checkpoint deletes it from disk.
+   *
+   * @param task the completed task
+   */
+  void recordCompleted(final StoredTask<T> task) {
+    if (task.key != NOT_PERSISTED) {
+      completedPersistedKeys.add(task.key);
+    }
+  }
+
+  /**
+   * Writes every given task that is not yet on disk and deletes tasks that have completed since the
+   * last checkpoint.
+   *
+   * @param tasks the tasks held in memory, starting with the one that should be read back last
+   */
+  void checkpoint(final Iterable<? extends StoredTask<T>> tasks) {
+    try (final OperationTimer.TimingContext ignored = checkpointLatency.startTimer();
+        final WriteBatch batch = new WriteBatch()) {
+      // Keys count down, so the first task ends up read back last
+      long key = nextCheckpointKey;
+      for (final StoredTask<T> task : tasks) {
+        if (task.key == NOT_PERSISTED) {
+          batch.put(Longs.toByteArray(key), serializer.apply(task.getData()).getArrayUnsafe());
+          task.key = key--;
+        }
+      }
+      for (final long completedKey : completedPersistedKeys) {
+        batch.delete(Longs.toByteArray(completedKey));
+      }
+      db.write(writeOptions, batch);
+      nextCheckpointKey = key;
+      completedPersistedKeys.clear();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  void clear() {
+    completedPersistedKeys.clear();
+    try {
+      db.deleteRange(Longs.toByteArray(0), Longs.toByteArray(Long.MAX_VALUE));
+      spilledCount = 0;
+      nextSpilledKey = INITIAL_KEY;
+      nextSpillKey = INITIAL_KEY;
+      nextCheckpointKey = INITIAL_KEY - 1;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    options.close();
+    writeOptions.close();
+    db.close();
+  }
+
+  /**
+   * A task that may have a copy on disk, which is tracked by the store.
+   *
+   * @param <T> the type of data held in the task
+   */
+  abstract static class StoredTask<T> implements TaskQueue.Task<T> {
+    private final T data;
+    // Guarded by the owning queue
+    private long key;
+
+    StoredTask(final T data) {
+      this(data, NOT_PERSISTED);
+    }
+
+    StoredTask(final T data, final long key) {
+      this.data = data;
+      this.key = key;
+    }
+
+    @Override
+    public T getData() {
+      return data;
+    }
+  }
+}
@@ -13,6 +13,9 @@
 package tech.pegasys.pantheon.services.queue;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Represents a very large thread-safe task queue that may exceed memory limits.
@@ -28,6 +31,16 @@ public interface TaskQueue<T> extends Closeable {
    */
   void enqueue(T taskData);
 
+  /**
+   * Enqueue several items at once, in iteration order. Implementations should override this to
+   * write all items in a single operation.
+   *
+   * @param taskData The data to be processed.
+   */
+  default void enqueueAll(final Collection<T> taskData) {
+    taskData.forEach(this::enqueue);
+  }
+
   /**
    * Dequeue a task for processing. This task will be tracked as a pending task until either {@code
    * Task.markCompleted} or {@code Task.requeue} is called.
@@ -36,6 +49,26 @@ public interface TaskQueue<T> extends Closeable {
    */
   Task<T> dequeue();
 
+  /**
+   * Dequeue up to {@code max} tasks for processing, in the order they were enqueued. Each task is
+   * tracked as a pending task just as if it had been returned by {@link #dequeue()}.
+   * Implementations should override this to read all tasks in a single pass.
+   *
+   * @param max The maximum number of tasks to dequeue.
+   * @return The tasks to be processed, which is empty if the queue is empty.
+   */
+  default List<Task<T>> dequeue(final int max) {
+    final List<Task<T>> tasks = new ArrayList<>(Math.min(max, 1024));
+    while (tasks.size() < max) {
+      final Task<T> task = dequeue();
+      if (task == null) {
+        break;
+      }
+      tasks.add(task);
+    }
+    return tasks;
+  }
+
   /** @return The number of tasks in the queue. */
   long size();
 
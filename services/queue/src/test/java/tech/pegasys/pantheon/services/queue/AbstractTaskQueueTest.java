@@ -53,6 +53,50 @@ abstract class AbstractTaskQueueTest<T extends TaskQueue<BytesValue>> {
     }
   }
 
+  @Test
+  public void enqueueAllAndDequeueBatch() throws Exception {
+    try (T queue = createQueue()) {
+      final List<BytesValue> values = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        values.add(BytesValue.of(i));
+      }
+
+      assertThat(queue.dequeue(5)).isEmpty();
+
+      queue.enqueueAll(values.subList(0, 6));
+      assertThat(queue.size()).isEqualTo(6);
+      final List<Task<BytesValue>> first = queue.dequeue(4);
+      assertThat(first).extracting(Task::getData).containsExactlyElementsOf(values.subList(0, 4));
+
+      queue.enqueueAll(values.subList(6, 10));
+      final List<Task<BytesValue>> second = queue.dequeue(100);
+      assertThat(second).extracting(Task::getData).containsExactlyElementsOf(values.subList(4, 10));
+      assertThat(queue.isEmpty()).isTrue();
+      assertThat(queue.dequeue(1)).isEmpty();
+      assertThat(queue.allTasksCompleted()).isFalse();
+
+      first.forEach(Task::markCompleted);
+      second.get(0).markFailed();
+      second.subList(1, second.size()).forEach(Task::markCompleted);
+      assertThat(queue.dequeue(2)).extracting(Task::getData).containsExactly(values.get(4));
+    }
+  }
+
+  @Test
+  public void dequeueBatchAfterSingleDequeue() throws Exception {
+    try (T queue = createQueue()) {
+      for (int i = 0; i < 5; i++) {
+        queue.enqueue(BytesValue.of(i));
+      }
+      assertThat(queue.dequeue().getData()).isEqualTo(BytesValue.of(0));
+      assertThat(queue.dequeue(2))
+          .extracting(Task::getData)
+          .containsExactly(BytesValue.of(1), BytesValue.of(2));
+      assertThat(queue.dequeue().getData()).isEqualTo(BytesValue.of(3));
+      assertThat(queue.dequeue(2)).extracting(Task::getData).containsExactly(BytesValue.of(4));
+    }
+  }
+
   @Test
   public void markTaskFailed() throws Exception {
     try (T queue = createQueue()) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ConcurrentTaskQueueTest
+    extends AbstractTaskQueueTest<ConcurrentTaskQueue<BytesValue>> {
+
+  @Override
+  protected ConcurrentTaskQueue<BytesValue> createQueue() {
+    return new ConcurrentTaskQueue<>();
+  }
+
+  @Test
+  public void handlesConcurrentConsumers() throws Exception {
+    final int threadCount = 8;
+    final int rootCount = 1000;
+    final ConcurrentTaskQueue<BytesValue> queue = createQueue();
+    for (int i = 0; i < rootCount; i++) {
+      queue.enqueue(BytesValue.of(0, i % 256, i / 256));
+    }
+
+    // Every root task fails once and then spawns one child task before completing, the way a
+    // world state request queues its children before it is marked complete
+    final Set<BytesValue> failedOnce = ConcurrentHashMap.newKeySet();
+    final Set<BytesValue> completed = ConcurrentHashMap.newKeySet();
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final List<Future<?>> consumers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      consumers.add(
+          executor.submit(
+              () -> {
+                start.await();
+                while (!queue.allTasksCompleted()) {
+                  for (final Task<BytesValue> task : queue.dequeue(16)) {
+                    final BytesValue data = task.getData();
+                    if (data.get(0) == 0 && failedOnce.add(data)) {
+                      task.markFailed();
+                      continue;
+                    }
+                    if (data.get(0) == 0) {
+                      queue.enqueue(BytesValue.wrap(new byte[] {1, data.get(1), data.get(2)}));
+                    }
+                    assertThat(completed.add(data)).isTrue();
+                    task.markCompleted();
+                  }
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (final Future<?> consumer : consumers) {
+      consumer.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdownNow();
+
+    assertThat(completed).hasSize(rootCount * 2);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.allTasksCompleted()).isTrue();
+  }
+
+  @Test
+  public void clearDiscardsTasksEnqueuedConcurrently() throws Exception {
+    final int threadCount = 4;
+    final ConcurrentTaskQueue<BytesValue> queue = createQueue();
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      workers.add(
+          executor.submit(
+              () -> {
+                while (running.get()) {
+                  queue.enqueue(BytesValue.of(1));
+                  final Task<BytesValue> task = queue.dequeue();
+                  if (task != null) {
+                    task.markCompleted();
+                  }
+                }
+                return null;
+              }));
+    }
+    for (int i = 0; i < 10_000; i++) {
+      queue.clear();
+    }
+    running.set(false);
+    for (final Future<?> worker : workers) {
+      worker.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdownNow();
+
+    // Whatever raced with a clear, every task still counted by the queue can be handed out
+    Task<BytesValue> task;
+    while ((task = queue.dequeue()) != null) {
+      task.markCompleted();
+    }
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.allTasksCompleted()).isTrue();
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HybridTaskQueueTest extends AbstractTaskQueueTest<HybridTaskQueue<BytesValue>> {
+
+  // Small enough that the shared tests spill to disk
+  private static final int MEMORY_CAPACITY = 4;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected HybridTaskQueue<BytesValue> createQueue() throws IOException {
+    final Path dataDir = folder.newFolder().toPath();
+    return createQueue(dataDir, 1000);
+  }
+
+  private HybridTaskQueue<BytesValue> createQueue(
+      final Path dataDir, final int checkpointInterval) {
+    return HybridTaskQueue.create(
+        dataDir,
+        Function.identity(),
+        Function.identity(),
+        MEMORY_CAPACITY,
+        checkpointInterval,
+        RocksDbConfiguration.createDefault(),
+        new NoOpMetricsSystem());
+  }
+
+  @Test
+  public void shouldDequeueInOrderWhenSpillingToDisk() throws Exception {
+    try (final HybridTaskQueue<BytesValue> queue = createQueue()) {
+      final List<BytesValue> values = values(0, 50);
+      for (final BytesValue value : values.subList(0, 25)) {
+        queue.enqueue(value);
+      }
+      assertThat(queue.dequeue(5)).extracting(Task::getData).isEqualTo(values.subList(0, 5));
+      queue.enqueueAll(values.subList(25, 50));
+
+      assertThat(queue.size()).isEqualTo(45);
+      assertThat(queue.dequeue(100)).extracting(Task::getData).isEqualTo(values.subList(5, 50));
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldResumeFromExistingQueue() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    final List<BytesValue> values = values(0, 20);
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1000)) {
+      queue.enqueueAll(values);
+      queue.dequeue(3).forEach(Task::markCompleted);
+      // Outstanding tasks are persisted so they are not lost if they never complete
+      queue.dequeue(2);
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(dataDir, 1000)) {
+      assertThat(resumedQueue.size()).isEqualTo(17);
+      resumedQueue.enqueue(BytesValue.of(99));
+
+      final List<BytesValue> expected = new ArrayList<>(values.subList(3, 20));
+      expected.add(BytesValue.of(99));
+      assertThat(resumedQueue.dequeue(100)).extracting(Task::getData).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void shouldResumeFromExistingQueueWithNoElements() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1000)) {
+      queue.enqueueAll(values(0, 10));
+      queue.dequeue(10).forEach(Task::markCompleted);
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(dataDir, 1000)) {
+      assertThat(resumedQueue.isEmpty()).isTrue();
+      assertThat(resumedQueue.allTasksCompleted()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldResumeRepeatedlyFromExistingQueue() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    final List<BytesValue> values = values(0, 30);
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1000)) {
+      queue.enqueueAll(values);
+      queue.dequeue(10).forEach(Task::markCompleted);
+    }
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1000)) {
+      queue.dequeue(10).forEach(Task::markCompleted);
+      queue.enqueue(BytesValue.of(99));
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(dataDir, 1000)) {
+      final List<BytesValue> expected = new ArrayList<>(values.subList(20, 30));
+      expected.add(BytesValue.of(99));
+      assertThat(resumedQueue.dequeue(100)).extracting(Task::getData).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void shouldRequeueFailedTaskReadFromDisk() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1)) {
+      queue.enqueueAll(values(0, 10));
+      queue.dequeue(9).forEach(Task::markCompleted);
+      queue.dequeue().markFailed();
+      assertThat(queue.size()).isEqualTo(1);
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(dataDir, 1000)) {
+      assertThat(resumedQueue.dequeue(100))
+          .extracting(Task::getData)
+          .containsExactly(BytesValue.of(9));
+    }
+  }
+
+  @Test
+  public void shouldKeepFailedTaskWhenStoppedWithoutClosing() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    final Path crashedDir;
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 2)) {
+      // Few enough tasks that the failed one is requeued in memory rather than spilled
+      queue.enqueueAll(values(0, 3));
+      queue.checkpoint();
+      queue.dequeue().markCompleted();
+      // The second completion triggers a checkpoint that deletes the failed task's key
+      queue.dequeue().markFailed();
+      // Copying the files of the open database is what a crash leaves behind
+      crashedDir = copyDatabase(dataDir);
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(crashedDir, 1000)) {
+      assertThat(resumedQueue.dequeue(100))
+          .extracting(Task::getData)
+          .containsExactlyInAnyOrderElementsOf(values(1, 3));
+    }
+  }
+
+  @Test
+  public void clearShouldRemoveSpilledTasks() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final HybridTaskQueue<BytesValue> queue = createQueue(dataDir, 1000)) {
+      queue.enqueueAll(values(0, 20));
+      queue.checkpoint();
+      queue.clear();
+      assertThat(queue.isEmpty()).isTrue();
+      queue.enqueue(BytesValue.of(99));
+    }
+
+    try (final HybridTaskQueue<BytesValue> resumedQueue = createQueue(dataDir, 1000)) {
+      assertThat(resumedQueue.dequeue(100))
+          .extracting(Task::getData)
+          .containsExactly(BytesValue.of(99));
+    }
+  }
+
+  private Path copyDatabase(final Path dataDir) throws IOException {
+    final Path copy = folder.newFolder().toPath();
+    try (final Stream<Path> files = Files.list(dataDir)) {
+      files.forEach(
+          file -> {
+            try {
+              Files.copy(file, copy.resolve(file.getFileName()));
+            } catch (final IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+    return copy;
+  }
+
+  private List<BytesValue> values(final int from, final int to) {
+    final List<BytesValue> values = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      values.add(BytesValue.of(i));
+    }
+    return values;
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.pantheon.services.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.kvstore.RocksDbConfiguration;
+import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
+import tech.pegasys.pantheon.util.bytes.BytesValue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PriorityTaskQueueTest extends AbstractTaskQueueTest<PriorityTaskQueue<BytesValue>> {
+
+  // Tasks with equal priority come out in the order they went in
+  private static final Comparator<BytesValue> EQUAL_PRIORITY = (a, b) -> 0;
+  private static final Comparator<BytesValue> LARGEST_FIRST =
+      Comparator.comparing(BytesValue::size).reversed();
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Override
+  protected PriorityTaskQueue<BytesValue> createQueue() throws IOException {
+    return createQueue(folder.newFolder().toPath(), EQUAL_PRIORITY, 1000);
+  }
+
+  private PriorityTaskQueue<BytesValue> createQueue(
+      final Path dataDir, final Comparator<BytesValue> priority, final int checkpointInterval) {
+    return createQueue(dataDir, priority, 1000, checkpointInterval);
+  }
+
+  private PriorityTaskQueue<BytesValue> createQueue(
+      final Path dataDir,
+      final Comparator<BytesValue> priority,
+      final int memoryCapacity,
+      final int checkpointInterval) {
+    return PriorityTaskQueue.create(
+        dataDir,
+        Function.identity(),
+        Function.identity(),
+        priority,
+        memoryCapacity,
+        checkpointInterval,
+        RocksDbConfiguration.createDefault(),
+        new NoOpMetricsSystem());
+  }
+
+  @Test
+  public void shouldDequeueHighestPriorityFirst() throws Exception {
+    try (final PriorityTaskQueue<BytesValue> queue =
+        createQueue(folder.newFolder().toPath(), LARGEST_FIRST, 1000)) {
+      queue.enqueueAll(
+          Arrays.asList(BytesValue.of(1), BytesValue.of(2, 2), BytesValue.of(3), BytesValue.of()));
+      assertThat(queue.dequeue().getData()).isEqualTo(BytesValue.of(2, 2));
+
+      queue.enqueue(BytesValue.of(4, 4, 4));
+      assertThat(queue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactly(
+              BytesValue.of(4, 4, 4), BytesValue.of(1), BytesValue.of(3), BytesValue.of());
+    }
+  }
+
+  @Test
+  public void shouldResumeFromExistingQueue() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final PriorityTaskQueue<BytesValue> queue = createQueue(dataDir, LARGEST_FIRST, 1000)) {
+      queue.enqueueAll(
+          Arrays.asList(BytesValue.of(1), BytesValue.of(2), BytesValue.of(3, 3), BytesValue.of()));
+      queue.dequeue().markCompleted();
+      // Outstanding tasks are persisted so they are not lost if they never complete
+      assertThat(queue.dequeue().getData()).isEqualTo(BytesValue.of(1));
+    }
+
+    try (final PriorityTaskQueue<BytesValue> resumedQueue =
+        createQueue(dataDir, LARGEST_FIRST, 1000)) {
+      assertThat(resumedQueue.size()).isEqualTo(3);
+      resumedQueue.enqueue(BytesValue.of(4, 4));
+      assertThat(resumedQueue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactly(
+              BytesValue.of(4, 4), BytesValue.of(1), BytesValue.of(2), BytesValue.of());
+    }
+  }
+
+  @Test
+  public void shouldDeleteCompletedTasksAtCheckpoint() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final PriorityTaskQueue<BytesValue> queue = createQueue(dataDir, EQUAL_PRIORITY, 2)) {
+      queue.enqueueAll(Arrays.asList(BytesValue.of(1), BytesValue.of(2), BytesValue.of(3)));
+      queue.checkpoint();
+      queue.dequeue(2).forEach(Task::markCompleted);
+      queue.dequeue().markFailed();
+    }
+
+    try (final PriorityTaskQueue<BytesValue> resumedQueue =
+        createQueue(dataDir, EQUAL_PRIORITY, 1000)) {
+      assertThat(resumedQueue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactly(BytesValue.of(3));
+      assertThat(resumedQueue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldKeepFailedTaskWhenStoppedWithoutClosing() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    final Path crashedDir;
+    try (final PriorityTaskQueue<BytesValue> queue = createQueue(dataDir, EQUAL_PRIORITY, 2)) {
+      queue.enqueueAll(Arrays.asList(BytesValue.of(1), BytesValue.of(2), BytesValue.of(3)));
+      queue.checkpoint();
+      queue.dequeue().markCompleted();
+      // The second completion triggers a checkpoint that deletes the failed task's key
+      queue.dequeue().markFailed();
+      // Copying the files of the open database is what a crash leaves behind
+      crashedDir = copyDatabase(dataDir);
+    }
+
+    try (final PriorityTaskQueue<BytesValue> resumedQueue =
+        createQueue(crashedDir, EQUAL_PRIORITY, 1000)) {
+      assertThat(resumedQueue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactlyInAnyOrder(BytesValue.of(2), BytesValue.of(3));
+    }
+  }
+
+  @Test
+  public void shouldSpillLowestPriorityTasksBeyondMemoryCapacity() throws Exception {
+    try (final PriorityTaskQueue<BytesValue> queue =
+        createQueue(folder.newFolder().toPath(), LARGEST_FIRST, 4, 1000)) {
+      queue.enqueueAll(
+          Arrays.asList(
+              BytesValue.of(1), BytesValue.of(2, 2), BytesValue.of(3, 3, 3), BytesValue.of(4)));
+      // The queue is full, so the smallest task is spilled to make room
+      queue.enqueue(BytesValue.of(5, 5));
+      assertThat(queue.size()).isEqualTo(5);
+      assertThat(queue.getPeakMemorySize()).isEqualTo(4);
+
+      // Spilled tasks are only read back, in the order they were spilled, once the tasks in
+      // memory have been dequeued
+      queue.enqueue(BytesValue.of(6));
+      assertThat(queue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactly(
+              BytesValue.of(3, 3, 3),
+              BytesValue.of(2, 2),
+              BytesValue.of(5, 5),
+              BytesValue.of(6),
+              BytesValue.of(4),
+              BytesValue.of(1));
+      assertThat(queue.getPeakMemorySize()).isEqualTo(4);
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldResumeWithSpilledTasks() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    final List<BytesValue> values = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      values.add(BytesValue.of(i));
+    }
+    try (final PriorityTaskQueue<BytesValue> queue =
+        createQueue(dataDir, EQUAL_PRIORITY, 4, 1000)) {
+      queue.enqueueAll(values);
+      queue.dequeue().markCompleted();
+    }
+
+    try (final PriorityTaskQueue<BytesValue> resumedQueue =
+        createQueue(dataDir, EQUAL_PRIORITY, 4, 1000)) {
+      assertThat(resumedQueue.size()).isEqualTo(19);
+      assertThat(resumedQueue.dequeue(100))
+          .extracting(Task::getData)
+          .containsExactlyInAnyOrderElementsOf(values.subList(1, 20));
+      assertThat(resumedQueue.getPeakMemorySize()).isLessThanOrEqualTo(4);
+    }
+  }
+
+  @Test
+  public void clearShouldRemoveCheckpointedTasks() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final PriorityTaskQueue<BytesValue> queue = createQueue(dataDir, EQUAL_PRIORITY, 1000)) {
+      queue.enqueueAll(Arrays.asList(BytesValue.of(1), BytesValue.of(2)));
+      queue.checkpoint();
+      queue.clear();
+    }
+
+    try (final PriorityTaskQueue<BytesValue> resumedQueue =
+        createQueue(dataDir, EQUAL_PRIORITY, 1000)) {
+      assertThat(resumedQueue.isEmpty()).isTrue();
+    }
+  }
+
+  private Path copyDatabase(final Path dataDir) throws IOException {
+    final Path copy = folder.newFolder().toPath();
+    try (final Stream<Path> files = Files.list(dataDir)) {
+      files.forEach(
+          file -> {
+            try {
+              Files.copy(file, copy.resolve(file.getFileName()));
+            } catch (final IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+    return copy;
+  }
+}
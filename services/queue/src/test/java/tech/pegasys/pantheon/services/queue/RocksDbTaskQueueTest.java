@@ -15,10 +15,12 @@ package tech.pegasys.pantheon.services.queue;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import tech.pegasys.pantheon.metrics.noop.NoOpMetricsSystem;
+import tech.pegasys.pantheon.services.queue.TaskQueue.Task;
 import tech.pegasys.pantheon.util.bytes.BytesValue;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.function.Function;
 
 import org.junit.Rule;
@@ -55,6 +57,22 @@ public class RocksDbTaskQueueTest extends AbstractTaskQueueTest<RocksDbTaskQueue
     testResumeFromExistingQueue(0);
   }
 
+  @Test
+  public void shouldResumeFromBatchEnqueuedQueue() throws Exception {
+    final Path dataDir = folder.newFolder().toPath();
+    try (final RocksDbTaskQueue<BytesValue> queue = createQueue(dataDir)) {
+      queue.enqueueAll(Arrays.asList(BytesValue.of(1), BytesValue.of(2), BytesValue.of(3)));
+      queue.dequeue(1).forEach(Task::markCompleted);
+    }
+
+    try (final RocksDbTaskQueue<BytesValue> resumedQueue = createQueue(dataDir)) {
+      assertThat(resumedQueue.size()).isEqualTo(2);
+      assertThat(resumedQueue.dequeue(10))
+          .extracting(Task::getData)
+          .containsExactly(BytesValue.of(2), BytesValue.of(3));
+    }
+  }
+
   private void testResumeFromExistingQueue(final int elementCount) throws Exception {
     final Path dataDir = folder.newFolder().toPath();
     try (final RocksDbTaskQueue<BytesValue> queue = createQueue(dataDir)) {